@@ -14,6 +14,7 @@ import java.util.Map;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.whispersystems.textsecuregcm.attachments.TusConfiguration;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.ApnConfiguration;
 import org.whispersystems.textsecuregcm.configuration.AppleAppStoreConfiguration;
 import org.whispersystems.textsecuregcm.configuration.ArtServiceConfiguration;
@@ -317,6 +318,11 @@ public class WhisperServerConfiguration extends Configuration {
   @JsonProperty
   private VirtualThreadConfiguration virtualThread = new VirtualThreadConfiguration(Duration.ofMillis(1));
 
+  @Valid
+  @NotNull
+  @JsonProperty
+  private AccountNearCacheConfiguration accountNearCache = new AccountNearCacheConfiguration(false, 0, null);
+
 
   @Valid
   @NotNull
@@ -559,6 +565,10 @@ public class WhisperServerConfiguration extends Configuration {
     return virtualThread;
   }
 
+  public AccountNearCacheConfiguration getAccountNearCacheConfiguration() {
+    return accountNearCache;
+  }
+
   public S3ObjectMonitorFactory getMaxmindCityDatabase() {
     return maxmindCityDatabase;
   }
@@ -20,6 +20,7 @@ import io.dropwizard.core.server.DefaultServerFactory;
 import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.jetty.HttpsConnectorFactory;
+import io.dropwizard.lifecycle.Managed;
 import io.grpc.ServerBuilder;
 import io.lettuce.core.metrics.MicrometerCommandLatencyRecorder;
 import io.lettuce.core.metrics.MicrometerOptions;
@@ -27,6 +28,8 @@ import io.lettuce.core.resource.ClientResources;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.binder.grpc.MetricCollectingServerInterceptor;
 import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
 import io.netty.channel.local.LocalAddress;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -159,7 +162,9 @@ import org.whispersystems.textsecuregcm.grpc.ProfileGrpcService;
 import org.whispersystems.textsecuregcm.grpc.RequestAttributesInterceptor;
 import org.whispersystems.textsecuregcm.grpc.net.ClientConnectionManager;
 import org.whispersystems.textsecuregcm.grpc.net.ManagedDefaultEventLoopGroup;
+import org.whispersystems.textsecuregcm.grpc.net.ManagedEpollEventLoopGroup;
 import org.whispersystems.textsecuregcm.grpc.net.ManagedLocalGrpcServer;
+import org.whispersystems.textsecuregcm.grpc.net.PeerAffinityEventLoopGroup;
 import org.whispersystems.textsecuregcm.grpc.net.ManagedNioEventLoopGroup;
 import org.whispersystems.textsecuregcm.grpc.net.NoiseWebSocketTunnelServer;
 import org.whispersystems.textsecuregcm.jetty.JettyHttpConfigurationCustomizer;
@@ -182,6 +187,7 @@ import org.whispersystems.textsecuregcm.mappers.RateLimitExceededExceptionMapper
 import org.whispersystems.textsecuregcm.mappers.RegistrationServiceSenderExceptionMapper;
 import org.whispersystems.textsecuregcm.mappers.ServerRejectedExceptionMapper;
 import org.whispersystems.textsecuregcm.mappers.SubscriptionExceptionMapper;
+import org.whispersystems.textsecuregcm.metrics.EventLoopGroupMetrics;
 import org.whispersystems.textsecuregcm.metrics.MessageMetrics;
 import org.whispersystems.textsecuregcm.metrics.MetricsApplicationEventListener;
 import org.whispersystems.textsecuregcm.metrics.MetricsHttpChannelListener;
@@ -196,9 +202,11 @@ import org.whispersystems.textsecuregcm.push.ClientPresenceManager;
 import org.whispersystems.textsecuregcm.push.FcmSender;
 import org.whispersystems.textsecuregcm.push.MessageSender;
 import org.whispersystems.textsecuregcm.push.ProvisioningManager;
+import org.whispersystems.textsecuregcm.push.PushNotificationDebouncer;
 import org.whispersystems.textsecuregcm.push.PushNotificationManager;
 import org.whispersystems.textsecuregcm.push.PushNotificationScheduler;
 import org.whispersystems.textsecuregcm.push.ReceiptSender;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.ConnectionEventLogger;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClient;
@@ -213,6 +221,7 @@ import org.whispersystems.textsecuregcm.spam.RegistrationRecoveryChecker;
 import org.whispersystems.textsecuregcm.spam.SpamChecker;
 import org.whispersystems.textsecuregcm.spam.SpamFilter;
 import org.whispersystems.textsecuregcm.storage.AccountLockManager;
+import org.whispersystems.textsecuregcm.storage.AccountNearCache;
 import org.whispersystems.textsecuregcm.storage.AccountPrincipalSupplier;
 import org.whispersystems.textsecuregcm.storage.Accounts;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
@@ -412,13 +421,6 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
         config.getDynamoDbTables().getPhoneNumberIdentifiers().getTableName());
     Profiles profiles = new Profiles(dynamoDbClient, dynamoDbAsyncClient,
         config.getDynamoDbTables().getProfiles().getTableName());
-    KeysManager keysManager = new KeysManager(
-        dynamoDbAsyncClient,
-        config.getDynamoDbTables().getEcKeys().getTableName(),
-        config.getDynamoDbTables().getKemKeys().getTableName(),
-        config.getDynamoDbTables().getEcSignedPreKeys().getTableName(),
-        config.getDynamoDbTables().getKemLastResortKeys().getTableName()
-    );
     MessagesDynamoDb messagesDynamoDb = new MessagesDynamoDb(dynamoDbClient, dynamoDbAsyncClient,
         config.getDynamoDbTables().getMessages().getTableName(),
         config.getDynamoDbTables().getMessages().getExpiration(),
@@ -460,6 +462,16 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
     FaultTolerantRedisClusterClient rateLimitersCluster = config.getRateLimitersCluster().build("rate_limiters",
         sharedClientResources.mutate());
 
+    KeysManager keysManager = new KeysManager(
+        dynamoDbAsyncClient,
+        config.getDynamoDbTables().getEcKeys().getTableName(),
+        config.getDynamoDbTables().getKemKeys().getTableName(),
+        config.getDynamoDbTables().getEcSignedPreKeys().getTableName(),
+        config.getDynamoDbTables().getKemLastResortKeys().getTableName(),
+        cacheCluster,
+        dynamicConfigurationManager
+    );
+
     FaultTolerantRedisClient pubsubClient =
         config.getRedisPubSubConfiguration().build("pubsub", sharedClientResources);
 
@@ -641,21 +653,29 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
         config.getDynamoDbTables().getDeletedAccountsLock().getTableName());
     ClientPublicKeysManager clientPublicKeysManager =
         new ClientPublicKeysManager(clientPublicKeys, accountLockManager, accountLockExecutor);
+    AccountNearCache accountNearCache = new AccountNearCache(cacheCluster, config.getAccountNearCacheConfiguration());
     AccountsManager accountsManager = new AccountsManager(accounts, phoneNumberIdentifiers, cacheCluster,
-        accountLockManager, keysManager, messagesManager, profilesManager,
+        accountNearCache, accountLockManager, keysManager, messagesManager, profilesManager,
         secureStorageClient, secureValueRecovery2Client,
         clientPresenceManager,
         registrationRecoveryPasswordsManager, clientPublicKeysManager, accountLockExecutor, clientPresenceExecutor,
         clock, config.getLinkDeviceSecretConfiguration().secret().value(), dynamicConfigurationManager);
     RemoteConfigsManager remoteConfigsManager = new RemoteConfigsManager(remoteConfigs);
     APNSender apnSender = new APNSender(apnSenderExecutor, config.getApnConfiguration());
-    FcmSender fcmSender = new FcmSender(fcmSenderExecutor, config.getFcmConfiguration().credentials().value());
+    FcmSender fcmSender = new FcmSender(fcmSenderExecutor, config.getFcmConfiguration().credentials().value(),
+        config.getFcmConfiguration().batchDelay());
     PushNotificationScheduler pushNotificationScheduler = new PushNotificationScheduler(pushSchedulerCluster,
         apnSender, fcmSender, accountsManager, 0, 0);
-    PushNotificationManager pushNotificationManager =
-        new PushNotificationManager(accountsManager, apnSender, fcmSender, pushNotificationScheduler);
+    PushNotificationDebouncer pushNotificationDebouncer = new PushNotificationDebouncer(pushSchedulerCluster);
+    PushNotificationManager pushNotificationManager = new PushNotificationManager(accountsManager, apnSender, fcmSender,
+        pushNotificationScheduler, pushNotificationDebouncer);
+    ClusterLuaScript validateRateLimitScript = RateLimiters.defaultScript(rateLimitersCluster);
+    ClusterLuaScript leaseRateLimitPermitsScript = RateLimiters.defaultLeaseScript(rateLimitersCluster);
+    ScheduledExecutorService rateLimitLeaseExpirationExecutor = environment.lifecycle()
+        .scheduledExecutorService(name(getClass(), "rateLimitLeaseExpiration-%d")).threads(1).build();
     RateLimiters rateLimiters = RateLimiters.createAndValidate(config.getLimitsConfiguration(),
-        dynamicConfigurationManager, rateLimitersCluster);
+        dynamicConfigurationManager, validateRateLimitScript, leaseRateLimitPermitsScript, rateLimitersCluster,
+        rateLimitLeaseExpirationExecutor);
     ProvisioningManager provisioningManager = new ProvisioningManager(pubsubClient);
     IssuedReceiptsManager issuedReceiptsManager = new IssuedReceiptsManager(
         config.getDynamoDbTables().getIssuedReceipts().getTableName(),
@@ -755,10 +775,12 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
         config.getAppleAppStore().retry(), appleAppStoreExecutor, appleAppStoreRetryExecutor);
 
     environment.lifecycle().manage(apnSender);
+    environment.lifecycle().manage(fcmSender);
     environment.lifecycle().manage(pushNotificationScheduler);
     environment.lifecycle().manage(provisioningManager);
     environment.lifecycle().manage(messagesCache);
     environment.lifecycle().manage(clientPresenceManager);
+    environment.lifecycle().manage(accountNearCache);
     environment.lifecycle().manage(currencyManager);
     environment.lifecycle().manage(registrationServiceClient);
     environment.lifecycle().manage(keyTransparencyServiceClient);
@@ -860,7 +882,33 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
 
     final ClientConnectionManager clientConnectionManager = new ClientConnectionManager();
 
-    final ManagedDefaultEventLoopGroup localEventLoopGroup = new ManagedDefaultEventLoopGroup();
+    final ManagedDefaultEventLoopGroup localEventLoopGroup =
+        new ManagedDefaultEventLoopGroup(config.getNoiseWebSocketTunnelConfiguration().localEventLoopThreads());
+
+    EventLoopGroupMetrics.registerMetrics(localEventLoopGroup, "local");
+
+    if (config.getNoiseWebSocketTunnelConfiguration().nativeTransport() && !Epoll.isAvailable()) {
+      log.warn("Native transport requested for Noise-over-WebSocket tunnel, but epoll is not available; will use NIO",
+          Epoll.unavailabilityCause());
+    }
+
+    final int noiseWebSocketEventLoopThreads = config.getNoiseWebSocketTunnelConfiguration().eventLoopThreads();
+
+    final EventLoopGroup noiseWebSocketEventLoopGroup =
+        config.getNoiseWebSocketTunnelConfiguration().nativeTransport() && Epoll.isAvailable()
+            ? new ManagedEpollEventLoopGroup(noiseWebSocketEventLoopThreads)
+            : new ManagedNioEventLoopGroup(noiseWebSocketEventLoopThreads);
+
+    EventLoopGroupMetrics.registerMetrics(noiseWebSocketEventLoopGroup, "noiseWebSocket");
+
+    // If configured, local gRPC servers serve each tunneled connection on the tunnel connection's own event loop
+    @Nullable final PeerAffinityEventLoopGroup grpcPeerAffinityEventLoopGroup =
+        config.getNoiseWebSocketTunnelConfiguration().colocateGrpcConnections()
+            ? new PeerAffinityEventLoopGroup(noiseWebSocketEventLoopGroup)
+            : null;
+
+    final EventLoopGroup grpcEventLoopGroup =
+        grpcPeerAffinityEventLoopGroup != null ? grpcPeerAffinityEventLoopGroup : localEventLoopGroup;
 
     final RemoteDeprecationFilter remoteDeprecationFilter = new RemoteDeprecationFilter(dynamicConfigurationManager);
     final MetricCollectingServerInterceptor metricCollectingServerInterceptor =
@@ -873,7 +921,7 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
     final LocalAddress anonymousGrpcServerAddress = new LocalAddress("grpc-anonymous");
     final LocalAddress authenticatedGrpcServerAddress = new LocalAddress("grpc-authenticated");
 
-    final ManagedLocalGrpcServer anonymousGrpcServer = new ManagedLocalGrpcServer(anonymousGrpcServerAddress, localEventLoopGroup) {
+    final ManagedLocalGrpcServer anonymousGrpcServer = new ManagedLocalGrpcServer(anonymousGrpcServerAddress, grpcEventLoopGroup) {
       @Override
       protected void configureServer(final ServerBuilder<?> serverBuilder) {
         // Note: interceptors run in the reverse order they are added; the remote deprecation filter
@@ -897,7 +945,7 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
       }
     };
 
-    final ManagedLocalGrpcServer authenticatedGrpcServer = new ManagedLocalGrpcServer(authenticatedGrpcServerAddress, localEventLoopGroup) {
+    final ManagedLocalGrpcServer authenticatedGrpcServer = new ManagedLocalGrpcServer(authenticatedGrpcServerAddress, grpcEventLoopGroup) {
       @Override
       protected void configureServer(final ServerBuilder<?> serverBuilder) {
         // Note: interceptors run in the reverse order they are added; the remote deprecation filter
@@ -949,26 +997,27 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
         .allowCoreThreadTimeOut(false)
         .build();
 
-    final ManagedNioEventLoopGroup noiseWebSocketEventLoopGroup = new ManagedNioEventLoopGroup();
-
     final NoiseWebSocketTunnelServer noiseWebSocketTunnelServer = new NoiseWebSocketTunnelServer(
         config.getNoiseWebSocketTunnelConfiguration().port(),
         noiseWebSocketTlsCertificateChain,
         noiseWebSocketTlsPrivateKey,
         noiseWebSocketEventLoopGroup,
+        config.getNoiseWebSocketTunnelConfiguration().acceptorCount(),
         noiseWebSocketDelegatedTaskExecutor,
         clientConnectionManager,
         clientPublicKeysManager,
         config.getNoiseWebSocketTunnelConfiguration().noiseStaticKeyPair(),
         authenticatedGrpcServerAddress,
         anonymousGrpcServerAddress,
+        grpcPeerAffinityEventLoopGroup,
         config.getNoiseWebSocketTunnelConfiguration().recognizedProxySecret().value());
 
     environment.lifecycle().manage(localEventLoopGroup);
     environment.lifecycle().manage(dnsResolutionEventLoopGroup);
+    // Local gRPC servers may share the tunnel's event loops, so those loops must outlive the gRPC servers
+    environment.lifecycle().manage((Managed) noiseWebSocketEventLoopGroup);
     environment.lifecycle().manage(anonymousGrpcServer);
     environment.lifecycle().manage(authenticatedGrpcServer);
-    environment.lifecycle().manage(noiseWebSocketEventLoopGroup);
     environment.lifecycle().manage(noiseWebSocketTunnelServer);
 
     final List<Filter> filters = new ArrayList<>();
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration;
+
+import java.time.Duration;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+/**
+ * Configuration for the in-process account near cache, which sits in front of the shared Redis account cache.
+ *
+ * @param enabled whether accounts should be cached in-process at all
+ * @param maxSize the maximum number of accounts to hold in the near cache
+ * @param ttl     the maximum time an account may remain in the near cache; this bounds staleness if an invalidation
+ *                message is missed
+ */
+public record AccountNearCacheConfiguration(boolean enabled, @Positive int maxSize, @NotNull Duration ttl) {
+
+  public AccountNearCacheConfiguration {
+    if (maxSize == 0) {
+      maxSize = 100_000;
+    }
+
+    if (ttl == null) {
+      ttl = Duration.ofSeconds(10);
+    }
+  }
+}
@@ -5,8 +5,15 @@
 
 package org.whispersystems.textsecuregcm.configuration;
 
+import java.time.Duration;
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 import org.whispersystems.textsecuregcm.configuration.secrets.SecretString;
 
-public record FcmConfiguration(@NotNull SecretString credentials) {
+/**
+ * @param credentials the credentials with which to authenticate to FCM
+ * @param batchDelay if present, the longest time to hold a notification while waiting for others to send with it in a
+ * single batch; if absent, notifications are sent individually
+ */
+public record FcmConfiguration(@NotNull SecretString credentials, @Nullable Duration batchDelay) {
 }
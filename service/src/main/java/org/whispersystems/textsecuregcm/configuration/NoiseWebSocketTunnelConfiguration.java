@@ -3,6 +3,7 @@ package org.whispersystems.textsecuregcm.configuration;
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 import org.signal.libsignal.protocol.InvalidKeyException;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
@@ -10,12 +11,42 @@ import org.signal.libsignal.protocol.ecc.ECPrivateKey;
 import org.whispersystems.textsecuregcm.configuration.secrets.SecretBytes;
 import org.whispersystems.textsecuregcm.configuration.secrets.SecretString;
 
+/**
+ * @param port                  the port on which to listen for WebSocket connections
+ * @param tlsKeyStoreFile       the path to a key store containing the TLS certificate chain and private key
+ * @param tlsKeyStoreEntryAlias the alias of the TLS entry within the key store
+ * @param tlsKeyStorePassword   the password for the key store
+ * @param noiseStaticPrivateKey the server's static Noise private key
+ * @param recognizedProxySecret a shared secret presented by trusted proxies
+ * @param nativeTransport       whether to use the native epoll transport if it's available on this platform
+ * @param eventLoopThreads      the number of threads with which to serve tunneled clients; if zero, Netty's default
+ *                              will be used
+ * @param localEventLoopThreads the number of threads with which to serve local connections to gRPC servers; if zero,
+ *                              Netty's default will be used
+ * @param acceptorCount         the number of server sockets to bind to the tunnel port with {@code SO_REUSEPORT}; only
+ *                              honored with the native transport
+ * @param colocateGrpcConnections whether local gRPC servers should serve each tunneled connection on the same event
+ *                              loop as the tunnel connection itself, avoiding hand-offs between event loops; if
+ *                              {@code true}, local gRPC servers use the tunnel's event loops instead of a separate
+ *                              local event loop group
+ */
 public record NoiseWebSocketTunnelConfiguration(@Positive int port,
                                                 @Nullable String tlsKeyStoreFile,
                                                 @Nullable String tlsKeyStoreEntryAlias,
                                                 @Nullable SecretString tlsKeyStorePassword,
                                                 @NotNull SecretBytes noiseStaticPrivateKey,
-                                                @NotNull SecretString recognizedProxySecret) {
+                                                @NotNull SecretString recognizedProxySecret,
+                                                boolean nativeTransport,
+                                                @PositiveOrZero int eventLoopThreads,
+                                                @PositiveOrZero int localEventLoopThreads,
+                                                @PositiveOrZero int acceptorCount,
+                                                boolean colocateGrpcConnections) {
+
+  public NoiseWebSocketTunnelConfiguration {
+    if (acceptorCount == 0) {
+      acceptorCount = 1;
+    }
+  }
 
   public ECKeyPair noiseStaticKeyPair() throws InvalidKeyException {
     final ECPrivateKey privateKey = Curve.decodePrivatePoint(noiseStaticPrivateKey().value());
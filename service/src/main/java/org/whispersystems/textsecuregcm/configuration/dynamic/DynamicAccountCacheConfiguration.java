@@ -0,0 +1,18 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration.dynamic;
+
+/**
+ * @param writeBinaryFormat whether accounts should be written to the shared account cache in the compact binary format
+ *                          rather than JSON. Servers always read either format, so this should only be enabled once all
+ *                          servers are able to read the binary format.
+ */
+public record DynamicAccountCacheConfiguration(boolean writeBinaryFormat) {
+
+  public DynamicAccountCacheConfiguration() {
+    this(false);
+  }
+}
@@ -50,7 +50,7 @@ public class DynamicConfiguration {
 
   @JsonProperty
   @Valid
-  DynamicRateLimitPolicy rateLimitPolicy = new DynamicRateLimitPolicy(false);
+  DynamicRateLimitPolicy rateLimitPolicy = new DynamicRateLimitPolicy(false, null, 0, null, 0);
 
   @JsonProperty
   @Valid
@@ -72,6 +72,14 @@ public class DynamicConfiguration {
   @Valid
   DynamicMessagesConfiguration messagesConfiguration = new DynamicMessagesConfiguration();
 
+  @JsonProperty
+  @Valid
+  DynamicAccountCacheConfiguration accountCache = new DynamicAccountCacheConfiguration();
+
+  @JsonProperty
+  @Valid
+  DynamicPreKeyPoolConfiguration preKeyPool = new DynamicPreKeyPoolConfiguration();
+
   @JsonProperty
   @Valid
   List<String> svrStatusCodesToIgnoreForAccountDeletion = Collections.emptyList();
@@ -134,6 +142,14 @@ public class DynamicConfiguration {
     return messagesConfiguration;
   }
 
+  public DynamicAccountCacheConfiguration getAccountCacheConfiguration() {
+    return accountCache;
+  }
+
+  public DynamicPreKeyPoolConfiguration getPreKeyPoolConfiguration() {
+    return preKeyPool;
+  }
+
   public List<String> getSvrStatusCodesToIgnoreForAccountDeletion() {
     return svrStatusCodesToIgnoreForAccountDeletion;
   }
@@ -6,13 +6,79 @@
 package org.whispersystems.textsecuregcm.configuration.dynamic;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Duration;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
 
 public class DynamicMessagePersisterConfiguration {
 
   @JsonProperty
   private boolean persistenceEnabled = true;
 
+  /**
+   * The number of queues each persister worker may persist concurrently. A value of 1 persists queues one at a time.
+   */
+  @JsonProperty
+  @Min(1)
+  private int queueConcurrency = 1;
+
+  /**
+   * The fraction of available memory on any node in the messages cluster above which the persister considers the
+   * cluster to be under pressure.
+   */
+  @JsonProperty
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double memoryPressureThreshold = 0.8;
+
+  /**
+   * The age of the oldest queue in a slot above which the persister considers that slot to be under pressure. If
+   * absent, queue age never causes pressure.
+   */
+  @JsonProperty
+  @Nullable
+  private Duration queueAgePressureThreshold;
+
+  /**
+   * The persist delay to use instead of the configured persist delay while under pressure, if shorter. If absent, the
+   * persist delay does not change under pressure.
+   */
+  @JsonProperty
+  @Nullable
+  private Duration pressurePersistDelay;
+
+  /**
+   * The number of queues each persister worker may persist concurrently while under pressure, if greater than
+   * {@link #queueConcurrency}.
+   */
+  @JsonProperty
+  @Min(1)
+  private int pressureQueueConcurrency = 1;
+
   public boolean isPersistenceEnabled() {
     return persistenceEnabled;
   }
+
+  public int getQueueConcurrency() {
+    return queueConcurrency;
+  }
+
+  public double getMemoryPressureThreshold() {
+    return memoryPressureThreshold;
+  }
+
+  public Optional<Duration> getQueueAgePressureThreshold() {
+    return Optional.ofNullable(queueAgePressureThreshold);
+  }
+
+  public Optional<Duration> getPressurePersistDelay() {
+    return Optional.ofNullable(pressurePersistDelay);
+  }
+
+  public int getPressureQueueConcurrency() {
+    return pressureQueueConcurrency;
+  }
 }
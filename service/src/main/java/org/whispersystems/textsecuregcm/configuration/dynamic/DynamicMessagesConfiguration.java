@@ -5,9 +5,20 @@
 
 package org.whispersystems.textsecuregcm.configuration.dynamic;
 
-public record DynamicMessagesConfiguration(boolean storeSharedMrmData, boolean mrmViewExperimentEnabled) {
+/**
+ * @param storeSharedMrmData       whether multi-recipient message payloads should be stored once in a shared structure
+ *                                 that each recipient's queue entry refers to
+ * @param mrmViewExperimentEnabled whether to compare content reconstructed from shared data with the content stored
+ *                                 in each recipient's queue entry
+ * @param omitSharedMrmContent     whether queue entries that refer to shared multi-recipient message data should omit
+ *                                 their own copy of the content; has no effect unless {@code storeSharedMrmData} is
+ *                                 also enabled. Servers always reconstruct content from shared data when it is absent,
+ *                                 so this should only be enabled once all servers are able to do so.
+ */
+public record DynamicMessagesConfiguration(boolean storeSharedMrmData, boolean mrmViewExperimentEnabled,
+                                           boolean omitSharedMrmContent) {
 
   public DynamicMessagesConfiguration() {
-    this(false, false);
+    this(false, false, false);
   }
 }
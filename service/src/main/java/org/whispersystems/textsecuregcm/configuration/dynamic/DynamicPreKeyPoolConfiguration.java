@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration.dynamic;
+
+import java.time.Duration;
+import javax.annotation.Nullable;
+
+/**
+ * @param enabled                whether single-use pre-keys for active devices should be served from pools in Redis;
+ *                               if disabled, keys are always taken directly from DynamoDB and any keys left in pools
+ *                               expire unused; pools aren't cleared while disabled, and so pooling should only be
+ *                               re-enabled once at least {@code poolTtl} has passed since it was disabled
+ * @param poolSize               the number of keys to move from DynamoDB to a device's pool at a time
+ * @param activeDeviceTakes      the number of keys that must be taken for a device within {@code activeDeviceWindow}
+ *                               before keys for that device are pooled
+ * @param activeDeviceWindow     the window over which takes are counted to decide whether a device is active
+ * @param poolTtl                the time after the last refill at which a device's pool expires; any keys remaining in
+ *                               an expired pool are lost as if they had been taken
+ */
+public record DynamicPreKeyPoolConfiguration(boolean enabled,
+                                             int poolSize,
+                                             int activeDeviceTakes,
+                                             @Nullable Duration activeDeviceWindow,
+                                             @Nullable Duration poolTtl) {
+
+  public static final int DEFAULT_POOL_SIZE = 10;
+  public static final int DEFAULT_ACTIVE_DEVICE_TAKES = 3;
+  public static final Duration DEFAULT_ACTIVE_DEVICE_WINDOW = Duration.ofMinutes(1);
+  public static final Duration DEFAULT_POOL_TTL = Duration.ofHours(1);
+
+  public DynamicPreKeyPoolConfiguration {
+    if (poolSize <= 0) {
+      poolSize = DEFAULT_POOL_SIZE;
+    }
+
+    if (activeDeviceTakes <= 0) {
+      activeDeviceTakes = DEFAULT_ACTIVE_DEVICE_TAKES;
+    }
+
+    if (activeDeviceWindow == null) {
+      activeDeviceWindow = DEFAULT_ACTIVE_DEVICE_WINDOW;
+    }
+
+    if (poolTtl == null) {
+      poolTtl = DEFAULT_POOL_TTL;
+    }
+  }
+
+  public DynamicPreKeyPoolConfiguration() {
+    this(false, 0, 0, null, null);
+  }
+}
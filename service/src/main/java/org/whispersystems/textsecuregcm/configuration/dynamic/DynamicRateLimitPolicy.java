@@ -5,4 +5,54 @@
 
 package org.whispersystems.textsecuregcm.configuration.dynamic;
 
-public record DynamicRateLimitPolicy(boolean failOpen) {}
+import java.time.Duration;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.PositiveOrZero;
+
+/**
+ * @param failOpen           whether rate limiters should permit actions if the rate limit cluster is unavailable
+ * @param leasedRateLimiters the names of rate limiters that may lease permits from the shared bucket and serve them
+ *                           locally; leased permits are deducted from the shared bucket up front, so leasing never
+ *                           allows more actions than the shared bucket would, and permits that go unused before their
+ *                           lease expires are returned to the shared bucket
+ * @param leaseFraction      the fraction of a bucket's size to lease at a time; a single lease never takes more than
+ *                           this fraction of the permits currently available in the shared bucket
+ * @param leaseDuration      the maximum time a server may hold leased permits; may not exceed
+ *                           {@link #MAX_LEASE_DURATION}
+ * @param leaseMinRequests   the number of requests for a key a server must see within the lease duration before it
+ *                           leases permits for that key
+ */
+public record DynamicRateLimitPolicy(boolean failOpen,
+                                     @Nullable Set<String> leasedRateLimiters,
+                                     @DecimalMin("0.0") @DecimalMax("1.0") double leaseFraction,
+                                     @Nullable Duration leaseDuration,
+                                     @PositiveOrZero int leaseMinRequests) {
+
+  public static final double DEFAULT_LEASE_FRACTION = 0.1;
+  public static final Duration DEFAULT_LEASE_DURATION = Duration.ofSeconds(1);
+  public static final Duration MAX_LEASE_DURATION = Duration.ofMinutes(1);
+  public static final int DEFAULT_LEASE_MIN_REQUESTS = 3;
+
+  public DynamicRateLimitPolicy {
+    if (leasedRateLimiters == null) {
+      leasedRateLimiters = Set.of();
+    }
+
+    if (leaseFraction <= 0) {
+      leaseFraction = DEFAULT_LEASE_FRACTION;
+    }
+
+    if (leaseDuration == null) {
+      leaseDuration = DEFAULT_LEASE_DURATION;
+    } else if (leaseDuration.compareTo(MAX_LEASE_DURATION) > 0) {
+      leaseDuration = MAX_LEASE_DURATION;
+    }
+
+    if (leaseMinRequests <= 0) {
+      leaseMinRequests = DEFAULT_LEASE_MIN_REQUESTS;
+    }
+  }
+}
@@ -362,43 +362,32 @@ public class KeysController {
     final List<Device> devices = parseDeviceId(deviceId, target);
     final List<PreKeyResponseItem> responseItems = new ArrayList<>(devices.size());
 
-    final List<CompletableFuture<Void>> tasks = devices.stream().map(device -> {
-          final CompletableFuture<Optional<ECPreKey>> unsignedEcPreKeyFuture =
-              keysManager.takeEC(targetIdentifier.uuid(), device.getId());
-
-          final CompletableFuture<Optional<ECSignedPreKey>> signedEcPreKeyFuture =
-              keysManager.getEcSignedPreKey(targetIdentifier.uuid(), device.getId());
-
-          final CompletableFuture<Optional<KEMSignedPreKey>> pqPreKeyFuture =
-              keysManager.takePQ(targetIdentifier.uuid(), device.getId());
-
-          return CompletableFuture.allOf(unsignedEcPreKeyFuture, signedEcPreKeyFuture, pqPreKeyFuture)
-              .thenAccept(ignored -> {
-                final KEMSignedPreKey pqPreKey = pqPreKeyFuture.join().orElse(null);
-                final ECPreKey unsignedEcPreKey = unsignedEcPreKeyFuture.join().orElse(null);
-                final ECSignedPreKey signedEcPreKey = signedEcPreKeyFuture.join().orElse(null);
-
-                Metrics.counter(GET_KEYS_COUNTER_NAME, Tags.of(
-                        UserAgentTagUtil.getPlatformTag(userAgent),
-                        Tag.of(IDENTITY_TYPE_TAG_NAME, targetIdentifier.identityType().name()),
-                        Tag.of("oneTimeEcKeyAvailable", String.valueOf(unsignedEcPreKey != null))))
-                    .increment();
-
-                if (signedEcPreKey != null || unsignedEcPreKey != null || pqPreKey != null) {
-                  final int registrationId = switch (targetIdentifier.identityType()) {
-                    case ACI -> device.getRegistrationId();
-                    case PNI -> device.getPhoneNumberIdentityRegistrationId().orElse(device.getRegistrationId());
-                  };
-
-                  responseItems.add(
-                      new PreKeyResponseItem(device.getId(), registrationId, signedEcPreKey, unsignedEcPreKey,
-                          pqPreKey));
-                }
-              });
-        })
-        .toList();
-
-    CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+    final List<KeysManager.DevicePreKeys> devicePreKeys = keysManager.takeDevicePreKeys(targetIdentifier.uuid(),
+        devices.stream().map(Device::getId).toList()).join();
+
+    for (int i = 0; i < devices.size(); i++) {
+      final Device device = devices.get(i);
+
+      final KEMSignedPreKey pqPreKey = devicePreKeys.get(i).kemSignedPreKey().orElse(null);
+      final ECPreKey unsignedEcPreKey = devicePreKeys.get(i).ecPreKey().orElse(null);
+      final ECSignedPreKey signedEcPreKey = devicePreKeys.get(i).ecSignedPreKey().orElse(null);
+
+      Metrics.counter(GET_KEYS_COUNTER_NAME, Tags.of(
+              UserAgentTagUtil.getPlatformTag(userAgent),
+              Tag.of(IDENTITY_TYPE_TAG_NAME, targetIdentifier.identityType().name()),
+              Tag.of("oneTimeEcKeyAvailable", String.valueOf(unsignedEcPreKey != null))))
+          .increment();
+
+      if (signedEcPreKey != null || unsignedEcPreKey != null || pqPreKey != null) {
+        final int registrationId = switch (targetIdentifier.identityType()) {
+          case ACI -> device.getRegistrationId();
+          case PNI -> device.getPhoneNumberIdentityRegistrationId().orElse(device.getRegistrationId());
+        };
+
+        responseItems.add(
+            new PreKeyResponseItem(device.getId(), registrationId, signedEcPreKey, unsignedEcPreKey, pqPreKey));
+      }
+    }
 
     final IdentityKey identityKey = target.getIdentityKey(targetIdentifier.identityType());
 
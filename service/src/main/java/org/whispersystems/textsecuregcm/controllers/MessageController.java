@@ -89,8 +89,10 @@ import org.whispersystems.textsecuregcm.auth.GroupSendTokenHeader;
 import org.whispersystems.textsecuregcm.auth.OptionalAccess;
 import org.whispersystems.textsecuregcm.auth.UnidentifiedAccessUtil;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessagesConfiguration;
 import org.whispersystems.textsecuregcm.entities.AccountMismatchedDevices;
 import org.whispersystems.textsecuregcm.entities.AccountStaleDevices;
+import org.whispersystems.textsecuregcm.entities.AcknowledgeMessagesRequest;
 import org.whispersystems.textsecuregcm.entities.IncomingMessage;
 import org.whispersystems.textsecuregcm.entities.IncomingMessageList;
 import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
@@ -123,6 +125,7 @@ import org.whispersystems.textsecuregcm.storage.ClientReleaseManager;
 import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.storage.DynamicConfigurationManager;
 import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.storage.RemovedMessage;
 import org.whispersystems.textsecuregcm.storage.ReportMessageManager;
 import org.whispersystems.textsecuregcm.util.DestinationDeviceValidator;
 import org.whispersystems.textsecuregcm.util.ExceptionUtils;
@@ -652,42 +655,45 @@ public class MessageController {
     }
 
     try {
-      @Nullable final byte[] sharedMrmKey =
-          dynamicConfigurationManager.getConfiguration().getMessagesConfiguration().storeSharedMrmData()
-              ? messagesManager.insertSharedMultiRecipientMessagePayload(multiRecipientMessage)
+      final DynamicMessagesConfiguration messagesConfiguration =
+          dynamicConfigurationManager.getConfiguration().getMessagesConfiguration();
+
+      @Nullable final byte[] sharedMrmKey = messagesConfiguration.storeSharedMrmData()
+          ? messagesManager.insertSharedMultiRecipientMessagePayload(multiRecipientMessage)
           : null;
 
-      CompletableFuture.allOf(
-              recipients.values().stream()
-                  .flatMap(recipientData -> {
-                    final Counter sentMessageCounter = Metrics.counter(SENT_MESSAGE_COUNTER_NAME, Tags.of(
-                        UserAgentTagUtil.getPlatformTag(userAgent),
-                        Tag.of(ENDPOINT_TYPE_TAG_NAME, ENDPOINT_TYPE_MULTI),
-                        Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(online)),
-                        Tag.of(SENDER_TYPE_TAG_NAME, SENDER_TYPE_UNIDENTIFIED),
-                        Tag.of(AUTH_TYPE_TAG_NAME, authType),
-                        Tag.of(IDENTITY_TYPE_TAG_NAME, recipientData.serviceIdentifier().identityType().name())));
-
-                    validateContentLength(multiRecipientMessage.messageSizeForRecipient(recipientData.recipient()), true, userAgent);
-
-                    return recipientData.deviceIdToRegistrationId().keySet().stream().map(
-                        deviceId -> CompletableFuture.runAsync(
-                            () -> {
-                              final Account destinationAccount = recipientData.account();
-                              final byte[] payload = multiRecipientMessage.messageForRecipient(recipientData.recipient());
-
-                              // we asserted this must exist in validateCompleteDeviceList
-                              final Device destinationDevice = destinationAccount.getDevice(deviceId).orElseThrow();
-
-                              sentMessageCounter.increment();
-                              sendCommonPayloadMessage(
-                                  destinationAccount, destinationDevice, recipientData.serviceIdentifier(), timestamp,
-                                  online, isStory, isUrgent, payload, sharedMrmKey);
-                            },
-                            multiRecipientMessageExecutor));
-                  })
-                  .toArray(CompletableFuture[]::new))
-          .get();
+      // mrm views phase 2: recipients' content will be reconstructed from the shared data when messages are retrieved
+      final boolean omitContent = sharedMrmKey != null && messagesConfiguration.omitSharedMrmContent();
+
+      final List<MessageSender.RecipientMessage> recipientMessages = new ArrayList<>();
+
+      recipients.values().forEach(recipientData -> {
+        final Counter sentMessageCounter = Metrics.counter(SENT_MESSAGE_COUNTER_NAME, Tags.of(
+            UserAgentTagUtil.getPlatformTag(userAgent),
+            Tag.of(ENDPOINT_TYPE_TAG_NAME, ENDPOINT_TYPE_MULTI),
+            Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(online)),
+            Tag.of(SENDER_TYPE_TAG_NAME, SENDER_TYPE_UNIDENTIFIED),
+            Tag.of(AUTH_TYPE_TAG_NAME, authType),
+            Tag.of(IDENTITY_TYPE_TAG_NAME, recipientData.serviceIdentifier().identityType().name())));
+
+        validateContentLength(multiRecipientMessage.messageSizeForRecipient(recipientData.recipient()), true, userAgent);
+
+        final Account destinationAccount = recipientData.account();
+        @Nullable final byte[] payload =
+            omitContent ? null : multiRecipientMessage.messageForRecipient(recipientData.recipient());
+
+        recipientData.deviceIdToRegistrationId().keySet().forEach(deviceId -> {
+          // we asserted this must exist in validateCompleteDeviceList
+          final Device destinationDevice = destinationAccount.getDevice(deviceId).orElseThrow();
+
+          sentMessageCounter.increment();
+          recipientMessages.add(new MessageSender.RecipientMessage(destinationAccount, destinationDevice,
+              buildCommonPayloadEnvelope(recipientData.serviceIdentifier(), timestamp, isStory, isUrgent, payload,
+                  sharedMrmKey)));
+        });
+      });
+
+      messageSender.sendMessages(recipientMessages, online, multiRecipientMessageExecutor).get();
     } catch (InterruptedException e) {
       logger.error("interrupted while delivering multi-recipient messages", e);
       throw new InternalServerErrorException("interrupted during delivery");
@@ -817,31 +823,53 @@ public class MessageController {
             auth.getAuthenticatedDevice(),
             uuid,
             null)
-        .thenAccept(maybeRemovedMessage -> maybeRemovedMessage.ifPresent(removedMessage -> {
-
-          WebSocketConnection.recordMessageDeliveryDuration(removedMessage.serverTimestamp(),
-              auth.getAuthenticatedDevice());
-
-          if (removedMessage.sourceServiceId().isPresent()
-              && removedMessage.envelopeType() != Type.SERVER_DELIVERY_RECEIPT) {
-            if (removedMessage.sourceServiceId().get() instanceof AciServiceIdentifier aciServiceIdentifier) {
-              try {
-                receiptSender.sendReceipt(removedMessage.destinationServiceId(), auth.getAuthenticatedDevice().getId(),
-                    aciServiceIdentifier, removedMessage.clientTimestamp());
-              } catch (Exception e) {
-                logger.warn("Failed to send delivery receipt", e);
-              }
-            } else {
-              // If source service ID is present and the envelope type is not a server delivery receipt, then
-              // the source service ID *should always* be an ACI -- PNIs are receive-only, so they can only be the
-              // "source" via server delivery receipts
-              logger.warn("Source service ID unexpectedly a PNI service ID");
-            }
-          }
-        }))
+        .thenAccept(maybeRemovedMessage -> maybeRemovedMessage.ifPresent(removedMessage ->
+            handleRemovedMessage(auth, removedMessage)))
+        .thenApply(Util.ASYNC_EMPTY_RESPONSE);
+  }
+
+  @Timed
+  @PUT
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Path("/acknowledge")
+  @Operation(summary = "Acknowledge delivered messages",
+      description = "Removes a batch of delivered messages from the authenticated device's queue")
+  @ApiResponse(responseCode = "204", description = "Messages were acknowledged")
+  @ApiResponse(responseCode = "422", description = "The request was empty or listed too many messages")
+  public CompletableFuture<Response> acknowledgeMessages(@ReadOnly @Auth AuthenticatedDevice auth,
+      @NotNull @Valid AcknowledgeMessagesRequest acknowledgeMessagesRequest) {
+
+    return messagesManager.delete(
+            auth.getAccount().getUuid(),
+            auth.getAuthenticatedDevice(),
+            acknowledgeMessagesRequest.messageGuids())
+        .thenAccept(removedMessages -> removedMessages.forEach(removedMessage ->
+            handleRemovedMessage(auth, removedMessage)))
         .thenApply(Util.ASYNC_EMPTY_RESPONSE);
   }
 
+  private void handleRemovedMessage(final AuthenticatedDevice auth, final RemovedMessage removedMessage) {
+    WebSocketConnection.recordMessageDeliveryDuration(removedMessage.serverTimestamp(),
+        auth.getAuthenticatedDevice());
+
+    if (removedMessage.sourceServiceId().isPresent()
+        && removedMessage.envelopeType() != Type.SERVER_DELIVERY_RECEIPT) {
+      if (removedMessage.sourceServiceId().get() instanceof AciServiceIdentifier aciServiceIdentifier) {
+        try {
+          receiptSender.sendReceipt(removedMessage.destinationServiceId(), auth.getAuthenticatedDevice().getId(),
+              aciServiceIdentifier, removedMessage.clientTimestamp());
+        } catch (Exception e) {
+          logger.warn("Failed to send delivery receipt", e);
+        }
+      } else {
+        // If source service ID is present and the envelope type is not a server delivery receipt, then
+        // the source service ID *should always* be an ACI -- PNIs are receive-only, so they can only be the
+        // "source" via server delivery receipts
+        logger.warn("Source service ID unexpectedly a PNI service ID");
+      }
+    }
+  }
+
   @Timed
   @POST
   @Consumes(MediaType.APPLICATION_JSON)
@@ -930,14 +958,11 @@ public class MessageController {
     messageSender.sendMessage(destinationAccount, destinationDevice, envelope, online);
   }
 
-  private void sendCommonPayloadMessage(Account destinationAccount,
-      Device destinationDevice,
-      ServiceIdentifier serviceIdentifier,
+  private static Envelope buildCommonPayloadEnvelope(ServiceIdentifier serviceIdentifier,
       long timestamp,
-      boolean online,
       boolean story,
       boolean urgent,
-      byte[] payload,
+      @Nullable byte[] payload,
       @Nullable byte[] sharedMrmKey) {
 
     final Envelope.Builder messageBuilder = Envelope.newBuilder();
@@ -954,10 +979,11 @@ public class MessageController {
     if (sharedMrmKey != null) {
       messageBuilder.setSharedMrmKey(ByteString.copyFrom(sharedMrmKey));
     }
-    // mrm views phase 1: always set content
-    messageBuilder.setContent(ByteString.copyFrom(payload));
+    if (payload != null) {
+      messageBuilder.setContent(ByteString.copyFrom(payload));
+    }
 
-    messageSender.sendMessage(destinationAccount, destinationDevice, messageBuilder.build(), online);
+    return messageBuilder.build();
   }
 
   private void checkMessageRateLimit(AuthenticatedDevice source, Account destination, String userAgent)
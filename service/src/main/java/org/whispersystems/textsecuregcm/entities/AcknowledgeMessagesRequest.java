@@ -0,0 +1,21 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.entities;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import java.util.UUID;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+public record AcknowledgeMessagesRequest(
+    @Schema(description = "The server-assigned GUIDs of the delivered messages to acknowledge")
+    @NotNull
+    @Size(min = 1, max = AcknowledgeMessagesRequest.MAX_MESSAGE_GUIDS)
+    List<@NotNull UUID> messageGuids) {
+
+  public static final int MAX_MESSAGE_GUIDS = 100;
+}
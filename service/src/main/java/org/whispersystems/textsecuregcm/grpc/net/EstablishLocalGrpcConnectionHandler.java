@@ -12,6 +12,7 @@ import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
 import io.netty.util.ReferenceCountUtil;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,18 +28,24 @@ class EstablishLocalGrpcConnectionHandler extends ChannelInboundHandlerAdapter {
   private final LocalAddress authenticatedGrpcServerAddress;
   private final LocalAddress anonymousGrpcServerAddress;
 
+  @Nullable
+  private final PeerAffinityEventLoopGroup peerAffinityEventLoopGroup;
+
   private final List<Object> pendingReads = new ArrayList<>();
 
   private static final Logger log = LoggerFactory.getLogger(EstablishLocalGrpcConnectionHandler.class);
 
   public EstablishLocalGrpcConnectionHandler(final ClientConnectionManager clientConnectionManager,
       final LocalAddress authenticatedGrpcServerAddress,
-      final LocalAddress anonymousGrpcServerAddress) {
+      final LocalAddress anonymousGrpcServerAddress,
+      @Nullable final PeerAffinityEventLoopGroup peerAffinityEventLoopGroup) {
 
     this.clientConnectionManager = clientConnectionManager;
 
     this.authenticatedGrpcServerAddress = authenticatedGrpcServerAddress;
     this.anonymousGrpcServerAddress = anonymousGrpcServerAddress;
+
+    this.peerAffinityEventLoopGroup = peerAffinityEventLoopGroup;
   }
 
   @Override
@@ -57,7 +64,21 @@ class EstablishLocalGrpcConnectionHandler extends ChannelInboundHandlerAdapter {
           ? authenticatedGrpcServerAddress
           : anonymousGrpcServerAddress;
 
-      new Bootstrap()
+      final Bootstrap bootstrap = new Bootstrap();
+
+      @Nullable final LocalAddress clientAddress;
+
+      if (peerAffinityEventLoopGroup != null) {
+        // Ask the local gRPC server to serve this connection on the same event loop as the remote channel; we bind the
+        // client side of the connection to a unique address so the server can recognize the connection when it arrives
+        clientAddress = new LocalAddress("noise-tunnel-" + remoteChannelContext.channel().id().asLongText());
+        peerAffinityEventLoopGroup.expectConnection(clientAddress, remoteChannelContext.channel().eventLoop());
+        bootstrap.localAddress(clientAddress);
+      } else {
+        clientAddress = null;
+      }
+
+      bootstrap
           .remoteAddress(grpcServerAddress)
           .channel(LocalChannel.class)
           .group(remoteChannelContext.channel().eventLoop())
@@ -69,6 +90,10 @@ class EstablishLocalGrpcConnectionHandler extends ChannelInboundHandlerAdapter {
           })
           .connect()
           .addListener((ChannelFutureListener) localChannelFuture -> {
+            if (clientAddress != null) {
+              peerAffinityEventLoopGroup.forgetConnection(clientAddress);
+            }
+
             if (localChannelFuture.isSuccess()) {
               clientConnectionManager.handleConnectionEstablished((LocalChannel) localChannelFuture.channel(),
                   remoteChannelContext.channel(),
@@ -85,6 +110,7 @@ class EstablishLocalGrpcConnectionHandler extends ChannelInboundHandlerAdapter {
               // Flush any buffered reads we accumulated while waiting to open the connection
               pendingReads.forEach(remoteChannelContext::fireChannelRead);
               pendingReads.clear();
+              remoteChannelContext.fireChannelReadComplete();
 
               remoteChannelContext.pipeline().remove(EstablishLocalGrpcConnectionHandler.this);
             } else {
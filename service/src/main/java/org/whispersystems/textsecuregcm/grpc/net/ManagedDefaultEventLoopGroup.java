@@ -9,6 +9,19 @@ import io.netty.channel.DefaultEventLoopGroup;
  */
 public class ManagedDefaultEventLoopGroup extends DefaultEventLoopGroup implements Managed {
 
+  public ManagedDefaultEventLoopGroup() {
+    super();
+  }
+
+  /**
+   * Constructs a new event loop group with the given number of threads.
+   *
+   * @param threadCount the number of threads in the group; if zero, Netty's default thread count will be used
+   */
+  public ManagedDefaultEventLoopGroup(final int threadCount) {
+    super(threadCount);
+  }
+
   @Override
   public void stop() throws InterruptedException {
     this.shutdownGracefully().await();
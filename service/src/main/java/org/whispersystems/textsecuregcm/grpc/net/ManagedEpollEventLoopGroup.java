@@ -0,0 +1,26 @@
+package org.whispersystems.textsecuregcm.grpc.net;
+
+import io.dropwizard.lifecycle.Managed;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+
+/**
+ * A wrapper for a Netty {@link EpollEventLoopGroup} that implements Dropwizard's {@link Managed} interface, allowing
+ * Dropwizard to manage the lifecycle of the event loop group. The epoll transport is only available on Linux; callers
+ * should check {@link io.netty.channel.epoll.Epoll#isAvailable()} before constructing an epoll event loop group.
+ */
+public class ManagedEpollEventLoopGroup extends EpollEventLoopGroup implements Managed {
+
+  /**
+   * Constructs a new event loop group with the given number of threads.
+   *
+   * @param threadCount the number of threads in the group; if zero, Netty's default thread count will be used
+   */
+  public ManagedEpollEventLoopGroup(final int threadCount) {
+    super(threadCount);
+  }
+
+  @Override
+  public void stop() throws Exception {
+    this.shutdownGracefully().await();
+  }
+}
@@ -4,7 +4,7 @@ import io.dropwizard.lifecycle.Managed;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.netty.NettyServerBuilder;
-import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.local.LocalAddress;
 import io.netty.channel.local.LocalServerChannel;
 import java.io.IOException;
@@ -19,7 +19,7 @@ public abstract class ManagedLocalGrpcServer implements Managed {
   private final Server server;
 
   public ManagedLocalGrpcServer(final LocalAddress localAddress,
-                                final DefaultEventLoopGroup eventLoopGroup) {
+                                final EventLoopGroup eventLoopGroup) {
 
     final ServerBuilder<?> serverBuilder = NettyServerBuilder.forAddress(localAddress)
         .channelType(LocalServerChannel.class)
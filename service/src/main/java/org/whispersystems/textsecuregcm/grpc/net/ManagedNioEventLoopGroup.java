@@ -9,6 +9,19 @@ import io.netty.channel.nio.NioEventLoopGroup;
  */
 public class ManagedNioEventLoopGroup extends NioEventLoopGroup implements Managed {
 
+  public ManagedNioEventLoopGroup() {
+    super();
+  }
+
+  /**
+   * Constructs a new event loop group with the given number of threads.
+   *
+   * @param threadCount the number of threads in the group; if zero, Netty's default thread count will be used
+   */
+  public ManagedNioEventLoopGroup(final int threadCount) {
+    super(threadCount);
+  }
+
   @Override
   public void stop() throws Exception {
     this.shutdownGracefully().await();
@@ -7,6 +7,8 @@ package org.whispersystems.textsecuregcm.grpc.net;
 import com.southernstorm.noise.protocol.CipherState;
 import com.southernstorm.noise.protocol.CipherStatePair;
 import com.southernstorm.noise.protocol.Noise;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
@@ -19,13 +21,20 @@ import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.PromiseCombiner;
 import io.netty.util.internal.EmptyArrays;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
 import javax.crypto.BadPaddingException;
 import javax.crypto.ShortBufferException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.auth.grpc.AuthenticatedDevice;
+import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
 import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 
 /**
@@ -50,6 +59,27 @@ abstract class NoiseHandler extends ChannelDuplexHandler {
   private State state = State.HANDSHAKE;
   private CipherStatePair cipherStatePair;
 
+  // Plaintext written since the last flush and the promises for those writes
+  private final Queue<ByteBuf> pendingPlaintext = new ArrayDeque<>();
+  private final List<ChannelPromise> pendingWritePromises = new ArrayList<>();
+  private int pendingPlaintextLength = 0;
+
+  // Frames written since the last time buffered writes were settled
+  @Nullable
+  private PromiseCombiner pendingFrameWrites = null;
+
+  private int framesSinceFlush = 0;
+  private int bytesSinceFlush = 0;
+
+  // need room for a 16-byte AEAD tag
+  private static final int MAX_PLAINTEXT_LENGTH = Noise.MAX_PACKET_LEN - 16;
+
+  private static final DistributionSummary FRAMES_PER_FLUSH =
+      Metrics.summary(MetricsUtil.name(NoiseHandler.class, "framesPerFlush"));
+
+  private static final DistributionSummary BYTES_PER_FLUSH =
+      Metrics.summary(MetricsUtil.name(NoiseHandler.class, "bytesPerFlush"));
+
   NoiseHandler(NoiseHandshakeHelper handshakeHelper) {
     this.handshakeHelper = handshakeHelper;
   }
@@ -87,9 +117,7 @@ abstract class NoiseHandler extends ChannelDuplexHandler {
           final String error = "Invalid noise message length " + frame.content().readableBytes();
           throw state == State.HANDSHAKE ? new NoiseHandshakeException(error) : new NoiseException(error);
         }
-        // We've read this frame off the wire, and so it's most likely a direct buffer that's not backed by an array.
-        // We'll need to copy it to a heap buffer.
-        handleInboundMessage(context, ByteBufUtil.getBytes(frame.content()));
+        handleInboundMessage(context, frame.content());
       } else {
         // Anything except binary WebSocket frames should have been filtered out of the pipeline by now; treat this as an
         // error
@@ -102,13 +130,13 @@ abstract class NoiseHandler extends ChannelDuplexHandler {
     }
   }
 
-  private void handleInboundMessage(final ChannelHandlerContext context, final byte[] frameBytes)
+  private void handleInboundMessage(final ChannelHandlerContext context, final ByteBuf frameContent)
       throws NoiseHandshakeException, ShortBufferException, BadPaddingException, ClientAuthenticationException {
     switch (state) {
 
       // Got an initiator handshake message
       case HANDSHAKE -> {
-        final ByteBuf payload = handshakeHelper.read(frameBytes);
+        final ByteBuf payload = handshakeHelper.read(ByteBufUtil.getBytes(frameContent));
         handleHandshakePayload(context, handshakeHelper.remotePublicKey(), payload).whenCompleteAsync(
             (result, throwable) -> {
               if (state == State.ERROR) {
@@ -141,14 +169,36 @@ abstract class NoiseHandler extends ChannelDuplexHandler {
       // Got a client message that should be decrypted and forwarded
       case TRANSPORT -> {
         final CipherState cipherState = cipherStatePair.getReceiver();
-        // Overwrite the ciphertext with the plaintext to avoid an extra allocation for a dedicated plaintext buffer
-        final int plaintextLength = cipherState.decryptWithAd(null,
-            frameBytes, 0,
-            frameBytes, 0,
-            frameBytes.length);
+        final int ciphertextLength = frameContent.readableBytes();
+
+        // The cipher can only operate on arrays. If the frame is backed by a writable array, we can decrypt it where it
+        // is, but we've most likely read this frame off the wire into a direct buffer; in that case, we copy it into a
+        // pooled heap buffer rather than allocating a new array for every frame.
+        final ByteBuf buffer;
+
+        if (frameContent.hasArray() && !frameContent.isReadOnly()) {
+          buffer = frameContent.retainedSlice();
+        } else {
+          buffer = context.alloc().heapBuffer(ciphertextLength);
+          buffer.writeBytes(frameContent, frameContent.readerIndex(), ciphertextLength);
+        }
+
+        try {
+          // Overwrite the ciphertext with the plaintext to avoid an extra allocation for a dedicated plaintext buffer
+          final int offset = buffer.arrayOffset() + buffer.readerIndex();
+          final int plaintextLength = cipherState.decryptWithAd(null,
+              buffer.array(), offset,
+              buffer.array(), offset,
+              ciphertextLength);
+
+          buffer.writerIndex(buffer.readerIndex() + plaintextLength);
+        } catch (final Exception e) {
+          buffer.release();
+          throw e;
+        }
 
         // Forward the decrypted plaintext along
-        context.fireChannelRead(Unpooled.wrappedBuffer(frameBytes, 0, plaintextLength));
+        context.fireChannelRead(buffer);
       }
 
       // The session is already in an error state, drop the message
@@ -170,34 +220,25 @@ abstract class NoiseHandler extends ChannelDuplexHandler {
   public void write(final ChannelHandlerContext context, final Object message, final ChannelPromise promise)
       throws Exception {
     if (message instanceof ByteBuf byteBuf) {
-      try {
-        // TODO Buffer/consolidate Noise writes to avoid sending a bazillion tiny (or empty) frames
-        final CipherState cipherState = cipherStatePair.getSender();
-
-        // Server message might not fit in a single noise packet, break it up into as many chunks as we need
-        final PromiseCombiner pc = new PromiseCombiner(context.executor());
-        while (byteBuf.isReadable()) {
-          final ByteBuf plaintext = byteBuf.readSlice(Math.min(
-              // need room for a 16-byte AEAD tag
-              Noise.MAX_PACKET_LEN - 16,
-              byteBuf.readableBytes()));
-
-          final int plaintextLength = plaintext.readableBytes();
-
-          // We've read these bytes from a local connection; although that likely means they're backed by a heap array, the
-          // buffer is read-only and won't grant us access to the underlying array. Instead, we need to copy the bytes to a
-          // mutable array. We also want to encrypt in place, so we allocate enough extra space for the trailing MAC.
-          final byte[] noiseBuffer = new byte[plaintext.readableBytes() + cipherState.getMACLength()];
-          plaintext.readBytes(noiseBuffer, 0, plaintext.readableBytes());
+      if (!byteBuf.isReadable()) {
+        // There's nothing to encrypt, and we don't want to send empty frames
+        ReferenceCountUtil.release(byteBuf);
+        promise.setSuccess();
+        return;
+      }
 
-          // Overwrite the plaintext with the ciphertext to avoid an extra allocation for a dedicated ciphertext buffer
-          cipherState.encryptWithAd(null, noiseBuffer, 0, noiseBuffer, 0, plaintextLength);
+      // Hold on to the plaintext until the next flush so that many small writes can share a single Noise frame
+      pendingPlaintext.add(byteBuf);
+      pendingPlaintextLength += byteBuf.readableBytes();
+      pendingWritePromises.add(promise);
 
-          pc.add(context.write(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(noiseBuffer))));
+      try {
+        // Don't wait for a flush if we already have enough plaintext to fill a frame
+        while (pendingPlaintextLength >= MAX_PLAINTEXT_LENGTH) {
+          writeFrame(context);
         }
-        pc.finish(promise);
-      } finally {
-        ReferenceCountUtil.release(byteBuf);
+      } catch (final Exception e) {
+        failPendingWrites(e);
       }
     } else {
       if (!(message instanceof WebSocketFrame)) {
@@ -205,7 +246,126 @@ abstract class NoiseHandler extends ChannelDuplexHandler {
         // get issued in response to exceptions)
         log.warn("Unexpected object in pipeline: {}", message);
       }
+
+      // Anything we've buffered was written before this message and needs to go out first
+      writePendingFrames(context);
       context.write(message, promise);
     }
   }
+
+  @Override
+  public void flush(final ChannelHandlerContext context) {
+    writePendingFrames(context);
+
+    if (framesSinceFlush > 0) {
+      FRAMES_PER_FLUSH.record(framesSinceFlush);
+      BYTES_PER_FLUSH.record(bytesSinceFlush);
+
+      framesSinceFlush = 0;
+      bytesSinceFlush = 0;
+    }
+
+    context.flush();
+  }
+
+  @Override
+  public void handlerRemoved(final ChannelHandlerContext context) {
+    failPendingWrites(new ClosedChannelException());
+  }
+
+  /**
+   * Encrypts all buffered plaintext into as few Noise frames as possible and writes (but does not flush) those frames.
+   * Promises for the buffered writes complete once all of the frames have been written.
+   */
+  private void writePendingFrames(final ChannelHandlerContext context) {
+    try {
+      while (pendingPlaintextLength > 0) {
+        writeFrame(context);
+      }
+    } catch (final Exception e) {
+      failPendingWrites(e);
+      return;
+    }
+
+    if (pendingWritePromises.isEmpty()) {
+      return;
+    }
+
+    final List<ChannelPromise> writePromises = new ArrayList<>(pendingWritePromises);
+    pendingWritePromises.clear();
+
+    final ChannelPromise framesWrittenPromise = context.newPromise();
+    framesWrittenPromise.addListener(future -> writePromises.forEach(writePromise -> {
+      if (future.isSuccess()) {
+        writePromise.trySuccess();
+      } else {
+        writePromise.tryFailure(future.cause());
+      }
+    }));
+
+    if (pendingFrameWrites != null) {
+      pendingFrameWrites.finish(framesWrittenPromise);
+      pendingFrameWrites = null;
+    } else {
+      framesWrittenPromise.setSuccess();
+    }
+  }
+
+  /**
+   * Encrypts up to one Noise frame's worth of buffered plaintext into a pooled buffer and writes the resulting frame.
+   */
+  private void writeFrame(final ChannelHandlerContext context) throws ShortBufferException {
+    final CipherState cipherState = cipherStatePair.getSender();
+    final int plaintextLength = Math.min(pendingPlaintextLength, MAX_PLAINTEXT_LENGTH);
+
+    // We've read these bytes from a local connection; although that likely means they're backed by a heap array, the
+    // buffer is read-only and won't grant us access to the underlying array. Instead, we copy the bytes to a mutable
+    // heap buffer with enough extra space for the trailing MAC so we can encrypt in place.
+    final ByteBuf frameBuffer = context.alloc().heapBuffer(plaintextLength + cipherState.getMACLength());
+
+    try {
+      while (frameBuffer.readableBytes() < plaintextLength) {
+        final ByteBuf plaintext = pendingPlaintext.element();
+        frameBuffer.writeBytes(plaintext, Math.min(plaintext.readableBytes(), plaintextLength - frameBuffer.readableBytes()));
+
+        if (!plaintext.isReadable()) {
+          ReferenceCountUtil.release(pendingPlaintext.remove());
+        }
+      }
+
+      pendingPlaintextLength -= plaintextLength;
+
+      // Overwrite the plaintext with the ciphertext to avoid an extra allocation for a dedicated ciphertext buffer
+      final int ciphertextLength = cipherState.encryptWithAd(null,
+          frameBuffer.array(), frameBuffer.arrayOffset(),
+          frameBuffer.array(), frameBuffer.arrayOffset(),
+          plaintextLength);
+
+      frameBuffer.writerIndex(ciphertextLength);
+
+      framesSinceFlush += 1;
+      bytesSinceFlush += ciphertextLength;
+    } catch (final Exception e) {
+      frameBuffer.release();
+      throw e;
+    }
+
+    if (pendingFrameWrites == null) {
+      pendingFrameWrites = new PromiseCombiner(context.executor());
+    }
+
+    pendingFrameWrites.add(context.write(new BinaryWebSocketFrame(frameBuffer)));
+  }
+
+  private void failPendingWrites(final Throwable cause) {
+    pendingPlaintext.forEach(ReferenceCountUtil::release);
+    pendingPlaintext.clear();
+    pendingPlaintextLength = 0;
+
+    pendingWritePromises.forEach(writePromise -> writePromise.tryFailure(cause));
+    pendingWritePromises.clear();
+
+    // Any frames we've already written have their own fate; we just won't wait for them anymore
+    pendingFrameWrites = null;
+  }
 }
@@ -5,8 +5,12 @@ import com.southernstorm.noise.protocol.Noise;
 import io.dropwizard.lifecycle.Managed;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.local.LocalAddress;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
@@ -22,6 +26,8 @@ import io.netty.handler.ssl.SslProvider;
 import java.net.InetSocketAddress;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLException;
@@ -37,24 +43,55 @@ import org.whispersystems.textsecuregcm.storage.ClientPublicKeysManager;
 public class NoiseWebSocketTunnelServer implements Managed {
 
   private final ServerBootstrap bootstrap;
-  private ServerSocketChannel channel;
+  private final int acceptorCount;
+  private final List<ServerSocketChannel> channels = new ArrayList<>();
 
   static final String AUTHENTICATED_SERVICE_PATH = "/authenticated";
   static final String ANONYMOUS_SERVICE_PATH = "/anonymous";
   static final String HEALTH_CHECK_PATH = "/health-check";
 
+  // Probe idle connections after a minute, then every 15 seconds, and give up after four failed probes
+  private static final int TCP_KEEPALIVE_IDLE_SECONDS = 60;
+  private static final int TCP_KEEPALIVE_INTERVAL_SECONDS = 15;
+  private static final int TCP_KEEPALIVE_PROBES = 4;
+
   private static final Logger log = LoggerFactory.getLogger(NoiseWebSocketTunnelServer.class);
 
+  /**
+   * Constructs a new tunnel server.
+   *
+   * @param websocketPort the port on which to listen for WebSocket connections
+   * @param tlsCertificateChain the TLS certificate chain to present to clients; if {@code null}, the server will not use
+   *                            TLS
+   * @param tlsPrivateKey the private key for the TLS certificate chain
+   * @param eventLoopGroup the event loop group on which to accept and serve connections; if this is an
+   *                       {@link EpollEventLoopGroup}, the server will use the native epoll transport
+   * @param acceptorCount the number of server sockets to bind to the WebSocket port with {@code SO_REUSEPORT}, allowing
+   *                      the kernel to distribute new connections among several acceptor threads; only supported with
+   *                      the epoll transport
+   * @param delegatedTaskExecutor an executor for TLS tasks that would otherwise block an event loop
+   * @param clientConnectionManager the connection manager with which to register tunneled connections
+   * @param clientPublicKeysManager a source of public keys for authenticating clients
+   * @param ecKeyPair the server's static Noise key pair
+   * @param authenticatedGrpcServerAddress the local address of the gRPC server for authenticated clients
+   * @param anonymousGrpcServerAddress the local address of the gRPC server for anonymous clients
+   * @param peerAffinityEventLoopGroup the event loop group with which the local gRPC servers register their connections,
+   *                                   if those servers should serve each connection on the same event loop as the
+   *                                   tunnel connection for which it was opened; may be {@code null}
+   * @param recognizedProxySecret a shared secret presented by trusted proxies
+   */
   public NoiseWebSocketTunnelServer(final int websocketPort,
       @Nullable final X509Certificate[] tlsCertificateChain,
       @Nullable final PrivateKey tlsPrivateKey,
-      final NioEventLoopGroup eventLoopGroup,
+      final EventLoopGroup eventLoopGroup,
+      final int acceptorCount,
       final Executor delegatedTaskExecutor,
       final ClientConnectionManager clientConnectionManager,
       final ClientPublicKeysManager clientPublicKeysManager,
       final ECKeyPair ecKeyPair,
       final LocalAddress authenticatedGrpcServerAddress,
       final LocalAddress anonymousGrpcServerAddress,
+      @Nullable final PeerAffinityEventLoopGroup peerAffinityEventLoopGroup,
       final String recognizedProxySecret) throws SSLException {
 
     @Nullable final SslContext sslContext;
@@ -83,8 +120,28 @@ public class NoiseWebSocketTunnelServer implements Managed {
 
     this.bootstrap = new ServerBootstrap()
         .group(eventLoopGroup)
-        .channel(NioServerSocketChannel.class)
         .localAddress(websocketPort)
+        .childOption(ChannelOption.TCP_NODELAY, true)
+        .childOption(ChannelOption.SO_KEEPALIVE, true);
+
+    if (eventLoopGroup instanceof EpollEventLoopGroup) {
+      bootstrap.channel(EpollServerSocketChannel.class)
+          .option(EpollChannelOption.SO_REUSEPORT, acceptorCount > 1)
+          .childOption(EpollChannelOption.TCP_KEEPIDLE, TCP_KEEPALIVE_IDLE_SECONDS)
+          .childOption(EpollChannelOption.TCP_KEEPINTVL, TCP_KEEPALIVE_INTERVAL_SECONDS)
+          .childOption(EpollChannelOption.TCP_KEEPCNT, TCP_KEEPALIVE_PROBES);
+
+      this.acceptorCount = acceptorCount;
+    } else {
+      if (acceptorCount > 1) {
+        log.warn("Multiple acceptors require the epoll transport; will use a single acceptor");
+      }
+
+      bootstrap.channel(NioServerSocketChannel.class);
+      this.acceptorCount = 1;
+    }
+
+    bootstrap
         .childHandler(new ChannelInitializer<SocketChannel>() {
           @Override
           protected void initChannel(SocketChannel socketChannel) {
@@ -109,7 +166,8 @@ public class NoiseWebSocketTunnelServer implements Managed {
                 .addLast(new WebsocketHandshakeCompleteHandler(clientPublicKeysManager, ecKeyPair, recognizedProxySecret))
                 // This handler will open a local connection to the appropriate gRPC server and install a ProxyHandler
                 // once the Noise handshake has completed
-                .addLast(new EstablishLocalGrpcConnectionHandler(clientConnectionManager, authenticatedGrpcServerAddress, anonymousGrpcServerAddress))
+                .addLast(new EstablishLocalGrpcConnectionHandler(clientConnectionManager,
+                    authenticatedGrpcServerAddress, anonymousGrpcServerAddress, peerAffinityEventLoopGroup))
                 .addLast(new ErrorHandler());
           }
         });
@@ -117,18 +175,25 @@ public class NoiseWebSocketTunnelServer implements Managed {
 
   @VisibleForTesting
   InetSocketAddress getLocalAddress() {
-    return channel.localAddress();
+    return channels.getFirst().localAddress();
   }
 
   @Override
   public void start() throws InterruptedException {
-    channel = (ServerSocketChannel) bootstrap.bind().await().channel();
+    channels.add((ServerSocketChannel) bootstrap.bind().await().channel());
+
+    // Additional acceptors bind to the same port as the first (which may have been chosen by the OS)
+    for (int i = 1; i < acceptorCount; i++) {
+      channels.add((ServerSocketChannel) bootstrap.bind(getLocalAddress().getPort()).await().channel());
+    }
   }
 
   @Override
   public void stop() throws InterruptedException {
-    if (channel != null) {
+    for (final ServerSocketChannel channel : channels) {
       channel.close().await();
     }
+
+    channels.clear();
   }
 }
@@ -0,0 +1,234 @@
+package org.whispersystems.textsecuregcm.grpc.net;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
+
+/**
+ * A peer affinity event loop group registers the server side of a local connection to a gRPC server on the same event
+ * loop as the client side of that connection (and, by extension, the same event loop as the Noise tunnel connection
+ * for which the local connection was opened). Because both ends of each local connection share a thread, data passed
+ * between the tunnel and the gRPC server never has to be handed off from one event loop to another.
+ * <p>
+ * Callers must announce each local connection with {@link #expectConnection(LocalAddress, EventLoop)} before connecting
+ * and bind the client side of the connection to the announced address. Channels for which no connection was announced
+ * are registered with the delegate group as usual, as are all other tasks submitted to this group.
+ */
+public class PeerAffinityEventLoopGroup implements EventLoopGroup {
+
+  private final EventLoopGroup delegate;
+
+  private final Map<SocketAddress, EventLoop> eventLoopsByClientAddress = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a new peer affinity event loop group.
+   *
+   * @param delegate the group that owns the event loops on which local connections will be served; this is generally
+   *                 the Noise tunnel's event loop group, and its lifecycle is managed separately
+   */
+  public PeerAffinityEventLoopGroup(final EventLoopGroup delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Indicates that a client bound to the given local address is about to connect to a local gRPC server and that the
+   * server side of the connection should be registered on the given event loop.
+   *
+   * @param clientAddress the local address to which the client side of the connection will be bound
+   * @param eventLoop the event loop on which the server side of the connection should be registered
+   */
+  void expectConnection(final LocalAddress clientAddress, final EventLoop eventLoop) {
+    eventLoopsByClientAddress.put(clientAddress, eventLoop);
+  }
+
+  /**
+   * Discards any event loop affinity for the given client address once the connection has been established or has
+   * failed.
+   *
+   * @param clientAddress the local address to which the client side of the connection was bound
+   */
+  void forgetConnection(final LocalAddress clientAddress) {
+    eventLoopsByClientAddress.remove(clientAddress);
+  }
+
+  private EventLoopGroup getEventLoopGroup(final Channel channel) {
+    @Nullable final SocketAddress remoteAddress = channel.remoteAddress();
+
+    if (remoteAddress != null) {
+      @Nullable final EventLoop eventLoop = eventLoopsByClientAddress.get(remoteAddress);
+
+      if (eventLoop != null) {
+        return eventLoop;
+      }
+    }
+
+    return delegate;
+  }
+
+  @Override
+  public ChannelFuture register(final Channel channel) {
+    return getEventLoopGroup(channel).register(channel);
+  }
+
+  @Override
+  public ChannelFuture register(final ChannelPromise promise) {
+    return getEventLoopGroup(promise.channel()).register(promise);
+  }
+
+  @Override
+  @Deprecated
+  public ChannelFuture register(final Channel channel, final ChannelPromise promise) {
+    return getEventLoopGroup(channel).register(channel, promise);
+  }
+
+  @Override
+  public EventLoop next() {
+    return delegate.next();
+  }
+
+  @Override
+  public Iterator<EventExecutor> iterator() {
+    return delegate.iterator();
+  }
+
+  @Override
+  public boolean isShuttingDown() {
+    return delegate.isShuttingDown();
+  }
+
+  @Override
+  public Future<?> shutdownGracefully() {
+    return delegate.shutdownGracefully();
+  }
+
+  @Override
+  public Future<?> shutdownGracefully(final long quietPeriod, final long timeout, final TimeUnit unit) {
+    return delegate.shutdownGracefully(quietPeriod, timeout, unit);
+  }
+
+  @Override
+  public Future<?> terminationFuture() {
+    return delegate.terminationFuture();
+  }
+
+  @Override
+  @Deprecated
+  public void shutdown() {
+    delegate.shutdown();
+  }
+
+  @Override
+  @Deprecated
+  public List<Runnable> shutdownNow() {
+    return delegate.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return delegate.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return delegate.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+    return delegate.awaitTermination(timeout, unit);
+  }
+
+  @Override
+  public Future<?> submit(final Runnable task) {
+    return delegate.submit(task);
+  }
+
+  @Override
+  public <T> Future<T> submit(final Runnable task, final T result) {
+    return delegate.submit(task, result);
+  }
+
+  @Override
+  public <T> Future<T> submit(final Callable<T> task) {
+    return delegate.submit(task);
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+    return delegate.schedule(command, delay, unit);
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+    return delegate.schedule(callable, delay, unit);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command,
+      final long initialDelay,
+      final long period,
+      final TimeUnit unit) {
+
+    return delegate.scheduleAtFixedRate(command, initialDelay, period, unit);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command,
+      final long initialDelay,
+      final long delay,
+      final TimeUnit unit) {
+
+    return delegate.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+  }
+
+  @Override
+  public <T> List<java.util.concurrent.Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks)
+      throws InterruptedException {
+
+    return delegate.invokeAll(tasks);
+  }
+
+  @Override
+  public <T> List<java.util.concurrent.Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks,
+      final long timeout,
+      final TimeUnit unit) throws InterruptedException {
+
+    return delegate.invokeAll(tasks, timeout, unit);
+  }
+
+  @Override
+  public <T> T invokeAny(final Collection<? extends Callable<T>> tasks)
+      throws InterruptedException, ExecutionException {
+
+    return delegate.invokeAny(tasks);
+  }
+
+  @Override
+  public <T> T invokeAny(final Collection<? extends Callable<T>> tasks, final long timeout, final TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+
+    return delegate.invokeAny(tasks, timeout, unit);
+  }
+
+  @Override
+  public void execute(final Runnable command) {
+    delegate.execute(command);
+  }
+}
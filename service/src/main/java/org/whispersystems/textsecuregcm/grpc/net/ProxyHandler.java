@@ -6,7 +6,8 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
 /**
- * A proxy handler writes all data read from one channel to another peer channel.
+ * A proxy handler writes all data read from one channel to another peer channel. Writes are flushed to the peer channel
+ * once the current batch of reads is complete so that handlers in the peer channel's pipeline can coalesce them.
  */
 class ProxyHandler extends ChannelInboundHandlerAdapter {
 
@@ -18,7 +19,12 @@ class ProxyHandler extends ChannelInboundHandlerAdapter {
 
   @Override
   public void channelRead(final ChannelHandlerContext context, final Object message) {
-    peerChannel.writeAndFlush(message)
+    peerChannel.write(message)
         .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
   }
+
+  @Override
+  public void channelReadComplete(final ChannelHandlerContext context) {
+    peerChannel.flush();
+  }
 }
@@ -12,9 +12,12 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.tuple.Pair;
@@ -33,19 +36,23 @@ public abstract class BaseRateLimiters<T extends RateLimiterDescriptor> {
 
   private final Map<String, RateLimiterConfig> configs;
 
+  private static final Duration RETURN_EXPIRED_LEASES_INTERVAL = Duration.ofMillis(500);
+
 
   protected BaseRateLimiters(
       final T[] values,
       final Map<String, RateLimiterConfig> configs,
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
       final ClusterLuaScript validateScript,
+      final ClusterLuaScript leaseScript,
       final FaultTolerantRedisClusterClient cacheCluster,
       final Clock clock) {
     this.configs = configs;
     this.rateLimiterByDescriptor = Arrays.stream(values)
         .map(descriptor -> Pair.of(
             descriptor,
-            createForDescriptor(descriptor, configs, dynamicConfigurationManager, validateScript, cacheCluster, clock)))
+            createForDescriptor(descriptor, configs, dynamicConfigurationManager, validateScript, leaseScript,
+                cacheCluster, clock)))
         .collect(Collectors.toUnmodifiableMap(Pair::getKey, Pair::getValue));
   }
 
@@ -69,7 +76,30 @@ public abstract class BaseRateLimiters<T extends RateLimiterDescriptor> {
     }
   }
 
-  protected static ClusterLuaScript defaultScript(final FaultTolerantRedisClusterClient cacheCluster) {
+  /**
+   * Periodically returns permits left in expired leases to their shared buckets. Without this, permits leased for a key
+   * that stops making requests stay out of the shared bucket until the lease is eventually evicted.
+   */
+  public void scheduleReturnExpiredLeases(final ScheduledExecutorService scheduledExecutorService) {
+    scheduledExecutorService.scheduleWithFixedDelay(this::returnExpiredLeases,
+        RETURN_EXPIRED_LEASES_INTERVAL.toMillis(), RETURN_EXPIRED_LEASES_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private void returnExpiredLeases() {
+    for (final RateLimiter rateLimiter : rateLimiterByDescriptor.values()) {
+      try {
+        if (rateLimiter instanceof StaticRateLimiter staticRateLimiter) {
+          staticRateLimiter.returnExpiredLeases();
+        } else if (rateLimiter instanceof DynamicRateLimiter dynamicRateLimiter) {
+          dynamicRateLimiter.returnExpiredLeases();
+        }
+      } catch (final Exception e) {
+        logger.warn("Failed to return expired leases", e);
+      }
+    }
+  }
+
+  public static ClusterLuaScript defaultScript(final FaultTolerantRedisClusterClient cacheCluster) {
     try {
       return ClusterLuaScript.fromResource(
           cacheCluster, "lua/validate_rate_limit.lua", ScriptOutputType.INTEGER);
@@ -78,11 +108,21 @@ public abstract class BaseRateLimiters<T extends RateLimiterDescriptor> {
     }
   }
 
+  public static ClusterLuaScript defaultLeaseScript(final FaultTolerantRedisClusterClient cacheCluster) {
+    try {
+      return ClusterLuaScript.fromResource(
+          cacheCluster, "lua/lease_rate_limit_permits.lua", ScriptOutputType.INTEGER);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to load rate limit lease script", e);
+    }
+  }
+
   private static RateLimiter createForDescriptor(
       final RateLimiterDescriptor descriptor,
       final Map<String, RateLimiterConfig> configs,
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
       final ClusterLuaScript validateScript,
+      final ClusterLuaScript leaseScript,
       final FaultTolerantRedisClusterClient cacheCluster,
       final Clock clock) {
     if (descriptor.isDynamic()) {
@@ -92,9 +132,11 @@ public abstract class BaseRateLimiters<T extends RateLimiterDescriptor> {
             ? config
             : configs.getOrDefault(descriptor.id(), descriptor.defaultConfig());
       };
-      return new DynamicRateLimiter(descriptor.id(), dynamicConfigurationManager, configResolver, validateScript, cacheCluster, clock);
+      return new DynamicRateLimiter(descriptor.id(), dynamicConfigurationManager, configResolver, validateScript,
+          leaseScript, cacheCluster, clock);
     }
     final RateLimiterConfig cfg = configs.getOrDefault(descriptor.id(), descriptor.defaultConfig());
-    return new StaticRateLimiter(descriptor.id(), cfg, validateScript, cacheCluster, clock, dynamicConfigurationManager);
+    return new StaticRateLimiter(descriptor.id(), cfg, validateScript, leaseScript, cacheCluster, clock,
+        dynamicConfigurationManager);
   }
 }
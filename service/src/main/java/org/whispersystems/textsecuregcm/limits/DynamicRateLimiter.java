@@ -25,12 +25,13 @@ public class DynamicRateLimiter implements RateLimiter {
   private final Supplier<RateLimiterConfig> configResolver;
 
   private final ClusterLuaScript validateScript;
+  private final ClusterLuaScript leaseScript;
 
   private final FaultTolerantRedisClusterClient cluster;
 
   private final Clock clock;
 
-  private final AtomicReference<Pair<RateLimiterConfig, RateLimiter>> currentHolder = new AtomicReference<>();
+  private final AtomicReference<Pair<RateLimiterConfig, StaticRateLimiter>> currentHolder = new AtomicReference<>();
 
 
   public DynamicRateLimiter(
@@ -38,12 +39,14 @@ public class DynamicRateLimiter implements RateLimiter {
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
       final Supplier<RateLimiterConfig> configResolver,
       final ClusterLuaScript validateScript,
+      final ClusterLuaScript leaseScript,
       final FaultTolerantRedisClusterClient cluster,
       final Clock clock) {
     this.name = requireNonNull(name);
     this.dynamicConfigurationManager = dynamicConfigurationManager;
     this.configResolver = requireNonNull(configResolver);
     this.validateScript = requireNonNull(validateScript);
+    this.leaseScript = requireNonNull(leaseScript);
     this.cluster = requireNonNull(cluster);
     this.clock = requireNonNull(clock);
   }
@@ -83,11 +86,35 @@ public class DynamicRateLimiter implements RateLimiter {
     return current().getLeft();
   }
 
-  private Pair<RateLimiterConfig, RateLimiter> current() {
+  void returnExpiredLeases() {
+    final Pair<RateLimiterConfig, StaticRateLimiter> current = currentHolder.get();
+
+    if (current != null) {
+      current.getRight().returnExpiredLeases();
+    }
+  }
+
+  private Pair<RateLimiterConfig, StaticRateLimiter> current() {
     final RateLimiterConfig cfg = configResolver.get();
-    return currentHolder.updateAndGet(p -> p != null && p.getLeft().equals(cfg)
-        ? p
-        : Pair.of(cfg, new StaticRateLimiter(name, cfg, validateScript, cluster, clock, dynamicConfigurationManager))
-    );
+
+    while (true) {
+      final Pair<RateLimiterConfig, StaticRateLimiter> current = currentHolder.get();
+
+      if (current != null && current.getLeft().equals(cfg)) {
+        return current;
+      }
+
+      final Pair<RateLimiterConfig, StaticRateLimiter> replacement = Pair.of(cfg,
+          new StaticRateLimiter(name, cfg, validateScript, leaseScript, cluster, clock, dynamicConfigurationManager));
+
+      if (currentHolder.compareAndSet(current, replacement)) {
+        if (current != null) {
+          // The replaced limiter won't see its keys again, so return its leases now rather than stranding them
+          current.getRight().returnLeases();
+        }
+
+        return replacement;
+      }
+    }
   }
 }
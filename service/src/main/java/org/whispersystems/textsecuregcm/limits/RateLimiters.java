@@ -9,6 +9,7 @@ import com.google.common.annotations.VisibleForTesting;
 import java.time.Clock;
 import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
@@ -81,10 +82,14 @@ public class RateLimiters extends BaseRateLimiters<RateLimiters.For> {
   public static RateLimiters createAndValidate(
       final Map<String, RateLimiterConfig> configs,
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
-      final FaultTolerantRedisClusterClient cacheCluster) {
+      final ClusterLuaScript validateScript,
+      final ClusterLuaScript leaseScript,
+      final FaultTolerantRedisClusterClient cacheCluster,
+      final ScheduledExecutorService leaseExpirationExecutor) {
     final RateLimiters rateLimiters = new RateLimiters(
-        configs, dynamicConfigurationManager, defaultScript(cacheCluster), cacheCluster, Clock.systemUTC());
+        configs, dynamicConfigurationManager, validateScript, leaseScript, cacheCluster, Clock.systemUTC());
     rateLimiters.validateValuesAndConfigs();
+    rateLimiters.scheduleReturnExpiredLeases(leaseExpirationExecutor);
     return rateLimiters;
   }
 
@@ -93,9 +98,10 @@ public class RateLimiters extends BaseRateLimiters<RateLimiters.For> {
       final Map<String, RateLimiterConfig> configs,
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
       final ClusterLuaScript validateScript,
+      final ClusterLuaScript leaseScript,
       final FaultTolerantRedisClusterClient cacheCluster,
       final Clock clock) {
-    super(For.values(), configs, dynamicConfigurationManager, validateScript, cacheCluster, clock);
+    super(For.values(), configs, dynamicConfigurationManager, validateScript, leaseScript, cacheCluster, clock);
   }
 
   public RateLimiter getAllocateDeviceLimiter() {
@@ -9,6 +9,9 @@ import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.CompletableFuture.failedFuture;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
 import io.lettuce.core.RedisException;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
@@ -16,7 +19,12 @@ import java.time.Clock;
 import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicRateLimitPolicy;
 import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
 import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
@@ -35,32 +43,126 @@ public class StaticRateLimiter implements RateLimiter {
   private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
 
   private final ClusterLuaScript validateScript;
+  private final ClusterLuaScript leaseScript;
 
   private final FaultTolerantRedisClusterClient cacheCluster;
 
   private final Clock clock;
 
+  private final Cache<String, Lease> leasesByKey;
+  private final Cache<String, RequestWindow> requestWindowsByKey;
+
+  private final Counter leasedPermitsCounter;
+  private final Counter leaseGrantedCounter;
+  private final Counter leaseDeniedCounter;
+  private final Counter returnedPermitsCounter;
+
+  private static final int MAX_LEASES = 100_000;
+
+  private static final Logger logger = LoggerFactory.getLogger(StaticRateLimiter.class);
+
+  /**
+   * A lease is a number of permits that have already been deducted from a shared bucket and may be handed out by this
+   * server without consulting the shared bucket until the lease expires. A lease that couldn't be granted marks a key as
+   * being near its limit; requests for such a key go directly to the shared bucket until the marker expires.
+   */
+  private static class Lease {
+
+    private final AtomicInteger permits;
+    private final long expirationMillis;
+    private final boolean nearLimit;
+
+    private Lease(final int permits, final long expirationMillis, final boolean nearLimit) {
+      this.permits = new AtomicInteger(permits);
+      this.expirationMillis = expirationMillis;
+      this.nearLimit = nearLimit;
+    }
+
+    boolean isExpired(final long currentTimeMillis) {
+      return currentTimeMillis >= expirationMillis;
+    }
+
+    boolean tryAcquire(final int amount, final long currentTimeMillis) {
+      if (isExpired(currentTimeMillis)) {
+        return false;
+      }
+
+      int available;
+
+      do {
+        available = permits.get();
+
+        if (available < amount) {
+          return false;
+        }
+      } while (!permits.compareAndSet(available, available - amount));
+
+      return true;
+    }
+
+    int drain() {
+      return permits.getAndSet(0);
+    }
+  }
+
+  /**
+   * Counts the requests this server has seen for a single key within a fixed window; only keys with repeated local
+   * traffic are worth leasing permits for.
+   */
+  private static class RequestWindow {
+
+    private long windowStartMillis;
+    private int requests;
+
+    synchronized int increment(final long currentTimeMillis, final long windowMillis) {
+      if (currentTimeMillis - windowStartMillis >= windowMillis) {
+        windowStartMillis = currentTimeMillis;
+        requests = 0;
+      }
+
+      return ++requests;
+    }
+  }
 
   public StaticRateLimiter(
       final String name,
       final RateLimiterConfig config,
       final ClusterLuaScript validateScript,
+      final ClusterLuaScript leaseScript,
       final FaultTolerantRedisClusterClient cacheCluster,
       final Clock clock,
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager) {
     this.name = requireNonNull(name);
     this.config = requireNonNull(config);
     this.validateScript = requireNonNull(validateScript);
+    this.leaseScript = requireNonNull(leaseScript);
     this.cacheCluster = requireNonNull(cacheCluster);
     this.clock = requireNonNull(clock);
     this.counter = Metrics.counter(MetricsUtil.name(getClass(), "exceeded"), "rateLimiterName", name);
     this.dynamicConfigurationManager = dynamicConfigurationManager;
+    this.leasesByKey = CacheBuilder.newBuilder()
+        .maximumSize(MAX_LEASES)
+        .expireAfterWrite(DynamicRateLimitPolicy.MAX_LEASE_DURATION)
+        .removalListener(this::returnUnspentPermits)
+        .build();
+    this.requestWindowsByKey = CacheBuilder.newBuilder()
+        .maximumSize(MAX_LEASES)
+        .expireAfterAccess(DynamicRateLimitPolicy.MAX_LEASE_DURATION)
+        .build();
+
+    this.leasedPermitsCounter = Metrics.counter(MetricsUtil.name(getClass(), "leasedPermits"), "rateLimiterName", name);
+    this.leaseGrantedCounter =
+        Metrics.counter(MetricsUtil.name(getClass(), "lease"), "rateLimiterName", name, "outcome", "granted");
+    this.leaseDeniedCounter =
+        Metrics.counter(MetricsUtil.name(getClass(), "lease"), "rateLimiterName", name, "outcome", "denied");
+    this.returnedPermitsCounter =
+        Metrics.counter(MetricsUtil.name(getClass(), "returnedPermits"), "rateLimiterName", name);
   }
 
   @Override
   public void validate(final String key, final int amount) throws RateLimitExceededException {
     try {
-      final long deficitPermitsAmount = executeValidateScript(key, amount, true);
+      final long deficitPermitsAmount = acquirePermits(key, amount);
       if (deficitPermitsAmount > 0) {
         counter.increment();
         final Duration retryAfter = Duration.ofMillis(
@@ -76,7 +178,7 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public CompletionStage<Void> validateAsync(final String key, final int amount) {
-    return executeValidateScriptAsync(key, amount, true)
+    return acquirePermitsAsync(key, amount)
         .thenCompose(deficitPermitsAmount -> {
           if (deficitPermitsAmount == 0) {
             return completedFuture((Void) null);
@@ -96,6 +198,10 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public boolean hasAvailablePermits(final String key, final int amount) {
+    if (hasLeasedPermits(key, amount)) {
+      return true;
+    }
+
     try {
       final long deficitPermitsAmount = executeValidateScript(key, amount, false);
       return deficitPermitsAmount == 0;
@@ -110,6 +216,10 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public CompletionStage<Boolean> hasAvailablePermitsAsync(final String key, final int amount) {
+    if (hasLeasedPermits(key, amount)) {
+      return completedFuture(true);
+    }
+
     return executeValidateScriptAsync(key, amount, false)
         .thenApply(deficitPermitsAmount -> deficitPermitsAmount == 0)
         .exceptionally(throwable -> {
@@ -122,11 +232,15 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public void clear(final String key) {
+    leasesByKey.invalidate(key);
+    requestWindowsByKey.invalidate(key);
     cacheCluster.useCluster(connection -> connection.sync().del(bucketName(name, key)));
   }
 
   @Override
   public CompletionStage<Void> clearAsync(final String key) {
+    leasesByKey.invalidate(key);
+    requestWindowsByKey.invalidate(key);
     return cacheCluster.withCluster(connection -> connection.async().del(bucketName(name, key)))
         .thenRun(Util.NOOP);
   }
@@ -136,10 +250,185 @@ public class StaticRateLimiter implements RateLimiter {
     return config;
   }
 
+  /**
+   * Removes all leases whose lease duration has elapsed, returning any permits left in them to the shared bucket. Leases
+   * are otherwise only removed when their key is next used, so this should be called periodically to avoid stranding
+   * permits for keys that go quiet.
+   */
+  void returnExpiredLeases() {
+    final long currentTimeMillis = clock.millis();
+
+    leasesByKey.asMap().forEach((key, lease) -> {
+      if (lease.isExpired(currentTimeMillis)) {
+        leasesByKey.asMap().remove(key, lease);
+      }
+    });
+
+    leasesByKey.cleanUp();
+    requestWindowsByKey.cleanUp();
+  }
+
+  /**
+   * Removes all leases, expired or not, returning any permits left in them to the shared bucket. This should be called
+   * when this rate limiter is being discarded.
+   */
+  void returnLeases() {
+    leasesByKey.invalidateAll();
+    requestWindowsByKey.invalidateAll();
+  }
+
   private boolean failOpen() {
     return this.dynamicConfigurationManager.getConfiguration().getRateLimitPolicy().failOpen();
   }
 
+  /**
+   * Takes the given number of permits, preferring permits leased by this server and leasing more permits from the
+   * shared bucket if this rate limiter is configured to do so.
+   *
+   * @return the number of permits by which the request exceeds the shared bucket, or 0 if the permits were taken
+   */
+  private long acquirePermits(final String key, final int amount) {
+    if (tryAcquireLeasedPermits(key, amount)) {
+      return 0;
+    }
+
+    final int leaseSize = getLeaseSize(key, amount);
+
+    if (leaseSize > amount) {
+      final long leased = executeLeaseScript(key, leaseSize, amount + 1);
+
+      if (leased > 0) {
+        grantLease(key, (int) leased - amount);
+        return 0;
+      }
+
+      denyLease(key);
+    }
+
+    return executeValidateScript(key, amount, true);
+  }
+
+  private CompletionStage<Long> acquirePermitsAsync(final String key, final int amount) {
+    if (tryAcquireLeasedPermits(key, amount)) {
+      return completedFuture(0L);
+    }
+
+    final int leaseSize = getLeaseSize(key, amount);
+
+    if (leaseSize > amount) {
+      return executeLeaseScriptAsync(key, leaseSize, amount + 1)
+          .thenCompose(leased -> {
+            if (leased > 0) {
+              grantLease(key, leased.intValue() - amount);
+              return completedFuture(0L);
+            }
+
+            denyLease(key);
+            return executeValidateScriptAsync(key, amount, true);
+          });
+    }
+
+    return executeValidateScriptAsync(key, amount, true);
+  }
+
+  private boolean hasLeasedPermits(final String key, final int amount) {
+    final Lease lease = getUnexpiredLease(key);
+    return lease != null && lease.permits.get() >= amount;
+  }
+
+  private boolean tryAcquireLeasedPermits(final String key, final int amount) {
+    final Lease lease = getUnexpiredLease(key);
+
+    if (lease != null && lease.tryAcquire(amount, clock.millis())) {
+      leasedPermitsCounter.increment(amount);
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns the unexpired lease for the given key, if any. Expired leases are removed, which returns any permits left
+   * in them to the shared bucket.
+   */
+  @Nullable
+  private Lease getUnexpiredLease(final String key) {
+    final Lease lease = leasesByKey.getIfPresent(key);
+
+    if (lease != null && lease.isExpired(clock.millis())) {
+      leasesByKey.asMap().remove(key, lease);
+      return null;
+    }
+
+    return lease;
+  }
+
+  /**
+   * Returns the number of permits to lease from the shared bucket for the given key, or 0 if permits should not be
+   * leased for the given key. Permits are only leased for keys this server has seen repeatedly within the lease
+   * duration; leasing permits for a key that only ever makes a request or two would just strand those permits.
+   */
+  private int getLeaseSize(final String key, final int amount) {
+    final DynamicRateLimitPolicy policy = dynamicConfigurationManager.getConfiguration().getRateLimitPolicy();
+
+    if (!policy.leasedRateLimiters().contains(name)) {
+      return 0;
+    }
+
+    final Lease lease = getUnexpiredLease(key);
+
+    if (lease != null && lease.nearLimit) {
+      return 0;
+    }
+
+    final int recentRequests = requestWindowsByKey.asMap()
+        .computeIfAbsent(key, ignored -> new RequestWindow())
+        .increment(clock.millis(), policy.leaseDuration().toMillis());
+
+    if (recentRequests < policy.leaseMinRequests()) {
+      return 0;
+    }
+
+    return Math.max(amount, (int) (config.bucketSize() * policy.leaseFraction()));
+  }
+
+  private void grantLease(final String key, final int permits) {
+    // Any lease this replaces is returned to the shared bucket by the removal listener
+    leasesByKey.put(key, new Lease(permits, clock.millis() + getLeaseDuration().toMillis(), false));
+    leaseGrantedCounter.increment();
+  }
+
+  private void denyLease(final String key) {
+    leasesByKey.put(key, new Lease(0, clock.millis() + getLeaseDuration().toMillis(), true));
+    leaseDeniedCounter.increment();
+  }
+
+  private void returnUnspentPermits(final RemovalNotification<String, Lease> notification) {
+    final String key = notification.getKey();
+    final Lease lease = notification.getValue();
+
+    if (key == null || lease == null) {
+      return;
+    }
+
+    // Draining the lease atomically ensures its permits can't be both spent and returned
+    final int unspentPermits = lease.drain();
+
+    if (unspentPermits > 0) {
+      executeReturnScriptAsync(key, unspentPermits).whenComplete((ignored, throwable) -> {
+        if (throwable != null) {
+          logger.warn("Failed to return unspent permits", throwable);
+        } else {
+          returnedPermitsCounter.increment(unspentPermits);
+        }
+      });
+    }
+  }
+
+  private Duration getLeaseDuration() {
+    return dynamicConfigurationManager.getConfiguration().getRateLimitPolicy().leaseDuration();
+  }
+
   private long executeValidateScript(final String key, final int amount, final boolean applyChanges) {
     final List<String> keys = List.of(bucketName(name, key));
     final List<String> arguments = List.of(
@@ -164,6 +453,35 @@ public class StaticRateLimiter implements RateLimiter {
     return validateScript.executeAsync(keys, arguments).thenApply(o -> (Long) o);
   }
 
+  private long executeLeaseScript(final String key, final int maxAmount, final int minAmount) {
+    final List<String> keys = List.of(bucketName(name, key));
+    return (Long) leaseScript.execute(keys, getLeaseScriptArguments("lease", maxAmount, minAmount));
+  }
+
+  private CompletionStage<Long> executeLeaseScriptAsync(final String key, final int maxAmount, final int minAmount) {
+    final List<String> keys = List.of(bucketName(name, key));
+    return leaseScript.executeAsync(keys, getLeaseScriptArguments("lease", maxAmount, minAmount))
+        .thenApply(o -> (Long) o);
+  }
+
+  private CompletionStage<Long> executeReturnScriptAsync(final String key, final int amount) {
+    final List<String> keys = List.of(bucketName(name, key));
+    return leaseScript.executeAsync(keys, getLeaseScriptArguments("return", amount, 0))
+        .thenApply(o -> (Long) o);
+  }
+
+  private List<String> getLeaseScriptArguments(final String operation, final int amount, final int minAmount) {
+    return List.of(
+        String.valueOf(config.bucketSize()),
+        String.valueOf(config.leakRatePerMillis()),
+        String.valueOf(clock.millis()),
+        operation,
+        String.valueOf(amount),
+        String.valueOf(minAmount),
+        String.valueOf(dynamicConfigurationManager.getConfiguration().getRateLimitPolicy().leaseFraction())
+    );
+  }
+
   @VisibleForTesting
   protected static String bucketName(final String name, final String key) {
     return "leaky_bucket::" + name + "::" + key;
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.metrics;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the backlog and responsiveness of each event loop in a Netty event loop group.
+ */
+public class EventLoopGroupMetrics {
+
+  private static final String PENDING_TASKS_GAUGE_NAME = name(EventLoopGroupMetrics.class, "pendingTasks");
+  private static final String TASK_LATENCY_TIMER_NAME = name(EventLoopGroupMetrics.class, "taskLatency");
+
+  private static final long PROBE_INTERVAL_SECONDS = 1;
+
+  private EventLoopGroupMetrics() {
+  }
+
+  /**
+   * Registers a pending task gauge and a task latency timer for each event loop in the given group. Task latency is
+   * measured by periodically submitting a probe task to each event loop and measuring the time that elapses before the
+   * probe runs. Probes stop when the group shuts down.
+   *
+   * @param eventLoopGroup the group for which to register metrics
+   * @param groupName a name for the group, used to distinguish groups in reported metrics
+   */
+  public static void registerMetrics(final EventExecutorGroup eventLoopGroup, final String groupName) {
+    int index = 0;
+
+    for (final EventExecutor eventExecutor : eventLoopGroup) {
+      final Tags tags = Tags.of("eventLoopGroup", groupName, "eventLoop", String.valueOf(index++));
+
+      if (eventExecutor instanceof SingleThreadEventExecutor singleThreadEventExecutor) {
+        Metrics.gauge(PENDING_TASKS_GAUGE_NAME, tags, singleThreadEventExecutor,
+            SingleThreadEventExecutor::pendingTasks);
+      }
+
+      final Timer taskLatencyTimer = Metrics.timer(TASK_LATENCY_TIMER_NAME, tags);
+
+      eventExecutor.scheduleAtFixedRate(() -> {
+        final long probeSubmittedNanos = System.nanoTime();
+
+        // Scheduled tasks run before the queue of regular tasks is drained, so submit the probe as a regular task to
+        // measure how long regular tasks wait
+        eventExecutor.execute(() -> taskLatencyTimer.record(System.nanoTime() - probeSubmittedNanos,
+            TimeUnit.NANOSECONDS));
+      }, PROBE_INTERVAL_SECONDS, PROBE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+}
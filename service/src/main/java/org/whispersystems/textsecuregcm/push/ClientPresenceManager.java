@@ -9,6 +9,7 @@ import static com.codahale.metrics.MetricRegistry.name;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.dropwizard.lifecycle.Managed;
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.LettuceFutures;
 import io.lettuce.core.RedisFuture;
 import io.lettuce.core.ScriptOutputType;
@@ -17,16 +18,21 @@ import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
 import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.Metrics;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -38,6 +44,8 @@ import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubClusterConnection;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.util.Pair;
+import reactor.core.publisher.Flux;
 
 /**
  * The client presence manager keeps track of which clients are actively connected and "present" to receive messages.
@@ -65,6 +73,8 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
   private final Map<String, DisplacedPresenceListener> displacementListenersByPresenceKey = new ConcurrentHashMap<>();
 
   private final Timer checkPresenceTimer;
+  private final Timer checkPresenceBatchTimer;
+  private final DistributionSummary checkPresenceBatchSizeDistributionSummary;
   private final Timer setPresenceTimer;
   private final Timer clearPresenceTimer;
   private final Timer prunePeersTimer;
@@ -95,6 +105,8 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
     Metrics.gauge(name(getClass(), "localClientCount"), this, ignored -> displacementListenersByPresenceKey.size());
 
     this.checkPresenceTimer = Metrics.timer(name(getClass(), "checkPresence"));
+    this.checkPresenceBatchTimer = Metrics.timer(name(getClass(), "checkPresenceBatch"));
+    this.checkPresenceBatchSizeDistributionSummary = Metrics.summary(name(getClass(), "checkPresenceBatchSize"));
     this.setPresenceTimer = Metrics.timer(name(getClass(), "setPresence"));
     this.clearPresenceTimer = Metrics.timer(name(getClass(), "clearPresence"));
     this.prunePeersTimer = Metrics.timer(name(getClass(), "prunePeers"));
@@ -224,6 +236,48 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
             connection.sync().exists(getPresenceKey(accountUuid, deviceId))) == 1);
   }
 
+  /**
+   * Checks whether each of the given account/device pairs is present on any node. Presence keys are fetched with a
+   * single {@code MGET}, which the cluster client splits into one pipelined command per slot, so checking presence for a
+   * large fan-out costs roughly one round trip per node rather than one per device.
+   *
+   * @param accountAndDeviceIdentifiers the account/device pairs for which to check presence
+   *
+   * @return a future that yields a map of account/device pairs to whether each is present
+   */
+  public CompletableFuture<Map<Pair<UUID, Byte>, Boolean>> isPresent(
+      final Collection<Pair<UUID, Byte>> accountAndDeviceIdentifiers) {
+
+    if (accountAndDeviceIdentifiers.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
+    final List<Pair<UUID, Byte>> identifiers = List.copyOf(accountAndDeviceIdentifiers);
+    final String[] presenceKeys = identifiers.stream()
+        .map(identifier -> getPresenceKey(identifier.first(), identifier.second()))
+        .toArray(String[]::new);
+
+    final Timer.Sample sample = Timer.start();
+
+    // Like single-key presence checks, bulk checks are subject to the cluster client's retry policy
+    return Flux.from(presenceCluster.withClusterReactive(connection -> connection.reactive().mget(presenceKeys)))
+        .collectMap(KeyValue::getKey, KeyValue::hasValue)
+        .map(presenceByKey -> {
+          final Map<Pair<UUID, Byte>, Boolean> presenceByIdentifier = new HashMap<>(identifiers.size());
+
+          for (int i = 0; i < identifiers.size(); i++) {
+            presenceByIdentifier.put(identifiers.get(i), presenceByKey.getOrDefault(presenceKeys[i], false));
+          }
+
+          return presenceByIdentifier;
+        })
+        .toFuture()
+        .whenComplete((ignored, throwable) -> {
+          sample.stop(checkPresenceBatchTimer);
+          checkPresenceBatchSizeDistributionSummary.record(identifiers.size());
+        });
+  }
+
   public boolean isLocallyPresent(final UUID accountUuid, final byte deviceId) {
     return displacementListenersByPresenceKey.containsKey(getPresenceKey(accountUuid, deviceId));
   }
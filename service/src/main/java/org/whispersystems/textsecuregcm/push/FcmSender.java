@@ -14,34 +14,81 @@ import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.ThreadManager;
 import com.google.firebase.messaging.AndroidConfig;
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
 import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
+import io.dropwizard.lifecycle.Managed;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import org.whispersystems.textsecuregcm.util.GoogleApiUtil;
 
-public class FcmSender implements PushNotificationSender {
+public class FcmSender implements Managed, PushNotificationSender {
 
   private final ExecutorService executor;
   private final FirebaseMessaging firebaseMessagingClient;
 
+  @Nullable
+  private final Duration batchDelay;
+
+  private final Object pendingNotificationsLock = new Object();
+  private List<PendingNotification> pendingNotifications = new ArrayList<>();
+  private boolean stopped = false;
+
+  /**
+   * The maximum number of messages FCM will accept in a single batch
+   */
+  @VisibleForTesting
+  static final int MAX_BATCH_SIZE = 500;
+
   private static final Timer SEND_NOTIFICATION_TIMER = Metrics.timer(name(FcmSender.class, "sendNotification"));
+  private static final Timer SEND_BATCH_TIMER = Metrics.timer(name(FcmSender.class, "sendBatch"));
+
+  private static final DistributionSummary BATCH_SIZE_DISTRIBUTION_SUMMARY =
+      DistributionSummary.builder(name(FcmSender.class, "batchSize"))
+          .publishPercentileHistogram(true)
+          .register(Metrics.globalRegistry);
+
+  private static final Timer BATCH_QUEUEING_DELAY_TIMER = Timer.builder(name(FcmSender.class, "batchQueueingDelay"))
+      .publishPercentileHistogram(true)
+      .register(Metrics.globalRegistry);
 
   private static final Logger logger = LoggerFactory.getLogger(FcmSender.class);
 
-  public FcmSender(ExecutorService executor, String credentials) throws IOException {
+  private record PendingNotification(Message message, CompletableFuture<SendPushNotificationResult> resultFuture,
+                                     long enqueuedNanos) {
+  }
+
+  /**
+   * Constructs a new FCM sender.
+   *
+   * @param executor the executor on which to process FCM responses
+   * @param credentials the credentials with which to authenticate to FCM
+   * @param batchDelay if not {@code null}, the longest time to hold a notification while waiting for others to send
+   * with it in a single batch; if {@code null}, notifications are sent individually as soon as they arrive
+   *
+   * @throws IOException if the given credentials could not be parsed
+   */
+  public FcmSender(ExecutorService executor, String credentials, @Nullable Duration batchDelay) throws IOException {
     try (final ByteArrayInputStream credentialInputStream = new ByteArrayInputStream(credentials.getBytes(StandardCharsets.UTF_8))) {
       FirebaseApp.initializeApp(FirebaseOptions.builder()
           .setCredentials(GoogleCredentials.fromStream(credentialInputStream))
@@ -68,12 +115,19 @@ public class FcmSender implements PushNotificationSender {
 
     this.executor = executor;
     this.firebaseMessagingClient = FirebaseMessaging.getInstance();
+    this.batchDelay = batchDelay;
   }
 
   @VisibleForTesting
   public FcmSender(ExecutorService executor, FirebaseMessaging firebaseMessagingClient) {
+    this(executor, firebaseMessagingClient, null);
+  }
+
+  @VisibleForTesting
+  FcmSender(ExecutorService executor, FirebaseMessaging firebaseMessagingClient, @Nullable Duration batchDelay) {
     this.executor = executor;
     this.firebaseMessagingClient = firebaseMessagingClient;
+    this.batchDelay = batchDelay;
   }
 
   @Override
@@ -93,29 +147,162 @@ public class FcmSender implements PushNotificationSender {
 
     builder.putData(key, pushNotification.data() != null ? pushNotification.data() : "");
 
+    if (batchDelay != null) {
+      // Batched notifications are timed when their batch is sent so the timer doesn't include queueing delay
+      return enqueueNotification(builder.build(), batchDelay);
+    }
+
     final Timer.Sample sample = Timer.start();
 
     return GoogleApiUtil.toCompletableFuture(firebaseMessagingClient.sendAsync(builder.build()), executor)
-        .whenComplete((ignored, throwable) -> sample.stop(SEND_NOTIFICATION_TIMER))
         .thenApply(ignored -> new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty()))
-        .exceptionally(throwable -> {
-          if (ExceptionUtils.unwrap(throwable) instanceof final FirebaseMessagingException firebaseMessagingException) {
-            final String errorCode;
-
-            if (firebaseMessagingException.getMessagingErrorCode() != null) {
-              errorCode = firebaseMessagingException.getMessagingErrorCode().name();
-            } else {
-              logger.warn("Received an FCM exception with no error code", firebaseMessagingException);
-              errorCode = "unknown";
-            }
+        .exceptionally(FcmSender::getResultForFailedSend)
+        .whenComplete((ignored, throwable) -> sample.stop(SEND_NOTIFICATION_TIMER));
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    synchronized (pendingNotificationsLock) {
+      stopped = true;
+    }
+
+    // Don't leave callers waiting on notifications that would otherwise only be sent by a flush scheduled for later
+    sendPendingNotifications();
+  }
+
+  private CompletableFuture<SendPushNotificationResult> enqueueNotification(final Message message,
+      final Duration batchDelay) {
 
-            final boolean unregistered =
-                firebaseMessagingException.getMessagingErrorCode() == MessagingErrorCode.UNREGISTERED;
+    final CompletableFuture<SendPushNotificationResult> resultFuture = new CompletableFuture<>();
+    @Nullable final List<PendingNotification> batchToSend;
+
+    synchronized (pendingNotificationsLock) {
+      pendingNotifications.add(new PendingNotification(message, resultFuture, System.nanoTime()));
+
+      if (pendingNotifications.size() == 1 && !stopped) {
+        // This is the first notification in a new batch; make sure the batch goes out even if it never fills up. If the
+        // batch does fill up first, this will just send the next batch a little early.
+        CompletableFuture.delayedExecutor(batchDelay.toNanos(), TimeUnit.NANOSECONDS)
+            .execute(this::schedulePendingNotifications);
+      }
+
+      // Once stopped, nothing will flush a partial batch later, so send everything right away
+      batchToSend = stopped || pendingNotifications.size() >= MAX_BATCH_SIZE ? takePendingNotifications() : null;
+    }
+
+    if (batchToSend != null) {
+      sendBatch(batchToSend);
+    }
+
+    return resultFuture;
+  }
 
-            return new SendPushNotificationResult(false, Optional.of(errorCode), unregistered, Optional.empty());
-          } else {
-            throw ExceptionUtils.wrap(throwable);
+  private void schedulePendingNotifications() {
+    try {
+      executor.execute(this::sendPendingNotifications);
+    } catch (final RejectedExecutionException e) {
+      // The executor has shut down, and so the pending notifications can't be sent
+      final List<PendingNotification> batch;
+
+      synchronized (pendingNotificationsLock) {
+        batch = takePendingNotifications();
+      }
+
+      batch.forEach(pendingNotification -> pendingNotification.resultFuture().completeExceptionally(e));
+    }
+  }
+
+  private void sendPendingNotifications() {
+    final List<PendingNotification> batch;
+
+    synchronized (pendingNotificationsLock) {
+      batch = takePendingNotifications();
+    }
+
+    if (!batch.isEmpty()) {
+      sendBatch(batch);
+    }
+  }
+
+  // Callers must hold pendingNotificationsLock
+  private List<PendingNotification> takePendingNotifications() {
+    final List<PendingNotification> batch = pendingNotifications;
+    pendingNotifications = new ArrayList<>();
+
+    return batch;
+  }
+
+  private void sendBatch(final List<PendingNotification> batch) {
+    final long sendNanos = System.nanoTime();
+
+    batch.forEach(pendingNotification -> BATCH_QUEUEING_DELAY_TIMER.record(
+        sendNanos - pendingNotification.enqueuedNanos(), TimeUnit.NANOSECONDS));
+
+    BATCH_SIZE_DISTRIBUTION_SUMMARY.record(batch.size());
+
+    final CompletableFuture<BatchResponse> batchResponseFuture;
+
+    try {
+      batchResponseFuture = GoogleApiUtil.toCompletableFuture(firebaseMessagingClient.sendEachAsync(
+          batch.stream().map(PendingNotification::message).toList()), executor);
+    } catch (final RuntimeException e) {
+      batch.forEach(pendingNotification -> pendingNotification.resultFuture().completeExceptionally(e));
+      return;
+    }
+
+    batchResponseFuture
+        .whenComplete((ignored, throwable) -> {
+          final long sendDurationNanos = System.nanoTime() - sendNanos;
+
+          SEND_BATCH_TIMER.record(sendDurationNanos, TimeUnit.NANOSECONDS);
+
+          // Every notification in the batch waited on the same FCM request
+          batch.forEach(pendingNotification ->
+              SEND_NOTIFICATION_TIMER.record(sendDurationNanos, TimeUnit.NANOSECONDS));
+        })
+        .whenComplete((batchResponse, throwable) -> {
+          for (int i = 0; i < batch.size(); i++) {
+            final CompletableFuture<SendPushNotificationResult> resultFuture = batch.get(i).resultFuture();
+
+            try {
+              if (throwable != null) {
+                // The whole batch failed, and so every notification in the batch failed in the same way
+                resultFuture.complete(getResultForFailedSend(throwable));
+              } else {
+                final SendResponse sendResponse = batchResponse.getResponses().get(i);
+
+                resultFuture.complete(sendResponse.isSuccessful()
+                    ? new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty())
+                    : getResultForFailedSend(sendResponse.getException()));
+              }
+            } catch (final RuntimeException e) {
+              resultFuture.completeExceptionally(e);
+            }
           }
         });
   }
+
+  private static SendPushNotificationResult getResultForFailedSend(final Throwable throwable) {
+    if (ExceptionUtils.unwrap(throwable) instanceof final FirebaseMessagingException firebaseMessagingException) {
+      final String errorCode;
+
+      if (firebaseMessagingException.getMessagingErrorCode() != null) {
+        errorCode = firebaseMessagingException.getMessagingErrorCode().name();
+      } else {
+        logger.warn("Received an FCM exception with no error code", firebaseMessagingException);
+        errorCode = "unknown";
+      }
+
+      final boolean unregistered =
+          firebaseMessagingException.getMessagingErrorCode() == MessagingErrorCode.UNREGISTERED;
+
+      return new SendPushNotificationResult(false, Optional.of(errorCode), unregistered, Optional.empty());
+    } else {
+      throw ExceptionUtils.wrap(throwable);
+    }
+  }
 }
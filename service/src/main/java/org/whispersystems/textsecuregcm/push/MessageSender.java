@@ -8,9 +8,21 @@ import static com.codahale.metrics.MetricRegistry.name;
 import static org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
 
 import io.micrometer.core.instrument.Metrics;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.storage.QueuedMessage;
+import org.whispersystems.textsecuregcm.util.Pair;
 
 /**
  * A MessageSender sends Signal messages to destination devices. Messages may be "normal" user-to-user messages,
@@ -48,19 +60,17 @@ public class MessageSender {
     this.pushNotificationManager = pushNotificationManager;
   }
 
-  public void sendMessage(final Account account, final Device device, final Envelope message, final boolean online) {
-
-    final String channel;
+  /**
+   * A message addressed to a specific destination device.
+   *
+   * @param account the destination account
+   * @param device the destination device
+   * @param message the message to send
+   */
+  public record RecipientMessage(Account account, Device device, Envelope message) {
+  }
 
-    if (device.getGcmId() != null) {
-      channel = "gcm";
-    } else if (device.getApnId() != null) {
-      channel = "apn";
-    } else if (device.getFetchesMessages()) {
-      channel = "websocket";
-    } else {
-      channel = "none";
-    }
+  public void sendMessage(final Account account, final Device device, final Envelope message, final boolean online) {
 
     final boolean clientPresent;
 
@@ -81,13 +91,114 @@ public class MessageSender {
       clientPresent = clientPresenceManager.isPresent(account.getUuid(), device.getId());
 
       if (!clientPresent) {
-        try {
-          pushNotificationManager.sendNewMessageNotification(account, device.getId(), message.getUrgent());
-        } catch (final NotPushRegisteredException ignored) {
-        }
+        sendNewMessageNotification(account, device, message);
       }
     }
 
+    incrementSendCounter(device, message, online, clientPresent);
+  }
+
+  /**
+   * Asynchronously sends a batch of messages, typically the per-device copies of a single multi-recipient message.
+   * Messages are inserted into destination queues with a single pipelined batch, and client presence for all
+   * destination devices is resolved with a single bulk lookup rather than one blocking round trip per device.
+   *
+   * @param recipientMessages the messages to send
+   * @param online whether the messages are "online" messages that should only be delivered to present clients
+   * @param executor the executor on which to process the results of cache operations; this keeps per-message work off
+   *                 of Redis client I/O threads
+   *
+   * @return a future that completes when all messages have been sent
+   */
+  public CompletableFuture<Void> sendMessages(final Collection<RecipientMessage> recipientMessages,
+      final boolean online,
+      final Executor executor) {
+
+    if (online) {
+      return checkPresence(recipientMessages).thenComposeAsync(presenceByMessage -> {
+        final List<QueuedMessage> messagesToInsert = new ArrayList<>(recipientMessages.size());
+
+        presenceByMessage.forEach((recipientMessage, clientPresent) -> {
+          if (clientPresent) {
+            messagesToInsert.add(new QueuedMessage(recipientMessage.account().getUuid(),
+                recipientMessage.device().getId(),
+                recipientMessage.message().toBuilder().setEphemeral(true).build()));
+          } else {
+            messagesManager.removeRecipientViewFromMrmData(recipientMessage.device().getId(),
+                recipientMessage.message());
+          }
+
+          incrementSendCounter(recipientMessage.device(), recipientMessage.message(), true, clientPresent);
+        });
+
+        return messagesManager.insert(messagesToInsert);
+      }, executor);
+    } else {
+      final List<QueuedMessage> messagesToInsert = recipientMessages.stream()
+          .map(recipientMessage -> new QueuedMessage(recipientMessage.account().getUuid(),
+              recipientMessage.device().getId(),
+              recipientMessage.message()))
+          .toList();
+
+      // As with individual messages, check for client presence only after all messages have been inserted
+      return messagesManager.insert(messagesToInsert)
+          .thenCompose(ignored -> checkPresence(recipientMessages))
+          .thenAcceptAsync(presenceByMessage -> presenceByMessage.forEach((recipientMessage, clientPresent) -> {
+            if (!clientPresent) {
+              sendNewMessageNotification(recipientMessage.account(), recipientMessage.device(),
+                  recipientMessage.message());
+            }
+
+            incrementSendCounter(recipientMessage.device(), recipientMessage.message(), false, clientPresent);
+          }), executor);
+    }
+  }
+
+  private CompletableFuture<Map<RecipientMessage, Boolean>> checkPresence(
+      final Collection<RecipientMessage> recipientMessages) {
+
+    final Set<Pair<UUID, Byte>> accountAndDeviceIdentifiers = recipientMessages.stream()
+        .map(MessageSender::getAccountAndDeviceIdentifier)
+        .collect(Collectors.toSet());
+
+    return clientPresenceManager.isPresent(accountAndDeviceIdentifiers).thenApply(presenceByIdentifier -> {
+      final Map<RecipientMessage, Boolean> presenceByMessage = new IdentityHashMap<>();
+
+      recipientMessages.forEach(recipientMessage -> presenceByMessage.put(recipientMessage,
+          presenceByIdentifier.getOrDefault(getAccountAndDeviceIdentifier(recipientMessage), false)));
+
+      return presenceByMessage;
+    });
+  }
+
+  private static Pair<UUID, Byte> getAccountAndDeviceIdentifier(final RecipientMessage recipientMessage) {
+    return new Pair<>(recipientMessage.account().getUuid(), recipientMessage.device().getId());
+  }
+
+  private void sendNewMessageNotification(final Account account, final Device device, final Envelope message) {
+    try {
+      pushNotificationManager.sendNewMessageNotification(account, device.getId(), message.getUrgent());
+    } catch (final NotPushRegisteredException ignored) {
+    }
+  }
+
+  private static void incrementSendCounter(final Device device,
+      final Envelope message,
+      final boolean online,
+      final boolean clientPresent) {
+
+    final String channel;
+
+    if (device.getGcmId() != null) {
+      channel = "gcm";
+    } else if (device.getApnId() != null) {
+      channel = "apn";
+    } else if (device.getFetchesMessages()) {
+      channel = "websocket";
+    } else {
+      channel = "none";
+    }
+
     Metrics.counter(SEND_COUNTER_NAME,
             CHANNEL_TAG_NAME, channel,
             EPHEMERAL_TAG_NAME, String.valueOf(online),
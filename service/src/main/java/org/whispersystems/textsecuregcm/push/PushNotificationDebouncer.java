@@ -0,0 +1,102 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.push;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.lettuce.core.ScriptOutputType;
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.identity.IdentityType;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
+import org.whispersystems.textsecuregcm.storage.Account;
+import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.util.Util;
+
+/**
+ * A push notification debouncer collapses bursts of "new message" notifications to the same device. Once a
+ * notification has been sent to a device, further notifications to that device are redundant until either the device
+ * retrieves its messages or a short window elapses. Urgent notifications are only considered redundant with other urgent
+ * notifications, since a non-urgent notification may not have woken the device.
+ * <p>
+ * Debouncing state lives in Redis so that notifications triggered on different servers are collapsed, too. If that
+ * state can't be read or written, the debouncer errs on the side of sending notifications.
+ */
+public class PushNotificationDebouncer {
+
+  private final FaultTolerantRedisClusterClient pushSchedulingCluster;
+  private final ClusterLuaScript debounceNotificationScript;
+
+  @VisibleForTesting
+  static final Duration DEBOUNCE_WINDOW = Duration.ofSeconds(5);
+
+  private static final String DEBOUNCE_KEY_PREFIX = "new_message_notification_debounce";
+
+  private static final String DEBOUNCE_NOTIFICATION_COUNTER_NAME = name(PushNotificationDebouncer.class, "debounceNotification");
+  private static final String URGENT_TAG_NAME = "urgent";
+  private static final String SUPPRESSED_TAG_NAME = "suppressed";
+
+  private static final Logger logger = LoggerFactory.getLogger(PushNotificationDebouncer.class);
+
+  public PushNotificationDebouncer(final FaultTolerantRedisClusterClient pushSchedulingCluster) throws IOException {
+    this.pushSchedulingCluster = pushSchedulingCluster;
+
+    this.debounceNotificationScript = ClusterLuaScript.fromResource(pushSchedulingCluster,
+        "lua/push/debounce_new_message_notification.lua", ScriptOutputType.INTEGER);
+  }
+
+  /**
+   * Checks whether a new "new message" notification to the given device would be redundant and, if not, records that
+   * a notification is about to be sent to the device.
+   *
+   * @param account the account to which the target device belongs
+   * @param device the device to which a notification would be sent
+   * @param urgent whether the notification would be urgent
+   *
+   * @return a future that yields {@code true} if the caller should send the notification or {@code false} if the
+   * notification is redundant and should be dropped
+   */
+  public CompletableFuture<Boolean> shouldSendNotification(final Account account, final Device device, final boolean urgent) {
+    return debounceNotificationScript.executeAsync(List.of(getDebounceKey(account, device)),
+            List.of(urgent ? "1" : "0", String.valueOf(DEBOUNCE_WINDOW.toMillis())))
+        .thenApply(result -> ((long) result) == 1)
+        .exceptionally(throwable -> {
+          logger.warn("Failed to check notification debouncing state", throwable);
+          return true;
+        })
+        .whenComplete((shouldSend, ignored) -> Metrics.counter(DEBOUNCE_NOTIFICATION_COUNTER_NAME,
+                URGENT_TAG_NAME, String.valueOf(urgent),
+                SUPPRESSED_TAG_NAME, String.valueOf(!shouldSend))
+            .increment());
+  }
+
+  /**
+   * Clears debouncing state for the given device, so the next notification to the device is always sent. Callers
+   * should reset a device's state whenever the device retrieves its messages.
+   *
+   * @param account the account to which the target device belongs
+   * @param device the device for which to clear debouncing state
+   *
+   * @return a future that completes when debouncing state has been cleared
+   */
+  public CompletableFuture<Void> reset(final Account account, final Device device) {
+    return pushSchedulingCluster.withCluster(connection -> connection.async().del(getDebounceKey(account, device)))
+        .thenRun(Util.NOOP)
+        .toCompletableFuture();
+  }
+
+  @VisibleForTesting
+  static String getDebounceKey(final Account account, final Device device) {
+    return DEBOUNCE_KEY_PREFIX + "::{" + account.getIdentifier(IdentityType.ACI) + ":" + device.getId() + "}";
+  }
+}
@@ -28,6 +28,7 @@ public class PushNotificationManager {
   private final APNSender apnSender;
   private final FcmSender fcmSender;
   private final PushNotificationScheduler pushNotificationScheduler;
+  private final PushNotificationDebouncer pushNotificationDebouncer;
 
   private static final String SENT_NOTIFICATION_COUNTER_NAME = name(PushNotificationManager.class, "sentPushNotification");
   private static final String FAILED_NOTIFICATION_COUNTER_NAME = name(PushNotificationManager.class, "failedPushNotification");
@@ -38,20 +39,37 @@ public class PushNotificationManager {
   public PushNotificationManager(final AccountsManager accountsManager,
       final APNSender apnSender,
       final FcmSender fcmSender,
-      final PushNotificationScheduler pushNotificationScheduler) {
+      final PushNotificationScheduler pushNotificationScheduler,
+      final PushNotificationDebouncer pushNotificationDebouncer) {
 
     this.accountsManager = accountsManager;
     this.apnSender = apnSender;
     this.fcmSender = fcmSender;
     this.pushNotificationScheduler = pushNotificationScheduler;
+    this.pushNotificationDebouncer = pushNotificationDebouncer;
   }
 
   public CompletableFuture<Optional<SendPushNotificationResult>> sendNewMessageNotification(final Account destination, final byte destinationDeviceId, final boolean urgent) throws NotPushRegisteredException {
     final Device device = destination.getDevice(destinationDeviceId).orElseThrow(NotPushRegisteredException::new);
     final Pair<String, PushNotification.TokenType> tokenAndType = getToken(device);
 
-    return sendNotification(new PushNotification(tokenAndType.first(), tokenAndType.second(),
-        PushNotification.NotificationType.NOTIFICATION, null, destination, device, urgent));
+    final PushNotification pushNotification = new PushNotification(tokenAndType.first(), tokenAndType.second(),
+        PushNotification.NotificationType.NOTIFICATION, null, destination, device, urgent);
+
+    if (tokenAndType.second() == PushNotification.TokenType.APN && !urgent) {
+      // Non-urgent APNs notifications are already collapsed by the scheduler
+      return sendNotification(pushNotification);
+    }
+
+    return pushNotificationDebouncer.shouldSendNotification(destination, device, urgent)
+        .thenCompose(shouldSend -> shouldSend
+            ? sendNotification(pushNotification).whenComplete((maybeResult, throwable) -> {
+                // Don't suppress follow-up notifications on account of a notification that was never delivered
+                if (throwable != null || maybeResult.map(result -> !result.accepted()).orElse(false)) {
+                  pushNotificationDebouncer.reset(destination, device).whenComplete(logErrors());
+                }
+              })
+            : CompletableFuture.completedFuture(Optional.empty()));
   }
 
   public CompletableFuture<SendPushNotificationResult> sendRegistrationChallengeNotification(final String deviceToken, final PushNotification.TokenType tokenType, final String challengeToken) {
@@ -82,6 +100,7 @@ public class PushNotificationManager {
 
   public void handleMessagesRetrieved(final Account account, final Device device, final String userAgent) {
     pushNotificationScheduler.cancelScheduledNotifications(account, device).whenComplete(logErrors());
+    pushNotificationDebouncer.reset(account, device).whenComplete(logErrors());
   }
 
   @VisibleForTesting
@@ -10,23 +10,34 @@ import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
 import com.google.common.annotations.VisibleForTesting;
 import io.dropwizard.lifecycle.Managed;
 import io.lettuce.core.Range;
+import io.lettuce.core.ScoredValue;
 import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.SetArgs;
+import io.lettuce.core.ZAddArgs;
 import io.lettuce.core.cluster.SlotHash;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,8 +59,30 @@ public class PushNotificationScheduler implements Managed {
   private static final String LAST_BACKGROUND_NOTIFICATION_TIMESTAMP_KEY_PREFIX = "LAST_BACKGROUND_NOTIFICATION";
   private static final String PENDING_DELAYED_NOTIFICATIONS_KEY_PREFIX = "DELAYED";
 
+  private static final String DUE_SLOTS_KEY_PREFIX = "pending_notification_due_slots";
+  private static final String SLOT_RANGE_LEASE_KEY_PREFIX = "pending_notification_slot_range_lease";
+  private static final String SLOT_RANGE_SWEEP_KEY_PREFIX = "pending_notification_slot_range_sweep";
+
+  @VisibleForTesting
+  static final String NEXT_SLOT_RANGE_TO_PROCESS_KEY = "pending_notification_next_slot_range";
+
+  // Workers claim contiguous ranges of slots rather than individual slots
   @VisibleForTesting
-  static final String NEXT_SLOT_TO_PROCESS_KEY = "pending_notification_next_slot";
+  static final int SLOTS_PER_RANGE = 256;
+  private static final int SLOT_RANGE_COUNT = SlotHash.SLOT_COUNT / SLOTS_PER_RANGE;
+
+  // Workers extend their lease between slots, so this only needs to outlast the processing of a single slot
+  private static final Duration SLOT_RANGE_LEASE_DURATION = Duration.ofSeconds(30);
+
+  // The due-slot index is authoritative, but every so often we check every slot in a range anyway in case a slot's
+  // index entry was lost (or predates the index entirely)
+  private static final Duration SLOT_RANGE_SWEEP_INTERVAL = Duration.ofMinutes(10);
+
+  private static final Duration IDLE_SLOT_RANGE_PAUSE = Duration.ofMillis(50);
+
+  private static final int ACCOUNT_RESOLUTION_BATCH_SIZE = 100;
+
+  private static final Counter SLOT_RANGE_LEASE_LOST_COUNTER = Metrics.counter(name(PushNotificationScheduler.class, "slotRangeLeaseLost"));
 
   private static final Counter BACKGROUND_NOTIFICATION_SCHEDULED_COUNTER = Metrics.counter(name(PushNotificationScheduler.class, "backgroundNotification", "scheduled"));
   private static final String BACKGROUND_NOTIFICATION_SENT_COUNTER_NAME = name(PushNotificationScheduler.class, "backgroundNotification", "sent");
@@ -59,6 +92,9 @@ public class PushNotificationScheduler implements Managed {
   private static final String TOKEN_TYPE_TAG = "tokenType";
   private static final String ACCEPTED_TAG = "accepted";
 
+  private static final String SCHEDULING_LATENESS_TIMER_NAME = name(PushNotificationScheduler.class, "schedulingLateness");
+  private static final String NOTIFICATION_TYPE_TAG = "notificationType";
+
   private final APNSender apnSender;
   private final FcmSender fcmSender;
   private final AccountsManager accountsManager;
@@ -66,6 +102,8 @@ public class PushNotificationScheduler implements Managed {
   private final Clock clock;
 
   private final ClusterLuaScript scheduleBackgroundApnsNotificationScript;
+  private final ClusterLuaScript extendSlotRangeLeaseScript;
+  private final ClusterLuaScript releaseSlotRangeLeaseScript;
 
   private final Thread[] workerThreads;
 
@@ -78,7 +116,7 @@ public class PushNotificationScheduler implements Managed {
 
     private final int maxConcurrency;
 
-    private static final int PAGE_SIZE = 128;
+    private final String workerId = UUID.randomUUID().toString();
 
     NotificationWorker(final int maxConcurrency) {
       this.maxConcurrency = maxConcurrency;
@@ -88,10 +126,10 @@ public class PushNotificationScheduler implements Managed {
     public void run() {
       do {
         try {
-          final long entriesProcessed = processNextSlot();
+          final long entriesProcessed = processNextSlotRange();
 
           if (entriesProcessed == 0) {
-            Util.sleep(1000);
+            Util.sleep(IDLE_SLOT_RANGE_PAUSE.toMillis());
           }
         } catch (Exception e) {
           logger.warn("Exception while operating", e);
@@ -99,40 +137,157 @@ public class PushNotificationScheduler implements Managed {
       } while (running.get());
     }
 
-    private long processNextSlot() {
-      final int slot = (int) (pushSchedulingCluster.withCluster(connection ->
-          connection.sync().incr(NEXT_SLOT_TO_PROCESS_KEY)) % SlotHash.SLOT_COUNT);
+    private long processNextSlotRange() {
+      final int slotRange = (int) (pushSchedulingCluster.withCluster(connection ->
+          connection.sync().incr(NEXT_SLOT_RANGE_TO_PROCESS_KEY)) % SLOT_RANGE_COUNT);
+
+      if (!acquireSlotRangeLease(slotRange)) {
+        // Another worker is already processing this range
+        return 0;
+      }
+
+      try {
+        final boolean sweep = "OK".equals(pushSchedulingCluster.withCluster(connection ->
+            connection.sync().set(SLOT_RANGE_SWEEP_KEY_PREFIX + "::{" + slotRange + "}", workerId,
+                SetArgs.Builder.nx().px(SLOT_RANGE_SWEEP_INTERVAL))));
+
+        final List<Integer> slots = sweep ? getAllSlots(slotRange) : getDueSlots(slotRange);
+
+        long entriesProcessed = 0;
+
+        for (int i = 0; i < slots.size(); i++) {
+          if (i > 0 && !extendSlotRangeLease(slotRange)) {
+            // Processing the previous slot outlasted our lease, and another worker may now be processing this range
+            logger.warn("Lost lease for slot range {} after processing {} of {} slots", slotRange, i, slots.size());
+            SLOT_RANGE_LEASE_LOST_COUNTER.increment();
+
+            break;
+          }
+
+          final int slot = slots.get(i);
+
+          entriesProcessed += processScheduledBackgroundApnsNotifications(slot) + processScheduledDelayedNotifications(slot);
+          updateDueSlotIndex(slot);
+        }
+
+        return entriesProcessed;
+      } finally {
+        releaseSlotRangeLeaseScript.execute(List.of(getSlotRangeLeaseKey(slotRange)), List.of(workerId));
+      }
+    }
+
+    @VisibleForTesting
+    boolean acquireSlotRangeLease(final int slotRange) {
+      return "OK".equals(pushSchedulingCluster.withCluster(connection -> connection.sync()
+          .set(getSlotRangeLeaseKey(slotRange), workerId, SetArgs.Builder.nx().px(SLOT_RANGE_LEASE_DURATION))));
+    }
+
+    /**
+     * Extends this worker's lease on the given slot range to a full lease duration from now.
+     *
+     * @return {@code true} if the lease was extended or {@code false} if this worker no longer holds the lease
+     */
+    @VisibleForTesting
+    boolean extendSlotRangeLease(final int slotRange) {
+      return ((long) extendSlotRangeLeaseScript.execute(List.of(getSlotRangeLeaseKey(slotRange)),
+          List.of(workerId, String.valueOf(SLOT_RANGE_LEASE_DURATION.toMillis())))) == 1;
+    }
+
+    private List<Integer> getAllSlots(final int slotRange) {
+      return IntStream.range(slotRange * SLOTS_PER_RANGE, (slotRange + 1) * SLOTS_PER_RANGE).boxed().toList();
+    }
+
+    private List<Integer> getDueSlots(final int slotRange) {
+      return pushSchedulingCluster.withCluster(connection ->
+              connection.sync().zrangebyscore(getDueSlotIndexKey(slotRange * SLOTS_PER_RANGE),
+                  Range.create(0, clock.millis())))
+          .stream()
+          .map(Integer::parseInt)
+          .toList();
+    }
+
+    /**
+     * Updates the due-slot index entry for the given slot to reflect the earliest notification still pending in that
+     * slot, removing the entry if no notifications remain.
+     */
+    @VisibleForTesting
+    void updateDueSlotIndex(final int slot) {
+      final String indexKey = getDueSlotIndexKey(slot);
+      final String member = String.valueOf(slot);
+
+      final Optional<Long> earliestDueTimestamp = getEarliestDueTimestamp(slot);
+
+      pushSchedulingCluster.useCluster(connection -> earliestDueTimestamp.ifPresentOrElse(
+          timestamp -> connection.sync().zadd(indexKey, timestamp, member),
+          () -> connection.sync().zrem(indexKey, member)));
+
+      // Scheduling a notification always adds it to its queue before updating the index. If a notification was
+      // scheduled while we were updating the index, we'll either see it when we check the queues again here or the
+      // scheduler's index update will land after ours; either way, the slot can't go missing from the index.
+      getEarliestDueTimestamp(slot)
+          .filter(timestamp -> earliestDueTimestamp.isEmpty() || timestamp < earliestDueTimestamp.get())
+          .ifPresent(timestamp -> indexSlot(slot, timestamp).join());
+    }
+
+    private Optional<Long> getEarliestDueTimestamp(final int slot) {
+      return pushSchedulingCluster.withCluster(connection -> {
+        final List<ScoredValue<String>> earliestBackgroundNotification =
+            connection.sync().zrangeWithScores(getPendingBackgroundApnsNotificationQueueKey(slot), 0, 0);
 
-      return processScheduledBackgroundApnsNotifications(slot) + processScheduledDelayedNotifications(slot);
+        final List<ScoredValue<String>> earliestDelayedNotification =
+            connection.sync().zrangeWithScores(getDelayedNotificationQueueKey(slot), 0, 0);
+
+        return Stream.concat(earliestBackgroundNotification.stream(), earliestDelayedNotification.stream())
+            .map(scoredValue -> (long) scoredValue.getScore())
+            .min(Long::compare);
+      });
     }
 
     @VisibleForTesting
     long processScheduledBackgroundApnsNotifications(final int slot) {
-      return processScheduledNotifications(getPendingBackgroundApnsNotificationQueueKey(slot),
+      return processScheduledNotifications(getPendingBackgroundApnsNotificationQueueKey(slot), "background",
           PushNotificationScheduler.this::sendBackgroundApnsNotification);
     }
 
     @VisibleForTesting
     long processScheduledDelayedNotifications(final int slot) {
-      return processScheduledNotifications(getDelayedNotificationQueueKey(slot),
+      return processScheduledNotifications(getDelayedNotificationQueueKey(slot), "delayed",
           PushNotificationScheduler.this::sendDelayedNotification);
     }
 
     private long processScheduledNotifications(final String queueKey,
+        final String notificationType,
         final BiFunction<Account, Device, CompletableFuture<Void>> sendNotificationFunction) {
 
       final long currentTimeMillis = clock.millis();
       final AtomicLong processedNotifications = new AtomicLong(0);
 
+      final Timer latenessTimer = Timer.builder(SCHEDULING_LATENESS_TIMER_NAME)
+          .tags(NOTIFICATION_TYPE_TAG, notificationType)
+          .publishPercentileHistogram(true)
+          .register(Metrics.globalRegistry);
+
       pushSchedulingCluster.useCluster(
-          connection -> connection.reactive().zrangebyscore(queueKey, Range.create(0, currentTimeMillis))
-              .flatMap(encodedAciAndDeviceId -> Mono.fromFuture(
-                  () -> getAccountAndDeviceFromPairString(encodedAciAndDeviceId)), maxConcurrency)
-              .flatMap(Mono::justOrEmpty)
-              .flatMap(accountAndDevice -> Mono.fromFuture(
-                          () -> sendNotificationFunction.apply(accountAndDevice.first(), accountAndDevice.second()))
-                      .then(Mono.defer(() -> connection.reactive().zrem(queueKey, encodeAciAndDeviceId(accountAndDevice.first(), accountAndDevice.second()))))
-                      .doOnSuccess(ignored -> processedNotifications.incrementAndGet()),
+          connection -> connection.reactive().zrangebyscoreWithScores(queueKey, Range.create(0, currentTimeMillis))
+              // Resolve accounts a page at a time rather than issuing a lookup for every scheduled notification
+              .buffer(ACCOUNT_RESOLUTION_BATCH_SIZE)
+              .concatMap(scheduledNotifications -> Mono.fromFuture(() -> getAccountsAndDevicesFromPairStrings(
+                      scheduledNotifications.stream().map(ScoredValue::getValue).toList()))
+                  .flatMapIterable(accountsAndDevices -> scheduledNotifications.stream()
+                      .filter(scheduledNotification -> accountsAndDevices.containsKey(scheduledNotification.getValue()))
+                      .map(scheduledNotification -> new Pair<>(accountsAndDevices.get(scheduledNotification.getValue()),
+                          (long) scheduledNotification.getScore()))
+                      .toList()))
+              .flatMap(accountDeviceAndScheduledTime -> {
+                    final Account account = accountDeviceAndScheduledTime.first().first();
+                    final Device device = accountDeviceAndScheduledTime.first().second();
+
+                    return Mono.fromFuture(() -> sendNotificationFunction.apply(account, device))
+                        .doOnSuccess(ignored -> latenessTimer.record(
+                            Math.max(0, clock.millis() - accountDeviceAndScheduledTime.second()), TimeUnit.MILLISECONDS))
+                        .then(Mono.defer(() -> connection.reactive().zrem(queueKey, encodeAciAndDeviceId(account, device))))
+                        .doOnSuccess(ignored -> processedNotifications.incrementAndGet());
+                  },
                   maxConcurrency)
               .then()
               .block());
@@ -175,6 +330,12 @@ public class PushNotificationScheduler implements Managed {
     this.scheduleBackgroundApnsNotificationScript = ClusterLuaScript.fromResource(pushSchedulingCluster,
         "lua/apn/schedule_background_notification.lua", ScriptOutputType.VALUE);
 
+    this.extendSlotRangeLeaseScript = ClusterLuaScript.fromResource(pushSchedulingCluster,
+        "lua/apn/extend_slot_range_lease.lua", ScriptOutputType.INTEGER);
+
+    this.releaseSlotRangeLeaseScript = ClusterLuaScript.fromResource(pushSchedulingCluster,
+        "lua/apn/release_slot_range_lease.lua", ScriptOutputType.INTEGER);
+
     this.workerThreads = new Thread[dedicatedProcessThreadCount];
 
     for (int i = 0; i < this.workerThreads.length; i++) {
@@ -196,6 +357,8 @@ public class PushNotificationScheduler implements Managed {
 
     BACKGROUND_NOTIFICATION_SCHEDULED_COUNTER.increment();
 
+    // The script returns the time at which the notification is scheduled, which may be earlier than the time we would
+    // have chosen if a notification had already been scheduled
     return scheduleBackgroundApnsNotificationScript.executeAsync(
         List.of(
             getLastBackgroundApnsNotificationTimestampKey(account, device),
@@ -204,7 +367,8 @@ public class PushNotificationScheduler implements Managed {
             encodeAciAndDeviceId(account, device),
             String.valueOf(clock.millis()),
             String.valueOf(BACKGROUND_NOTIFICATION_PERIOD.toMillis())))
-        .thenRun(Util.NOOP);
+        .thenCompose(scheduledTimestamp -> indexSlot(getSlot(account, device),
+            (long) Double.parseDouble(String.valueOf(scheduledTimestamp))));
   }
 
   /**
@@ -219,16 +383,30 @@ public class PushNotificationScheduler implements Managed {
    * @return a future that completes once the notification has been scheduled
    */
   public CompletableFuture<Void> scheduleDelayedNotification(final Account account, final Device device, final Duration minDelay) {
+    final long scheduledTimestamp = clock.instant().plus(minDelay).toEpochMilli();
+
     return pushSchedulingCluster.withCluster(connection ->
         connection.async().zadd(getDelayedNotificationQueueKey(account, device),
-            clock.instant().plus(minDelay).toEpochMilli(),
+            scheduledTimestamp,
             encodeAciAndDeviceId(account, device)))
+        .thenCompose(ignored -> indexSlot(getSlot(account, device), scheduledTimestamp))
         .thenRun(() -> Metrics.counter(DELAYED_NOTIFICATION_SCHEDULED_COUNTER_NAME,
                 TOKEN_TYPE_TAG, getTokenType(device))
             .increment())
         .toCompletableFuture();
   }
 
+  /**
+   * Records that the given slot has a notification due no later than the given time. An existing index entry is only
+   * ever moved earlier, never later; workers move entries later as they drain a slot's queues.
+   */
+  private CompletableFuture<Void> indexSlot(final int slot, final long dueTimestamp) {
+    return pushSchedulingCluster.withCluster(connection ->
+            connection.async().zadd(getDueSlotIndexKey(slot), ZAddArgs.Builder.lt(), dueTimestamp, String.valueOf(slot)))
+        .thenRun(Util.NOOP)
+        .toCompletableFuture();
+  }
+
   /**
    * Cancel scheduled notifications for the given account and device.
    *
@@ -342,12 +520,39 @@ public class PushNotificationScheduler implements Managed {
   }
 
   @VisibleForTesting
-  CompletableFuture<Optional<Pair<Account, Device>>> getAccountAndDeviceFromPairString(final String endpoint) {
-    final Pair<UUID, Byte> aciAndDeviceId = decodeAciAndDeviceId(endpoint);
+  CompletableFuture<Map<String, Pair<Account, Device>>> getAccountsAndDevicesFromPairStrings(
+      final Collection<String> encodedAciAndDeviceIds) {
+
+    final Map<String, Pair<UUID, Byte>> acisAndDeviceIds = encodedAciAndDeviceIds.stream()
+        .distinct()
+        .collect(Collectors.toMap(Function.identity(), PushNotificationScheduler::decodeAciAndDeviceId));
+
+    return accountsManager.getByAccountIdentifiers(acisAndDeviceIds.values().stream().map(Pair::first).toList())
+        .thenApply(accountsByIdentifier -> {
+          final Map<String, Pair<Account, Device>> accountsAndDevices = new HashMap<>();
+
+          acisAndDeviceIds.forEach((encodedAciAndDeviceId, aciAndDeviceId) ->
+              Optional.ofNullable(accountsByIdentifier.get(aciAndDeviceId.first()))
+                  .flatMap(account -> account.getDevice(aciAndDeviceId.second())
+                      .map(device -> new Pair<>(account, device)))
+                  .ifPresent(accountAndDevice -> accountsAndDevices.put(encodedAciAndDeviceId, accountAndDevice)));
+
+          return accountsAndDevices;
+        });
+  }
+
+  private static int getSlot(final Account account, final Device device) {
+    return SlotHash.getSlot(encodeAciAndDeviceId(account, device));
+  }
+
+  @VisibleForTesting
+  static String getSlotRangeLeaseKey(final int slotRange) {
+    return SLOT_RANGE_LEASE_KEY_PREFIX + "::{" + slotRange + "}";
+  }
 
-    return accountsManager.getByAccountIdentifierAsync(aciAndDeviceId.first())
-        .thenApply(maybeAccount -> maybeAccount
-            .flatMap(account -> account.getDevice(aciAndDeviceId.second()).map(device -> new Pair<>(account, device))));
+  @VisibleForTesting
+  static String getDueSlotIndexKey(final int slot) {
+    return DUE_SLOTS_KEY_PREFIX + "::{" + (slot / SLOTS_PER_RANGE) + "}";
   }
 
   @VisibleForTesting
@@ -146,6 +146,11 @@ public class FaultTolerantRedisClusterClient {
     return withConnection(binaryConnection, function);
   }
 
+  public <T> Publisher<T> withClusterReactive(
+      final Function<StatefulRedisClusterConnection<String, String>, Publisher<T>> function) {
+    return withConnectionReactive(stringConnection, function);
+  }
+
   public <T> Publisher<T> withBinaryClusterReactive(
       final Function<StatefulRedisClusterConnection<byte[], byte[]>, Publisher<T>> function) {
     return withConnectionReactive(binaryConnection, function);
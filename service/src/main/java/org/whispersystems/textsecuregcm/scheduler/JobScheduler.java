@@ -2,9 +2,12 @@ package org.whispersystems.textsecuregcm.scheduler;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
+import org.whispersystems.textsecuregcm.storage.AbstractDynamoDbStore;
+import org.whispersystems.textsecuregcm.storage.DynamoDbBatchWriter;
 import org.whispersystems.textsecuregcm.util.Util;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -12,35 +15,53 @@ import reactor.util.retry.Retry;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
 
 /**
  * A job scheduler maintains a delay queue of tasks to be run at some time in the future. Callers schedule jobs with
  * the {@link #scheduleJob(Instant, byte[])} method, and concrete subclasses actually execute jobs by implementing the
  * {@link #processJob(byte[])} method. Some entity must call {@link #processAvailableJobs()} to actually find and
  * process jobs that are ready for execution.
+ * <p>
+ * To keep any one scheduler's backlog from concentrating on a single hot partition, jobs are spread across partitions
+ * by time bucket (derived from each job's {@code runAt} time) and by shard within each bucket. Processing queries each
+ * partition that may hold due jobs in parallel.
+ * <p>
+ * Jobs scheduled by servers that predate partitioning live in a single legacy partition keyed by the scheduler name
+ * alone. Because schedulers and processors may be deployed separately, processors query the legacy partition on every
+ * pass until {@link #LEGACY_PARTITION_CUTOFF}, by which time every server writes partitioned keys and every job in the
+ * legacy partition has expired.
  */
 public abstract class JobScheduler {
 
   private final DynamoDbAsyncClient dynamoDbAsyncClient;
   private final String tableName;
   private final Duration jobExpiration;
+  private final int shardCount;
   private final Clock clock;
+  private final DynamoDbBatchWriter batchWriter;
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
-  // The name of this scheduler (DynamoDB string)
+  // The partition for a job: the name of its scheduler, plus its time bucket and shard (DynamoDB string). Jobs
+  // scheduled before partitioning was introduced have only the scheduler name.
   @VisibleForTesting
   public static final String KEY_SCHEDULER_NAME = "S";
 
@@ -58,21 +79,65 @@ public abstract class JobScheduler {
 
   private static final String SCHEDULE_JOB_COUNTER_NAME = MetricsUtil.name(JobScheduler.class, "scheduleJob");
   private static final String PROCESS_JOB_COUNTER_NAME = MetricsUtil.name(JobScheduler.class, "processJob");
+  private static final String JOB_LAG_TIMER_NAME = MetricsUtil.name(JobScheduler.class, "jobLag");
 
   private static final String SCHEDULER_NAME_TAG = "schedulerName";
   private static final String OUTCOME_TAG = "outcome";
 
   private static final int MAX_CONCURRENCY = 16;
 
+  // The maximum number of partitions to query at the same time
+  private static final int MAX_PARTITION_CONCURRENCY = 8;
+
+  @VisibleForTesting
+  static final Duration TIME_BUCKET_DURATION = Duration.ofDays(1);
+
+  @VisibleForTesting
+  static final int DEFAULT_SHARD_COUNT = 8;
+
+  private static final Duration MAX_BATCH_DELETE_DELAY = Duration.ofSeconds(1);
+
+  // Partitioned keys were rolled out by 2026-10-15. Legacy jobs run within a day or two of being scheduled and expire
+  // seven days after that, so none can remain in the legacy partition after this time. If the rollout slips, this must
+  // move with it.
+  @VisibleForTesting
+  static final Instant LEGACY_PARTITION_CUTOFF = Instant.parse("2026-10-25T00:00:00Z");
+
+  protected JobScheduler(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final String tableName,
+      final Duration jobExpiration,
+      final Clock clock) {
+
+    this(dynamoDbAsyncClient, tableName, jobExpiration, DEFAULT_SHARD_COUNT, clock);
+  }
+
+  /**
+   * Constructs a new job scheduler.
+   *
+   * @param dynamoDbAsyncClient the DynamoDB client with which to read and write jobs
+   * @param tableName the name of the table in which to store jobs
+   * @param jobExpiration the time after a job's {@code runAt} time after which the job may be discarded if it has not
+   * been processed
+   * @param shardCount the number of partitions across which to spread the jobs in each time bucket; must not change
+   * while jobs are scheduled
+   * @param clock the clock with which to determine whether jobs are due
+   */
   protected JobScheduler(final DynamoDbAsyncClient dynamoDbAsyncClient,
       final String tableName,
       final Duration jobExpiration,
+      final int shardCount,
       final Clock clock) {
 
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("Shard count must be positive");
+    }
+
     this.dynamoDbAsyncClient = dynamoDbAsyncClient;
     this.tableName = tableName;
     this.jobExpiration = jobExpiration;
+    this.shardCount = shardCount;
     this.clock = clock;
+    this.batchWriter = new DynamoDbBatchWriter(dynamoDbAsyncClient, JobScheduler.class);
   }
 
   /**
@@ -111,7 +176,7 @@ public abstract class JobScheduler {
   @VisibleForTesting
   CompletableFuture<Void> scheduleJob(final AttributeValue runAt, final Instant expiration, @Nullable final byte[] jobData) {
     final Map<String, AttributeValue> item = new HashMap<>(Map.of(
-        KEY_SCHEDULER_NAME, AttributeValue.fromS(getSchedulerName()),
+        KEY_SCHEDULER_NAME, AttributeValue.fromS(getPartitionKey(getRunAt(runAt), runAt)),
         ATTR_RUN_AT, runAt,
         ATTR_TTL, AttributeValue.fromN(String.valueOf(expiration.getEpochSecond()))));
 
@@ -137,44 +202,112 @@ public abstract class JobScheduler {
    * @see #processJob(byte[])
    */
   public Mono<Void> processAvailableJobs() {
-    return Flux.from(dynamoDbAsyncClient.queryPaginator(QueryRequest.builder()
-            .tableName(tableName)
-            .keyConditionExpression("#schedulerName = :schedulerName AND #runAt <= :maxRunAt")
-            .expressionAttributeNames(Map.of(
-                "#schedulerName", KEY_SCHEDULER_NAME,
-                "#runAt", ATTR_RUN_AT))
-            .expressionAttributeValues(Map.of(
-                ":schedulerName", AttributeValue.fromS(getSchedulerName()),
-                ":maxRunAt", buildMaxRunAtAttribute(clock.instant())))
-            .build())
-        .items())
+    final Instant now = clock.instant();
+    final AttributeValue maxRunAt = buildMaxRunAtAttribute(now);
+
+    final Timer jobLagTimer = Timer.builder(JOB_LAG_TIMER_NAME)
+        .tags(SCHEDULER_NAME_TAG, getSchedulerName())
+        .publishPercentileHistogram(true)
+        .register(Metrics.globalRegistry);
+
+    return Flux.fromIterable(getPartitionKeysForDueJobs(now))
+        .flatMap(partitionKey -> Flux.from(dynamoDbAsyncClient.queryPaginator(QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("#schedulerName = :schedulerName AND #runAt <= :maxRunAt")
+                .expressionAttributeNames(Map.of(
+                    "#schedulerName", KEY_SCHEDULER_NAME,
+                    "#runAt", ATTR_RUN_AT))
+                .expressionAttributeValues(Map.of(
+                    ":schedulerName", AttributeValue.fromS(partitionKey),
+                    ":maxRunAt", maxRunAt))
+                .build())
+            .items()), MAX_PARTITION_CONCURRENCY)
         .flatMap(item -> {
           final byte[] jobData = item.containsKey(ATTR_JOB_DATA)
               ? item.get(ATTR_JOB_DATA).b().asByteArray()
               : null;
 
           return Mono.fromFuture(() -> processJob(jobData))
-              .doOnNext(outcome -> Metrics.counter(PROCESS_JOB_COUNTER_NAME,
-                      SCHEDULER_NAME_TAG, getSchedulerName(),
-                      OUTCOME_TAG, outcome)
-                  .increment())
-              .then(Mono.fromFuture(() -> deleteJob(item.get(KEY_SCHEDULER_NAME), item.get(ATTR_RUN_AT))))
+              .doOnNext(outcome -> {
+                Metrics.counter(PROCESS_JOB_COUNTER_NAME,
+                        SCHEDULER_NAME_TAG, getSchedulerName(),
+                        OUTCOME_TAG, outcome)
+                    .increment();
+
+                jobLagTimer.record(Math.max(0, clock.millis() - getRunAt(item.get(ATTR_RUN_AT)).toEpochMilli()),
+                    TimeUnit.MILLISECONDS);
+              })
+              .thenReturn(Map.of(
+                  KEY_SCHEDULER_NAME, item.get(KEY_SCHEDULER_NAME),
+                  ATTR_RUN_AT, item.get(ATTR_RUN_AT)))
               .onErrorResume(throwable -> {
                 logger.warn("Failed to process job", throwable);
                 return Mono.empty();
               });
         }, MAX_CONCURRENCY)
+        .bufferTimeout(AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE, MAX_BATCH_DELETE_DELAY)
+        .flatMap(this::deleteJobs)
         .then();
   }
 
-  private CompletableFuture<Void> deleteJob(final AttributeValue schedulerName, final AttributeValue runAt) {
-    return dynamoDbAsyncClient.deleteItem(DeleteItemRequest.builder()
-            .tableName(tableName)
-            .key(Map.of(
-                KEY_SCHEDULER_NAME, schedulerName,
-                ATTR_RUN_AT, runAt))
-            .build())
-        .thenRun(Util.NOOP);
+  private Mono<Void> deleteJobs(final List<Map<String, AttributeValue>> keys) {
+    return Mono.fromFuture(() -> batchWriter.writeUntilComplete(Map.of(tableName, keys.stream()
+            .map(key -> WriteRequest.builder()
+                .deleteRequest(DeleteRequest.builder().key(key).build())
+                .build())
+            .toList())))
+        .onErrorResume(throwable -> {
+          // The jobs have already been processed; if we can't delete them now, they'll be processed again later
+          logger.warn("Failed to delete processed jobs", throwable);
+          return Mono.empty();
+        });
+  }
+
+  /**
+   * Returns the partition key for a job with the given {@code runAt} time and sort key. The shard within the job's time
+   * bucket is derived from the (randomly-salted) sort key so that a job's partition can always be recomputed from its
+   * sort key.
+   */
+  @VisibleForTesting
+  String getPartitionKey(final Instant runAt, final AttributeValue runAtAttribute) {
+    return getPartitionKey(getTimeBucket(runAt),
+        Math.floorMod(Arrays.hashCode(runAtAttribute.b().asByteArray()), shardCount));
+  }
+
+  private String getPartitionKey(final long timeBucket, final int shard) {
+    return getSchedulerName() + "#" + timeBucket + "#" + shard;
+  }
+
+  /**
+   * Returns the keys of all partitions that may contain jobs due at or before the given time, including the legacy,
+   * unpartitioned key until {@link #LEGACY_PARTITION_CUTOFF}. Jobs whose {@code runAt} time is further in the past than
+   * the job expiration period will have been discarded, and so time buckets older than that don't need to be checked.
+   */
+  @VisibleForTesting
+  List<String> getPartitionKeysForDueJobs(final Instant now) {
+    final List<String> partitionKeys = new ArrayList<>();
+
+    // Servers that predate partitioning may still be writing jobs to the legacy partition
+    if (now.isBefore(LEGACY_PARTITION_CUTOFF)) {
+      partitionKeys.add(getSchedulerName());
+    }
+
+    LongStream.rangeClosed(getTimeBucket(now.minus(jobExpiration)), getTimeBucket(now))
+        .forEach(timeBucket -> {
+          for (int shard = 0; shard < shardCount; shard++) {
+            partitionKeys.add(getPartitionKey(timeBucket, shard));
+          }
+        });
+
+    return partitionKeys;
+  }
+
+  private static long getTimeBucket(final Instant instant) {
+    return instant.toEpochMilli() / TIME_BUCKET_DURATION.toMillis();
+  }
+
+  private static Instant getRunAt(final AttributeValue runAtAttribute) {
+    return Instant.ofEpochMilli(runAtAttribute.b().asByteBuffer().getLong());
   }
 
   /**
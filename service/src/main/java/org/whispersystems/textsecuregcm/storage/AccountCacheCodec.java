@@ -0,0 +1,124 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.util.SystemMapper;
+
+/**
+ * Encodes and decodes accounts for storage in the shared account cache. Accounts may be encoded either as JSON or in a
+ * compact binary (CBOR) format; both formats share the same Jackson mappings, and so carry exactly the same fields.
+ * <p/>
+ * Binary-encoded accounts are prefixed with a single format version byte. JSON-encoded accounts always begin with
+ * {@code '{'}, which allows readers to distinguish the two formats and to read either format regardless of which format
+ * they write.
+ */
+class AccountCacheCodec {
+
+  private static final byte BINARY_FORMAT_VERSION = 0x01;
+
+  private static final ObjectWriter JSON_WRITER = SystemMapper.jsonMapper()
+      .writer(SystemMapper.excludingField(Account.class, List.of("uuid")));
+
+  private static final ObjectReader JSON_READER = SystemMapper.jsonMapper().readerFor(Account.class);
+
+  private static final CBORMapper CBOR_MAPPER = (CBORMapper) SystemMapper.configureMapper(new CBORMapper());
+
+  private static final ObjectWriter BINARY_WRITER = CBOR_MAPPER
+      .writer(SystemMapper.excludingField(Account.class, List.of("uuid")));
+
+  private static final ObjectReader BINARY_READER = CBOR_MAPPER.readerFor(Account.class);
+
+  private static final DistributionSummary JSON_SIZE_DISTRIBUTION_SUMMARY =
+      Metrics.summary(name(AccountCacheCodec.class, "encodedSize"), "format", "json");
+
+  private static final DistributionSummary BINARY_SIZE_DISTRIBUTION_SUMMARY =
+      Metrics.summary(name(AccountCacheCodec.class, "encodedSize"), "format", "binary");
+
+  private static final Logger logger = LoggerFactory.getLogger(AccountCacheCodec.class);
+
+  private AccountCacheCodec() {
+  }
+
+  /**
+   * Encodes the given account for storage in the shared account cache.
+   *
+   * @param account the account to encode
+   * @param binary if {@code true}, encode the account in the compact binary format; otherwise, encode it as JSON
+   *
+   * @return the encoded account
+   *
+   * @throws JsonProcessingException if the account could not be encoded
+   */
+  static byte[] encode(final Account account, final boolean binary) throws JsonProcessingException {
+    final byte[] encodedAccount;
+
+    if (binary) {
+      final byte[] cbor = BINARY_WRITER.writeValueAsBytes(account);
+
+      encodedAccount = new byte[cbor.length + 1];
+      encodedAccount[0] = BINARY_FORMAT_VERSION;
+      System.arraycopy(cbor, 0, encodedAccount, 1, cbor.length);
+
+      BINARY_SIZE_DISTRIBUTION_SUMMARY.record(encodedAccount.length);
+    } else {
+      encodedAccount = JSON_WRITER.writeValueAsBytes(account);
+
+      JSON_SIZE_DISTRIBUTION_SUMMARY.record(encodedAccount.length);
+    }
+
+    return encodedAccount;
+  }
+
+  /**
+   * Decodes an account from the shared account cache, which may be encoded in either supported format.
+   *
+   * @param encodedAccount the encoded account; may be {@code null} if the account was not present in the cache
+   * @param uuid the identifier of the account, which is not itself stored in the encoded form
+   *
+   * @return the decoded account, or empty if the encoded account was absent or could not be decoded
+   */
+  static Optional<Account> decode(@Nullable final byte[] encodedAccount, final UUID uuid) {
+    if (encodedAccount == null || encodedAccount.length == 0) {
+      return Optional.empty();
+    }
+
+    try {
+      final Account account;
+
+      if (encodedAccount[0] == BINARY_FORMAT_VERSION) {
+        account = BINARY_READER.readValue(encodedAccount, 1, encodedAccount.length - 1);
+      } else {
+        account = JSON_READER.readValue(encodedAccount);
+      }
+
+      account.setUuid(uuid);
+
+      if (account.getPhoneNumberIdentifier() == null) {
+        logger.warn("Account {} loaded from Redis is missing a PNI", uuid);
+      }
+
+      return Optional.of(account);
+    } catch (final IOException e) {
+      logger.warn("Deserialization error", e);
+      return Optional.empty();
+    }
+  }
+}
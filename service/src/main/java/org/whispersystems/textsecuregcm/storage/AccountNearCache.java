@@ -0,0 +1,232 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dropwizard.lifecycle.Managed;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubClusterConnection;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
+import org.whispersystems.textsecuregcm.util.Util;
+
+/**
+ * An account near cache holds encoded accounts in-process in front of the shared Redis account cache. Entries are
+ * versioned by {@link Account#getVersion()}; when an account is written to or removed from the shared cache, an
+ * invalidation message is published to all servers so that older copies are evicted from their near caches.
+ * <p/>
+ * Accounts are mutable, so the near cache holds the encoded form of each account rather than {@link Account}
+ * instances; callers always receive a fresh instance. Invalidation messages are delivered on a best-effort basis, and
+ * so entries also expire after a configured TTL to bound staleness if a message is missed.
+ */
+public class AccountNearCache extends RedisClusterPubSubAdapter<String, String> implements Managed {
+
+  private final boolean enabled;
+  private final FaultTolerantRedisClusterClient cacheCluster;
+  @Nullable
+  private final FaultTolerantPubSubClusterConnection<String, String> pubSubConnection;
+  private final Cache<UUID, CachedAccount> accountsByUuid;
+
+  private static final Counter HIT_COUNTER = Metrics.counter(name(AccountNearCache.class, "get"), "outcome", "hit");
+  private static final Counter MISS_COUNTER = Metrics.counter(name(AccountNearCache.class, "get"), "outcome", "miss");
+  private static final Counter STALE_PUT_COUNTER = Metrics.counter(name(AccountNearCache.class, "stalePut"));
+  private static final Counter INVALIDATION_COUNTER = Metrics.counter(name(AccountNearCache.class, "invalidation"));
+  private static final Counter PUBLISH_ERROR_COUNTER = Metrics.counter(name(AccountNearCache.class, "publishError"));
+
+  @VisibleForTesting
+  static final String INVALIDATION_CHANNEL = "account_near_cache::invalidation";
+
+  private static final Logger logger = LoggerFactory.getLogger(AccountNearCache.class);
+
+  private record CachedAccount(int version, byte[] encodedAccount) {
+  }
+
+  public AccountNearCache(final FaultTolerantRedisClusterClient cacheCluster,
+      final AccountNearCacheConfiguration configuration) {
+
+    this.enabled = configuration.enabled();
+    this.cacheCluster = cacheCluster;
+    this.pubSubConnection = enabled ? cacheCluster.createPubSubConnection() : null;
+    this.accountsByUuid = CacheBuilder.newBuilder()
+        .maximumSize(configuration.maxSize())
+        .expireAfterWrite(configuration.ttl())
+        .build();
+
+    Metrics.gauge(name(getClass(), "size"), this, ignored -> accountsByUuid.size());
+  }
+
+  @Override
+  public void start() {
+    if (pubSubConnection == null) {
+      return;
+    }
+
+    pubSubConnection.usePubSubConnection(connection -> connection.addListener(this));
+    pubSubConnection.subscribeToClusterTopologyChangedEvents(this::subscribeToInvalidations);
+
+    subscribeToInvalidations();
+  }
+
+  @Override
+  public void stop() {
+    if (pubSubConnection == null) {
+      return;
+    }
+
+    pubSubConnection.usePubSubConnection(connection -> {
+      connection.removeListener(this);
+      connection.sync().upstream().commands().unsubscribe(INVALIDATION_CHANNEL);
+    });
+  }
+
+  private void subscribeToInvalidations() {
+    final int slot = SlotHash.getSlot(INVALIDATION_CHANNEL);
+
+    pubSubConnection.usePubSubConnection(connection ->
+        connection.sync().nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && node.hasSlot(slot))
+            .commands()
+            .subscribe(INVALIDATION_CHANNEL));
+
+    // We may have missed invalidations while the subscription was being moved
+    accountsByUuid.invalidateAll();
+  }
+
+  /**
+   * Returns the encoded form of the account with the given identifier if it is present in the near cache.
+   *
+   * @param uuid the identifier of the account to retrieve
+   *
+   * @return the encoded account if present in the near cache or empty otherwise
+   */
+  public Optional<byte[]> get(final UUID uuid) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+
+    final Optional<byte[]> maybeEncodedAccount =
+        Optional.ofNullable(accountsByUuid.getIfPresent(uuid)).map(CachedAccount::encodedAccount);
+
+    (maybeEncodedAccount.isPresent() ? HIT_COUNTER : MISS_COUNTER).increment();
+
+    return maybeEncodedAccount;
+  }
+
+  /**
+   * Stores the encoded form of an account read from the shared cache. If the near cache already holds a newer
+   * version of the account, the existing entry is retained.
+   *
+   * @param uuid the identifier of the account
+   * @param version the version of the account
+   * @param encodedAccount the encoded form of the account
+   */
+  public void put(final UUID uuid, final int version, final byte[] encodedAccount) {
+    if (!enabled) {
+      return;
+    }
+
+    accountsByUuid.asMap().merge(uuid, new CachedAccount(version, encodedAccount), (existing, candidate) -> {
+      if (existing.version() > candidate.version()) {
+        STALE_PUT_COUNTER.increment();
+        return existing;
+      }
+
+      return candidate;
+    });
+  }
+
+  /**
+   * Stores the encoded form of an account that has just been written to the shared cache and notifies other
+   * servers that any older versions of the account should be evicted.
+   *
+   * @param uuid the identifier of the account
+   * @param version the version of the account
+   * @param encodedAccount the encoded form of the account
+   *
+   * @return a future that completes once the invalidation message has been published
+   */
+  public CompletableFuture<Void> update(final UUID uuid, final int version, final byte[] encodedAccount) {
+    if (!enabled) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    put(uuid, version, encodedAccount);
+    return publishInvalidation(uuid + ":" + version);
+  }
+
+  /**
+   * Evicts the given account from this server's near cache and from the near caches of all other servers regardless of
+   * version.
+   *
+   * @param uuid the identifier of the account to evict
+   *
+   * @return a future that completes once the invalidation message has been published
+   */
+  public CompletableFuture<Void> invalidate(final UUID uuid) {
+    if (!enabled) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    accountsByUuid.invalidate(uuid);
+    return publishInvalidation(uuid.toString());
+  }
+
+  private CompletableFuture<Void> publishInvalidation(final String message) {
+    return cacheCluster.withCluster(connection -> connection.async().publish(INVALIDATION_CHANNEL, message))
+        .toCompletableFuture()
+        .exceptionally(throwable -> {
+          // Entries will eventually expire, so this is not fatal
+          logger.warn("Failed to publish account near cache invalidation", throwable);
+          PUBLISH_ERROR_COUNTER.increment();
+          return null;
+        })
+        .thenRun(Util.NOOP);
+  }
+
+  @Override
+  public void message(final RedisClusterNode node, final String channel, final String message) {
+    if (!INVALIDATION_CHANNEL.equals(channel)) {
+      return;
+    }
+
+    try {
+      final int separatorIndex = message.indexOf(':');
+
+      if (separatorIndex < 0) {
+        accountsByUuid.invalidate(UUID.fromString(message));
+        INVALIDATION_COUNTER.increment();
+      } else {
+        final UUID uuid = UUID.fromString(message.substring(0, separatorIndex));
+        final int version = Integer.parseInt(message.substring(separatorIndex + 1));
+
+        // Our own updates also arrive here; only discard entries older than the published version
+        accountsByUuid.asMap().computeIfPresent(uuid, (ignored, cachedAccount) -> {
+          if (cachedAccount.version() < version) {
+            INVALIDATION_COUNTER.increment();
+            return null;
+          }
+
+          return cachedAccount;
+        });
+      }
+    } catch (final IllegalArgumentException e) {
+      logger.warn("Received malformed account near cache invalidation: {}", message);
+    }
+  }
+}
@@ -23,6 +23,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +56,7 @@ import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedExce
 import software.amazon.awssdk.services.dynamodb.model.Delete;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
@@ -102,6 +104,7 @@ public class Accounts extends AbstractDynamoDbStore {
   private static final Timer GET_BY_USERNAME_LINK_HANDLE_TIMER = Metrics.timer(name(Accounts.class, "getByUsernameLinkHandle"));
   private static final Timer GET_BY_PNI_TIMER = Metrics.timer(name(Accounts.class, "getByPni"));
   private static final Timer GET_BY_UUID_TIMER = Metrics.timer(name(Accounts.class, "getByUuid"));
+  private static final Timer GET_BY_UUIDS_TIMER = Metrics.timer(name(Accounts.class, "getByUuids"));
   private static final Timer DELETE_TIMER = Metrics.timer(name(Accounts.class, "delete"));
   private static final String USERNAME_HOLD_ADDED_COUNTER_NAME = name(Accounts.class, "usernameHoldAdded");
 
@@ -159,6 +162,7 @@ public class Accounts extends AbstractDynamoDbStore {
   private final Clock clock;
 
   private final DynamoDbAsyncClient asyncClient;
+  private final DynamoDbBatchReader batchReader;
 
   private final String phoneNumberConstraintTableName;
   private final String phoneNumberIdentifierConstraintTableName;
@@ -182,6 +186,7 @@ public class Accounts extends AbstractDynamoDbStore {
     super(client);
     this.clock = clock;
     this.asyncClient = asyncClient;
+    this.batchReader = new DynamoDbBatchReader(asyncClient, Accounts.class);
     this.phoneNumberConstraintTableName = phoneNumberConstraintTableName;
     this.phoneNumberIdentifierConstraintTableName = phoneNumberIdentifierConstraintTableName;
     this.accountsTableName = accountsTableName;
@@ -1178,6 +1183,36 @@ public class Accounts extends AbstractDynamoDbStore {
         .toCompletableFuture();
   }
 
+  /**
+   * Retrieves the accounts with the given identifiers, issuing as few {@code BatchGetItem} requests as possible.
+   *
+   * @param uuids the identifiers of the accounts to retrieve
+   *
+   * @return a future that yields a map of account identifiers to accounts; identifiers with no corresponding account are
+   * absent from the map
+   */
+  @Nonnull
+  public CompletableFuture<Map<UUID, Account>> getByAccountIdentifiers(final Collection<UUID> uuids) {
+    if (uuids.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
+    final Timer.Sample sample = Timer.start();
+
+    return Flux.fromIterable(uuids)
+        .distinct()
+        .map(uuid -> Map.of(KEY_ACCOUNT_UUID, AttributeValues.fromUUID(uuid)))
+        .buffer(DynamoDbBatchReader.DYNAMO_DB_MAX_BATCH_GET_SIZE)
+        .flatMap(keys -> batchReader.getUntilComplete(accountsTableName, KeysAndAttributes.builder()
+            .keys(keys)
+            .consistentRead(true)
+            .build()))
+        .map(Accounts::fromItem)
+        .collectMap(Account::getUuid)
+        .doOnTerminate(() -> sample.stop(GET_BY_UUIDS_TIMER))
+        .toFuture();
+  }
+
   public Optional<UUID> findRecentlyDeletedAccountIdentifier(final String e164) {
     final GetItemResponse response = db().getItem(GetItemRequest.builder()
         .tableName(deletedAccountsTableName)
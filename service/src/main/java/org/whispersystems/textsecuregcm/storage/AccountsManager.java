@@ -9,16 +9,13 @@ import static com.codahale.metrics.MetricRegistry.name;
 import static java.util.Objects.requireNonNull;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import io.lettuce.core.RedisException;
-import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
-import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
@@ -34,6 +31,7 @@ import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -53,7 +51,6 @@ import javax.annotation.Nullable;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.lang3.ObjectUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.signal.libsignal.protocol.IdentityKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,7 +72,6 @@ import org.whispersystems.textsecuregcm.securevaluerecovery.SecureValueRecoveryE
 import org.whispersystems.textsecuregcm.util.DestinationDeviceValidator;
 import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import org.whispersystems.textsecuregcm.util.Pair;
-import org.whispersystems.textsecuregcm.util.SystemMapper;
 import org.whispersystems.textsecuregcm.util.Util;
 import reactor.core.publisher.Flux;
 import reactor.core.scheduler.Scheduler;
@@ -91,11 +87,13 @@ public class AccountsManager {
   private static final Timer getByUsernameLinkHandleTimer = Metrics.timer(
       name(AccountsManager.class, "getByUsernameLinkHandle"));
   private static final Timer getByUuidTimer = Metrics.timer(name(AccountsManager.class, "getByUuid"));
+  private static final Timer getByUuidsTimer = Metrics.timer(name(AccountsManager.class, "getByUuids"));
   private static final Timer deleteTimer = Metrics.timer(name(AccountsManager.class, "delete"));
 
   private static final Timer redisSetTimer = Metrics.timer(name(AccountsManager.class, "redisSet"));
   private static final Timer redisPniGetTimer = Metrics.timer(name(AccountsManager.class, "redisPniGet"));
   private static final Timer redisUuidGetTimer = Metrics.timer(name(AccountsManager.class, "redisUuidGet"));
+  private static final Timer redisUuidsGetTimer = Metrics.timer(name(AccountsManager.class, "redisUuidsGet"));
   private static final Timer redisDeleteTimer = Metrics.timer(name(AccountsManager.class, "redisDelete"));
 
   private static final String CREATE_COUNTER_NAME       = name(AccountsManager.class, "createCounter");
@@ -108,6 +106,7 @@ public class AccountsManager {
   private final Accounts accounts;
   private final PhoneNumberIdentifiers phoneNumberIdentifiers;
   private final FaultTolerantRedisClusterClient cacheCluster;
+  private final AccountNearCache accountNearCache;
   private final AccountLockManager accountLockManager;
   private final KeysManager keysManager;
   private final MessagesManager messagesManager;
@@ -124,9 +123,6 @@ public class AccountsManager {
 
   private final Key verificationTokenKey;
 
-  private static final ObjectWriter ACCOUNT_REDIS_JSON_WRITER = SystemMapper.jsonMapper()
-      .writer(SystemMapper.excludingField(Account.class, List.of("uuid")));
-
   // An account that's used at least daily will get reset in the cache at least once per day when its "last seen"
   // timestamp updates; expiring entries after two days will help clear out "zombie" cache entries that are read
   // frequently (e.g. the account is in an active group and receives messages frequently), but aren't actively used by
@@ -158,6 +154,7 @@ public class AccountsManager {
   public AccountsManager(final Accounts accounts,
       final PhoneNumberIdentifiers phoneNumberIdentifiers,
       final FaultTolerantRedisClusterClient cacheCluster,
+      final AccountNearCache accountNearCache,
       final AccountLockManager accountLockManager,
       final KeysManager keysManager,
       final MessagesManager messagesManager,
@@ -175,6 +172,7 @@ public class AccountsManager {
     this.accounts = accounts;
     this.phoneNumberIdentifiers = phoneNumberIdentifiers;
     this.cacheCluster = cacheCluster;
+    this.accountNearCache = accountNearCache;
     this.accountLockManager = accountLockManager;
     this.keysManager = keysManager;
     this.messagesManager = messagesManager;
@@ -1088,6 +1086,50 @@ public class AccountsManager {
     );
   }
 
+  /**
+   * Retrieves the accounts with the given identifiers in bulk. Accounts are resolved from the near cache where possible,
+   * then from the account cache with a single multi-key read, and finally from the accounts table with batched reads;
+   * accounts loaded from the accounts table are written back to the account cache.
+   *
+   * @param uuids the identifiers of the accounts to retrieve
+   *
+   * @return a future that yields a map of account identifiers to accounts; identifiers with no corresponding account are
+   * absent from the map
+   */
+  public CompletableFuture<Map<UUID, Account>> getByAccountIdentifiers(final Collection<UUID> uuids) {
+    if (uuids.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
+    final Timer.Sample sample = Timer.start();
+
+    final Map<UUID, Account> accountsByIdentifier = new HashMap<>();
+    final List<UUID> uncachedIdentifiers = new ArrayList<>();
+
+    uuids.stream().distinct().forEach(uuid -> accountNearCache.get(uuid)
+        .flatMap(encodedAccount -> AccountCacheCodec.decode(encodedAccount, uuid))
+        .ifPresentOrElse(account -> accountsByIdentifier.put(uuid, account), () -> uncachedIdentifiers.add(uuid)));
+
+    return redisGetByAccountIdentifiersAsync(uncachedIdentifiers)
+        .thenCompose(accountsFromRedis -> {
+          accountsByIdentifier.putAll(accountsFromRedis);
+
+          final List<UUID> missingIdentifiers = uncachedIdentifiers.stream()
+              .filter(uuid -> !accountsFromRedis.containsKey(uuid))
+              .toList();
+
+          return accounts.getByAccountIdentifiers(missingIdentifiers)
+              .thenCompose(accountsFromAccounts -> CompletableFuture.allOf(accountsFromAccounts.values().stream()
+                      .map(this::redisSetAsync)
+                      .toArray(CompletableFuture[]::new))
+                  .thenApply(ignored -> {
+                    accountsByIdentifier.putAll(accountsFromAccounts);
+                    return accountsByIdentifier;
+                  }));
+        })
+        .whenComplete((ignored, throwable) -> sample.stop(getByUuidsTimer));
+  }
+
   public UUID getPhoneNumberIdentifier(String e164) {
     return phoneNumberIdentifiers.getPhoneNumberIdentifier(e164);
   }
@@ -1169,18 +1211,27 @@ public class AccountsManager {
     return "Account3::" + uuid.toString();
   }
 
+  private byte[] getBinaryAccountEntityKey(final UUID uuid) {
+    return getAccountEntityKey(uuid).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private boolean shouldWriteBinaryAccounts() {
+    return dynamicConfigurationManager.getConfiguration().getAccountCacheConfiguration().writeBinaryFormat();
+  }
+
   private void redisSet(Account account) {
     redisSetTimer.record(() -> {
       try {
-        final String accountJson = writeRedisAccountJson(account);
+        final byte[] encodedAccount = AccountCacheCodec.encode(account, shouldWriteBinaryAccounts());
 
-        cacheCluster.useCluster(connection -> {
-          final RedisAdvancedClusterCommands<String, String> commands = connection.sync();
+        cacheCluster.useCluster(connection ->
+            connection.sync().setex(getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS,
+                account.getUuid().toString()));
 
-          commands.setex(getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS,
-              account.getUuid().toString());
-          commands.setex(getAccountEntityKey(account.getUuid()), CACHE_TTL_SECONDS, accountJson);
-        });
+        cacheCluster.useBinaryCluster(connection ->
+            connection.sync().setex(getBinaryAccountEntityKey(account.getUuid()), CACHE_TTL_SECONDS, encodedAccount));
+
+        accountNearCache.update(account.getUuid(), account.getVersion(), encodedAccount);
       } catch (JsonProcessingException e) {
         throw new IllegalStateException(e);
       }
@@ -1188,21 +1239,23 @@ public class AccountsManager {
   }
 
   private CompletableFuture<Void> redisSetAsync(final Account account) {
-    final String accountJson;
+    final byte[] encodedAccount;
 
     try {
-      accountJson = writeRedisAccountJson(account);
+      encodedAccount = AccountCacheCodec.encode(account, shouldWriteBinaryAccounts());
     } catch (final JsonProcessingException e) {
       throw new UncheckedIOException(e);
     }
 
-    return cacheCluster.withCluster(connection -> CompletableFuture.allOf(
-        connection.async().setex(
-                getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS,
-                account.getUuid().toString())
-            .toCompletableFuture(),
-        connection.async().setex(getAccountEntityKey(account.getUuid()), CACHE_TTL_SECONDS, accountJson)
-            .toCompletableFuture()));
+    return CompletableFuture.allOf(
+            cacheCluster.withCluster(connection -> connection.async().setex(
+                    getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS,
+                    account.getUuid().toString())
+                .toCompletableFuture()),
+            cacheCluster.withBinaryCluster(connection -> connection.async()
+                .setex(getBinaryAccountEntityKey(account.getUuid()), CACHE_TTL_SECONDS, encodedAccount)
+                .toCompletableFuture()))
+        .thenCompose(ignored -> accountNearCache.update(account.getUuid(), account.getVersion(), encodedAccount));
   }
 
   private Optional<Account> checkRedisThenAccounts(
@@ -1272,11 +1325,22 @@ public class AccountsManager {
   }
 
   private Optional<Account> redisGetByAccountIdentifier(UUID uuid) {
+    final Optional<byte[]> maybeNearCachedAccount = accountNearCache.get(uuid);
+
+    if (maybeNearCachedAccount.isPresent()) {
+      return AccountCacheCodec.decode(maybeNearCachedAccount.get(), uuid);
+    }
+
     return redisUuidGetTimer.record(() -> {
       try {
-        final String json = cacheCluster.withCluster(connection -> connection.sync().get(getAccountEntityKey(uuid)));
+        final byte[] encodedAccount =
+            cacheCluster.withBinaryCluster(connection -> connection.sync().get(getBinaryAccountEntityKey(uuid)));
 
-        return parseAccountJson(json, uuid);
+        return AccountCacheCodec.decode(encodedAccount, uuid)
+            .map(account -> {
+              accountNearCache.put(uuid, account.getVersion(), encodedAccount);
+              return account;
+            });
       } catch (final RedisException e) {
         logger.warn("Redis failure", e);
         return Optional.empty();
@@ -1285,8 +1349,18 @@ public class AccountsManager {
   }
 
   private CompletableFuture<Optional<Account>> redisGetByAccountIdentifierAsync(final UUID uuid) {
-    return cacheCluster.withCluster(connection -> connection.async().get(getAccountEntityKey(uuid)))
-        .thenApply(accountJson -> parseAccountJson(accountJson, uuid))
+    final Optional<byte[]> maybeNearCachedAccount = accountNearCache.get(uuid);
+
+    if (maybeNearCachedAccount.isPresent()) {
+      return CompletableFuture.completedFuture(AccountCacheCodec.decode(maybeNearCachedAccount.get(), uuid));
+    }
+
+    return cacheCluster.withBinaryCluster(connection -> connection.async().get(getBinaryAccountEntityKey(uuid)))
+        .thenApply(encodedAccount -> AccountCacheCodec.decode(encodedAccount, uuid)
+            .map(account -> {
+              accountNearCache.put(uuid, account.getVersion(), encodedAccount);
+              return account;
+            }))
         .exceptionally(throwable -> {
           logger.warn("Failed to retrieve account from Redis", throwable);
           return Optional.empty();
@@ -1294,37 +1368,47 @@ public class AccountsManager {
         .toCompletableFuture();
   }
 
-  @VisibleForTesting
-  static Optional<Account> parseAccountJson(@Nullable final String accountJson, final UUID uuid) {
-    try {
-      if (StringUtils.isNotBlank(accountJson)) {
-        Account account = SystemMapper.jsonMapper().readValue(accountJson, Account.class);
-        account.setUuid(uuid);
+  private CompletableFuture<Map<UUID, Account>> redisGetByAccountIdentifiersAsync(final List<UUID> uuids) {
+    if (uuids.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
 
-        if (account.getPhoneNumberIdentifier() == null) {
-          logger.warn("Account {} loaded from Redis is missing a PNI", uuid);
-        }
+    final Timer.Sample sample = Timer.start();
+    final byte[][] keys = uuids.stream().map(this::getBinaryAccountEntityKey).toArray(byte[][]::new);
 
-        return Optional.of(account);
-      }
+    // Cluster connections split a multi-key read into one MGET per slot and return the values in request order
+    return cacheCluster.withBinaryCluster(connection -> connection.async().mget(keys))
+        .thenApply(keyValues -> {
+          final Map<UUID, Account> accountsByIdentifier = new HashMap<>();
 
-      return Optional.empty();
-    } catch (final IOException e) {
-      logger.warn("Deserialization error", e);
-      return Optional.empty();
-    }
-  }
+          for (int i = 0; i < keyValues.size(); i++) {
+            final UUID uuid = uuids.get(i);
+            final byte[] encodedAccount = keyValues.get(i).getValueOrElse(null);
 
-  @VisibleForTesting
-  static String writeRedisAccountJson(final Account account) throws JsonProcessingException {
-    return ACCOUNT_REDIS_JSON_WRITER.writeValueAsString(account);
+            AccountCacheCodec.decode(encodedAccount, uuid).ifPresent(account -> {
+              accountNearCache.put(uuid, account.getVersion(), encodedAccount);
+              accountsByIdentifier.put(uuid, account);
+            });
+          }
+
+          return accountsByIdentifier;
+        })
+        .exceptionally(throwable -> {
+          logger.warn("Failed to retrieve accounts from Redis", throwable);
+          return Collections.emptyMap();
+        })
+        .whenComplete((ignored, throwable) -> sample.stop(redisUuidsGetTimer))
+        .toCompletableFuture();
   }
 
   private void redisDelete(final Account account) {
-    redisDeleteTimer.record(() ->
-        cacheCluster.useCluster(connection ->
-            connection.sync().del(getAccountMapKey(account.getPhoneNumberIdentifier().toString()),
-                getAccountEntityKey(account.getUuid()))));
+    redisDeleteTimer.record(() -> {
+      cacheCluster.useCluster(connection ->
+          connection.sync().del(getAccountMapKey(account.getPhoneNumberIdentifier().toString()),
+              getAccountEntityKey(account.getUuid())));
+
+      accountNearCache.invalidate(account.getUuid());
+    });
   }
 
   private CompletableFuture<Void> redisDeleteAsync(final Account account) {
@@ -1337,6 +1421,7 @@ public class AccountsManager {
 
     return cacheCluster.withCluster(connection -> connection.async().del(keysToDelete))
         .toCompletableFuture()
+        .thenCompose(ignored -> accountNearCache.invalidate(account.getUuid()))
         .whenComplete((ignoredResult, ignoredException) -> sample.stop(redisDeleteTimer))
         .thenRun(Util.NOOP);
   }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static io.micrometer.core.instrument.Metrics.counter;
+
+import io.micrometer.core.instrument.Counter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+/**
+ * A DynamoDB batch reader asynchronously retrieves batches of items from a single table, retrying unprocessed keys with
+ * jittered exponential backoff.
+ */
+class DynamoDbBatchReader {
+
+  private final DynamoDbAsyncClient dynamoDbAsyncClient;
+
+  private final Counter batchGetItemsUnprocessed;
+
+  /**
+   * The maximum number of keys that may be requested in a single {@code BatchGetItem} request
+   */
+  static final int DYNAMO_DB_MAX_BATCH_GET_SIZE = 100;
+
+  // Reads are generally on a request path, so we give up much sooner than we would for batch writes
+  private static final int MAX_ATTEMPTS_TO_COMPLETE_BATCH_GET = 5;
+
+  private static final Duration BATCH_GET_RETRY_MIN_BACKOFF = Duration.ofMillis(25);
+  private static final Duration BATCH_GET_RETRY_MAX_BACKOFF = Duration.ofMillis(500);
+
+  private static final Logger logger = LoggerFactory.getLogger(DynamoDbBatchReader.class);
+
+  /**
+   * Constructs a new batch reader.
+   *
+   * @param dynamoDbAsyncClient the client with which to read items
+   * @param metricsClass the class under whose name batch read metrics should be reported
+   */
+  DynamoDbBatchReader(final DynamoDbAsyncClient dynamoDbAsyncClient, final Class<?> metricsClass) {
+    this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+
+    this.batchGetItemsUnprocessed = counter(name(metricsClass, "batchGetItemsUnprocessed"));
+  }
+
+  /**
+   * Asynchronously retrieves the items with the given keys, retrying any unprocessed keys until all keys have been
+   * processed or the maximum number of attempts has been reached.
+   *
+   * @param tableName the name of the table from which to retrieve items
+   * @param keysAndAttributes the keys to retrieve and any read options; must not contain more than
+   *                          {@link #DYNAMO_DB_MAX_BATCH_GET_SIZE} keys
+   *
+   * @return a flux of all items found for the given keys; fails if any keys remain unprocessed after the final attempt
+   */
+  Flux<Map<String, AttributeValue>> getUntilComplete(final String tableName, final KeysAndAttributes keysAndAttributes) {
+    final AtomicReference<KeysAndAttributes> remainingKeys = new AtomicReference<>(keysAndAttributes);
+    final List<Map<String, AttributeValue>> items = Collections.synchronizedList(new ArrayList<>());
+
+    return Mono.defer(() -> Mono.fromFuture(dynamoDbAsyncClient.batchGetItem(BatchGetItemRequest.builder()
+                .requestItems(Map.of(tableName, remainingKeys.get()))
+                .build())))
+        .doOnNext(response -> {
+          items.addAll(response.responses().getOrDefault(tableName, Collections.emptyList()));
+
+          final KeysAndAttributes unprocessedKeys =
+              response.hasUnprocessedKeys() ? response.unprocessedKeys().get(tableName) : null;
+
+          if (unprocessedKeys != null && unprocessedKeys.hasKeys() && !unprocessedKeys.keys().isEmpty()) {
+            remainingKeys.set(unprocessedKeys);
+            throw new UnprocessedKeysException();
+          }
+        })
+        .retryWhen(Retry.backoff(MAX_ATTEMPTS_TO_COMPLETE_BATCH_GET, BATCH_GET_RETRY_MIN_BACKOFF)
+            .maxBackoff(BATCH_GET_RETRY_MAX_BACKOFF)
+            .filter(throwable -> throwable instanceof UnprocessedKeysException)
+            .onRetryExhaustedThrow((spec, retrySignal) -> {
+              final int unprocessedKeys = remainingKeys.get().keys().size();
+              logger.warn("Attempt count ({}) reached max before completing batch get from dynamo. {} unprocessed keys remain.",
+                  retrySignal.totalRetries(), unprocessedKeys);
+              batchGetItemsUnprocessed.increment(unprocessedKeys);
+
+              return new UnprocessedKeysException();
+            }))
+        .thenMany(Flux.defer(() -> Flux.fromIterable(items)));
+  }
+
+  private static class UnprocessedKeysException extends RuntimeException {
+
+    UnprocessedKeysException() {
+      super("Batch get left unprocessed keys", null, false, false);
+    }
+  }
+}
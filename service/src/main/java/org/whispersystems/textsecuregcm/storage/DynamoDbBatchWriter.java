@@ -0,0 +1,125 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static io.micrometer.core.instrument.Metrics.counter;
+import static io.micrometer.core.instrument.Metrics.summary;
+import static io.micrometer.core.instrument.Metrics.timer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+/**
+ * A DynamoDB batch writer asynchronously applies batches of write requests, retrying unprocessed items with jittered
+ * exponential backoff and recording the capacity consumed by each batch.
+ */
+public class DynamoDbBatchWriter {
+
+  private final DynamoDbAsyncClient dynamoDbAsyncClient;
+
+  private final Timer batchWriteItemsFirstPass;
+  private final Timer batchWriteItemsRetryPass;
+  private final Counter batchWriteItemsUnprocessed;
+  private final DistributionSummary batchWriteItemsConsumedCapacity;
+
+  private static final int MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE = 25;  // This was arbitrarily chosen and may be entirely too high.
+
+  private static final Duration BATCH_WRITE_RETRY_MIN_BACKOFF = Duration.ofMillis(25);
+  private static final Duration BATCH_WRITE_RETRY_MAX_BACKOFF = Duration.ofSeconds(1);
+
+  private static final Logger logger = LoggerFactory.getLogger(DynamoDbBatchWriter.class);
+
+  /**
+   * Constructs a new batch writer.
+   *
+   * @param dynamoDbAsyncClient the client with which to write items
+   * @param metricsClass the class under whose name batch write metrics should be reported
+   */
+  public DynamoDbBatchWriter(final DynamoDbAsyncClient dynamoDbAsyncClient, final Class<?> metricsClass) {
+    this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+
+    this.batchWriteItemsFirstPass = timer(name(metricsClass, "batchWriteItems"), "firstAttempt", "true");
+    this.batchWriteItemsRetryPass = timer(name(metricsClass, "batchWriteItems"), "firstAttempt", "false");
+    this.batchWriteItemsUnprocessed = counter(name(metricsClass, "batchWriteItemsUnprocessed"));
+    this.batchWriteItemsConsumedCapacity = summary(name(metricsClass, "batchWriteItemsConsumedCapacity"));
+  }
+
+  /**
+   * Asynchronously writes the given items, retrying any unprocessed items until all items have been written or the
+   * maximum number of attempts has been reached.
+   *
+   * @param items the items to write, keyed by table name; must not contain more than
+   *              {@link AbstractDynamoDbStore#DYNAMO_DB_MAX_BATCH_SIZE} items in total
+   *
+   * @return a future that completes when all items have been written or fails if any items remain unprocessed after
+   * the final attempt
+   */
+  public CompletableFuture<Void> writeUntilComplete(final Map<String, List<WriteRequest>> items) {
+    final AtomicReference<Map<String, List<WriteRequest>>> remainingItems = new AtomicReference<>(items);
+    final AtomicBoolean firstAttempt = new AtomicBoolean(true);
+
+    return Mono.defer(() -> {
+          final Timer timer = firstAttempt.getAndSet(false) ? batchWriteItemsFirstPass : batchWriteItemsRetryPass;
+          final Timer.Sample sample = Timer.start();
+
+          return Mono.fromFuture(dynamoDbAsyncClient.batchWriteItem(BatchWriteItemRequest.builder()
+                  .requestItems(remainingItems.get())
+                  .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                  .build()))
+              .doOnTerminate(() -> sample.stop(timer));
+        })
+        .doOnNext(response -> {
+          response.consumedCapacity().stream()
+              .map(ConsumedCapacity::capacityUnits)
+              .filter(Objects::nonNull)
+              .forEach(batchWriteItemsConsumedCapacity::record);
+
+          if (!response.unprocessedItems().isEmpty()) {
+            remainingItems.set(response.unprocessedItems());
+            throw new UnprocessedItemsException();
+          }
+        })
+        .retryWhen(Retry.backoff(MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE, BATCH_WRITE_RETRY_MIN_BACKOFF)
+            .maxBackoff(BATCH_WRITE_RETRY_MAX_BACKOFF)
+            .filter(throwable -> throwable instanceof UnprocessedItemsException)
+            .onRetryExhaustedThrow((spec, retrySignal) -> {
+              final int totalItems = remainingItems.get().values().stream().mapToInt(List::size).sum();
+              logger.error(
+                  "Attempt count ({}) reached max before applying all batch writes to dynamo. {} unprocessed items remain.",
+                  retrySignal.totalRetries(), totalItems);
+              batchWriteItemsUnprocessed.increment(totalItems);
+
+              return new UnprocessedItemsException();
+            }))
+        .then()
+        .toFuture();
+  }
+
+  private static class UnprocessedItemsException extends RuntimeException {
+
+    UnprocessedItemsException() {
+      super("Batch write left unprocessed items", null, false, false);
+    }
+  }
+}
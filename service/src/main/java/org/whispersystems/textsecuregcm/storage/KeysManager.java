@@ -5,14 +5,19 @@
 
 package org.whispersystems.textsecuregcm.storage;
 
-import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.entities.ECPreKey;
 import org.whispersystems.textsecuregcm.entities.ECSignedPreKey;
 import org.whispersystems.textsecuregcm.entities.KEMSignedPreKey;
+import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
 
@@ -22,15 +27,40 @@ public class KeysManager {
   private final SingleUseKEMPreKeyStore pqPreKeys;
   private final RepeatedUseECSignedPreKeyStore ecSignedPreKeys;
   private final RepeatedUseKEMSignedPreKeyStore pqLastResortKeys;
+  private final SingleUsePreKeyPool<ECPreKey> ecPreKeyPool;
+  private final SingleUsePreKeyPool<KEMSignedPreKey> pqPreKeyPool;
+
+  private static final String TAKE_DEVICE_PRE_KEYS_TIMER_NAME =
+      MetricsUtil.name(KeysManager.class, "takeDevicePreKeys");
+
+  /**
+   * The pre-keys taken for a single device.
+   *
+   * @param deviceId the identifier of the device to which the pre-keys belong
+   * @param ecSignedPreKey the device's signed EC pre-key, if any
+   * @param ecPreKey a single-use EC pre-key, if any remained for the device
+   * @param kemSignedPreKey a single-use KEM pre-key or, if none remained, the device's last-resort KEM pre-key
+   */
+  public record DevicePreKeys(byte deviceId,
+                              Optional<ECSignedPreKey> ecSignedPreKey,
+                              Optional<ECPreKey> ecPreKey,
+                              Optional<KEMSignedPreKey> kemSignedPreKey) {
+  }
 
   public KeysManager(
       final DynamoDbAsyncClient dynamoDbAsyncClient,
       final String ecTableName,
       final String pqTableName,
       final String ecSignedPreKeysTableName,
-      final String pqLastResortTableName) {
+      final String pqLastResortTableName,
+      final FaultTolerantRedisClusterClient cacheCluster,
+      final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager) {
     this.ecPreKeys = new SingleUseECPreKeyStore(dynamoDbAsyncClient, ecTableName);
     this.pqPreKeys = new SingleUseKEMPreKeyStore(dynamoDbAsyncClient, pqTableName);
+    this.ecPreKeyPool =
+        new SingleUsePreKeyPool<>(ecPreKeys, "ec", ECPreKey.class, cacheCluster, dynamicConfigurationManager);
+    this.pqPreKeyPool =
+        new SingleUsePreKeyPool<>(pqPreKeys, "kem", KEMSignedPreKey.class, cacheCluster, dynamicConfigurationManager);
     this.ecSignedPreKeys = new RepeatedUseECSignedPreKeyStore(dynamoDbAsyncClient, ecSignedPreKeysTableName);
     this.pqLastResortKeys = new RepeatedUseKEMSignedPreKeyStore(dynamoDbAsyncClient, pqLastResortTableName);
   }
@@ -87,20 +117,22 @@ public class KeysManager {
 
   public CompletableFuture<Void> storeEcOneTimePreKeys(final UUID identifier, final byte deviceId,
           final List<ECPreKey> preKeys) {
-    return ecPreKeys.store(identifier, deviceId, preKeys);
+    return ecPreKeys.store(identifier, deviceId, preKeys)
+        .thenCompose(ignored -> ecPreKeyPool.clear(identifier, deviceId));
   }
 
   public CompletableFuture<Void> storeKemOneTimePreKeys(final UUID identifier, final byte deviceId,
           final List<KEMSignedPreKey> preKeys) {
-    return pqPreKeys.store(identifier, deviceId, preKeys);
+    return pqPreKeys.store(identifier, deviceId, preKeys)
+        .thenCompose(ignored -> pqPreKeyPool.clear(identifier, deviceId));
   }
 
   public CompletableFuture<Optional<ECPreKey>> takeEC(final UUID identifier, final byte deviceId) {
-    return ecPreKeys.take(identifier, deviceId);
+    return ecPreKeyPool.take(identifier, deviceId);
   }
 
   public CompletableFuture<Optional<KEMSignedPreKey>> takePQ(final UUID identifier, final byte deviceId) {
-    return pqPreKeys.take(identifier, deviceId)
+    return pqPreKeyPool.take(identifier, deviceId)
         .thenCompose(maybeSingleUsePreKey -> maybeSingleUsePreKey
             .map(singleUsePreKey -> CompletableFuture.completedFuture(maybeSingleUsePreKey))
             .orElseGet(() -> pqLastResortKeys.find(identifier, deviceId)));
@@ -114,29 +146,75 @@ public class KeysManager {
     return ecSignedPreKeys.find(identifier, deviceId);
   }
 
+  public CompletableFuture<Map<Byte, ECSignedPreKey>> getEcSignedPreKeys(final UUID identifier,
+      final List<Byte> deviceIds) {
+
+    return ecSignedPreKeys.find(identifier, deviceIds);
+  }
+
+  /**
+   * Takes pre-keys for all of the given devices associated with the same account/identity. Signed pre-keys for all
+   * devices are fetched with a single batch read, and single-use pre-keys are taken for all devices concurrently.
+   *
+   * @param identifier the identifier for the account/identity with which the target devices are associated
+   * @param deviceIds the identifiers of the devices for which to take pre-keys
+   *
+   * @return a future that yields the pre-keys for each of the given devices in the order in which the devices were given
+   */
+  public CompletableFuture<List<DevicePreKeys>> takeDevicePreKeys(final UUID identifier, final List<Byte> deviceIds) {
+    final Timer.Sample sample = Timer.start();
+
+    final CompletableFuture<Map<Byte, ECSignedPreKey>> ecSignedPreKeysFuture =
+        getEcSignedPreKeys(identifier, deviceIds);
+
+    final List<CompletableFuture<DevicePreKeys>> devicePreKeysFutures = deviceIds.stream()
+        .map(deviceId -> {
+          final CompletableFuture<Optional<ECPreKey>> ecPreKeyFuture = takeEC(identifier, deviceId);
+          final CompletableFuture<Optional<KEMSignedPreKey>> kemSignedPreKeyFuture = takePQ(identifier, deviceId);
+
+          return CompletableFuture.allOf(ecSignedPreKeysFuture, ecPreKeyFuture, kemSignedPreKeyFuture)
+              .thenApply(ignored -> new DevicePreKeys(deviceId,
+                  Optional.ofNullable(ecSignedPreKeysFuture.join().get(deviceId)),
+                  ecPreKeyFuture.join(),
+                  kemSignedPreKeyFuture.join()));
+        })
+        .toList();
+
+    return CompletableFuture.allOf(devicePreKeysFutures.toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> devicePreKeysFutures.stream().map(CompletableFuture::join).toList())
+        .whenComplete((ignored, throwable) -> sample.stop(Timer.builder(TAKE_DEVICE_PRE_KEYS_TIMER_NAME)
+            .tags("deviceCount", String.valueOf(deviceIds.size()))
+            .publishPercentileHistogram(true)
+            .register(Metrics.globalRegistry)));
+  }
+
   public CompletableFuture<List<Byte>> getPqEnabledDevices(final UUID identifier) {
     return pqLastResortKeys.getDeviceIdsWithKeys(identifier).collectList().toFuture();
   }
 
   public CompletableFuture<Integer> getEcCount(final UUID identifier, final byte deviceId) {
-    return ecPreKeys.getCount(identifier, deviceId);
+    return ecPreKeys.getCount(identifier, deviceId)
+        .thenCombine(ecPreKeyPool.getCount(identifier, deviceId), Integer::sum);
   }
 
   public CompletableFuture<Integer> getPqCount(final UUID identifier, final byte deviceId) {
-    return pqPreKeys.getCount(identifier, deviceId);
+    return pqPreKeys.getCount(identifier, deviceId)
+        .thenCombine(pqPreKeyPool.getCount(identifier, deviceId), Integer::sum);
   }
 
   public CompletableFuture<Void> deleteSingleUsePreKeys(final UUID identifier) {
+    // Pools must be cleared after keys are removed from the backing stores so that a concurrent refill can't repopulate
+    // them with keys claimed in the meantime
     return CompletableFuture.allOf(
-        ecPreKeys.delete(identifier),
-        pqPreKeys.delete(identifier)
+        ecPreKeys.delete(identifier).thenCompose(ignored -> ecPreKeyPool.clear(identifier)),
+        pqPreKeys.delete(identifier).thenCompose(ignored -> pqPreKeyPool.clear(identifier))
     );
   }
 
   public CompletableFuture<Void> deleteSingleUsePreKeys(final UUID accountUuid, final byte deviceId) {
     return CompletableFuture.allOf(
-            ecPreKeys.delete(accountUuid, deviceId),
-            pqPreKeys.delete(accountUuid, deviceId)
+            ecPreKeys.delete(accountUuid, deviceId).thenCompose(ignored -> ecPreKeyPool.clear(accountUuid, deviceId)),
+            pqPreKeys.delete(accountUuid, deviceId).thenCompose(ignored -> pqPreKeyPool.clear(accountUuid, deviceId))
     );
   }
 }
@@ -15,14 +15,24 @@ import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessagePersisterConfiguration;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.util.Util;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import software.amazon.awssdk.services.dynamodb.model.ItemCollectionSizeLimitExceededException;
 
 public class MessagePersister implements Managed {
@@ -30,17 +40,26 @@ public class MessagePersister implements Managed {
   private final MessagesCache messagesCache;
   private final MessagesManager messagesManager;
   private final AccountsManager accountsManager;
+  private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
+  private final Scheduler persistQueueScheduler;
 
   private final Duration persistDelay;
 
   private final Thread[] workerThreads;
   private volatile boolean running;
 
+  private volatile double memoryUtilization;
+  private volatile boolean underMemoryPressure;
+  private volatile Instant memoryUtilizationLastChecked = Instant.EPOCH;
+
   private final Timer getQueuesTimer = Metrics.timer(name(MessagePersister.class, "getQueues"));
   private final Timer persistQueueTimer = Metrics.timer(name(MessagePersister.class, "persistQueue"));
   private final Counter persistQueueExceptionMeter = Metrics.counter(
       name(MessagePersister.class, "persistQueueException"));
   private final Counter oversizedQueueCounter = Metrics.counter(name(MessagePersister.class, "persistQueueOversized"));
+  private final Counter persistedMessageCounter = Metrics.counter(name(MessagePersister.class, "persistedMessages"));
+  private final Timer slotLagTimer = Metrics.timer(name(MessagePersister.class, "slotLag"));
+  private final Timer oldestQueueAgeTimer = Metrics.timer(name(MessagePersister.class, "oldestQueueAge"));
   private final DistributionSummary queueCountDistributionSummery = DistributionSummary.builder(
           name(MessagePersister.class, "queueCount"))
       .publishPercentiles(0.5, 0.75, 0.95, 0.99, 0.999)
@@ -56,6 +75,12 @@ public class MessagePersister implements Managed {
   static final int MESSAGE_BATCH_LIMIT = 100;
 
   private static final long EXCEPTION_PAUSE_MILLIS = Duration.ofSeconds(3).toMillis();
+  private static final long IDLE_PAUSE_MILLIS = 100;
+  private static final long UNDER_PRESSURE_IDLE_PAUSE_MILLIS = 10;
+
+  private static final Duration MEMORY_UTILIZATION_CHECK_INTERVAL = Duration.ofSeconds(10);
+
+  private static final String PRESSURE_COUNTER_NAME = name(MessagePersister.class, "pressure");
 
   private static final int CONSECUTIVE_EMPTY_CACHE_REMOVAL_LIMIT = 3;
 
@@ -64,12 +89,15 @@ public class MessagePersister implements Managed {
   public MessagePersister(final MessagesCache messagesCache, final MessagesManager messagesManager,
       final AccountsManager accountsManager,
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager, final Duration persistDelay,
-      final int dedicatedProcessWorkerThreadCount
+      final int dedicatedProcessWorkerThreadCount,
+      final ExecutorService persistQueueExecutor
   ) {
 
     this.messagesCache = messagesCache;
     this.messagesManager = messagesManager;
     this.accountsManager = accountsManager;
+    this.dynamicConfigurationManager = dynamicConfigurationManager;
+    this.persistQueueScheduler = Schedulers.fromExecutorService(persistQueueExecutor, "persistQueue");
     this.persistDelay = persistDelay;
     this.workerThreads = new Thread[dedicatedProcessWorkerThreadCount];
 
@@ -83,7 +111,7 @@ public class MessagePersister implements Managed {
               queueCountDistributionSummery.record(queuesPersisted);
 
               if (queuesPersisted == 0) {
-                Util.sleep(100);
+                Util.sleep(underMemoryPressure ? UNDER_PRESSURE_IDLE_PAUSE_MILLIS : IDLE_PAUSE_MILLIS);
               }
             } catch (final Throwable t) {
               logger.warn("Failed to persist queues", t);
@@ -95,6 +123,8 @@ public class MessagePersister implements Managed {
         }
       }, "MessagePersisterWorker-" + i);
     }
+
+    Metrics.gauge(name(MessagePersister.class, "memoryUtilization"), this, persister -> persister.memoryUtilization);
   }
 
   @VisibleForTesting
@@ -126,39 +156,58 @@ public class MessagePersister implements Managed {
 
   @VisibleForTesting
   int persistNextQueues(final Instant currentTime) {
+    final DynamicMessagePersisterConfiguration configuration =
+        dynamicConfigurationManager.getConfiguration().getMessagePersisterConfiguration();
+
     final int slot = messagesCache.getNextSlotToPersist();
+    final Optional<Instant> maybeOldestQueueTimestamp = messagesCache.getOldestQueueToPersistTimestamp(slot);
+
+    maybeOldestQueueTimestamp.ifPresent(oldestQueueTimestamp ->
+        oldestQueueAgeTimer.record(Duration.between(oldestQueueTimestamp, currentTime)));
+
+    final boolean memoryPressure = checkMemoryPressure(currentTime, configuration);
+    final boolean queueAgePressure = configuration.getQueueAgePressureThreshold()
+        .flatMap(threshold -> maybeOldestQueueTimestamp.map(oldestQueueTimestamp ->
+            oldestQueueTimestamp.isBefore(currentTime.minus(threshold))))
+        .orElse(false);
+
+    final Duration effectivePersistDelay;
+    final int queueConcurrency;
+
+    if (memoryPressure || queueAgePressure) {
+      Metrics.counter(PRESSURE_COUNTER_NAME,
+              "memory", String.valueOf(memoryPressure),
+              "queueAge", String.valueOf(queueAgePressure))
+          .increment();
+
+      effectivePersistDelay = configuration.getPressurePersistDelay()
+          .filter(pressurePersistDelay -> pressurePersistDelay.compareTo(persistDelay) < 0)
+          .orElse(persistDelay);
+
+      queueConcurrency = Math.max(configuration.getQueueConcurrency(), configuration.getPressureQueueConcurrency());
+    } else {
+      effectivePersistDelay = persistDelay;
+      queueConcurrency = configuration.getQueueConcurrency();
+    }
+
+    final Instant maxTime = currentTime.minus(effectivePersistDelay);
+
+    // How far past its persistence deadline is the oldest queue in this slot?
+    maybeOldestQueueTimestamp
+        .filter(oldestQueueTimestamp -> oldestQueueTimestamp.isBefore(maxTime))
+        .ifPresent(oldestQueueTimestamp -> slotLagTimer.record(Duration.between(oldestQueueTimestamp, maxTime)));
 
     List<String> queuesToPersist;
     int queuesPersisted = 0;
 
     do {
       queuesToPersist = getQueuesTimer.record(
-          () -> messagesCache.getQueuesToPersist(slot, currentTime.minus(persistDelay), QUEUE_BATCH_LIMIT));
-
-      for (final String queue : queuesToPersist) {
-        final UUID accountUuid = MessagesCache.getAccountUuidFromQueueName(queue);
-        final byte deviceId = MessagesCache.getDeviceIdFromQueueName(queue);
-
-        final Optional<Account> maybeAccount = accountsManager.getByAccountIdentifier(accountUuid);
-        if (maybeAccount.isEmpty()) {
-          logger.error("No account record found for account {}", accountUuid);
-          continue;
-        }
-        final Optional<Device> maybeDevice = maybeAccount.flatMap(account -> account.getDevice(deviceId));
-        if (maybeDevice.isEmpty()) {
-          logger.error("Account {} does not have a device with id {}", accountUuid, deviceId);
-          continue;
-        }
-        try {
-          persistQueue(maybeAccount.get(), maybeDevice.get());
-        } catch (final Exception e) {
-          persistQueueExceptionMeter.increment();
-          logger.warn("Failed to persist queue {}::{}; will schedule for retry", accountUuid, deviceId, e);
+          () -> messagesCache.getQueuesToPersist(slot, maxTime, QUEUE_BATCH_LIMIT));
 
-          messagesCache.addQueueToPersist(accountUuid, deviceId);
-
-          Util.sleep(EXCEPTION_PAUSE_MILLIS);
-        }
+      if (queueConcurrency > 1) {
+        persistQueuesConcurrently(queuesToPersist, queueConcurrency);
+      } else {
+        persistQueuesSequentially(queuesToPersist);
       }
 
       queuesPersisted += queuesToPersist.size();
@@ -167,6 +216,129 @@ public class MessagePersister implements Managed {
     return queuesPersisted;
   }
 
+  /**
+   * Checks whether any node in the messages cluster is using more than the configured fraction of its available
+   * memory. Memory utilization is sampled at most once per {@link #MEMORY_UTILIZATION_CHECK_INTERVAL}; between samples,
+   * the most recent sample is used.
+   */
+  private boolean checkMemoryPressure(final Instant currentTime,
+      final DynamicMessagePersisterConfiguration configuration) {
+
+    if (currentTime.isAfter(memoryUtilizationLastChecked.plus(MEMORY_UTILIZATION_CHECK_INTERVAL))) {
+      memoryUtilizationLastChecked = currentTime;
+
+      try {
+        memoryUtilization = messagesCache.getMaxMemoryUtilization();
+      } catch (final Exception e) {
+        logger.warn("Failed to check messages cluster memory utilization", e);
+      }
+    }
+
+    underMemoryPressure = memoryUtilization > configuration.getMemoryPressureThreshold();
+    return underMemoryPressure;
+  }
+
+  private void persistQueuesSequentially(final List<String> queuesToPersist) {
+    for (final String queue : queuesToPersist) {
+      final UUID accountUuid = MessagesCache.getAccountUuidFromQueueName(queue);
+      final byte deviceId = MessagesCache.getDeviceIdFromQueueName(queue);
+
+      if (!tryPersistQueue(accountUuid, deviceId, accountsManager.getByAccountIdentifier(accountUuid))) {
+        Util.sleep(EXCEPTION_PAUSE_MILLIS);
+      }
+    }
+  }
+
+  /**
+   * Persists the given queues concurrently. Accounts for all queues are fetched up front, and a failure to persist one
+   * queue does not delay the persistence of any other queue; failed queues are rescheduled and will not be retried
+   * until they become eligible for persistence again.
+   */
+  private void persistQueuesConcurrently(final List<String> queuesToPersist, final int queueConcurrency) {
+    if (queuesToPersist.isEmpty()) {
+      return;
+    }
+
+    final Map<UUID, Optional<Account>> prefetchedAccounts = prefetchAccounts(queuesToPersist);
+
+    final long failedQueues = Flux.fromIterable(queuesToPersist)
+        .flatMap(queue -> Mono.fromCallable(() -> {
+              final UUID accountUuid = MessagesCache.getAccountUuidFromQueueName(queue);
+              final byte deviceId = MessagesCache.getDeviceIdFromQueueName(queue);
+
+              final Optional<Account> maybeAccount = prefetchedAccounts.containsKey(accountUuid)
+                  ? prefetchedAccounts.get(accountUuid)
+                  : accountsManager.getByAccountIdentifier(accountUuid);
+
+              return tryPersistQueue(accountUuid, deviceId, maybeAccount);
+            })
+            .onErrorResume(throwable -> {
+              logger.warn("Failed to persist queue {}", queue, throwable);
+              return Mono.just(false);
+            })
+            .subscribeOn(persistQueueScheduler), queueConcurrency)
+        .filter(persisted -> !persisted)
+        .count()
+        .blockOptional()
+        .orElse(0L);
+
+    // If every queue failed, something is probably wrong with a shared dependency; back off before trying again
+    if (failedQueues == queuesToPersist.size()) {
+      Util.sleep(EXCEPTION_PAUSE_MILLIS);
+    }
+  }
+
+  /**
+   * Fetches the accounts for all of the given queues in bulk. Accounts that don't exist map to an empty
+   * {@code Optional}; if the accounts can't be fetched, the returned map is empty and callers should look up accounts
+   * individually.
+   */
+  private Map<UUID, Optional<Account>> prefetchAccounts(final List<String> queues) {
+    final List<UUID> accountUuids = queues.stream()
+        .map(MessagesCache::getAccountUuidFromQueueName)
+        .distinct()
+        .toList();
+
+    try {
+      final Map<UUID, Account> accountsByUuid = accountsManager.getByAccountIdentifiers(accountUuids).join();
+
+      return accountUuids.stream()
+          .collect(Collectors.toMap(Function.identity(),
+              accountUuid -> Optional.ofNullable(accountsByUuid.get(accountUuid))));
+    } catch (final Exception e) {
+      logger.warn("Failed to prefetch accounts", e);
+      return Collections.emptyMap();
+    }
+  }
+
+  /**
+   * Attempts to persist a single queue, rescheduling it for persistence if anything goes wrong.
+   *
+   * @return {@code false} if the queue could not be persisted and has been rescheduled or {@code true} otherwise
+   */
+  private boolean tryPersistQueue(final UUID accountUuid, final byte deviceId, final Optional<Account> maybeAccount) {
+    if (maybeAccount.isEmpty()) {
+      logger.error("No account record found for account {}", accountUuid);
+      return true;
+    }
+    final Optional<Device> maybeDevice = maybeAccount.flatMap(account -> account.getDevice(deviceId));
+    if (maybeDevice.isEmpty()) {
+      logger.error("Account {} does not have a device with id {}", accountUuid, deviceId);
+      return true;
+    }
+    try {
+      persistQueue(maybeAccount.get(), maybeDevice.get());
+      return true;
+    } catch (final Exception e) {
+      persistQueueExceptionMeter.increment();
+      logger.warn("Failed to persist queue {}::{}; will schedule for retry", accountUuid, deviceId, e);
+
+      messagesCache.addQueueToPersist(accountUuid, deviceId);
+
+      return false;
+    }
+  }
+
   @VisibleForTesting
   void persistQueue(final Account account, final Device device) throws MessagePersistenceException {
     final UUID accountUuid = account.getUuid();
@@ -187,6 +359,7 @@ public class MessagePersister implements Managed {
 
         int messagesRemovedFromCache = messagesManager.persistMessages(accountUuid, device, messages);
         messageCount += messages.size();
+        persistedMessageCounter.increment(messages.size());
 
         if (messagesRemovedFromCache == 0) {
           consecutiveEmptyCacheRemovals += 1;
@@ -11,11 +11,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.dropwizard.lifecycle.Managed;
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.ZAddArgs;
 import io.lettuce.core.cluster.SlotHash;
 import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
@@ -26,6 +28,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
@@ -52,7 +55,6 @@ import org.whispersystems.textsecuregcm.identity.ServiceIdentifier;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubClusterConnection;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
-import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.RedisClusterUtil;
 import org.whispersystems.textsecuregcm.util.Util;
 import reactor.core.observability.micrometer.Micrometer;
@@ -144,8 +146,13 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   private final Map<MessageAvailabilityListener, String> queueNamesByMessageListener = new IdentityHashMap<>();
 
   private final Timer insertTimer = Metrics.timer(name(MessagesCache.class, "insert"));
+  private final Timer insertBatchTimer = Metrics.timer(name(MessagesCache.class, "insertBatch"));
+  private final DistributionSummary insertBatchSizeDistributionSummary =
+      Metrics.summary(name(MessagesCache.class, "insertBatchSize"));
   private final Timer insertSharedMrmPayloadTimer = Metrics.timer(name(MessagesCache.class, "insertSharedMrmPayload"));
   private final Timer getMessagesTimer = Metrics.timer(name(MessagesCache.class, "get"));
+  private final DistributionSummary pageSizeDistributionSummary =
+      Metrics.summary(name(MessagesCache.class, "pageSize"));
   private final Timer getQueuesToPersistTimer = Metrics.timer(name(MessagesCache.class, "getQueuesToPersist"));
   private final Timer removeByGuidTimer = Metrics.timer(name(MessagesCache.class, "removeByGuid"));
   private final Timer removeRecipientViewTimer = Metrics.timer(name(MessagesCache.class, "removeRecipientView"));
@@ -162,8 +169,13 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   private final Counter prunedStaleSubscriptionCounter = Metrics.counter(
       name(MessagesCache.class, "prunedStaleSubscription"));
   private final Counter mrmContentRetrievedCounter = Metrics.counter(name(MessagesCache.class, "mrmViewRetrieved"));
+  private final Counter mrmContentMissingCounter = Metrics.counter(name(MessagesCache.class, "mrmContentMissing"));
+  private final Counter unresolvableMrmMessageDiscardedCounter = Metrics.counter(
+      name(MessagesCache.class, "unresolvableMrmMessageDiscarded"));
   private final Counter sharedMrmDataKeyRemovedCounter = Metrics.counter(
       name(MessagesCache.class, "sharedMrmKeyRemoved"));
+  private final Counter malformedServerGuidCounter = Metrics.counter(
+      name(MessagesCache.class, "malformedServerGuid"));
 
   static final String NEXT_SLOT_TO_PERSIST_KEY = "user_queue_persist_slot";
   private static final byte[] LOCK_VALUE = "1".getBytes(StandardCharsets.UTF_8);
@@ -172,14 +184,22 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   private static final String PERSISTING_KEYSPACE_PREFIX = "__keyspace@0__:user_queue_persisting::";
 
   private static final String MRM_VIEWS_EXPERIMENT_NAME = "mrmViews";
+  private static final byte[] MRM_DATA_FIELD = "data".getBytes(StandardCharsets.UTF_8);
 
   @VisibleForTesting
   static final Duration MAX_EPHEMERAL_MESSAGE_DELAY = Duration.ofSeconds(10);
 
   private static final String GET_FLUX_NAME = MetricsUtil.name(MessagesCache.class, "get");
-  private static final int PAGE_SIZE = 100;
+  @VisibleForTesting
+  static final int PAGE_SIZE = 100;
+  @VisibleForTesting
+  static final int MAX_PAGE_SIZE = 1_000;
+  private static final long TARGET_PAGE_BYTES = 512 * 1024;
+  private static final int PAGE_PREFETCH = 2;
 
   private static final int REMOVE_MRM_RECIPIENT_VIEW_CONCURRENCY = 8;
+  private static final int MAX_UNRESOLVABLE_PAGES_TO_PERSIST = 10;
+  private static final int INSERT_BATCH_CONCURRENCY = 256;
 
   private static final Logger logger = LoggerFactory.getLogger(MessagesCache.class);
 
@@ -270,6 +290,32 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     return insertTimer.record(() -> insertScript.execute(destinationUuid, destinationDevice, messageWithGuid));
   }
 
+  /**
+   * Inserts a batch of messages into their destination queues. Inserts are ordered by cluster slot and dispatched
+   * without waiting for one another; Lettuce pipelines commands that share a node connection, so a large batch (e.g.
+   * the per-device copies of a multi-recipient message) costs a handful of round trips per shard rather than one per
+   * destination device.
+   *
+   * @param messages the messages to insert; each message must already have a server GUID
+   *
+   * @return a future that completes when all messages have been inserted
+   */
+  public CompletableFuture<Void> insert(final List<QueuedMessage> messages) {
+    final Timer.Sample sample = Timer.start();
+
+    return Flux.fromIterable(messages)
+        .sort(Comparator.comparingInt((QueuedMessage queuedMessage) -> SlotHash.getSlot(
+            getMessageQueueKey(queuedMessage.destinationUuid(), queuedMessage.destinationDeviceId()))))
+        .flatMap(queuedMessage -> Mono.fromFuture(() -> insertScript.executeAsync(queuedMessage.destinationUuid(),
+            queuedMessage.destinationDeviceId(), queuedMessage.message())), INSERT_BATCH_CONCURRENCY)
+        .then()
+        .toFuture()
+        .whenComplete((ignored, throwable) -> {
+          sample.stop(insertBatchTimer);
+          insertBatchSizeDistributionSummary.record(messages.size());
+        });
+  }
+
   public byte[] insertSharedMultiRecipientMessagePayload(
       final SealedSenderMultiRecipientMessage sealedSenderMultiRecipientMessage) {
     return insertSharedMrmPayloadTimer.record(() -> {
@@ -378,19 +424,21 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   Flux<MessageProtos.Envelope> getAllMessages(final UUID destinationUuid, final byte destinationDevice) {
 
     // fetch messages by page
-    return getNextMessagePage(destinationUuid, destinationDevice, -1)
-        .expand(queueItemsAndLastMessageId -> {
+    return getNextMessagePage(destinationUuid, destinationDevice, -1, PAGE_SIZE)
+        .expand(queuePage -> {
           // expand() is breadth-first, so each page will be published in order
-          if (queueItemsAndLastMessageId.first().isEmpty()) {
+          if (queuePage.queueItems().isEmpty()) {
             return Mono.empty();
           }
 
-          return getNextMessagePage(destinationUuid, destinationDevice, queueItemsAndLastMessageId.second());
+          return getNextMessagePage(destinationUuid, destinationDevice, queuePage.lastMessageId(),
+              queuePage.nextPageSize());
         })
         .limitRate(1)
-        // we want to ensure we don’t accidentally block the Lettuce/netty i/o executors
-        .publishOn(messageDeliveryScheduler)
-        .map(Pair::first)
+        // we want to ensure we don’t accidentally block the Lettuce/netty i/o executors; fetch the next page while the
+        // current page is being delivered, but don’t buffer more than a few pages at a time
+        .publishOn(messageDeliveryScheduler, PAGE_PREFETCH)
+        .map(QueuePage::queueItems)
         .concatMap(queueItems -> {
 
           final List<Mono<MessageProtos.Envelope>> envelopes = new ArrayList<>(queueItems.size() / 2);
@@ -399,20 +447,9 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
             try {
               final MessageProtos.Envelope message = MessageProtos.Envelope.parseFrom(queueItems.get(i));
 
-              final Mono<MessageProtos.Envelope> messageMono;
-              if (message.hasSharedMrmKey()) {
-                final Mono<?> experimentMono = maybeRunMrmViewExperiment(message, destinationUuid, destinationDevice);
-
-                // mrm views phase 1: messageMono for sharedMrmKey is always Mono.just(), because messages always have content
-                // To avoid races, wait for the experiment to run, but ignore any errors
-                messageMono = experimentMono
-                    .onErrorComplete()
-                    .then(Mono.just(message.toBuilder().clearSharedMrmKey().build()));
-              } else {
-                messageMono = Mono.just(message);
-              }
-
-              envelopes.add(messageMono);
+              // Messages whose shared MRM data has gone missing can never be delivered; leave them for the persister
+              // to discard
+              envelopes.add(resolveContent(message, destinationDevice));
 
             } catch (InvalidProtocolBufferException e) {
               logger.warn("Failed to parse envelope", e);
@@ -420,48 +457,53 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
           }
 
           return Flux.mergeSequential(envelopes);
-        });
+        }, PAGE_PREFETCH);
   }
 
   /**
-   * Runs the fetch and compare logic for the MRM view experiment, if it is enabled.
+   * Returns the given message with its content in place. Messages that refer to shared multi-recipient message data
+   * either carry their own copy of their content (in which case the shared data is only read for the MRM views
+   * experiment) or carry only the shared data key, in which case their content is reconstructed from the shared payload
+   * and the destination device's view into it.
    *
-   * @see DynamicMessagesConfiguration#mrmViewExperimentEnabled()
+   * @return the message with its content, or empty if the message's content could not be reconstructed because its
+   * shared data no longer exists
    */
-  private Mono<?> maybeRunMrmViewExperiment(final MessageProtos.Envelope mrmMessage, final UUID destinationUuid,
+  private Mono<MessageProtos.Envelope> resolveContent(final MessageProtos.Envelope message,
       final byte destinationDevice) {
-    if (dynamicConfigurationManager.getConfiguration().getMessagesConfiguration()
-        .mrmViewExperimentEnabled()) {
 
-      final Experiment experiment = new Experiment(MRM_VIEWS_EXPERIMENT_NAME);
+    if (!message.hasSharedMrmKey()) {
+      return Mono.just(message);
+    }
 
-      final byte[] key = mrmMessage.getSharedMrmKey().toByteArray();
-      final byte[] sharedMrmViewKey = MessagesCache.getSharedMrmViewKey(
-          // the message might be addressed to the account's PNI, so use the service ID from the envelope
-          ServiceIdentifier.valueOf(mrmMessage.getDestinationServiceId()), destinationDevice);
+    if (message.hasContent()) {
+      // mrm views phase 1: the message has its own copy of its content
+      // To avoid races, wait for the experiment to run, but ignore any errors
+      return maybeRunMrmViewExperiment(message, destinationDevice)
+          .onErrorComplete()
+          .then(Mono.just(message.toBuilder().clearSharedMrmKey().build()));
+    }
 
-      final Mono<MessageProtos.Envelope> mrmMessageMono = Mono.from(redisCluster.withBinaryClusterReactive(
-              conn -> conn.reactive().hmget(key, "data".getBytes(StandardCharsets.UTF_8), sharedMrmViewKey)
-                  .collectList()
-                  .publishOn(messageDeliveryScheduler)))
-          .<MessageProtos.Envelope>handle((mrmDataAndView, sink) -> {
-            try {
-              assert mrmDataAndView.size() == 2;
+    // mrm views phase 2: the message's content must be reconstructed from the shared data
+    return getMrmMessageWithContent(message, destinationDevice)
+        .switchIfEmpty(Mono.fromRunnable(() -> {
+          mrmContentMissingCounter.increment();
+          logger.warn("Shared MRM data for message {} is missing", message.getServerGuid());
+        }));
+  }
 
-              final byte[] content = SealedSenderMultiRecipientMessage.messageForRecipient(
-                  mrmDataAndView.getFirst().getValue(),
-                  mrmDataAndView.getLast().getValue());
+  /**
+   * Runs the fetch and compare logic for the MRM view experiment, if it is enabled.
+   *
+   * @see DynamicMessagesConfiguration#mrmViewExperimentEnabled()
+   */
+  private Mono<?> maybeRunMrmViewExperiment(final MessageProtos.Envelope mrmMessage, final byte destinationDevice) {
+    if (dynamicConfigurationManager.getConfiguration().getMessagesConfiguration()
+        .mrmViewExperimentEnabled()) {
 
-              sink.next(mrmMessage.toBuilder()
-                  .clearSharedMrmKey()
-                  .setContent(ByteString.copyFrom(content))
-                  .build());
+      final Experiment experiment = new Experiment(MRM_VIEWS_EXPERIMENT_NAME);
 
-              mrmContentRetrievedCounter.increment();
-            } catch (Exception e) {
-              sink.error(e);
-            }
-          })
+      final Mono<MessageProtos.Envelope> mrmMessageMono = getMrmMessageWithContent(mrmMessage, destinationDevice)
           .share();
 
       experiment.compareMonoResult(mrmMessage.toBuilder().clearSharedMrmKey().build(), mrmMessageMono);
@@ -472,6 +514,47 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     }
   }
 
+  /**
+   * Reconstructs the content of a multi-recipient message from its shared payload and the destination device's view.
+   *
+   * @return the message with its content and without its shared MRM key, or empty if the shared payload or the
+   * destination device's view no longer exists
+   */
+  private Mono<MessageProtos.Envelope> getMrmMessageWithContent(final MessageProtos.Envelope mrmMessage,
+      final byte destinationDevice) {
+
+    final byte[] key = mrmMessage.getSharedMrmKey().toByteArray();
+    final byte[] sharedMrmViewKey = MessagesCache.getSharedMrmViewKey(
+        // the message might be addressed to the account's PNI, so use the service ID from the envelope
+        ServiceIdentifier.valueOf(mrmMessage.getDestinationServiceId()), destinationDevice);
+
+    return Mono.from(redisCluster.withBinaryClusterReactive(
+            conn -> conn.reactive().hmget(key, MRM_DATA_FIELD, sharedMrmViewKey)
+                .collectList()
+                .publishOn(messageDeliveryScheduler)))
+        .<MessageProtos.Envelope>handle((mrmDataAndView, sink) -> {
+          if (mrmDataAndView.size() != 2 || mrmDataAndView.stream().anyMatch(KeyValue::isEmpty)) {
+            // Completing without a value signals that the shared data is gone
+            return;
+          }
+
+          try {
+            final byte[] content = SealedSenderMultiRecipientMessage.messageForRecipient(
+                mrmDataAndView.getFirst().getValue(),
+                mrmDataAndView.getLast().getValue());
+
+            sink.next(mrmMessage.toBuilder()
+                .clearSharedMrmKey()
+                .setContent(ByteString.copyFrom(content))
+                .build());
+
+            mrmContentRetrievedCounter.increment();
+          } catch (Exception e) {
+            sink.error(e);
+          }
+        });
+  }
+
   /**
    * Makes a best-effort attempt at asynchronously updating (and removing when empty) the MRM data structure
    */
@@ -499,66 +582,126 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
         .subscribe();
   }
 
-  private Mono<Pair<List<byte[]>, Long>> getNextMessagePage(final UUID destinationUuid, final byte destinationDevice,
-      long messageId) {
+  /**
+   * A page of items from a device's queue.
+   *
+   * @param queueItems alternating serialized envelopes and their queue-local message IDs
+   * @param lastMessageId the queue-local ID of the last message in this page, or {@code null} if the page is empty
+   * @param nextPageSize the number of messages to request in the next page
+   */
+  private record QueuePage(List<byte[]> queueItems, @Nullable Long lastMessageId, int nextPageSize) {
+  }
+
+  private Mono<QueuePage> getNextMessagePage(final UUID destinationUuid, final byte destinationDevice,
+      long messageId, final int pageSize) {
 
-    return getItemsScript.execute(destinationUuid, destinationDevice, PAGE_SIZE, messageId)
+    return getItemsScript.execute(destinationUuid, destinationDevice, pageSize, messageId)
         .map(queueItems -> {
           logger.trace("Processing page: {}", messageId);
 
           if (queueItems.isEmpty()) {
-            return new Pair<>(Collections.emptyList(), null);
+            return new QueuePage(Collections.emptyList(), null, pageSize);
           }
 
           if (queueItems.size() % 2 != 0) {
             logger.error("\"Get messages\" operation returned a list with a non-even number of elements.");
-            return new Pair<>(Collections.emptyList(), null);
+            return new QueuePage(Collections.emptyList(), null, pageSize);
           }
 
           final long lastMessageId = Long.parseLong(
               new String(queueItems.getLast(), StandardCharsets.UTF_8));
 
-          return new Pair<>(queueItems, lastMessageId);
+          pageSizeDistributionSummary.record(queueItems.size() / 2);
+
+          return new QueuePage(queueItems, lastMessageId, getNextPageSize(queueItems));
         });
   }
 
+  /**
+   * Chooses the size of the next page to fetch such that, if the next page's messages are about the same size as the
+   * given page's messages, the next page will hold about {@link #TARGET_PAGE_BYTES} of envelopes. This lets large
+   * backlogs of small messages drain in fewer round trips without letting pages of large messages grow unbounded.
+   *
+   * @param queueItems alternating serialized envelopes and their queue-local message IDs
+   *
+   * @return the number of messages to request in the next page
+   */
+  @VisibleForTesting
+  static int getNextPageSize(final List<byte[]> queueItems) {
+    long envelopeBytes = 0;
+
+    for (int i = 0; i < queueItems.size() - 1; i += 2) {
+      envelopeBytes += queueItems.get(i).length;
+    }
+
+    final int messageCount = queueItems.size() / 2;
+
+    if (messageCount == 0 || envelopeBytes == 0) {
+      return PAGE_SIZE;
+    }
+
+    final long averageEnvelopeBytes = Math.max(1, envelopeBytes / messageCount);
+
+    return Math.clamp(TARGET_PAGE_BYTES / averageEnvelopeBytes, PAGE_SIZE, MAX_PAGE_SIZE);
+  }
+
   @VisibleForTesting
   List<MessageProtos.Envelope> getMessagesToPersist(final UUID accountUuid, final byte destinationDevice,
       final int limit) {
 
     final Timer.Sample sample = Timer.start();
 
-    final List<byte[]> messages = redisCluster.withBinaryCluster(connection ->
-        connection.sync().zrange(getMessageQueueKey(accountUuid, destinationDevice), 0, limit));
+    try {
+      // Pages made up entirely of unresolvable messages are discarded and the next page is fetched, but only a bounded
+      // number of times so a queue whose unresolvable messages can't be removed can never stall the persister
+      for (int page = 0; page < MAX_UNRESOLVABLE_PAGES_TO_PERSIST; page++) {
+        final List<byte[]> messages = redisCluster.withBinaryCluster(connection ->
+            connection.sync().zrange(getMessageQueueKey(accountUuid, destinationDevice), 0, limit));
+
+        final List<UUID> unresolvableMessageGuids = new ArrayList<>();
+
+        // Full envelopes are materialized here so that messages are self-contained once they leave the cache
+        final List<MessageProtos.Envelope> messagesToPersist = Flux.fromIterable(messages)
+            .mapNotNull(message -> {
+              try {
+                return MessageProtos.Envelope.parseFrom(message);
+              } catch (InvalidProtocolBufferException e) {
+                logger.warn("Failed to parse envelope", e);
+                return null;
+              }
+            })
+            .concatMap(message -> resolveContent(message, destinationDevice)
+                .switchIfEmpty(Mono.fromRunnable(() -> {
+                  try {
+                    unresolvableMessageGuids.add(UUID.fromString(message.getServerGuid()));
+                  } catch (final IllegalArgumentException e) {
+                    // Messages without a valid GUID can't be removed by GUID; skip them rather than failing the page
+                    malformedServerGuidCounter.increment();
+                  }
+                })))
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        if (unresolvableMessageGuids.isEmpty()) {
+          return messagesToPersist;
+        }
 
-    return Flux.fromIterable(messages)
-        .mapNotNull(message -> {
-          try {
-            return MessageProtos.Envelope.parseFrom(message);
-          } catch (InvalidProtocolBufferException e) {
-            logger.warn("Failed to parse envelope", e);
-            return null;
-          }
-        })
-        .concatMap(message -> {
-          final Mono<MessageProtos.Envelope> messageMono;
-          if (message.hasSharedMrmKey()) {
-            final Mono<?> experimentMono = maybeRunMrmViewExperiment(message, accountUuid, destinationDevice);
-
-            // mrm views phase 1: messageMono for sharedMrmKey is always Mono.just(), because messages always have content
-            // To avoid races, wait for the experiment to run, but ignore any errors
-            messageMono = experimentMono
-                .onErrorComplete()
-                .then(Mono.just(message.toBuilder().clearSharedMrmKey().build()));
-          } else {
-            messageMono = Mono.just(message);
-          }
+        // These messages can never be delivered; discard them rather than persisting them without content
+        final int removedMessages = remove(accountUuid, destinationDevice, unresolvableMessageGuids).join().size();
+        unresolvableMrmMessageDiscardedCounter.increment(removedMessages);
 
-          return messageMono;
-        })
-        .collectList()
-        .doOnTerminate(() -> sample.stop(getMessagesTimer))
-        .block(Duration.ofSeconds(5));
+        // If some messages couldn't be removed, fetching the next page would just yield the same messages again
+        if (!messagesToPersist.isEmpty() || removedMessages < unresolvableMessageGuids.size()) {
+          return messagesToPersist;
+        }
+
+        // Everything in this page was discarded, but there may be more messages behind it
+      }
+
+      return Collections.emptyList();
+    } finally {
+      sample.stop(getMessagesTimer);
+    }
   }
 
   public CompletableFuture<Void> clear(final UUID destinationUuid) {
@@ -616,6 +759,50 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     return getQueuesToPersistTimer.record(() -> getQueuesToPersistScript.execute(slot, maxTime, limit));
   }
 
+  /**
+   * Returns the timestamp of the oldest queue awaiting persistence in the given slot, if any.
+   *
+   * @param slot the slot to inspect
+   *
+   * @return the timestamp of the oldest queue awaiting persistence, or empty if no queues in the slot await persistence
+   */
+  Optional<Instant> getOldestQueueToPersistTimestamp(final int slot) {
+    return redisCluster.withBinaryCluster(connection -> connection.sync().zrangeWithScores(getQueueIndexKey(slot), 0, 0))
+        .stream()
+        .findFirst()
+        .map(scoredValue -> Instant.ofEpochMilli((long) scoredValue.getScore()));
+  }
+
+  /**
+   * Returns the highest ratio of used memory to maximum memory among all upstream nodes in the messages cluster. Nodes
+   * without a memory limit are ignored.
+   *
+   * @return the highest memory utilization among all upstream nodes, between 0 and 1
+   */
+  double getMaxMemoryUtilization() {
+    return redisCluster.withCluster(connection -> connection.sync().upstream().commands().info("memory"))
+        .stream()
+        .mapToDouble(MessagesCache::getMemoryUtilization)
+        .max()
+        .orElse(0);
+  }
+
+  @VisibleForTesting
+  static double getMemoryUtilization(final String memoryInfo) {
+    long usedMemory = 0;
+    long maxMemory = 0;
+
+    for (final String line : memoryInfo.split("\r?\n")) {
+      if (line.startsWith("used_memory:")) {
+        usedMemory = Long.parseLong(line.substring("used_memory:".length()).trim());
+      } else if (line.startsWith("maxmemory:")) {
+        maxMemory = Long.parseLong(line.substring("maxmemory:".length()).trim());
+      }
+    }
+
+    return maxMemory > 0 ? Math.min(1, (double) usedMemory / maxMemory) : 0;
+  }
+
   void addQueueToPersist(final UUID accountUuid, final byte deviceId) {
     redisCluster.useBinaryCluster(connection -> connection.sync()
         .zadd(getQueueIndexKey(accountUuid, deviceId), ZAddArgs.Builder.nx(), System.currentTimeMillis(),
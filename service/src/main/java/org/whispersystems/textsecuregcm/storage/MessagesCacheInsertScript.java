@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
@@ -28,21 +29,32 @@ class MessagesCacheInsertScript {
   }
 
   long execute(final UUID destinationUuid, final byte destinationDevice, final MessageProtos.Envelope envelope) {
-    assert envelope.hasServerGuid();
-    assert envelope.hasServerTimestamp();
+    return (long) insertScript.executeBinary(getKeys(destinationUuid, destinationDevice), getArgs(envelope));
+  }
+
+  CompletableFuture<Long> executeAsync(final UUID destinationUuid, final byte destinationDevice,
+      final MessageProtos.Envelope envelope) {
+
+    return insertScript.executeBinaryAsync(getKeys(destinationUuid, destinationDevice), getArgs(envelope))
+        .thenApply(result -> (long) result);
+  }
 
-    final List<byte[]> keys = List.of(
+  private static List<byte[]> getKeys(final UUID destinationUuid, final byte destinationDevice) {
+    return List.of(
         MessagesCache.getMessageQueueKey(destinationUuid, destinationDevice), // queueKey
         MessagesCache.getMessageQueueMetadataKey(destinationUuid, destinationDevice), // queueMetadataKey
         MessagesCache.getQueueIndexKey(destinationUuid, destinationDevice) // queueTotalIndexKey
     );
+  }
 
-    final List<byte[]> args = new ArrayList<>(Arrays.asList(
+  private static List<byte[]> getArgs(final MessageProtos.Envelope envelope) {
+    assert envelope.hasServerGuid();
+    assert envelope.hasServerTimestamp();
+
+    return new ArrayList<>(Arrays.asList(
         envelope.toByteArray(), // message
         String.valueOf(envelope.getServerTimestamp()).getBytes(StandardCharsets.UTF_8), // currentTime
         envelope.getServerGuid().getBytes(StandardCharsets.UTF_8) // guid
     ));
-
-    return (long) insertScript.executeBinary(keys, args);
   }
 }
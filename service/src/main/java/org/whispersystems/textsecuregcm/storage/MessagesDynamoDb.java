@@ -10,6 +10,7 @@ import static io.micrometer.core.instrument.Metrics.timer;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import io.micrometer.core.instrument.Timer;
@@ -22,6 +23,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Predicate;
 
@@ -30,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.util.AttributeValues;
+import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
@@ -64,11 +67,15 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
   private final Timer storeTimer = timer(name(getClass(), "store"));
 
   private final DynamoDbAsyncClient dbAsyncClient;
+  private final DynamoDbBatchWriter batchWriter;
   private final String tableName;
   private final Duration timeToLive;
   private final ExecutorService messageDeletionExecutor;
   private final Scheduler messageDeletionScheduler;
 
+  // A full persister batch is split into this many DynamoDB batches, and so can be written in a single round
+  private static final int MAX_CONCURRENT_BATCH_WRITES = MessagePersister.MESSAGE_BATCH_LIMIT / DYNAMO_DB_MAX_BATCH_SIZE;
+
   private static final CompletableFuture<?>[] EMPTY_FUTURE_ARRAY = new CompletableFuture<?>[0];
 
   private static final Logger logger = LoggerFactory.getLogger(MessagesDynamoDb.class);
@@ -78,6 +85,7 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
     super(dynamoDb);
 
     this.dbAsyncClient = dynamoDbAsyncClient;
+    this.batchWriter = new DynamoDbBatchWriter(dynamoDbAsyncClient, getClass());
     this.tableName = tableName;
     this.timeToLive = timeToLive;
 
@@ -87,17 +95,46 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
 
   public void store(final List<MessageProtos.Envelope> messages, final UUID destinationAccountUuid,
       final Device destinationDevice) {
-    storeTimer.record(() -> writeInBatches(messages, (messageBatch) -> storeBatch(messageBatch, destinationAccountUuid, destinationDevice)));
-  }
 
-  private void storeBatch(final List<MessageProtos.Envelope> messages, final UUID destinationAccountUuid,
-      final Device destinationDevice) {
-    if (messages.size() > DYNAMO_DB_MAX_BATCH_SIZE) {
-      throw new IllegalArgumentException("Maximum batch size of " + DYNAMO_DB_MAX_BATCH_SIZE + " exceeded with " + messages.size() + " messages");
+    try {
+      storeAsync(messages, destinationAccountUuid, destinationDevice).join();
+    } catch (final CompletionException e) {
+      if (ExceptionUtils.unwrap(e) instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+
+      throw e;
     }
+  }
+
+  /**
+   * Stores the given messages, writing batches of up to {@link #DYNAMO_DB_MAX_BATCH_SIZE} messages concurrently.
+   *
+   * @param messages the messages to store
+   * @param destinationAccountUuid the identifier of the account to which the messages are addressed
+   * @param destinationDevice the device to which the messages are addressed
+   *
+   * @return a future that completes when all messages have been stored
+   */
+  public CompletableFuture<Void> storeAsync(final List<MessageProtos.Envelope> messages,
+      final UUID destinationAccountUuid, final Device destinationDevice) {
+
+    final Timer.Sample sample = Timer.start();
+
+    return Flux.fromIterable(Lists.partition(messages, DYNAMO_DB_MAX_BATCH_SIZE))
+        .flatMap(messageBatch -> Mono.fromFuture(() -> batchWriter.writeUntilComplete(
+            Map.of(tableName, buildWriteRequests(messageBatch, destinationAccountUuid, destinationDevice)))),
+            MAX_CONCURRENT_BATCH_WRITES)
+        .then()
+        .doOnTerminate(() -> sample.stop(storeTimer))
+        .toFuture();
+  }
+
+  private List<WriteRequest> buildWriteRequests(final List<MessageProtos.Envelope> messages,
+      final UUID destinationAccountUuid, final Device destinationDevice) {
 
     final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid, destinationDevice);
-    List<WriteRequest> writeItems = new ArrayList<>();
+    final List<WriteRequest> writeItems = new ArrayList<>(messages.size());
     for (MessageProtos.Envelope message : messages) {
       final UUID messageUuid = UUID.fromString(message.getServerGuid());
 
@@ -113,7 +150,7 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
           .build()).build());
     }
 
-    executeTableWriteItemsUntilComplete(Map.of(tableName, writeItems));
+    return writeItems;
   }
 
   public CompletableFuture<Boolean> mayHaveMessages(final UUID accountIdentifier, final Device device) {
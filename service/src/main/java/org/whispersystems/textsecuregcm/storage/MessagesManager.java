@@ -8,8 +8,11 @@ import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -34,6 +37,7 @@ import reactor.core.publisher.Mono;
 public class MessagesManager {
 
   private static final int RESULT_SET_CHUNK_SIZE = 100;
+  private static final int DYNAMO_DB_DELETE_CONCURRENCY = 8;
   final String GET_MESSAGES_FOR_DEVICE_FLUX_NAME = name(MessagesManager.class, "getMessagesForDevice");
 
   private static final Logger logger = LoggerFactory.getLogger(MessagesManager.class);
@@ -70,6 +74,35 @@ public class MessagesManager {
     }
   }
 
+  /**
+   * Inserts a batch of messages into their destination queues using pipelined cache operations.
+   *
+   * @param messages the messages to insert
+   *
+   * @return a future that completes when all messages have been inserted
+   *
+   * @see MessagesCache#insert(List)
+   */
+  public CompletableFuture<Void> insert(final Collection<QueuedMessage> messages) {
+    final List<QueuedMessage> messagesWithGuids = new ArrayList<>(messages.size());
+
+    for (final QueuedMessage queuedMessage : messages) {
+      final UUID messageGuid = UUID.randomUUID();
+      final Envelope message = queuedMessage.message();
+
+      messagesWithGuids.add(new QueuedMessage(queuedMessage.destinationUuid(), queuedMessage.destinationDeviceId(),
+          message.toBuilder().setServerGuid(messageGuid.toString()).build()));
+
+      if (message.hasSourceServiceId()
+          && !queuedMessage.destinationUuid().toString().equals(message.getSourceServiceId())) {
+
+        reportMessageManager.store(message.getSourceServiceId(), messageGuid);
+      }
+    }
+
+    return messagesCache.insert(messagesWithGuids);
+  }
+
   public CompletableFuture<Boolean> mayHavePersistedMessages(final UUID destinationUuid, final Device destinationDevice) {
     return messagesDynamoDb.mayHaveMessages(destinationUuid, destinationDevice);
   }
@@ -162,6 +195,50 @@ public class MessagesManager {
         }, messageDeletionExecutor);
   }
 
+  /**
+   * Removes a batch of messages from a device's queue. Messages are removed from the cache in a single script call, and
+   * any messages that weren't in the cache are then deleted from DynamoDB. DynamoDB batch writes can't return the items
+   * they delete, and callers need removed messages to send delivery receipts, so persisted messages are deleted
+   * individually, with bounded concurrency.
+   *
+   * @param destinationUuid the identifier of the account that received the messages
+   * @param destinationDevice the device that received the messages
+   * @param guids the server-assigned GUIDs of the messages to remove
+   *
+   * @return a future that yields the messages that were actually removed
+   */
+  public CompletableFuture<List<RemovedMessage>> delete(final UUID destinationUuid, final Device destinationDevice,
+      final List<UUID> guids) {
+
+    final List<UUID> distinctGuids = guids.stream().distinct().toList();
+
+    return messagesCache.remove(destinationUuid, destinationDevice.getId(), distinctGuids)
+        .thenComposeAsync(removedFromCache -> {
+          final Set<UUID> removedGuids = removedFromCache.stream()
+              .map(RemovedMessage::serverGuid)
+              .collect(Collectors.toSet());
+
+          return Flux.fromIterable(distinctGuids)
+              .filter(guid -> !removedGuids.contains(guid))
+              .flatMap(guid -> Mono.fromFuture(() ->
+                      messagesDynamoDb.deleteMessageByDestinationAndGuid(destinationUuid, destinationDevice, guid)),
+                  DYNAMO_DB_DELETE_CONCURRENCY)
+              .flatMap(Mono::justOrEmpty)
+              .map(RemovedMessage::fromEnvelope)
+              .collectList()
+              .map(removedFromDynamoDb -> {
+                final List<RemovedMessage> removedMessages =
+                    new ArrayList<>(removedFromCache.size() + removedFromDynamoDb.size());
+
+                removedMessages.addAll(removedFromCache);
+                removedMessages.addAll(removedFromDynamoDb);
+
+                return removedMessages;
+              })
+              .toFuture();
+        }, messageDeletionExecutor);
+  }
+
   /**
    * @return the number of messages successfully removed from the cache.
    */
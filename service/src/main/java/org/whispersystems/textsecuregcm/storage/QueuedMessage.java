@@ -0,0 +1,19 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import java.util.UUID;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+
+/**
+ * A message addressed to a specific destination device's queue, used for batched queue operations.
+ *
+ * @param destinationUuid the account identifier of the destination account
+ * @param destinationDeviceId the ID of the destination device
+ * @param message the envelope to insert into the destination device's queue
+ */
+public record QueuedMessage(UUID destinationUuid, byte destinationDeviceId, MessageProtos.Envelope message) {
+}
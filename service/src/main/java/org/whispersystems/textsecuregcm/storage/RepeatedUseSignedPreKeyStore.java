@@ -7,6 +7,9 @@ package org.whispersystems.textsecuregcm.storage;
 
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -19,6 +22,7 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.Delete;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
@@ -36,6 +40,7 @@ public abstract class RepeatedUseSignedPreKeyStore<K extends SignedPreKey<?>> {
 
   private final DynamoDbAsyncClient dynamoDbAsyncClient;
   private final String tableName;
+  private final DynamoDbBatchReader batchReader;
 
   static final String KEY_ACCOUNT_UUID = "U";
   static final String KEY_DEVICE_ID = "D";
@@ -46,10 +51,12 @@ public abstract class RepeatedUseSignedPreKeyStore<K extends SignedPreKey<?>> {
   private final Timer storeSingleKeyTimer = Metrics.timer(MetricsUtil.name(getClass(), "storeSingleKey"));
 
   private final String findKeyTimerName = MetricsUtil.name(getClass(), "findKey");
+  private final Timer findKeysTimer = Metrics.timer(MetricsUtil.name(getClass(), "findKeys"));
 
   public RepeatedUseSignedPreKeyStore(final DynamoDbAsyncClient dynamoDbAsyncClient, final String tableName) {
     this.dynamoDbAsyncClient = dynamoDbAsyncClient;
     this.tableName = tableName;
+    this.batchReader = new DynamoDbBatchReader(dynamoDbAsyncClient, getClass());
   }
 
   /**
@@ -116,6 +123,41 @@ public abstract class RepeatedUseSignedPreKeyStore<K extends SignedPreKey<?>> {
     return findFuture;
   }
 
+  /**
+   * Finds repeated-use pre-keys for several devices associated with the same account/identity with a single batch read.
+   *
+   * @param identifier the identifier for the account/identity with which the target devices are associated
+   * @param deviceIds the identifiers for the devices within the given account/identity; must not contain more than
+   *                  {@link DynamoDbBatchReader#DYNAMO_DB_MAX_BATCH_GET_SIZE} distinct identifiers
+   *
+   * @return a future that yields a map of device IDs to signed pre-keys; devices for which no key could be found are
+   * absent from the map
+   */
+  public CompletableFuture<Map<Byte, K>> find(final UUID identifier, final Collection<Byte> deviceIds) {
+    if (deviceIds.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
+    final List<Map<String, AttributeValue>> keys = deviceIds.stream()
+        .distinct()
+        .map(deviceId -> getPrimaryKey(identifier, deviceId))
+        .toList();
+
+    if (keys.size() > DynamoDbBatchReader.DYNAMO_DB_MAX_BATCH_GET_SIZE) {
+      throw new IllegalArgumentException("Too many devices: " + keys.size());
+    }
+
+    final Timer.Sample sample = Timer.start();
+
+    return batchReader.getUntilComplete(tableName, KeysAndAttributes.builder()
+            .keys(keys)
+            .consistentRead(true)
+            .build())
+        .collectMap(item -> Byte.parseByte(item.get(KEY_DEVICE_ID).n()), this::getPreKeyFromItem)
+        .doOnTerminate(() -> sample.stop(findKeysTimer))
+        .toFuture();
+  }
+
   public Flux<Byte> getDeviceIdsWithKeys(final UUID identifier) {
     return Flux.from(dynamoDbAsyncClient.queryPaginator(QueryRequest.builder()
             .tableName(tableName)
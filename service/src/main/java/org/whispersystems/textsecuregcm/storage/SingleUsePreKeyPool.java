@@ -0,0 +1,310 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicPreKeyPoolConfiguration;
+import org.whispersystems.textsecuregcm.entities.PreKey;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
+import org.whispersystems.textsecuregcm.util.SystemMapper;
+import org.whispersystems.textsecuregcm.util.Util;
+
+/**
+ * A single-use pre-key pool holds a small number of single-use pre-keys for active devices in Redis so that most takes
+ * for those devices can be served by a single Redis operation instead of a DynamoDB query and one or more conditional
+ * deletes. Takes for devices without pooled keys fall back to the backing {@link SingleUsePreKeyStore}.
+ * <p/>
+ * Keys are removed from the backing store before they're added to a pool, and so every key is still returned at most
+ * once. Keys remaining in a pool when it expires are lost, which is equivalent to those keys having been taken; clients
+ * replenish their keys when their supply runs low regardless of how keys were consumed. Callers must
+ * {@link #clear(UUID, byte) clear} a device's pool after replacing or deleting the device's keys in the backing store.
+ * Clearing a pool is best-effort; if a pool can't be cleared (or pooling is disabled when the device's keys are
+ * replaced), stale keys may remain in the pool until it expires, and so pooling should not be re-enabled until at least
+ * the pool TTL has passed since it was disabled.
+ */
+public class SingleUsePreKeyPool<K extends PreKey<?>> {
+
+  private final SingleUsePreKeyStore<K> preKeyStore;
+  private final String keyType;
+  private final Class<K> preKeyClass;
+  private final FaultTolerantRedisClusterClient redisCluster;
+  private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
+  private final ClusterLuaScript refillScript;
+  private final ClusterLuaScript recordTakeScript;
+
+  private static final Duration REFILL_LOCK_TTL = Duration.ofSeconds(10);
+
+  private static final String TAKE_COUNTER_NAME = name(SingleUsePreKeyPool.class, "take");
+  private static final String REFILL_COUNTER_NAME = name(SingleUsePreKeyPool.class, "refill");
+  private static final String REFILLED_KEYS_COUNTER_NAME = name(SingleUsePreKeyPool.class, "refilledKeys");
+  private static final String DISCARDED_KEYS_COUNTER_NAME = name(SingleUsePreKeyPool.class, "discardedKeys");
+
+  private static final String KEY_TYPE_TAG_NAME = "keyType";
+  private static final String OUTCOME_TAG_NAME = "outcome";
+
+  private static final Logger logger = LoggerFactory.getLogger(SingleUsePreKeyPool.class);
+
+  public SingleUsePreKeyPool(final SingleUsePreKeyStore<K> preKeyStore,
+      final String keyType,
+      final Class<K> preKeyClass,
+      final FaultTolerantRedisClusterClient redisCluster,
+      final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager) {
+
+    this.preKeyStore = preKeyStore;
+    this.keyType = keyType;
+    this.preKeyClass = preKeyClass;
+    this.redisCluster = redisCluster;
+    this.dynamicConfigurationManager = dynamicConfigurationManager;
+
+    try {
+      this.refillScript =
+          ClusterLuaScript.fromResource(redisCluster, "lua/refill_pre_key_pool.lua", ScriptOutputType.INTEGER);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to load 'refill pre-key pool' script", e);
+    }
+
+    try {
+      this.recordTakeScript =
+          ClusterLuaScript.fromResource(redisCluster, "lua/record_pre_key_take.lua", ScriptOutputType.INTEGER);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to load 'record pre-key take' script", e);
+    }
+  }
+
+  /**
+   * Takes a single-use pre-key for a specific device, preferring keys from the device's pool and falling back to the
+   * backing store if the pool is empty. Taking a key from the backing store may trigger a refill of the device's pool
+   * if the device is active.
+   *
+   * @param identifier the identifier for the account/identity with which the target device is associated
+   * @param deviceId the identifier for the device within the given account/identity
+   *
+   * @return a future that yields a single-use pre-key if one is available or empty if no single-use pre-keys are
+   * available for the target device
+   *
+   * @see SingleUsePreKeyStore#take(UUID, byte)
+   */
+  public CompletableFuture<Optional<K>> take(final UUID identifier, final byte deviceId) {
+    final DynamicPreKeyPoolConfiguration configuration =
+        dynamicConfigurationManager.getConfiguration().getPreKeyPoolConfiguration();
+
+    if (!configuration.enabled()) {
+      return preKeyStore.take(identifier, deviceId);
+    }
+
+    return redisCluster.withBinaryCluster(connection -> connection.async().lpop(getPoolKey(identifier, deviceId)))
+        .toCompletableFuture()
+        .exceptionally(throwable -> {
+          logger.warn("Failed to take pre-key from pool", throwable);
+          return null;
+        })
+        .thenCompose(encodedPreKey -> {
+          @Nullable final K pooledPreKey = encodedPreKey != null ? decode(encodedPreKey) : null;
+
+          Metrics.counter(TAKE_COUNTER_NAME,
+                  KEY_TYPE_TAG_NAME, keyType,
+                  OUTCOME_TAG_NAME, pooledPreKey != null ? "pooled" : "store")
+              .increment();
+
+          if (pooledPreKey != null) {
+            return CompletableFuture.completedFuture(Optional.of(pooledPreKey));
+          }
+
+          recordTakeAndMaybeRefill(identifier, deviceId, configuration);
+          return preKeyStore.take(identifier, deviceId);
+        });
+  }
+
+  /**
+   * Returns the number of single-use pre-keys in a specific device's pool.
+   *
+   * @param identifier the identifier for the account/identity with which the target device is associated
+   * @param deviceId the identifier for the device within the given account/identity
+   *
+   * @return a future that yields the number of keys in the target device's pool, or 0 if pooling is disabled
+   */
+  public CompletableFuture<Integer> getCount(final UUID identifier, final byte deviceId) {
+    if (!dynamicConfigurationManager.getConfiguration().getPreKeyPoolConfiguration().enabled()) {
+      return CompletableFuture.completedFuture(0);
+    }
+
+    return redisCluster.withBinaryCluster(connection -> connection.async().llen(getPoolKey(identifier, deviceId)))
+        .toCompletableFuture()
+        .thenApply(Long::intValue)
+        .exceptionally(throwable -> {
+          logger.warn("Failed to count pooled pre-keys", throwable);
+          return 0;
+        });
+  }
+
+  /**
+   * Removes any pooled single-use pre-keys for a specific device and prevents any refill already in progress from
+   * adding keys to the device's pool.
+   *
+   * @param identifier the identifier for the account/identity with which the target device is associated
+   * @param deviceId the identifier for the device within the given account/identity
+   *
+   * @return a future that completes when the target device's pool has been cleared or clearing the pool has failed
+   */
+  public CompletableFuture<Void> clear(final UUID identifier, final byte deviceId) {
+    return clearKeys(getPoolKey(identifier, deviceId), getRefillLockKey(identifier, deviceId));
+  }
+
+  /**
+   * Removes any pooled single-use pre-keys for all devices associated with the given account/identity.
+   *
+   * @param identifier the identifier for the account/identity for which to clear pools
+   *
+   * @return a future that completes when the pools for all devices associated with the given account/identity have
+   * been cleared or clearing the pools has failed
+   */
+  public CompletableFuture<Void> clear(final UUID identifier) {
+    // All keys for an account/identity share a hash tag, and so can be removed with a single command
+    final List<byte[]> keys = new ArrayList<>(Device.ALL_POSSIBLE_DEVICE_IDS.size() * 2);
+
+    for (final byte deviceId : Device.ALL_POSSIBLE_DEVICE_IDS) {
+      keys.add(getPoolKey(identifier, deviceId));
+      keys.add(getRefillLockKey(identifier, deviceId));
+    }
+
+    return clearKeys(keys.toArray(byte[][]::new));
+  }
+
+  private CompletableFuture<Void> clearKeys(final byte[]... keys) {
+    if (!dynamicConfigurationManager.getConfiguration().getPreKeyPoolConfiguration().enabled()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    // Removing the refill lock also prevents any refill in progress from adding stale keys to the pool
+    return redisCluster.withBinaryCluster(connection -> connection.async().del(keys))
+        .toCompletableFuture()
+        .thenRun(Util.NOOP)
+        .exceptionally(throwable -> {
+          logger.warn("Failed to clear pre-key pool", throwable);
+          return null;
+        });
+  }
+
+  private void recordTakeAndMaybeRefill(final UUID identifier,
+      final byte deviceId,
+      final DynamicPreKeyPoolConfiguration configuration) {
+
+    // The counter and its expiration are updated atomically so a counter can never be left without an expiration
+    recordTakeScript.executeBinaryAsync(List.of(getTakeCountKey(identifier, deviceId)),
+            List.of(String.valueOf(configuration.activeDeviceWindow().toMillis()).getBytes(StandardCharsets.UTF_8)))
+        .thenCompose(result -> {
+          final long takes = (long) result;
+
+          return takes >= configuration.activeDeviceTakes()
+              ? refill(identifier, deviceId, configuration)
+              : CompletableFuture.completedFuture(null);
+        })
+        .whenComplete((ignored, throwable) -> {
+          if (throwable != null) {
+            logger.warn("Failed to refill pre-key pool", throwable);
+          }
+        });
+  }
+
+  @VisibleForTesting
+  CompletableFuture<Void> refill(final UUID identifier,
+      final byte deviceId,
+      final DynamicPreKeyPoolConfiguration configuration) {
+
+    final byte[] refillLockKey = getRefillLockKey(identifier, deviceId);
+    final byte[] token = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+
+    return redisCluster.withBinaryCluster(connection ->
+            connection.async().set(refillLockKey, token, SetArgs.Builder.nx().px(REFILL_LOCK_TTL)))
+        .toCompletableFuture()
+        .thenCompose(lockResult -> {
+          // Another server is already refilling this pool. If we acquire the lock but there are no keys to move, we
+          // deliberately hold the lock until it expires so we don't repeatedly query an exhausted key set.
+          if (!"OK".equals(lockResult)) {
+            return CompletableFuture.completedFuture(null);
+          }
+
+          return preKeyStore.take(identifier, deviceId, configuration.poolSize())
+              .thenCompose(preKeys -> {
+                if (preKeys.isEmpty()) {
+                  return CompletableFuture.completedFuture(null);
+                }
+
+                final List<byte[]> args = new ArrayList<>(preKeys.size() + 2);
+                args.add(token);
+                args.add(String.valueOf(configuration.poolTtl().toMillis()).getBytes(StandardCharsets.UTF_8));
+                preKeys.forEach(preKey -> args.add(encode(preKey)));
+
+                return refillScript.executeBinaryAsync(
+                        List.of(getPoolKey(identifier, deviceId), refillLockKey), args)
+                    .thenAccept(result -> {
+                      final long keysAdded = (long) result;
+
+                      Metrics.counter(REFILL_COUNTER_NAME,
+                              KEY_TYPE_TAG_NAME, keyType,
+                              OUTCOME_TAG_NAME, keysAdded > 0 ? "refilled" : "superseded")
+                          .increment();
+
+                      Metrics.counter(REFILLED_KEYS_COUNTER_NAME, KEY_TYPE_TAG_NAME, keyType).increment(keysAdded);
+
+                      // If the device's keys were replaced while we were refilling, the keys we claimed are stale
+                      Metrics.counter(DISCARDED_KEYS_COUNTER_NAME, KEY_TYPE_TAG_NAME, keyType)
+                          .increment(preKeys.size() - keysAdded);
+                    });
+              });
+        });
+  }
+
+  private byte[] encode(final K preKey) {
+    try {
+      return SystemMapper.jsonMapper().writeValueAsBytes(preKey);
+    } catch (final IOException e) {
+      // Pre-keys are always serializable
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private K decode(final byte[] encodedPreKey) {
+    try {
+      return SystemMapper.jsonMapper().readValue(encodedPreKey, preKeyClass);
+    } catch (final IOException e) {
+      // We wrote these keys ourselves, so this should never happen
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private byte[] getPoolKey(final UUID identifier, final byte deviceId) {
+    return ("pre_key_pool::" + keyType + "::{" + identifier + "}::" + deviceId).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private byte[] getRefillLockKey(final UUID identifier, final byte deviceId) {
+    return ("pre_key_pool_refill_lock::" + keyType + "::{" + identifier + "}::" + deviceId)
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private byte[] getTakeCountKey(final UUID identifier, final byte deviceId) {
+    return ("pre_key_pool_takes::" + keyType + "::{" + identifier + "}::" + deviceId).getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -8,16 +8,19 @@ package org.whispersystems.textsecuregcm.storage;
 import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
 import static org.whispersystems.textsecuregcm.storage.AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE;
 
+import com.google.common.collect.Lists;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -30,9 +33,11 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 /**
  * A single-use pre-key store stores single-use pre-keys of a specific type. Keys returned by a single-use pre-key
@@ -47,13 +52,14 @@ import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
 public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
 
   private final DynamoDbAsyncClient dynamoDbAsyncClient;
+  private final DynamoDbBatchWriter batchWriter;
   private final String tableName;
 
   private final Timer getKeyCountTimer = Metrics.timer(name(getClass(), "getCount"));
-  private final Timer storeKeyTimer = Metrics.timer(name(getClass(), "storeKey"));
   private final Timer storeKeyBatchTimer = Metrics.timer(name(getClass(), "storeKeyBatch"));
   private final Timer deleteForDeviceTimer = Metrics.timer(name(getClass(), "deleteForDevice"));
   private final Timer deleteForAccountTimer = Metrics.timer(name(getClass(), "deleteForAccount"));
+  private final Timer takeKeyBatchTimer = Metrics.timer(name(getClass(), "takeKeyBatch"));
 
   private final Counter noKeyCountAvailableCounter = Metrics.counter(name(getClass(), "noKeyCountAvailable"));
 
@@ -69,6 +75,12 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
       .distributionStatisticExpiry(Duration.ofMinutes(10))
       .register(Metrics.globalRegistry);
 
+  final DistributionSummary keysTakenInBatchDistributionSummary = DistributionSummary
+      .builder(name(getClass(), "keysTakenInBatch"))
+      .publishPercentiles(0.5, 0.75, 0.95, 0.99, 0.999)
+      .distributionStatisticExpiry(Duration.ofMinutes(10))
+      .register(Metrics.globalRegistry);
+
   private final String takeKeyTimerName = name(getClass(), "takeKey");
   private static final String KEY_PRESENT_TAG_NAME = "keyPresent";
 
@@ -78,8 +90,12 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
   static final String ATTR_SIGNATURE = "S";
   static final String ATTR_REMAINING_KEYS = "R";
 
+  // A full set of 100 keys can be written or deleted in a single round of batch writes
+  private static final int MAX_CONCURRENT_BATCH_WRITES = 4;
+
   protected SingleUsePreKeyStore(final DynamoDbAsyncClient dynamoDbAsyncClient, final String tableName) {
     this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+    this.batchWriter = new DynamoDbBatchWriter(dynamoDbAsyncClient, getClass());
     this.tableName = tableName;
   }
 
@@ -97,29 +113,29 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
   public CompletableFuture<Void> store(final UUID identifier, final byte deviceId, final List<K> preKeys) {
     final Timer.Sample sample = Timer.start();
 
+    // Batch writes may not contain more than one request for the same item
+    final SortedMap<Long, K> preKeysById = new TreeMap<>();
+    preKeys.forEach(preKey -> preKeysById.putIfAbsent(preKey.keyId(), preKey));
+
+    final List<WriteRequest> writeRequests = new ArrayList<>(preKeysById.size());
+
+    for (final K preKey : preKeysById.values()) {
+      writeRequests.add(WriteRequest.builder()
+          .putRequest(PutRequest.builder()
+              .item(getItemFromPreKey(identifier, deviceId, preKey, preKeysById.size() - writeRequests.size()))
+              .build())
+          .build());
+    }
+
     return Mono.fromFuture(() -> delete(identifier, deviceId))
-        .thenMany(
-            Flux.fromIterable(preKeys)
-                .sort(Comparator.comparing(preKey -> preKey.keyId()))
-                .zipWith(Flux.range(0, preKeys.size()).map(i -> preKeys.size() - i))
-                .flatMap(preKeyAndRemainingCount -> Mono.fromFuture(() ->
-                        store(identifier, deviceId, preKeyAndRemainingCount.getT1(), preKeyAndRemainingCount.getT2())),
-                    DYNAMO_DB_MAX_BATCH_SIZE))
+        .thenMany(Flux.fromIterable(Lists.partition(writeRequests, DYNAMO_DB_MAX_BATCH_SIZE)))
+        .flatMap(batch -> Mono.fromFuture(() -> batchWriter.writeUntilComplete(Map.of(tableName, batch))),
+            MAX_CONCURRENT_BATCH_WRITES)
         .then()
         .toFuture()
         .thenRun(() -> sample.stop(storeKeyBatchTimer));
   }
 
-  private CompletableFuture<Void> store(final UUID identifier, final byte deviceId, final K preKey, final int remainingKeys) {
-    final Timer.Sample sample = Timer.start();
-
-    return dynamoDbAsyncClient.putItem(PutItemRequest.builder()
-            .tableName(tableName)
-            .item(getItemFromPreKey(identifier, deviceId, preKey, remainingKeys))
-            .build())
-        .thenRun(() -> sample.stop(storeKeyTimer));
-  }
-
   /**
    * Attempts to retrieve a single-use pre-key for a specific device. Keys may only be returned by this method at most
    * once; once the key is returned, it is removed from the key store and subsequent calls to this method will never
@@ -133,9 +149,57 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
    */
   public CompletableFuture<Optional<K>> take(final UUID identifier, final byte deviceId) {
     final Timer.Sample sample = Timer.start();
-    final AttributeValue partitionKey = getPartitionKey(identifier);
     final AtomicInteger keysConsidered = new AtomicInteger(0);
 
+    return queryKeysForTake(identifier, deviceId)
+        .flatMap(deleteItemRequest -> Mono.fromFuture(() -> dynamoDbAsyncClient.deleteItem(deleteItemRequest)), 1)
+        .doOnNext(deleteItemResponse -> keysConsidered.incrementAndGet())
+        .filter(DeleteItemResponse::hasAttributes)
+        .next()
+        .map(deleteItemResponse -> getPreKeyFromItem(deleteItemResponse.attributes()))
+        .toFuture()
+        .thenApply(Optional::ofNullable)
+        .whenComplete((maybeKey, throwable) -> {
+          sample.stop(Metrics.timer(takeKeyTimerName, KEY_PRESENT_TAG_NAME, String.valueOf(maybeKey != null && maybeKey.isPresent())));
+          keysConsideredForTakeDistributionSummary.record(keysConsidered.get());
+        });
+  }
+
+  /**
+   * Attempts to retrieve up to the given number of single-use pre-keys for a specific device. As with
+   * {@link #take(UUID, byte)}, keys returned by this method are removed from the key store and will never be returned
+   * again.
+   *
+   * @param identifier the identifier for the account/identity with which the target device is associated
+   * @param deviceId the identifier for the device within the given account/identity
+   * @param maxKeys the maximum number of keys to retrieve
+   *
+   * @return a future that yields up to {@code maxKeys} single-use pre-keys in ascending order by key ID; may yield fewer
+   * keys if fewer are available or if other callers take keys for the same device concurrently
+   */
+  public CompletableFuture<List<K>> take(final UUID identifier, final byte deviceId, final int maxKeys) {
+    final Timer.Sample sample = Timer.start();
+
+    return queryKeysForTake(identifier, deviceId)
+        .take(maxKeys)
+        .flatMapSequential(deleteItemRequest -> Mono.fromFuture(() -> dynamoDbAsyncClient.deleteItem(deleteItemRequest)),
+            DYNAMO_DB_MAX_BATCH_SIZE)
+        .filter(DeleteItemResponse::hasAttributes)
+        .map(deleteItemResponse -> getPreKeyFromItem(deleteItemResponse.attributes()))
+        .collectList()
+        .toFuture()
+        .whenComplete((keys, throwable) -> {
+          sample.stop(takeKeyBatchTimer);
+
+          if (keys != null) {
+            keysTakenInBatchDistributionSummary.record(keys.size());
+          }
+        });
+  }
+
+  private Flux<DeleteItemRequest> queryKeysForTake(final UUID identifier, final byte deviceId) {
+    final AttributeValue partitionKey = getPartitionKey(identifier);
+
     return Flux.from(dynamoDbAsyncClient.queryPaginator(QueryRequest.builder()
                 .tableName(tableName)
                 .keyConditionExpression("#uuid = :uuid AND begins_with (#sort, :sortprefix)")
@@ -153,18 +217,7 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
                 KEY_ACCOUNT_UUID, partitionKey,
                 KEY_DEVICE_ID_KEY_ID, item.get(KEY_DEVICE_ID_KEY_ID)))
             .returnValues(ReturnValue.ALL_OLD)
-            .build())
-        .flatMap(deleteItemRequest -> Mono.fromFuture(() -> dynamoDbAsyncClient.deleteItem(deleteItemRequest)), 1)
-        .doOnNext(deleteItemResponse -> keysConsidered.incrementAndGet())
-        .filter(DeleteItemResponse::hasAttributes)
-        .next()
-        .map(deleteItemResponse -> getPreKeyFromItem(deleteItemResponse.attributes()))
-        .toFuture()
-        .thenApply(Optional::ofNullable)
-        .whenComplete((maybeKey, throwable) -> {
-          sample.stop(Metrics.timer(takeKeyTimerName, KEY_PRESENT_TAG_NAME, String.valueOf(maybeKey != null && maybeKey.isPresent())));
-          keysConsideredForTakeDistributionSummary.record(keysConsidered.get());
-        });
+            .build());
   }
 
   /**
@@ -266,14 +319,17 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
 
   private CompletableFuture<Void> deleteItems(final AttributeValue partitionKey, final Flux<Map<String, AttributeValue>> items) {
     return items
-        .map(item -> DeleteItemRequest.builder()
-            .tableName(tableName)
-            .key(Map.of(
-                KEY_ACCOUNT_UUID, partitionKey,
-                KEY_DEVICE_ID_KEY_ID, item.get(KEY_DEVICE_ID_KEY_ID)
-            ))
+        .map(item -> WriteRequest.builder()
+            .deleteRequest(DeleteRequest.builder()
+                .key(Map.of(
+                    KEY_ACCOUNT_UUID, partitionKey,
+                    KEY_DEVICE_ID_KEY_ID, item.get(KEY_DEVICE_ID_KEY_ID)
+                ))
+                .build())
             .build())
-        .flatMap(deleteItemRequest -> Mono.fromFuture(() -> dynamoDbAsyncClient.deleteItem(deleteItemRequest)), DYNAMO_DB_MAX_BATCH_SIZE)
+        .buffer(DYNAMO_DB_MAX_BATCH_SIZE)
+        .flatMap(batch -> Mono.fromFuture(() -> batchWriter.writeUntilComplete(Map.of(tableName, batch))),
+            MAX_CONCURRENT_BATCH_WRITES)
         .then()
         .toFuture()
         .thenRun(Util.NOOP);
@@ -80,6 +80,8 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
   private static final String INITIAL_QUEUE_LENGTH_DISTRIBUTION_NAME = name(WebSocketConnection.class,
       "initialQueueLength");
   private static final String INITIAL_QUEUE_DRAIN_TIMER_NAME = name(WebSocketConnection.class, "drainInitialQueue");
+  private static final String INITIAL_QUEUE_DRAIN_RATE_DISTRIBUTION_NAME =
+      name(WebSocketConnection.class, "initialQueueDrainRate");
   private static final String SLOW_QUEUE_DRAIN_COUNTER_NAME = name(WebSocketConnection.class, "slowQueueDrain");
   private static final String QUEUE_DRAIN_RETRY_COUNTER_NAME = name(WebSocketConnection.class, "queueDrainRetry");
   private static final String DISPLACEMENT_COUNTER_NAME = name(WebSocketConnection.class, "displacement");
@@ -337,9 +339,17 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
           );
           final long drainDuration = System.currentTimeMillis() - queueDrainStartTime.get();
 
-          Metrics.summary(INITIAL_QUEUE_LENGTH_DISTRIBUTION_NAME, tags).record(sentMessageCounter.sum());
+          final long initialQueueLength = sentMessageCounter.sum();
+
+          Metrics.summary(INITIAL_QUEUE_LENGTH_DISTRIBUTION_NAME, tags).record(initialQueueLength);
           Metrics.timer(INITIAL_QUEUE_DRAIN_TIMER_NAME, tags).record(drainDuration, TimeUnit.MILLISECONDS);
 
+          if (initialQueueLength > 0 && drainDuration > 0) {
+            // Messages per second
+            Metrics.summary(INITIAL_QUEUE_DRAIN_RATE_DISTRIBUTION_NAME, tags)
+                .record(initialQueueLength * 1000.0 / drainDuration);
+          }
+
           if (drainDuration > SLOW_DRAIN_THRESHOLD) {
             Metrics.counter(SLOW_QUEUE_DRAIN_COUNTER_NAME, tags).increment();
           }
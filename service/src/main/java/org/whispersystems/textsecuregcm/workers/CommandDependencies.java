@@ -38,11 +38,14 @@ import org.whispersystems.textsecuregcm.push.APNSender;
 import org.whispersystems.textsecuregcm.push.PushNotificationScheduler;
 import org.whispersystems.textsecuregcm.push.ClientPresenceManager;
 import org.whispersystems.textsecuregcm.push.FcmSender;
+import org.whispersystems.textsecuregcm.push.PushNotificationDebouncer;
 import org.whispersystems.textsecuregcm.push.PushNotificationManager;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
 import org.whispersystems.textsecuregcm.securestorage.SecureStorageClient;
 import org.whispersystems.textsecuregcm.securevaluerecovery.SecureValueRecovery2Client;
 import org.whispersystems.textsecuregcm.storage.AccountLockManager;
+import org.whispersystems.textsecuregcm.storage.AccountNearCache;
 import org.whispersystems.textsecuregcm.storage.Accounts;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.ClientPublicKeys;
@@ -190,7 +193,9 @@ record CommandDependencies(
         configuration.getDynamoDbTables().getEcKeys().getTableName(),
         configuration.getDynamoDbTables().getKemKeys().getTableName(),
         configuration.getDynamoDbTables().getEcSignedPreKeys().getTableName(),
-        configuration.getDynamoDbTables().getKemLastResortKeys().getTableName()
+        configuration.getDynamoDbTables().getKemLastResortKeys().getTableName(),
+        cacheCluster,
+        dynamicConfigurationManager
     );
     MessagesDynamoDb messagesDynamoDb = new MessagesDynamoDb(dynamoDbClient, dynamoDbAsyncClient,
         configuration.getDynamoDbTables().getMessages().getTableName(),
@@ -224,13 +229,20 @@ record CommandDependencies(
         configuration.getDynamoDbTables().getDeletedAccountsLock().getTableName());
     ClientPublicKeysManager clientPublicKeysManager =
         new ClientPublicKeysManager(clientPublicKeys, accountLockManager, accountLockExecutor);
+    AccountNearCache accountNearCache = new AccountNearCache(cacheCluster,
+        configuration.getAccountNearCacheConfiguration());
     AccountsManager accountsManager = new AccountsManager(accounts, phoneNumberIdentifiers, cacheCluster,
-        accountLockManager, keys, messagesManager, profilesManager,
+        accountNearCache, accountLockManager, keys, messagesManager, profilesManager,
         secureStorageClient, secureValueRecovery2Client, clientPresenceManager,
         registrationRecoveryPasswordsManager, clientPublicKeysManager, accountLockExecutor, clientPresenceExecutor,
         clock, configuration.getLinkDeviceSecretConfiguration().secret().value(), dynamicConfigurationManager);
+    ClusterLuaScript validateRateLimitScript = RateLimiters.defaultScript(rateLimitersCluster);
+    ClusterLuaScript leaseRateLimitPermitsScript = RateLimiters.defaultLeaseScript(rateLimitersCluster);
+    ScheduledExecutorService rateLimitLeaseExpirationExecutor = environment.lifecycle()
+        .scheduledExecutorService(name(name, "rateLimitLeaseExpiration-%d")).threads(1).build();
     RateLimiters rateLimiters = RateLimiters.createAndValidate(configuration.getLimitsConfiguration(),
-        dynamicConfigurationManager, rateLimitersCluster);
+        dynamicConfigurationManager, validateRateLimitScript, leaseRateLimitPermitsScript, rateLimitersCluster,
+        rateLimitLeaseExpirationExecutor);
     final BackupsDb backupsDb =
         new BackupsDb(dynamoDbAsyncClient, configuration.getDynamoDbTables().getBackups().getTableName(), clock);
     final GenericServerSecretParams backupsGenericZkSecretParams;
@@ -252,19 +264,23 @@ record CommandDependencies(
             configuration.getCdn3StorageManagerConfiguration()),
         clock);
     APNSender apnSender = new APNSender(apnSenderExecutor, configuration.getApnConfiguration());
-    FcmSender fcmSender = new FcmSender(fcmSenderExecutor, configuration.getFcmConfiguration().credentials().value());
+    FcmSender fcmSender = new FcmSender(fcmSenderExecutor, configuration.getFcmConfiguration().credentials().value(),
+        configuration.getFcmConfiguration().batchDelay());
     PushNotificationScheduler pushNotificationScheduler = new PushNotificationScheduler(pushSchedulerCluster,
         apnSender, fcmSender, accountsManager, 0, 0);
-    PushNotificationManager pushNotificationManager =
-        new PushNotificationManager(accountsManager, apnSender, fcmSender, pushNotificationScheduler);
+    PushNotificationDebouncer pushNotificationDebouncer = new PushNotificationDebouncer(pushSchedulerCluster);
+    PushNotificationManager pushNotificationManager = new PushNotificationManager(accountsManager, apnSender, fcmSender,
+        pushNotificationScheduler, pushNotificationDebouncer);
     PushNotificationExperimentSamples pushNotificationExperimentSamples =
         new PushNotificationExperimentSamples(dynamoDbAsyncClient,
             configuration.getDynamoDbTables().getPushNotificationExperimentSamples().getTableName(),
             Clock.systemUTC());
 
     environment.lifecycle().manage(apnSender);
+    environment.lifecycle().manage(fcmSender);
     environment.lifecycle().manage(messagesCache);
     environment.lifecycle().manage(clientPresenceManager);
+    environment.lifecycle().manage(accountNearCache);
     environment.lifecycle().manage(new ManagedAwsCrt());
 
     return new CommandDependencies(
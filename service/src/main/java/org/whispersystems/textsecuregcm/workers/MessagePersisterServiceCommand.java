@@ -5,12 +5,15 @@
 
 package org.whispersystems.textsecuregcm.workers;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
 import io.dropwizard.core.Application;
 import io.dropwizard.core.cli.ServerCommand;
 import io.dropwizard.core.server.DefaultServerFactory;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.jetty.HttpsConnectorFactory;
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 import org.whispersystems.textsecuregcm.WhisperServerConfiguration;
@@ -60,10 +63,14 @@ public class MessagePersisterServiceCommand extends ServerCommand<WhisperServerC
           });
     }
 
+    final ExecutorService persistQueueExecutor = environment.lifecycle()
+        .virtualExecutorService(name(getClass(), "persistQueue-%d"));
+
     final MessagePersister messagePersister = new MessagePersister(deps.messagesCache(), deps.messagesManager(),
         deps.accountsManager(), deps.dynamicConfigurationManager(),
         Duration.ofMinutes(configuration.getMessageCacheConfiguration().getPersistDelayMinutes()),
-        namespace.getInt(WORKER_COUNT));
+        namespace.getInt(WORKER_COUNT),
+        persistQueueExecutor);
 
     environment.lifecycle().manage(deps.messagesCache());
     environment.lifecycle().manage(messagePersister);
@@ -0,0 +1,11 @@
+local leaseKey = KEYS[1]
+local workerId = ARGV[1]
+local leaseDurationMillis = ARGV[2]
+
+-- Only extend the lease if it's still held by the worker extending it; the lease may have expired and been claimed by
+-- another worker in the meantime
+if redis.call("GET", leaseKey) == workerId then
+    return redis.call("PEXPIRE", leaseKey, leaseDurationMillis)
+end
+
+return 0
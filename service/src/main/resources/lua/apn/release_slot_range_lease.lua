@@ -0,0 +1,10 @@
+local leaseKey = KEYS[1]
+local workerId = ARGV[1]
+
+-- Only release the lease if it's still held by the worker releasing it; the lease may have expired and been claimed by
+-- another worker in the meantime
+if redis.call("GET", leaseKey) == workerId then
+    return redis.call("DEL", leaseKey)
+end
+
+return 0
@@ -15,3 +15,5 @@ else
 end
 
 redis.call("ZADD", queueKey, "NX", nextNotificationTimestamp, accountDevicePair)
+
+return redis.call("ZSCORE", queueKey, accountDevicePair)
@@ -0,0 +1,62 @@
+-- The script leases permits from (or returns unspent leased permits to) a token bucket maintained by
+-- validate_rate_limit.lua, using the same bucket representation.
+-- A 'lease' operation takes up to the requested amount of tokens, but never more than the given fraction of the tokens
+-- currently available, so that any number of servers holding leases can't exhaust the bucket between them. It returns
+-- the number of tokens leased, or 0 (leaving the bucket unchanged) if fewer than the given minimum could be leased.
+-- A 'return' operation adds the given amount of unspent tokens back to the bucket (but never beyond the bucket's
+-- size) and returns 0.
+
+local bucketId = KEYS[1]
+
+local bucketSize = tonumber(ARGV[1])
+local refillRatePerMillis = tonumber(ARGV[2])
+local currentTimeMillis = tonumber(ARGV[3])
+local operation = ARGV[4]
+local amount = tonumber(ARGV[5])
+local minAmount = tonumber(ARGV[6])
+local maxFraction = tonumber(ARGV[7])
+
+local SIZE_FIELD = "s"
+local TIME_FIELD = "t"
+
+local tokensRemaining
+local lastUpdateTimeMillis
+
+local tokensRemainingStr, lastUpdateTimeMillisStr = unpack(redis.call("HMGET", bucketId, SIZE_FIELD, TIME_FIELD))
+if tokensRemainingStr and lastUpdateTimeMillisStr then
+    tokensRemaining = tonumber(tokensRemainingStr)
+    lastUpdateTimeMillis = tonumber(lastUpdateTimeMillisStr)
+else
+    tokensRemaining = bucketSize
+    lastUpdateTimeMillis = currentTimeMillis
+end
+
+local elapsedTime = currentTimeMillis - lastUpdateTimeMillis
+local availableAmount = math.min(
+    bucketSize,
+    math.floor(tokensRemaining + (elapsedTime * refillRatePerMillis))
+)
+
+local result = 0
+
+if operation == "lease" then
+    result = math.min(amount, math.floor(availableAmount * maxFraction))
+    if result < minAmount then
+        return 0
+    end
+    tokensRemaining = availableAmount - result
+else
+    tokensRemaining = math.min(bucketSize, availableAmount + amount)
+end
+
+local tokensUsed = bucketSize - tokensRemaining
+-- As in validate_rate_limit.lua, a full bucket is equivalent to no bucket at all
+if tokensUsed > 0 then
+    local ttlMillis = math.ceil(tokensUsed / refillRatePerMillis)
+    redis.call("HSET", bucketId, SIZE_FIELD, tokensRemaining, TIME_FIELD, currentTimeMillis)
+    redis.call("PEXPIRE", bucketId, ttlMillis)
+else
+    redis.call("DEL", bucketId)
+end
+
+return result
@@ -0,0 +1,15 @@
+local debounceKey = KEYS[1]
+
+local urgent = ARGV[1]
+local debounceWindowMillis = ARGV[2]
+
+-- A recent urgent notification makes any new notification redundant, but a recent non-urgent notification doesn't
+-- make an urgent notification redundant
+local recentNotification = redis.call("GET", debounceKey)
+
+if recentNotification and (recentNotification == "1" or urgent == "0") then
+    return 0
+end
+
+redis.call("SET", debounceKey, urgent, "PX", debounceWindowMillis)
+return 1
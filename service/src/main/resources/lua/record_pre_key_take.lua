@@ -0,0 +1,15 @@
+-- increments the number of single-use pre-keys taken for a device from the backing store and ensures that the counter
+-- expires at the end of the device's activity window; counters without an expiration (e.g. because an earlier
+-- expiration was never applied) are given one so that no device can be considered active forever
+-- returns: the number of keys taken within the current activity window, including this one
+
+local takeCountKey = KEYS[1] -- the device's take counter
+local windowMillis = ARGV[1] -- the length of the activity window
+
+local takes = redis.call("INCR", takeCountKey)
+
+if redis.call("PTTL", takeCountKey) < 0 then
+    redis.call("PEXPIRE", takeCountKey, windowMillis)
+end
+
+return takes
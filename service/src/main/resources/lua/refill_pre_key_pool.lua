@@ -0,0 +1,20 @@
+-- adds single-use pre-keys claimed from the backing store to a device's pre-key pool, but only if the caller still
+-- holds the pool's refill lock; the lock is removed whenever a device's pre-keys are replaced or deleted, and keys
+-- claimed before then must never be added to the pool
+-- returns: the number of keys added to the pool
+
+local poolKey   = KEYS[1] -- list of encoded pre-keys, in ascending order by key ID
+local lockKey   = KEYS[2] -- refill lock token
+local token     = ARGV[1] -- the caller's refill lock token
+local ttlMillis = ARGV[2] -- the time after which the pool expires
+local preKeys   = { unpack(ARGV, 3) }
+
+if redis.call("GET", lockKey) ~= token then
+    return 0
+end
+
+redis.call("DEL", lockKey)
+redis.call("RPUSH", poolKey, unpack(preKeys))
+redis.call("PEXPIRE", poolKey, ttlMillis)
+
+return #preKeys
@@ -415,6 +415,50 @@ class DynamicConfigurationTest {
 
       assertFalse(config.getMessagePersisterConfiguration().isPersistenceEnabled());
     }
+
+    {
+      final String messagePersisterPressureYaml = REQUIRED_CONFIG.concat("""
+          messagePersister:
+            queueConcurrency: 2
+            memoryPressureThreshold: 0.7
+            queueAgePressureThreshold: PT1H
+            pressurePersistDelay: PT1M
+            pressureQueueConcurrency: 8
+          """);
+
+      final DynamicMessagePersisterConfiguration config =
+          DynamicConfigurationManager.parseConfiguration(messagePersisterPressureYaml, DynamicConfiguration.class)
+              .orElseThrow()
+              .getMessagePersisterConfiguration();
+
+      assertEquals(2, config.getQueueConcurrency());
+      assertEquals(0.7, config.getMemoryPressureThreshold());
+      assertEquals(Optional.of(Duration.ofHours(1)), config.getQueueAgePressureThreshold());
+      assertEquals(Optional.of(Duration.ofMinutes(1)), config.getPressurePersistDelay());
+      assertEquals(8, config.getPressureQueueConcurrency());
+    }
   }
 
+  @Test
+  void testParseAccountCacheConfiguration() throws JsonProcessingException {
+    {
+      final String emptyConfigYaml = REQUIRED_CONFIG.concat("test: true");
+      final DynamicConfiguration emptyConfig =
+          DynamicConfigurationManager.parseConfiguration(emptyConfigYaml, DynamicConfiguration.class).orElseThrow();
+
+      assertFalse(emptyConfig.getAccountCacheConfiguration().writeBinaryFormat());
+    }
+
+    {
+      final String accountCacheConfig = REQUIRED_CONFIG.concat("""
+          accountCache:
+            writeBinaryFormat: true
+          """);
+
+      final DynamicConfiguration config =
+          DynamicConfigurationManager.parseConfiguration(accountCacheConfig, DynamicConfiguration.class).orElseThrow();
+
+      assertTrue(config.getAccountCacheConfiguration().writeBinaryFormat());
+    }
+  }
 }
@@ -33,6 +33,7 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.UUID;
@@ -260,23 +261,20 @@ class KeysControllerTest {
     when(KEYS.getEcSignedPreKey(any(), anyByte())).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
     when(KEYS.storeEcSignedPreKeys(any(), anyByte(), any())).thenReturn(CompletableFutureTestUtil.almostCompletedFuture(null));
 
-    when(KEYS.getEcSignedPreKey(EXISTS_UUID, sampleDeviceId))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(SAMPLE_SIGNED_KEY)));
+    final Map<UUID, Map<Byte, ECSignedPreKey>> ecSignedPreKeys = Map.of(
+        EXISTS_UUID, Map.of(
+            sampleDeviceId, SAMPLE_SIGNED_KEY,
+            sampleDevice2Id, SAMPLE_SIGNED_KEY2,
+            sampleDevice3Id, SAMPLE_SIGNED_KEY3),
+        EXISTS_PNI, Map.of(
+            sampleDeviceId, SAMPLE_SIGNED_PNI_KEY,
+            sampleDevice2Id, SAMPLE_SIGNED_PNI_KEY2,
+            sampleDevice3Id, SAMPLE_SIGNED_PNI_KEY3));
 
-    when(KEYS.getEcSignedPreKey(EXISTS_UUID, sampleDevice2Id))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(SAMPLE_SIGNED_KEY2)));
+    when(KEYS.getEcSignedPreKeys(any(), any())).thenAnswer(invocation -> CompletableFuture.completedFuture(
+        ecSignedPreKeys.getOrDefault(invocation.<UUID>getArgument(0), Collections.emptyMap())));
 
-    when(KEYS.getEcSignedPreKey(EXISTS_UUID, sampleDevice3Id))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(SAMPLE_SIGNED_KEY3)));
-
-    when(KEYS.getEcSignedPreKey(EXISTS_PNI, sampleDeviceId))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(SAMPLE_SIGNED_PNI_KEY)));
-
-    when(KEYS.getEcSignedPreKey(EXISTS_PNI, sampleDevice2Id))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(SAMPLE_SIGNED_PNI_KEY2)));
-
-    when(KEYS.getEcSignedPreKey(EXISTS_PNI, sampleDevice3Id))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(SAMPLE_SIGNED_PNI_KEY3)));
+    when(KEYS.takeDevicePreKeys(any(), any())).thenCallRealMethod();
 
     when(KEYS.takeEC(EXISTS_UUID, sampleDeviceId)).thenReturn(
         CompletableFuture.completedFuture(Optional.of(SAMPLE_KEY)));
@@ -343,7 +341,8 @@ class KeysControllerTest {
 
     verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+    verify(KEYS).getEcSignedPreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
+    verify(KEYS).takeDevicePreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -367,7 +366,8 @@ class KeysControllerTest {
 
     verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+    verify(KEYS).getEcSignedPreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
+    verify(KEYS).takeDevicePreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -389,7 +389,8 @@ class KeysControllerTest {
 
     verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+    verify(KEYS).getEcSignedPreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
+    verify(KEYS).takeDevicePreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -410,7 +411,8 @@ class KeysControllerTest {
 
     verify(KEYS).takeEC(EXISTS_PNI, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_PNI, SAMPLE_DEVICE_ID);
-    verify(KEYS).getEcSignedPreKey(EXISTS_PNI, SAMPLE_DEVICE_ID);
+    verify(KEYS).getEcSignedPreKeys(EXISTS_PNI, List.of(SAMPLE_DEVICE_ID));
+    verify(KEYS).takeDevicePreKeys(EXISTS_PNI, List.of(SAMPLE_DEVICE_ID));
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -432,7 +434,8 @@ class KeysControllerTest {
 
     verify(KEYS).takeEC(EXISTS_PNI, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_PNI, SAMPLE_DEVICE_ID);
-    verify(KEYS).getEcSignedPreKey(EXISTS_PNI, SAMPLE_DEVICE_ID);
+    verify(KEYS).getEcSignedPreKeys(EXISTS_PNI, List.of(SAMPLE_DEVICE_ID));
+    verify(KEYS).takeDevicePreKeys(EXISTS_PNI, List.of(SAMPLE_DEVICE_ID));
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -455,7 +458,8 @@ class KeysControllerTest {
 
     verify(KEYS).takeEC(EXISTS_PNI, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_PNI, SAMPLE_DEVICE_ID);
-    verify(KEYS).getEcSignedPreKey(EXISTS_PNI, SAMPLE_DEVICE_ID);
+    verify(KEYS).getEcSignedPreKeys(EXISTS_PNI, List.of(SAMPLE_DEVICE_ID));
+    verify(KEYS).takeDevicePreKeys(EXISTS_PNI, List.of(SAMPLE_DEVICE_ID));
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -491,7 +495,8 @@ class KeysControllerTest {
 
     verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+    verify(KEYS).getEcSignedPreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
+    verify(KEYS).takeDevicePreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -527,7 +532,8 @@ class KeysControllerTest {
 
       verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
       verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
-      verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+      verify(KEYS).getEcSignedPreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
+      verify(KEYS).takeDevicePreKeys(EXISTS_UUID, List.of(SAMPLE_DEVICE_ID));
     }
 
     verifyNoMoreInteractions(KEYS);
@@ -664,10 +670,10 @@ class KeysControllerTest {
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID2);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID3);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID4);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID2);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID3);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID4);
+    verify(KEYS).getEcSignedPreKeys(EXISTS_UUID,
+        List.of(SAMPLE_DEVICE_ID, SAMPLE_DEVICE_ID2, SAMPLE_DEVICE_ID3, SAMPLE_DEVICE_ID4));
+    verify(KEYS).takeDevicePreKeys(EXISTS_UUID,
+        List.of(SAMPLE_DEVICE_ID, SAMPLE_DEVICE_ID2, SAMPLE_DEVICE_ID3, SAMPLE_DEVICE_ID4));
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -743,10 +749,10 @@ class KeysControllerTest {
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID3);
     verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID4);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID4);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID2);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID3);
-    verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID4);
+    verify(KEYS).getEcSignedPreKeys(EXISTS_UUID,
+        List.of(SAMPLE_DEVICE_ID, SAMPLE_DEVICE_ID2, SAMPLE_DEVICE_ID3, SAMPLE_DEVICE_ID4));
+    verify(KEYS).takeDevicePreKeys(EXISTS_UUID,
+        List.of(SAMPLE_DEVICE_ID, SAMPLE_DEVICE_ID2, SAMPLE_DEVICE_ID3, SAMPLE_DEVICE_ID4));
     verifyNoMoreInteractions(KEYS);
   }
 
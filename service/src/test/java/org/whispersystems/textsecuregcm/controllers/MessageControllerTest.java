@@ -16,6 +16,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.anyBoolean;
@@ -29,7 +30,6 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.whispersystems.textsecuregcm.tests.util.JsonHelpers.asJson;
 import static org.whispersystems.textsecuregcm.tests.util.JsonHelpers.jsonFixture;
-import static org.whispersystems.textsecuregcm.util.MockUtils.exactly;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -48,6 +48,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -90,6 +91,7 @@ import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicInboundMess
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessagesConfiguration;
 import org.whispersystems.textsecuregcm.entities.AccountMismatchedDevices;
 import org.whispersystems.textsecuregcm.entities.AccountStaleDevices;
+import org.whispersystems.textsecuregcm.entities.AcknowledgeMessagesRequest;
 import org.whispersystems.textsecuregcm.entities.IncomingMessage;
 import org.whispersystems.textsecuregcm.entities.IncomingMessageList;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
@@ -252,7 +254,7 @@ class MessageControllerTest {
 
     final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
     when(dynamicConfiguration.getInboundMessageByteLimitConfiguration()).thenReturn(inboundMessageByteLimitConfiguration);
-    when(dynamicConfiguration.getMessagesConfiguration()).thenReturn(new DynamicMessagesConfiguration(true, true));
+    when(dynamicConfiguration.getMessagesConfiguration()).thenReturn(new DynamicMessagesConfiguration(true, true, false));
 
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
 
@@ -262,6 +264,8 @@ class MessageControllerTest {
 
     when(rateLimiter.validateAsync(any(UUID.class))).thenReturn(CompletableFuture.completedFuture(null));
 
+    when(messageSender.sendMessages(any(), anyBoolean(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
     clock.unpin();
   }
 
@@ -806,6 +810,55 @@ class MessageControllerTest {
     }
   }
 
+  @Test
+  void testAcknowledgeMessages() {
+    final long clientTimestamp = System.currentTimeMillis();
+    final UUID sourceUuid = UUID.randomUUID();
+
+    final UUID uuid1 = UUID.randomUUID();
+    final UUID uuid2 = UUID.randomUUID();
+    final UUID uuid3 = UUID.randomUUID();
+
+    when(messagesManager.delete(AuthHelper.VALID_UUID, AuthHelper.VALID_DEVICE, List.of(uuid1, uuid2, uuid3)))
+        .thenReturn(CompletableFutureTestUtil.almostCompletedFuture(List.of(
+            new RemovedMessage(Optional.of(new AciServiceIdentifier(sourceUuid)),
+                new AciServiceIdentifier(AuthHelper.VALID_UUID), uuid1, 0, clientTimestamp,
+                Envelope.Type.CIPHERTEXT),
+            new RemovedMessage(Optional.of(new AciServiceIdentifier(sourceUuid)),
+                new AciServiceIdentifier(AuthHelper.VALID_UUID), uuid2, 0, clientTimestamp,
+                Envelope.Type.SERVER_DELIVERY_RECEIPT))));
+
+    try (final Response response = resources.getJerseyTest()
+        .target("/v1/messages/acknowledge")
+        .request()
+        .header("Authorization", AuthHelper.getAuthHeader(AuthHelper.VALID_UUID, AuthHelper.VALID_PASSWORD))
+        .put(Entity.json(new AcknowledgeMessagesRequest(List.of(uuid1, uuid2, uuid3))))) {
+
+      assertThat("Good Response Code", response.getStatus(), is(equalTo(204)));
+
+      // Only the non-receipt message should generate a delivery receipt
+      verify(receiptSender).sendReceipt(eq(new AciServiceIdentifier(AuthHelper.VALID_UUID)), eq((byte) 1),
+          eq(new AciServiceIdentifier(sourceUuid)), eq(clientTimestamp));
+      verifyNoMoreInteractions(receiptSender);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, AcknowledgeMessagesRequest.MAX_MESSAGE_GUIDS + 1})
+  void testAcknowledgeMessagesBadBatchSize(final int batchSize) {
+    final List<UUID> messageGuids = IntStream.range(0, batchSize).mapToObj(ignored -> UUID.randomUUID()).toList();
+
+    try (final Response response = resources.getJerseyTest()
+        .target("/v1/messages/acknowledge")
+        .request()
+        .header("Authorization", AuthHelper.getAuthHeader(AuthHelper.VALID_UUID, AuthHelper.VALID_PASSWORD))
+        .put(Entity.json(new AcknowledgeMessagesRequest(messageGuids)))) {
+
+      assertThat("Bad Response Code", response.getStatus(), is(equalTo(422)));
+      verify(messagesManager, never()).delete(any(), any(), anyList());
+    }
+  }
+
   @Test
   void testReportMessageByE164() {
 
@@ -1179,7 +1232,7 @@ class MessageControllerTest {
         .put(entity)) {
 
       assertThat(response.readEntity(String.class), response.getStatus(), is(equalTo(200)));
-      verify(messageSender, times(nRecipients * devicesPerRecipient)).sendMessage(any(), any(), any(), eq(true));
+      assertEquals(nRecipients * devicesPerRecipient, captureMultiRecipientMessages(true).size());
     }
   }
 
@@ -1229,13 +1282,16 @@ class MessageControllerTest {
         .put(entity)) {
 
       assertThat("Unexpected response", response.getStatus(), is(equalTo(expectedStatus)));
-      verify(messageSender,
-          exactly(expectedMessagesSent))
-          .sendMessage(
-              any(),
-              any(),
-              argThat(env -> env.getUrgent() == urgent && !env.hasSourceServiceId() && !env.hasSourceDevice()),
-              eq(true));
+      if (expectedMessagesSent > 0) {
+        final List<MessageSender.RecipientMessage> recipientMessages = captureMultiRecipientMessages(true);
+
+        assertEquals(expectedMessagesSent, recipientMessages.size());
+        assertTrue(recipientMessages.stream()
+            .map(MessageSender.RecipientMessage::message)
+            .allMatch(env -> env.getUrgent() == urgent && !env.hasSourceServiceId() && !env.hasSourceDevice()));
+      } else {
+        verify(messageSender, never()).sendMessages(any(), anyBoolean(), any());
+      }
       if (expectedStatus == 200) {
         SendMultiRecipientMessageResponse smrmr = response.readEntity(SendMultiRecipientMessageResponse.class);
         assertThat(smrmr.uuids404(), is(empty()));
@@ -1408,13 +1464,12 @@ class MessageControllerTest {
         .put(Entity.entity(stream, MultiRecipientMessageProvider.MEDIA_TYPE))) {
 
       assertThat("Unexpected response", response.getStatus(), is(equalTo(200)));
-      verify(messageSender,
-          exactly(4))
-          .sendMessage(
-              any(),
-              any(),
-              argThat(env -> !env.hasSourceServiceId() && !env.hasSourceDevice()),
-              eq(true));
+      final List<MessageSender.RecipientMessage> recipientMessages = captureMultiRecipientMessages(true);
+
+      assertEquals(4, recipientMessages.size());
+      assertTrue(recipientMessages.stream()
+          .map(MessageSender.RecipientMessage::message)
+          .allMatch(env -> !env.hasSourceServiceId() && !env.hasSourceDevice()));
       SendMultiRecipientMessageResponse smrmr = response.readEntity(SendMultiRecipientMessageResponse.class);
       assertThat(smrmr.uuids404(), is(empty()));
     }
@@ -1734,7 +1789,15 @@ class MessageControllerTest {
   @SuppressWarnings("SameParameterValue")
   private void checkBadMultiRecipientResponse(Response response, int expectedCode) throws Exception {
     assertThat("Unexpected response", response.getStatus(), is(equalTo(expectedCode)));
-    verify(messageSender, never()).sendMessage(any(), any(), any(), anyBoolean());
+    verify(messageSender, never()).sendMessages(any(), anyBoolean(), any());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<MessageSender.RecipientMessage> captureMultiRecipientMessages(final boolean online) {
+    final ArgumentCaptor<Collection<MessageSender.RecipientMessage>> captor = ArgumentCaptor.forClass(Collection.class);
+    verify(messageSender).sendMessages(captor.capture(), eq(online), any());
+
+    return List.copyOf(captor.getValue());
   }
 
   @SuppressWarnings("SameParameterValue")
@@ -110,8 +110,10 @@ class KeysAnonymousGrpcServiceTest extends SimpleBaseGrpcTest<KeysAnonymousGrpcS
     when(keysManager.takePQ(uuid, Device.PRIMARY_ID))
         .thenReturn(CompletableFuture.completedFuture(Optional.of(kemSignedPreKey)));
 
-    when(keysManager.getEcSignedPreKey(uuid, Device.PRIMARY_ID))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(ecSignedPreKey)));
+    when(keysManager.getEcSignedPreKeys(uuid, List.of(Device.PRIMARY_ID)))
+        .thenReturn(CompletableFuture.completedFuture(Map.of(Device.PRIMARY_ID, ecSignedPreKey)));
+
+    when(keysManager.takeDevicePreKeys(any(), any())).thenCallRealMethod();
 
     final GetPreKeysResponse response = unauthenticatedServiceStub().getPreKeys(GetPreKeysAnonymousRequest.newBuilder()
         .setUnidentifiedAccessKey(ByteString.copyFrom(unidentifiedAccessKey))
@@ -161,8 +163,10 @@ class KeysAnonymousGrpcServiceTest extends SimpleBaseGrpcTest<KeysAnonymousGrpcS
     when(keysManager.takePQ(uuid, Device.PRIMARY_ID))
         .thenReturn(CompletableFuture.completedFuture(Optional.of(kemSignedPreKey)));
 
-    when(keysManager.getEcSignedPreKey(uuid, Device.PRIMARY_ID))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(ecSignedPreKey)));
+    when(keysManager.getEcSignedPreKeys(uuid, List.of(Device.PRIMARY_ID)))
+        .thenReturn(CompletableFuture.completedFuture(Map.of(Device.PRIMARY_ID, ecSignedPreKey)));
+
+    when(keysManager.takeDevicePreKeys(any(), any())).thenCallRealMethod();
 
     // Expirations must be on day boundaries or libsignal will refuse to create or verify the token
     final Instant expiration = Instant.now().truncatedTo(ChronoUnit.DAYS);
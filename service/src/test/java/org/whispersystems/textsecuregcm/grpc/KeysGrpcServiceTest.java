@@ -11,6 +11,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyByte;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -499,8 +500,10 @@ class KeysGrpcServiceTest extends SimpleBaseGrpcTest<KeysGrpcService, KeysGrpc.K
     ecOneTimePreKeys.forEach((deviceId, preKey) -> when(keysManager.takeEC(identifier, deviceId))
         .thenReturn(CompletableFuture.completedFuture(Optional.of(preKey))));
 
-    ecSignedPreKeys.forEach((deviceId, preKey) -> when(keysManager.getEcSignedPreKey(identifier, deviceId))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(preKey))));
+    when(keysManager.getEcSignedPreKeys(eq(identifier), any()))
+        .thenReturn(CompletableFuture.completedFuture(ecSignedPreKeys));
+
+    when(keysManager.takeDevicePreKeys(any(), any())).thenCallRealMethod();
 
     kemPreKeys.forEach((deviceId, preKey) -> when(keysManager.takePQ(identifier, deviceId))
         .thenReturn(CompletableFuture.completedFuture(Optional.of(preKey))));
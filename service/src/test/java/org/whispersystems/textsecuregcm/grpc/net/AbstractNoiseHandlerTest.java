@@ -185,14 +185,19 @@ abstract class AbstractNoiseHandlerTest extends AbstractLeakDetectionTest {
     assertTrue(embeddedChannel.inboundMessages().isEmpty());
   }
 
-  @Test
-  void channelRead() throws Throwable {
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void channelRead(final boolean directBuffer) throws Throwable {
     final CipherStatePair clientCipherStatePair = doHandshake();
     final byte[] plaintext = "ping".getBytes(StandardCharsets.UTF_8);
     final byte[] ciphertext = new byte[plaintext.length + clientCipherStatePair.getSender().getMACLength()];
     clientCipherStatePair.getSender().encryptWithAd(null, plaintext, 0, ciphertext, 0, plaintext.length);
 
-    final BinaryWebSocketFrame ciphertextFrame = new BinaryWebSocketFrame(Unpooled.wrappedBuffer(ciphertext));
+    final ByteBuf ciphertextBuffer = directBuffer
+        ? Unpooled.directBuffer(ciphertext.length).writeBytes(ciphertext)
+        : Unpooled.wrappedBuffer(ciphertext);
+
+    final BinaryWebSocketFrame ciphertextFrame = new BinaryWebSocketFrame(ciphertextBuffer);
     assertTrue(embeddedChannel.writeOneInbound(ciphertextFrame).await().isSuccess());
     assertEquals(0, ciphertextFrame.refCnt());
 
@@ -248,6 +253,38 @@ abstract class AbstractNoiseHandlerTest extends AbstractLeakDetectionTest {
     assertArrayEquals(plaintext, decryptedPlaintext);
   }
 
+  @Test
+  void writeCoalesced() throws Throwable {
+    final CipherStatePair clientCipherStatePair = doHandshake();
+    final byte[] plaintext = "A plaintext message written in several parts".getBytes(StandardCharsets.UTF_8);
+
+    final ByteBuf firstPlaintextBuffer = Unpooled.wrappedBuffer(plaintext, 0, 10);
+    final ByteBuf emptyPlaintextBuffer = Unpooled.buffer(0);
+    final ByteBuf secondPlaintextBuffer = Unpooled.wrappedBuffer(plaintext, 10, plaintext.length - 10);
+
+    final ChannelFuture firstWriteFuture = embeddedChannel.pipeline().write(firstPlaintextBuffer);
+    final ChannelFuture emptyWriteFuture = embeddedChannel.pipeline().write(emptyPlaintextBuffer);
+    final ChannelFuture secondWriteFuture = embeddedChannel.pipeline().write(secondPlaintextBuffer);
+
+    // Nothing should be sent until the writes are flushed
+    assertTrue(embeddedChannel.outboundMessages().isEmpty());
+    assertFalse(firstWriteFuture.isDone());
+    assertFalse(secondWriteFuture.isDone());
+
+    embeddedChannel.pipeline().flush();
+
+    assertTrue(firstWriteFuture.isSuccess());
+    assertTrue(emptyWriteFuture.isSuccess());
+    assertTrue(secondWriteFuture.isSuccess());
+    assertEquals(0, firstPlaintextBuffer.refCnt());
+    assertEquals(0, emptyPlaintextBuffer.refCnt());
+    assertEquals(0, secondPlaintextBuffer.refCnt());
+
+    // All of the writes should have been combined into a single frame
+    assertArrayEquals(plaintext, readNextPlaintext(clientCipherStatePair));
+    assertTrue(embeddedChannel.outboundMessages().isEmpty());
+  }
+
   @Test
   void writeUnexpectedMessageType() throws Throwable {
     doHandshake();
@@ -194,12 +194,14 @@ class NoiseWebSocketTunnelServerIntegrationTest extends AbstractLeakDetectionTes
         new X509Certificate[]{serverTlsCertificate},
         serverTlsPrivateKey,
         nioEventLoopGroup,
+        1,
         delegatedTaskExecutor,
         clientConnectionManager,
         clientPublicKeysManager,
         serverKeyPair,
         authenticatedGrpcServerAddress,
         anonymousGrpcServerAddress,
+        null,
         RECOGNIZED_PROXY_SECRET);
 
     tlsNoiseWebSocketTunnelServer.start();
@@ -208,12 +210,14 @@ class NoiseWebSocketTunnelServerIntegrationTest extends AbstractLeakDetectionTes
         null,
         null,
         nioEventLoopGroup,
+        1,
         delegatedTaskExecutor,
         clientConnectionManager,
         clientPublicKeysManager,
         serverKeyPair,
         authenticatedGrpcServerAddress,
         anonymousGrpcServerAddress,
+        null,
         RECOGNIZED_PROXY_SECRET);
 
     plaintextNoiseWebSocketTunnelServer.start();
@@ -0,0 +1,88 @@
+package org.whispersystems.textsecuregcm.grpc.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PeerAffinityEventLoopGroupTest {
+
+  private DefaultEventLoopGroup eventLoopGroup;
+  private PeerAffinityEventLoopGroup peerAffinityEventLoopGroup;
+
+  private Channel serverChannel;
+
+  private final AtomicReference<CompletableFuture<EventLoop>> serverSideEventLoopFuture = new AtomicReference<>();
+
+  private static final LocalAddress SERVER_ADDRESS = new LocalAddress("peer-affinity-test-server");
+
+  @BeforeEach
+  void setUp() throws InterruptedException {
+    eventLoopGroup = new DefaultEventLoopGroup(4);
+    peerAffinityEventLoopGroup = new PeerAffinityEventLoopGroup(eventLoopGroup);
+
+    serverChannel = new ServerBootstrap()
+        .group(peerAffinityEventLoopGroup)
+        .channel(LocalServerChannel.class)
+        .localAddress(SERVER_ADDRESS)
+        .childHandler(new ChannelInitializer<LocalChannel>() {
+          @Override
+          protected void initChannel(final LocalChannel localChannel) {
+            serverSideEventLoopFuture.get().complete(localChannel.eventLoop());
+          }
+        })
+        .bind()
+        .sync()
+        .channel();
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    serverChannel.close().sync();
+    eventLoopGroup.shutdownGracefully(100, 100, TimeUnit.MILLISECONDS).await();
+  }
+
+  @Test
+  void register() throws Exception {
+    int connection = 0;
+
+    for (final EventExecutor eventExecutor : eventLoopGroup) {
+      final EventLoop clientEventLoop = (EventLoop) eventExecutor;
+      final LocalAddress clientAddress = new LocalAddress("peer-affinity-test-client-" + connection++);
+
+      serverSideEventLoopFuture.set(new CompletableFuture<>());
+      peerAffinityEventLoopGroup.expectConnection(clientAddress, clientEventLoop);
+
+      final Channel clientChannel = new Bootstrap()
+          .group(clientEventLoop)
+          .channel(LocalChannel.class)
+          .localAddress(clientAddress)
+          .remoteAddress(SERVER_ADDRESS)
+          .handler(new ChannelInboundHandlerAdapter())
+          .connect()
+          .sync()
+          .channel();
+
+      peerAffinityEventLoopGroup.forgetConnection(clientAddress);
+
+      assertEquals(clientEventLoop, serverSideEventLoopFuture.get().get(1, TimeUnit.SECONDS));
+
+      clientChannel.close().sync();
+    }
+  }
+}
@@ -5,11 +5,16 @@
 
 package org.whispersystems.textsecuregcm.limits;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -20,11 +25,15 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicRateLimitPolicy;
 import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
 import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
 import org.whispersystems.textsecuregcm.storage.DynamicConfigurationManager;
@@ -52,6 +61,11 @@ public class RateLimitersLuaScriptTest {
   private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfig =
       MockUtils.buildMock(DynamicConfigurationManager.class, cfg -> when(cfg.getConfiguration()).thenReturn(configuration));
 
+  @BeforeEach
+  void setUp() {
+    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(false, null, 0, null, 0));
+  }
+
   @Test
   public void testWithEmbeddedRedis() throws Exception {
     final RateLimiters.For descriptor = RateLimiters.For.REGISTRATION;
@@ -60,6 +74,7 @@ public class RateLimitersLuaScriptTest {
         Map.of(descriptor.id(), new RateLimiterConfig(60, Duration.ofSeconds(1))),
         dynamicConfig,
         RateLimiters.defaultScript(redisCluster),
+        RateLimiters.defaultLeaseScript(redisCluster),
         redisCluster,
         Clock.systemUTC());
 
@@ -77,6 +92,7 @@ public class RateLimitersLuaScriptTest {
         Map.of(descriptor.id(), new RateLimiterConfig(1000, Duration.ofSeconds(1))),
         dynamicConfig,
         RateLimiters.defaultScript(redisCluster),
+        RateLimiters.defaultLeaseScript(redisCluster),
         redisCluster,
         Clock.systemUTC());
 
@@ -87,6 +103,204 @@ public class RateLimitersLuaScriptTest {
     assertTrue(ttl <= 200000);
   }
 
+  @Test
+  public void testLeasedPermits() {
+    final String rateLimiterName = "leased";
+    final int bucketSize = 1000;
+    final double leaseFraction = 0.1;
+    final int servers = 4;
+    final int attempts = 1000;
+
+    when(configuration.getRateLimitPolicy()).thenReturn(
+        new DynamicRateLimitPolicy(false, Set.of(rateLimiterName), leaseFraction, Duration.ofMinutes(1), 0));
+
+    final FaultTolerantRedisClusterClient redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final ClusterLuaScript validateScript = spy(RateLimiters.defaultScript(redisCluster));
+    final ClusterLuaScript leaseScript = RateLimiters.defaultLeaseScript(redisCluster);
+    final RateLimiterConfig config = new RateLimiterConfig(bucketSize, Duration.ofHours(1));
+
+    // Each rate limiter stands in for a separate server sharing the same bucket
+    final RateLimiter[] rateLimiters = new RateLimiter[servers];
+
+    for (int i = 0; i < servers; i++) {
+      rateLimiters[i] = new StaticRateLimiter(rateLimiterName, config, validateScript, leaseScript, redisCluster, clock,
+          dynamicConfig);
+    }
+
+    int permitted = 0;
+
+    for (int i = 0; i < attempts; i++) {
+      try {
+        rateLimiters[i % servers].validate("test", 1);
+        permitted++;
+      } catch (final RateLimitExceededException ignored) {
+      }
+    }
+
+    // Leased permits are taken from the shared bucket up front, so leasing can never permit more actions than the
+    // bucket allows, and at most one lease per server may go unused
+    final int leaseSize = (int) (bucketSize * leaseFraction);
+
+    assertTrue(permitted <= bucketSize);
+    assertTrue(permitted >= bucketSize - servers * leaseSize);
+
+    verify(validateScript, atMost(attempts / 4)).execute(any(), any());
+  }
+
+  @Test
+  public void testLeasedPermitsManyServers() {
+    final String rateLimiterName = "leased";
+    final int bucketSize = 1000;
+    final double leaseFraction = 0.1;
+    final Duration leaseDuration = Duration.ofSeconds(1);
+
+    // Enough servers that leasing a fixed fraction of the bucket on each of them would exhaust the bucket
+    final int servers = 20;
+
+    when(configuration.getRateLimitPolicy()).thenReturn(
+        new DynamicRateLimitPolicy(false, Set.of(rateLimiterName), leaseFraction, leaseDuration, 0));
+
+    final FaultTolerantRedisClusterClient redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final ClusterLuaScript validateScript = RateLimiters.defaultScript(redisCluster);
+    final ClusterLuaScript leaseScript = RateLimiters.defaultLeaseScript(redisCluster);
+    final RateLimiterConfig config = new RateLimiterConfig(bucketSize, Duration.ofHours(1));
+
+    // Each rate limiter stands in for a separate server sharing the same bucket
+    final RateLimiter[] rateLimiters = new RateLimiter[servers];
+
+    for (int i = 0; i < servers; i++) {
+      rateLimiters[i] = new StaticRateLimiter(rateLimiterName, config, validateScript, leaseScript, redisCluster, clock,
+          dynamicConfig);
+    }
+
+    // A key that only makes a single request on each server should never lease permits
+    for (final RateLimiter rateLimiter : rateLimiters) {
+      assertDoesNotThrow(() -> rateLimiter.validate("cold", 1));
+    }
+
+    assertEquals(bucketSize - servers, getTokensRemaining(rateLimiterName, "cold"));
+
+    // Leases never take more than a fraction of the permits that remain, so no server is starved by the others' leases
+    // and every permit in the bucket is eventually granted
+    int permitted = 0;
+
+    for (int i = 0; i < bucketSize * 2; i++) {
+      try {
+        rateLimiters[i % servers].validate("hot", 1);
+        permitted++;
+      } catch (final RateLimitExceededException ignored) {
+      }
+    }
+
+    assertEquals(bucketSize, permitted);
+
+    // Permits left in expired leases are returned to the shared bucket
+    final int warmRequests = 200;
+
+    for (int i = 0; i < warmRequests; i++) {
+      final RateLimiter rateLimiter = rateLimiters[i % servers];
+      assertDoesNotThrow(() -> rateLimiter.validate("warm", 1));
+    }
+
+    assertTrue(getTokensRemaining(rateLimiterName, "warm") < bucketSize - warmRequests);
+
+    clock.setTimeMillis(clock.millis() + leaseDuration.toMillis());
+
+    for (final RateLimiter rateLimiter : rateLimiters) {
+      rateLimiter.hasAvailablePermits("warm", 1);
+    }
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (getTokensRemaining(rateLimiterName, "warm") != bucketSize - warmRequests) {
+        Thread.sleep(10);
+      }
+    });
+  }
+
+  @Test
+  public void testExpiredLeasesReturnedWithoutFurtherRequests() {
+    final String rateLimiterName = "leased";
+    final int bucketSize = 1000;
+    final Duration leaseDuration = Duration.ofSeconds(1);
+    final int requests = 5;
+
+    when(configuration.getRateLimitPolicy()).thenReturn(
+        new DynamicRateLimitPolicy(false, Set.of(rateLimiterName), 0.1, leaseDuration, 0));
+
+    final FaultTolerantRedisClusterClient redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final StaticRateLimiter rateLimiter = new StaticRateLimiter(rateLimiterName,
+        new RateLimiterConfig(bucketSize, Duration.ofHours(1)),
+        RateLimiters.defaultScript(redisCluster),
+        RateLimiters.defaultLeaseScript(redisCluster),
+        redisCluster,
+        clock,
+        dynamicConfig);
+
+    for (int i = 0; i < requests; i++) {
+      assertDoesNotThrow(() -> rateLimiter.validate("quiet", 1));
+    }
+
+    assertTrue(getTokensRemaining(rateLimiterName, "quiet") < bucketSize - requests);
+
+    // The key never makes another request, but its lease's unspent permits are still returned once the lease expires
+    rateLimiter.returnExpiredLeases();
+    assertTrue(getTokensRemaining(rateLimiterName, "quiet") < bucketSize - requests);
+
+    clock.setTimeMillis(clock.millis() + leaseDuration.toMillis());
+    rateLimiter.returnExpiredLeases();
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (getTokensRemaining(rateLimiterName, "quiet") != bucketSize - requests) {
+        Thread.sleep(10);
+      }
+    });
+  }
+
+  @Test
+  public void testLeasesReturnedOnConfigurationChange() {
+    final String rateLimiterName = "leased";
+    final int bucketSize = 1000;
+    final int requests = 5;
+
+    when(configuration.getRateLimitPolicy()).thenReturn(
+        new DynamicRateLimitPolicy(false, Set.of(rateLimiterName), 0.1, Duration.ofMinutes(1), 0));
+
+    final AtomicReference<RateLimiterConfig> config =
+        new AtomicReference<>(new RateLimiterConfig(bucketSize, Duration.ofHours(1)));
+
+    final FaultTolerantRedisClusterClient redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final DynamicRateLimiter rateLimiter = new DynamicRateLimiter(rateLimiterName,
+        dynamicConfig,
+        config::get,
+        RateLimiters.defaultScript(redisCluster),
+        RateLimiters.defaultLeaseScript(redisCluster),
+        redisCluster,
+        clock);
+
+    for (int i = 0; i < requests; i++) {
+      assertDoesNotThrow(() -> rateLimiter.validate("quiet", 1));
+    }
+
+    assertTrue(getTokensRemaining(rateLimiterName, "quiet") < bucketSize - requests);
+
+    // Replacing the underlying rate limiter returns its leases even though they haven't expired
+    config.set(new RateLimiterConfig(bucketSize, Duration.ofHours(2)));
+    assertEquals(config.get(), rateLimiter.config());
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (getTokensRemaining(rateLimiterName, "quiet") != bucketSize - requests) {
+        Thread.sleep(10);
+      }
+    });
+  }
+
+  private long getTokensRemaining(final String rateLimiterName, final String key) {
+    final String tokensRemaining = REDIS_CLUSTER_EXTENSION.getRedisCluster().withCluster(connection ->
+        connection.sync().hget(StaticRateLimiter.bucketName(rateLimiterName, key), "s"));
+
+    return tokensRemaining != null ? Long.parseLong(tokensRemaining) : Long.MAX_VALUE;
+  }
+
   @Test
   public void testLuaUpdatesTokenBucket() throws Exception {
     final String key = "key1";
@@ -121,13 +335,14 @@ public class RateLimitersLuaScriptTest {
 
   @Test
   public void testFailOpen() throws Exception {
-    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(true));
+    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(true, null, 0, null, 0));
     final RateLimiters.For descriptor = RateLimiters.For.REGISTRATION;
     final FaultTolerantRedisClusterClient redisCluster = mock(FaultTolerantRedisClusterClient.class);
     final RateLimiters limiters = new RateLimiters(
         Map.of(descriptor.id(), new RateLimiterConfig(1000, Duration.ofSeconds(1))),
         dynamicConfig,
         RateLimiters.defaultScript(redisCluster),
+        RateLimiters.defaultLeaseScript(redisCluster),
         redisCluster,
         Clock.systemUTC());
     when(redisCluster.withCluster(any())).thenThrow(new RedisException("fail"));
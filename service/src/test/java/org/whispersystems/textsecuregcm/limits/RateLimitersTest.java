@@ -37,6 +37,8 @@ public class RateLimitersTest {
 
   private final ClusterLuaScript validateScript = mock(ClusterLuaScript.class);
 
+  private final ClusterLuaScript leaseScript = mock(ClusterLuaScript.class);
+
   private final FaultTolerantRedisClusterClient redisCluster = mock(FaultTolerantRedisClusterClient.class);
 
   private final MutableClock clock = MockUtils.mutableClock(0);
@@ -72,13 +74,13 @@ public class RateLimitersTest {
   public void testValidateConfigs() throws Exception {
     assertThrows(IllegalArgumentException.class, () -> {
       final GenericHolder cfg = DynamicConfigurationManager.parseConfiguration(BAD_YAML, GenericHolder.class).orElseThrow();
-      final RateLimiters rateLimiters = new RateLimiters(cfg.limits(), dynamicConfig, validateScript, redisCluster, clock);
+      final RateLimiters rateLimiters = new RateLimiters(cfg.limits(), dynamicConfig, validateScript, leaseScript, redisCluster, clock);
       rateLimiters.validateValuesAndConfigs();
     });
 
     final GenericHolder cfg = DynamicConfigurationManager.parseConfiguration(GOOD_YAML, GenericHolder.class).orElseThrow();
     assertTrue(cfg.rateLimitPolicy.failOpen());
-    final RateLimiters rateLimiters = new RateLimiters(cfg.limits(), dynamicConfig, validateScript, redisCluster, clock);
+    final RateLimiters rateLimiters = new RateLimiters(cfg.limits(), dynamicConfig, validateScript, leaseScript, redisCluster, clock);
     rateLimiters.validateValuesAndConfigs();
   }
 
@@ -94,6 +96,7 @@ public class RateLimitersTest {
         Collections.emptyMap(),
         dynamicConfig,
         validateScript,
+        leaseScript,
         redisCluster,
         clock) {});
 
@@ -102,13 +105,14 @@ public class RateLimitersTest {
         Collections.emptyMap(),
         dynamicConfig,
         validateScript,
+        leaseScript,
         redisCluster,
         clock) {};
   }
 
   @Test
   void testUnchangingConfiguration() {
-    final RateLimiters rateLimiters = new RateLimiters(Collections.emptyMap(), dynamicConfig, validateScript, redisCluster, clock);
+    final RateLimiters rateLimiters = new RateLimiters(Collections.emptyMap(), dynamicConfig, validateScript, leaseScript, redisCluster, clock);
     final RateLimiter limiter = rateLimiters.getRateLimitResetLimiter();
     final RateLimiterConfig expected = RateLimiters.For.RATE_LIMIT_RESET.defaultConfig();
     assertEquals(expected, config(limiter));
@@ -127,7 +131,7 @@ public class RateLimitersTest {
 
     when(configuration.getLimits()).thenReturn(limitsConfigMap);
 
-    final RateLimiters rateLimiters = new RateLimiters(Collections.emptyMap(), dynamicConfig, validateScript, redisCluster, clock);
+    final RateLimiters rateLimiters = new RateLimiters(Collections.emptyMap(), dynamicConfig, validateScript, leaseScript, redisCluster, clock);
     final RateLimiter limiter = rateLimiters.getRateLimitResetLimiter();
 
     limitsConfigMap.put(RateLimiters.For.RATE_LIMIT_RESET.id(), initialRateLimiterConfig);
@@ -155,7 +159,7 @@ public class RateLimitersTest {
 
     when(configuration.getLimits()).thenReturn(mapForDynamic);
 
-    final RateLimiters rateLimiters = new RateLimiters(mapForStatic, dynamicConfig, validateScript, redisCluster, clock);
+    final RateLimiters rateLimiters = new RateLimiters(mapForStatic, dynamicConfig, validateScript, leaseScript, redisCluster, clock);
     final RateLimiter limiter = rateLimiters.forDescriptor(descriptor);
 
     // test only default is present
@@ -16,7 +16,11 @@ import static org.mockito.Mockito.mock;
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
 import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
@@ -31,6 +35,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
+import org.whispersystems.textsecuregcm.util.Pair;
 
 class ClientPresenceManagerTest {
 
@@ -84,6 +89,33 @@ class ClientPresenceManagerTest {
     assertTrue(clientPresenceManager.isPresent(accountUuid, deviceId));
   }
 
+  @Test
+  void testIsPresentBatch() {
+    final int accountCount = 100;
+    final byte deviceId = 1;
+
+    final List<Pair<UUID, Byte>> presentIdentifiers = new ArrayList<>();
+    final List<Pair<UUID, Byte>> absentIdentifiers = new ArrayList<>();
+
+    for (int i = 0; i < accountCount; i++) {
+      final UUID accountUuid = UUID.randomUUID();
+
+      if (i % 2 == 0) {
+        clientPresenceManager.setPresent(accountUuid, deviceId, NO_OP);
+        presentIdentifiers.add(new Pair<>(accountUuid, deviceId));
+      } else {
+        absentIdentifiers.add(new Pair<>(accountUuid, deviceId));
+      }
+    }
+
+    final Map<Pair<UUID, Byte>, Boolean> expectedPresence = new HashMap<>();
+    presentIdentifiers.forEach(identifier -> expectedPresence.put(identifier, true));
+    absentIdentifiers.forEach(identifier -> expectedPresence.put(identifier, false));
+
+    assertEquals(expectedPresence, clientPresenceManager.isPresent(expectedPresence.keySet()).join());
+    assertEquals(Collections.emptyMap(), clientPresenceManager.isPresent(Collections.emptyList()).join());
+  }
+
   @Test
   void testIsLocallyPresent() {
     final UUID accountUuid = UUID.randomUUID();
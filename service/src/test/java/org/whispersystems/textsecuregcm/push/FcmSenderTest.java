@@ -11,22 +11,34 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.api.core.SettableApiFuture;
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
 import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.whispersystems.textsecuregcm.tests.util.SynchronousExecutorService;
 
 class FcmSenderTest {
@@ -124,4 +136,139 @@ class FcmSenderTest {
     verify(firebaseMessaging).sendAsync(any(Message.class));
     assertTrue(completionException.getCause() instanceof IOException);
   }
+
+  @Test
+  void testSendMessagesBatched() {
+    final FcmSender batchingFcmSender = new FcmSender(executorService, firebaseMessaging, Duration.ofMillis(100));
+
+    final FirebaseMessagingException unregisteredException = mock(FirebaseMessagingException.class);
+    when(unregisteredException.getMessagingErrorCode()).thenReturn(MessagingErrorCode.UNREGISTERED);
+
+    final SendResponse successfulResponse = mock(SendResponse.class);
+    when(successfulResponse.isSuccessful()).thenReturn(true);
+
+    final SendResponse unregisteredResponse = mock(SendResponse.class);
+    when(unregisteredResponse.isSuccessful()).thenReturn(false);
+    when(unregisteredResponse.getException()).thenReturn(unregisteredException);
+
+    final BatchResponse batchResponse = mock(BatchResponse.class);
+    when(batchResponse.getResponses()).thenReturn(List.of(successfulResponse, unregisteredResponse));
+
+    final SettableApiFuture<BatchResponse> sendFuture = SettableApiFuture.create();
+    sendFuture.set(batchResponse);
+
+    when(firebaseMessaging.sendEachAsync(any())).thenReturn(sendFuture);
+
+    final CompletableFuture<SendPushNotificationResult> firstResultFuture = batchingFcmSender.sendNotification(
+        new PushNotification("foo", PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true));
+
+    final CompletableFuture<SendPushNotificationResult> secondResultFuture = batchingFcmSender.sendNotification(
+        new PushNotification("bar", PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true));
+
+    final SendPushNotificationResult firstResult = firstResultFuture.join();
+    final SendPushNotificationResult secondResult = secondResultFuture.join();
+
+    //noinspection unchecked
+    final ArgumentCaptor<List<Message>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+    verify(firebaseMessaging).sendEachAsync(messagesCaptor.capture());
+    verify(firebaseMessaging, never()).sendAsync(any());
+    assertEquals(2, messagesCaptor.getValue().size());
+
+    assertTrue(firstResult.accepted());
+    assertFalse(firstResult.unregistered());
+
+    assertFalse(secondResult.accepted());
+    assertEquals(Optional.of("UNREGISTERED"), secondResult.errorCode());
+    assertTrue(secondResult.unregistered());
+  }
+
+  @Test
+  void testSendMessagesBatchedException() {
+    final FcmSender batchingFcmSender = new FcmSender(executorService, firebaseMessaging, Duration.ofMillis(100));
+
+    final SettableApiFuture<BatchResponse> sendFuture = SettableApiFuture.create();
+    sendFuture.setException(new IOException());
+
+    when(firebaseMessaging.sendEachAsync(any())).thenReturn(sendFuture);
+
+    final CompletionException completionException = assertThrows(CompletionException.class,
+        () -> batchingFcmSender.sendNotification(new PushNotification("foo", PushNotification.TokenType.FCM,
+            PushNotification.NotificationType.NOTIFICATION, null, null, null, true)).join());
+
+    assertTrue(completionException.getCause() instanceof IOException);
+  }
+
+  @Test
+  void testSendMessagesBatchedFullBatch() {
+    final FcmSender batchingFcmSender = new FcmSender(executorService, firebaseMessaging, Duration.ofDays(1));
+
+    final SendResponse successfulResponse = mock(SendResponse.class);
+    when(successfulResponse.isSuccessful()).thenReturn(true);
+
+    final BatchResponse batchResponse = mock(BatchResponse.class);
+    when(batchResponse.getResponses())
+        .thenReturn(Collections.nCopies(FcmSender.MAX_BATCH_SIZE, successfulResponse));
+
+    final SettableApiFuture<BatchResponse> sendFuture = SettableApiFuture.create();
+    sendFuture.set(batchResponse);
+
+    when(firebaseMessaging.sendEachAsync(any())).thenReturn(sendFuture);
+
+    // A full batch should go out immediately rather than waiting for the batch delay to elapse
+    final List<CompletableFuture<SendPushNotificationResult>> resultFutures =
+        IntStream.range(0, FcmSender.MAX_BATCH_SIZE)
+            .mapToObj(i -> batchingFcmSender.sendNotification(new PushNotification("token-" + i,
+                PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true)))
+            .toList();
+
+    resultFutures.forEach(resultFuture -> assertTrue(resultFuture.join().accepted()));
+    verify(firebaseMessaging).sendEachAsync(any());
+  }
+
+  @Test
+  void testSendMessagesBatchedStop() {
+    final FcmSender batchingFcmSender = new FcmSender(executorService, firebaseMessaging, Duration.ofDays(1));
+
+    final SendResponse successfulResponse = mock(SendResponse.class);
+    when(successfulResponse.isSuccessful()).thenReturn(true);
+
+    final BatchResponse batchResponse = mock(BatchResponse.class);
+    when(batchResponse.getResponses()).thenReturn(List.of(successfulResponse));
+
+    final SettableApiFuture<BatchResponse> sendFuture = SettableApiFuture.create();
+    sendFuture.set(batchResponse);
+
+    when(firebaseMessaging.sendEachAsync(any())).thenReturn(sendFuture);
+
+    final CompletableFuture<SendPushNotificationResult> pendingResultFuture = batchingFcmSender.sendNotification(
+        new PushNotification("foo", PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true));
+
+    assertFalse(pendingResultFuture.isDone());
+
+    // Stopping should flush the pending batch rather than leaving it to a flush that may never run
+    batchingFcmSender.stop();
+    assertTrue(pendingResultFuture.join().accepted());
+
+    // Once stopped, notifications should go out immediately
+    assertTrue(batchingFcmSender.sendNotification(
+        new PushNotification("bar", PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true))
+        .join().accepted());
+
+    verify(firebaseMessaging, times(2)).sendEachAsync(any());
+  }
+
+  @Test
+  void testSendMessagesBatchedExecutorRejected() {
+    final ExecutorService shutDownExecutor = Executors.newSingleThreadExecutor();
+    shutDownExecutor.shutdown();
+
+    final FcmSender batchingFcmSender = new FcmSender(shutDownExecutor, firebaseMessaging, Duration.ofMillis(1));
+
+    final CompletionException completionException = assertThrows(CompletionException.class,
+        () -> batchingFcmSender.sendNotification(new PushNotification("foo", PushNotification.TokenType.FCM,
+            PushNotification.NotificationType.NOTIFICATION, null, null, null, true)).join());
+
+    assertTrue(completionException.getCause() instanceof RejectedExecutionException);
+    verify(firebaseMessaging, never()).sendEachAsync(any());
+  }
 }
@@ -20,7 +20,11 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.protobuf.ByteString;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -31,6 +35,8 @@ import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.storage.QueuedMessage;
+import org.whispersystems.textsecuregcm.util.Pair;
 
 class MessageSenderTest {
 
@@ -161,6 +167,64 @@ class MessageSenderTest {
     verify(messagesManager).insert(ACCOUNT_UUID, DEVICE_ID, message);
   }
 
+  @Test
+  void testSendOnlineMessagesBatch() {
+    final Device absentDevice = mock(Device.class);
+    final byte absentDeviceId = DEVICE_ID + 1;
+    when(absentDevice.getId()).thenReturn(absentDeviceId);
+
+    when(clientPresenceManager.isPresent(any())).thenReturn(CompletableFuture.completedFuture(Map.of(
+        new Pair<>(ACCOUNT_UUID, DEVICE_ID), true,
+        new Pair<>(ACCOUNT_UUID, absentDeviceId), false)));
+    when(messagesManager.insert(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    messageSender.sendMessages(List.of(
+        new MessageSender.RecipientMessage(account, device, message),
+        new MessageSender.RecipientMessage(account, absentDevice, message)), true, Runnable::run).join();
+
+    @SuppressWarnings("unchecked") final ArgumentCaptor<Collection<QueuedMessage>> queuedMessagesCaptor =
+        ArgumentCaptor.forClass(Collection.class);
+
+    verify(messagesManager).insert(queuedMessagesCaptor.capture());
+    verify(messagesManager).removeRecipientViewFromMrmData(absentDeviceId, message);
+
+    final List<QueuedMessage> queuedMessages = List.copyOf(queuedMessagesCaptor.getValue());
+    assertEquals(1, queuedMessages.size());
+    assertEquals(DEVICE_ID, queuedMessages.getFirst().destinationDeviceId());
+    assertTrue(queuedMessages.getFirst().message().getEphemeral());
+
+    verifyNoInteractions(pushNotificationManager);
+  }
+
+  @Test
+  void testSendMessagesBatch() throws Exception {
+    final Device absentDevice = mock(Device.class);
+    final byte absentDeviceId = DEVICE_ID + 1;
+    when(absentDevice.getId()).thenReturn(absentDeviceId);
+
+    when(clientPresenceManager.isPresent(any())).thenReturn(CompletableFuture.completedFuture(Map.of(
+        new Pair<>(ACCOUNT_UUID, DEVICE_ID), true,
+        new Pair<>(ACCOUNT_UUID, absentDeviceId), false)));
+    when(messagesManager.insert(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    messageSender.sendMessages(List.of(
+        new MessageSender.RecipientMessage(account, device, message),
+        new MessageSender.RecipientMessage(account, absentDevice, message)), false, Runnable::run).join();
+
+    @SuppressWarnings("unchecked") final ArgumentCaptor<Collection<QueuedMessage>> queuedMessagesCaptor =
+        ArgumentCaptor.forClass(Collection.class);
+
+    verify(messagesManager).insert(queuedMessagesCaptor.capture());
+
+    assertEquals(List.of(
+            new QueuedMessage(ACCOUNT_UUID, DEVICE_ID, message),
+            new QueuedMessage(ACCOUNT_UUID, absentDeviceId, message)),
+        List.copyOf(queuedMessagesCaptor.getValue()));
+
+    verify(pushNotificationManager).sendNewMessageNotification(account, absentDeviceId, message.getUrgent());
+    verify(pushNotificationManager, never()).sendNewMessageNotification(account, DEVICE_ID, message.getUrgent());
+  }
+
   private MessageProtos.Envelope generateRandomMessage() {
     return MessageProtos.Envelope.newBuilder()
         .setClientTimestamp(System.currentTimeMillis())
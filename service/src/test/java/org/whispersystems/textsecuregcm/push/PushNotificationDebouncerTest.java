@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.push;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.whispersystems.textsecuregcm.identity.IdentityType;
+import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
+import org.whispersystems.textsecuregcm.storage.Account;
+import org.whispersystems.textsecuregcm.storage.Device;
+
+class PushNotificationDebouncerTest {
+
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
+  private Account account;
+  private Device device;
+
+  private PushNotificationDebouncer pushNotificationDebouncer;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    account = mock(Account.class);
+    when(account.getIdentifier(IdentityType.ACI)).thenReturn(UUID.randomUUID());
+
+    device = mock(Device.class);
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+
+    pushNotificationDebouncer = new PushNotificationDebouncer(REDIS_CLUSTER_EXTENSION.getRedisCluster());
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void shouldSendNotification(final boolean urgent) {
+    assertTrue(pushNotificationDebouncer.shouldSendNotification(account, device, urgent).join());
+    assertFalse(pushNotificationDebouncer.shouldSendNotification(account, device, urgent).join());
+    assertFalse(pushNotificationDebouncer.shouldSendNotification(account, device, false).join());
+  }
+
+  @Test
+  void shouldSendNotificationUrgentAfterNonUrgent() {
+    assertTrue(pushNotificationDebouncer.shouldSendNotification(account, device, false).join());
+    assertTrue(pushNotificationDebouncer.shouldSendNotification(account, device, true).join());
+    assertFalse(pushNotificationDebouncer.shouldSendNotification(account, device, true).join());
+  }
+
+  @Test
+  void reset() {
+    assertTrue(pushNotificationDebouncer.shouldSendNotification(account, device, true).join());
+
+    pushNotificationDebouncer.reset(account, device).join();
+
+    assertTrue(pushNotificationDebouncer.shouldSendNotification(account, device, true).join());
+  }
+}
@@ -5,7 +5,11 @@
 
 package org.whispersystems.textsecuregcm.push;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -15,10 +19,12 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.common.net.HttpHeaders;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -34,6 +40,7 @@ class PushNotificationManagerTest {
   private APNSender apnSender;
   private FcmSender fcmSender;
   private PushNotificationScheduler pushNotificationScheduler;
+  private PushNotificationDebouncer pushNotificationDebouncer;
 
   private PushNotificationManager pushNotificationManager;
 
@@ -43,11 +50,17 @@ class PushNotificationManagerTest {
     apnSender = mock(APNSender.class);
     fcmSender = mock(FcmSender.class);
     pushNotificationScheduler = mock(PushNotificationScheduler.class);
+    pushNotificationDebouncer = mock(PushNotificationDebouncer.class);
+
+    when(pushNotificationDebouncer.shouldSendNotification(any(), any(), anyBoolean()))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    when(pushNotificationDebouncer.reset(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
     AccountsHelper.setupMockUpdate(accountsManager);
 
-    pushNotificationManager =
-        new PushNotificationManager(accountsManager, apnSender, fcmSender, pushNotificationScheduler);
+    pushNotificationManager = new PushNotificationManager(accountsManager, apnSender, fcmSender,
+        pushNotificationScheduler, pushNotificationDebouncer);
   }
 
   @ParameterizedTest
@@ -65,8 +78,88 @@ class PushNotificationManagerTest {
     when(fcmSender.sendNotification(any()))
         .thenReturn(CompletableFuture.completedFuture(new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty())));
 
-    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, urgent);
+    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, urgent).join();
     verify(fcmSender).sendNotification(new PushNotification(deviceToken, PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, account, device, urgent));
+    verify(pushNotificationDebouncer, never()).reset(any(), any());
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void sendNewMessageNotificationRejected(final boolean urgent) throws NotPushRegisteredException {
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+    when(device.getGcmId()).thenReturn("token");
+    when(account.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(device));
+
+    when(fcmSender.sendNotification(any()))
+        .thenReturn(CompletableFuture.completedFuture(new SendPushNotificationResult(false, Optional.of("INTERNAL"), false, Optional.empty())));
+
+    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, urgent).join();
+
+    // A rejected notification shouldn't suppress follow-up notifications
+    verify(pushNotificationDebouncer).reset(account, device);
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void sendNewMessageNotificationFailed(final boolean urgent) throws NotPushRegisteredException {
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+    when(device.getGcmId()).thenReturn("token");
+    when(account.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(device));
+
+    when(fcmSender.sendNotification(any()))
+        .thenReturn(CompletableFuture.failedFuture(new IOException("OH NO")));
+
+    final CompletionException completionException = assertThrows(CompletionException.class,
+        () -> pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, urgent).join());
+
+    assertInstanceOf(IOException.class, completionException.getCause());
+
+    // A notification that could not be sent shouldn't suppress follow-up notifications
+    verify(pushNotificationDebouncer).reset(account, device);
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void sendNewMessageNotificationDebounced(final boolean urgent) throws NotPushRegisteredException {
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+    when(device.getGcmId()).thenReturn("token");
+    when(account.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(device));
+
+    when(pushNotificationDebouncer.shouldSendNotification(account, device, urgent))
+        .thenReturn(CompletableFuture.completedFuture(false));
+
+    assertEquals(Optional.empty(),
+        pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, urgent).join());
+
+    verify(pushNotificationDebouncer).shouldSendNotification(account, device, urgent);
+    verifyNoInteractions(fcmSender);
+  }
+
+  @Test
+  void sendNewMessageNotificationNonUrgentApnsNotDebounced() throws NotPushRegisteredException {
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+    when(device.getApnId()).thenReturn("token");
+    when(account.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(device));
+
+    when(pushNotificationScheduler.scheduleBackgroundApnsNotification(account, device))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, false).join();
+
+    verify(pushNotificationScheduler).scheduleBackgroundApnsNotification(account, device);
+    verifyNoInteractions(pushNotificationDebouncer, apnSender);
   }
 
   @Test
@@ -288,5 +381,6 @@ class PushNotificationManagerTest {
     pushNotificationManager.handleMessagesRetrieved(account, device, userAgent);
 
     verify(pushNotificationScheduler).cancelScheduledNotifications(account, device);
+    verify(pushNotificationDebouncer).reset(account, device);
   }
 }
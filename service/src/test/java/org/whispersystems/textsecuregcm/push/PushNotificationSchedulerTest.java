@@ -7,6 +7,7 @@ package org.whispersystems.textsecuregcm.push;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
@@ -19,6 +20,8 @@ import io.lettuce.core.cluster.SlotHash;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -73,8 +76,8 @@ class PushNotificationSchedulerTest {
 
     final AccountsManager accountsManager = mock(AccountsManager.class);
     when(accountsManager.getByE164(ACCOUNT_NUMBER)).thenReturn(Optional.of(account));
-    when(accountsManager.getByAccountIdentifierAsync(ACCOUNT_UUID))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
+    when(accountsManager.getByAccountIdentifiers(List.of(ACCOUNT_UUID)))
+        .thenReturn(CompletableFuture.completedFuture(Map.of(ACCOUNT_UUID, account)));
 
     apnSender = mock(APNSender.class);
     fcmSender = mock(FcmSender.class);
@@ -239,6 +242,68 @@ class PushNotificationSchedulerTest {
         pushNotificationScheduler.getNextScheduledDelayedNotificationTimestamp(account, device));
   }
 
+  @Test
+  void testDueSlotIndex() {
+    final PushNotificationScheduler.NotificationWorker worker = pushNotificationScheduler.new NotificationWorker(1);
+    final int slot = SlotHash.getSlot(PushNotificationScheduler.getDelayedNotificationQueueKey(account, device));
+
+    clock.pin(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+
+    pushNotificationScheduler.scheduleDelayedNotification(account, device, Duration.ofMinutes(2)).join();
+    assertEquals(Optional.of(clock.instant().plus(Duration.ofMinutes(2))), getDueSlotTimestamp(slot));
+
+    // Scheduling an earlier notification should move the slot's index entry earlier, but a later notification shouldn't
+    // move it later
+    pushNotificationScheduler.scheduleBackgroundApnsNotification(account, device).toCompletableFuture().join();
+    assertEquals(Optional.of(clock.instant()), getDueSlotTimestamp(slot));
+
+    pushNotificationScheduler.scheduleDelayedNotification(account, device, Duration.ofMinutes(3)).join();
+    assertEquals(Optional.of(clock.instant()), getDueSlotTimestamp(slot));
+
+    assertEquals(1, worker.processScheduledBackgroundApnsNotifications(slot));
+    worker.updateDueSlotIndex(slot);
+
+    assertEquals(Optional.of(clock.instant().plus(Duration.ofMinutes(3))), getDueSlotTimestamp(slot));
+
+    clock.pin(clock.instant().plus(Duration.ofMinutes(3)));
+
+    assertEquals(1, worker.processScheduledDelayedNotifications(slot));
+    worker.updateDueSlotIndex(slot);
+
+    assertEquals(Optional.empty(), getDueSlotTimestamp(slot));
+  }
+
+  @Test
+  void testExtendSlotRangeLease() {
+    final PushNotificationScheduler.NotificationWorker worker = pushNotificationScheduler.new NotificationWorker(1);
+    final PushNotificationScheduler.NotificationWorker otherWorker = pushNotificationScheduler.new NotificationWorker(1);
+    final int slotRange = 7;
+    final String leaseKey = PushNotificationScheduler.getSlotRangeLeaseKey(slotRange);
+
+    assertTrue(worker.acquireSlotRangeLease(slotRange));
+    assertFalse(otherWorker.acquireSlotRangeLease(slotRange));
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync().pexpire(leaseKey, 1_000));
+
+    assertTrue(worker.extendSlotRangeLease(slotRange));
+    assertTrue(REDIS_CLUSTER_EXTENSION.getRedisCluster().withCluster(connection ->
+        connection.sync().pttl(leaseKey)) > 1_000);
+
+    // Simulate the lease expiring and another worker claiming the range; the original worker must not extend (and so
+    // effectively steal) the other worker's lease
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync().del(leaseKey));
+
+    assertTrue(otherWorker.acquireSlotRangeLease(slotRange));
+    assertFalse(worker.extendSlotRangeLease(slotRange));
+    assertTrue(otherWorker.extendSlotRangeLease(slotRange));
+  }
+
+  private Optional<Instant> getDueSlotTimestamp(final int slot) {
+    return Optional.ofNullable(REDIS_CLUSTER_EXTENSION.getRedisCluster().withCluster(connection ->
+            connection.sync().zscore(PushNotificationScheduler.getDueSlotIndexKey(slot), String.valueOf(slot))))
+        .map(timestamp -> Instant.ofEpochMilli(timestamp.longValue()));
+  }
+
   @ParameterizedTest
   @CsvSource({
       "1, true",
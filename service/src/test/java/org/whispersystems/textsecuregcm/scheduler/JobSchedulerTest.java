@@ -2,13 +2,18 @@ package org.whispersystems.textsecuregcm.scheduler;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -19,7 +24,9 @@ import org.whispersystems.textsecuregcm.storage.DynamoDbExtension;
 import org.whispersystems.textsecuregcm.storage.DynamoDbExtensionSchema;
 import org.whispersystems.textsecuregcm.util.TestClock;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 
 class JobSchedulerTest {
 
@@ -96,6 +103,99 @@ class JobSchedulerTest {
         "Jobs should be cleared after successful processing; job counter should not increment on second run");
   }
 
+  @Test
+  void processAvailableJobsMultiplePartitions() {
+    final TestClock testClock = TestClock.pinned(CURRENT_TIME);
+
+    final TestJobScheduler scheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        testClock);
+
+    final int jobCount = 100;
+
+    // Spread jobs across shards and across the current and previous time buckets
+    for (int i = 0; i < jobCount; i++) {
+      final Instant runAt = CURRENT_TIME.minus(JobScheduler.TIME_BUCKET_DURATION.multipliedBy(i % 2));
+      scheduler.scheduleJob(scheduler.buildRunAtAttribute(runAt, i), runAt.plus(Duration.ofDays(7)), null).join();
+    }
+
+    scheduler.processAvailableJobs().block();
+    assertEquals(jobCount, scheduler.jobsProcessed.get());
+
+    scheduler.processAvailableJobs().block();
+    assertEquals(jobCount, scheduler.jobsProcessed.get(),
+        "Jobs should be cleared after successful processing; job counter should not increment on second run");
+  }
+
+  @Test
+  void getPartitionKeysForDueJobs() {
+    final Instant beforeCutoff = JobScheduler.LEGACY_PARTITION_CUTOFF.minus(Duration.ofDays(1));
+
+    final TestJobScheduler scheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(beforeCutoff, ZoneId.systemDefault()));
+
+    final List<String> partitionKeys = scheduler.getPartitionKeysForDueJobs(beforeCutoff);
+
+    // The legacy, unpartitioned key plus every shard for each time bucket within the seven-day expiration period
+    assertEquals(1 + 8 * JobScheduler.DEFAULT_SHARD_COUNT, partitionKeys.size());
+    assertEquals(partitionKeys.size(), Set.copyOf(partitionKeys).size());
+    assertTrue(partitionKeys.contains(scheduler.getSchedulerName()));
+
+    final AttributeValue runAtAttribute = scheduler.buildRunAtAttribute(beforeCutoff, 0L);
+    assertTrue(partitionKeys.contains(scheduler.getPartitionKey(beforeCutoff, runAtAttribute)));
+  }
+
+  @Test
+  void getPartitionKeysForDueJobsAfterLegacyCutoff() {
+    final Instant afterCutoff = JobScheduler.LEGACY_PARTITION_CUTOFF.plus(Duration.ofDays(1));
+
+    final TestJobScheduler scheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(afterCutoff, ZoneId.systemDefault()));
+
+    final List<String> partitionKeys = scheduler.getPartitionKeysForDueJobs(afterCutoff);
+
+    // Every legacy job has expired by the cutoff, so only partitioned keys are queried
+    assertEquals(8 * JobScheduler.DEFAULT_SHARD_COUNT, partitionKeys.size());
+    assertFalse(partitionKeys.contains(scheduler.getSchedulerName()));
+  }
+
+  @Test
+  void processAvailableJobsLegacyPartition() {
+    final Instant beforeCutoff = JobScheduler.LEGACY_PARTITION_CUTOFF.minus(Duration.ofDays(1));
+
+    final TestJobScheduler scheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(beforeCutoff, ZoneId.systemDefault()));
+
+    // Jobs scheduled before partitioning was introduced are keyed by the scheduler name alone
+    DYNAMO_DB_EXTENSION.getDynamoDbClient().putItem(PutItemRequest.builder()
+        .tableName(DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName())
+        .item(Map.of(
+            JobScheduler.KEY_SCHEDULER_NAME, AttributeValue.fromS(scheduler.getSchedulerName()),
+            JobScheduler.ATTR_RUN_AT, scheduler.buildRunAtAttribute(beforeCutoff, 0L)))
+        .build());
+
+    scheduler.processAvailableJobs().block();
+    assertEquals(1, scheduler.jobsProcessed.get());
+
+    // Servers that predate partitioning may still write to the legacy partition after it has been found empty
+    DYNAMO_DB_EXTENSION.getDynamoDbClient().putItem(PutItemRequest.builder()
+        .tableName(DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName())
+        .item(Map.of(
+            JobScheduler.KEY_SCHEDULER_NAME, AttributeValue.fromS(scheduler.getSchedulerName()),
+            JobScheduler.ATTR_RUN_AT, scheduler.buildRunAtAttribute(beforeCutoff, 1L)))
+        .build());
+
+    scheduler.processAvailableJobs().block();
+    assertEquals(2, scheduler.jobsProcessed.get());
+
+    scheduler.processAvailableJobs().block();
+    assertEquals(2, scheduler.jobsProcessed.get(),
+        "Jobs should be cleared after successful processing; job counter should not increment on later runs");
+  }
+
   @Test
   void processAvailableJobsWithError() {
     final AtomicInteger jobsEncountered = new AtomicInteger(0);
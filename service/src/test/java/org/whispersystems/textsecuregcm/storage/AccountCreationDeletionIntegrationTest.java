@@ -35,7 +35,10 @@ import org.junitpioneer.jupiter.cartesian.CartesianTest;
 import org.signal.libsignal.protocol.IdentityKey;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicAccountCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicPreKeyPoolConfiguration;
 import org.whispersystems.textsecuregcm.entities.AccountAttributes;
 import org.whispersystems.textsecuregcm.entities.ApnRegistrationId;
 import org.whispersystems.textsecuregcm.entities.ECSignedPreKey;
@@ -86,13 +89,17 @@ public class AccountCreationDeletionIntegrationTest {
 
     final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+    when(dynamicConfiguration.getPreKeyPoolConfiguration()).thenReturn(new DynamicPreKeyPoolConfiguration());
+    when(dynamicConfiguration.getAccountCacheConfiguration()).thenReturn(new DynamicAccountCacheConfiguration(true));
 
     keysManager = new KeysManager(
         DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
         DynamoDbExtensionSchema.Tables.EC_KEYS.tableName(),
         DynamoDbExtensionSchema.Tables.PQ_KEYS.tableName(),
         DynamoDbExtensionSchema.Tables.REPEATED_USE_EC_SIGNED_PRE_KEYS.tableName(),
-        DynamoDbExtensionSchema.Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS.tableName()
+        DynamoDbExtensionSchema.Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS.tableName(),
+        CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+        dynamicConfigurationManager
     );
 
     final ClientPublicKeys clientPublicKeys = new ClientPublicKeys(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
@@ -142,6 +149,7 @@ public class AccountCreationDeletionIntegrationTest {
         accounts,
         phoneNumberIdentifiers,
         CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+        new AccountNearCache(CACHE_CLUSTER_EXTENSION.getRedisCluster(), new AccountNearCacheConfiguration(false, 0, null)),
         accountLockManager,
         keysManager,
         messagesManager,
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
+import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
+
+class AccountNearCacheTest {
+
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
+  private AccountNearCache localNearCache;
+  private AccountNearCache remoteNearCache;
+
+  private static final AccountNearCacheConfiguration CONFIGURATION =
+      new AccountNearCacheConfiguration(true, 1_000, Duration.ofMinutes(1));
+
+  private static final byte[] ACCOUNT_V1 = "v1".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ACCOUNT_V2 = "v2".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ACCOUNT_V3 = "v3".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ACCOUNT_V5 = "v5".getBytes(StandardCharsets.UTF_8);
+
+  @BeforeEach
+  void setUp() {
+    localNearCache = new AccountNearCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), CONFIGURATION);
+    remoteNearCache = new AccountNearCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), CONFIGURATION);
+
+    localNearCache.start();
+    remoteNearCache.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    localNearCache.stop();
+    remoteNearCache.stop();
+  }
+
+  @Test
+  void testPutAndGet() {
+    final UUID uuid = UUID.randomUUID();
+
+    assertEquals(Optional.empty(), localNearCache.get(uuid));
+
+    localNearCache.put(uuid, 1, ACCOUNT_V1);
+    assertEquals(Optional.of(ACCOUNT_V1), localNearCache.get(uuid));
+
+    localNearCache.put(uuid, 2, ACCOUNT_V2);
+    assertEquals(Optional.of(ACCOUNT_V2), localNearCache.get(uuid));
+
+    // Stale reads from the shared cache must not replace newer entries
+    localNearCache.put(uuid, 1, ACCOUNT_V1);
+    assertEquals(Optional.of(ACCOUNT_V2), localNearCache.get(uuid));
+  }
+
+  @Test
+  void testUpdateInvalidatesOlderRemoteVersions() {
+    final UUID uuid = UUID.randomUUID();
+
+    remoteNearCache.put(uuid, 1, ACCOUNT_V1);
+    localNearCache.update(uuid, 2, ACCOUNT_V2).join();
+
+    assertEquals(Optional.of(ACCOUNT_V2), localNearCache.get(uuid));
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (remoteNearCache.get(uuid).isPresent()) {
+        Thread.sleep(10);
+      }
+    });
+
+    // Our own invalidation message must not evict the entry we just wrote
+    assertEquals(Optional.of(ACCOUNT_V2), localNearCache.get(uuid));
+  }
+
+  @Test
+  void testUpdateRetainsNewerRemoteVersions() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID sentinelUuid = UUID.randomUUID();
+
+    remoteNearCache.put(uuid, 3, ACCOUNT_V3);
+    remoteNearCache.put(sentinelUuid, 1, ACCOUNT_V1);
+
+    localNearCache.update(uuid, 2, ACCOUNT_V2).join();
+    localNearCache.invalidate(sentinelUuid).join();
+
+    // Invalidations are delivered in order, so once the sentinel is gone, the first message has been processed
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (remoteNearCache.get(sentinelUuid).isPresent()) {
+        Thread.sleep(10);
+      }
+    });
+
+    assertEquals(Optional.of(ACCOUNT_V3), remoteNearCache.get(uuid));
+  }
+
+  @Test
+  void testInvalidate() {
+    final UUID uuid = UUID.randomUUID();
+
+    localNearCache.put(uuid, 1, ACCOUNT_V1);
+    remoteNearCache.put(uuid, 5, ACCOUNT_V5);
+
+    localNearCache.invalidate(uuid).join();
+
+    assertEquals(Optional.empty(), localNearCache.get(uuid));
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (remoteNearCache.get(uuid).isPresent()) {
+        Thread.sleep(10);
+      }
+    });
+  }
+
+  @Test
+  void testDisabled() {
+    final AccountNearCache disabledNearCache = new AccountNearCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        new AccountNearCacheConfiguration(false, 0, null));
+
+    final UUID uuid = UUID.randomUUID();
+
+    disabledNearCache.put(uuid, 1, ACCOUNT_V1);
+    assertTrue(disabledNearCache.get(uuid).isEmpty());
+
+    disabledNearCache.update(uuid, 2, ACCOUNT_V2).join();
+    assertTrue(disabledNearCache.get(uuid).isEmpty());
+  }
+}
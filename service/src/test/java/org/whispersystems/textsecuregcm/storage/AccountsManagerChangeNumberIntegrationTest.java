@@ -30,6 +30,7 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 import org.signal.libsignal.protocol.IdentityKey;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.controllers.MismatchedDevicesException;
 import org.whispersystems.textsecuregcm.entities.AccountAttributes;
@@ -85,7 +86,9 @@ class AccountsManagerChangeNumberIntegrationTest {
           Tables.EC_KEYS.tableName(),
           Tables.PQ_KEYS.tableName(),
           Tables.REPEATED_USE_EC_SIGNED_PRE_KEYS.tableName(),
-          Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS.tableName()
+          Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS.tableName(),
+          CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+          dynamicConfigurationManager
       );
 
       final ClientPublicKeys clientPublicKeys = new ClientPublicKeys(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
@@ -137,6 +140,7 @@ class AccountsManagerChangeNumberIntegrationTest {
           accounts,
           phoneNumberIdentifiers,
           CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+          new AccountNearCache(CACHE_CLUSTER_EXTENSION.getRedisCluster(), new AccountNearCacheConfiguration(false, 0, null)),
           accountLockManager,
           keysManager,
           messagesManager,
@@ -44,15 +44,16 @@ import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
 import org.whispersystems.textsecuregcm.auth.SaltedTokenHash;
 import org.whispersystems.textsecuregcm.auth.UnidentifiedAccessUtil;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.entities.AccountAttributes;
 import org.whispersystems.textsecuregcm.identity.IdentityType;
 import org.whispersystems.textsecuregcm.push.ClientPresenceManager;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
 import org.whispersystems.textsecuregcm.securestorage.SecureStorageClient;
 import org.whispersystems.textsecuregcm.securevaluerecovery.SecureValueRecovery2Client;
 import org.whispersystems.textsecuregcm.storage.DynamoDbExtensionSchema.Tables;
 import org.whispersystems.textsecuregcm.tests.util.DevicesHelper;
-import org.whispersystems.textsecuregcm.tests.util.JsonHelpers;
 import org.whispersystems.textsecuregcm.tests.util.KeysHelper;
 import org.whispersystems.textsecuregcm.tests.util.RedisClusterHelper;
 import org.whispersystems.textsecuregcm.util.Pair;
@@ -75,7 +76,7 @@ class AccountsManagerConcurrentModificationIntegrationTest {
 
   private AccountsManager accountsManager;
 
-  private RedisAdvancedClusterCommands<String, String> commands;
+  private RedisAdvancedClusterCommands<byte[], byte[]> binaryCommands;
 
   private Executor mutationExecutor = new ThreadPoolExecutor(20, 20, 5, TimeUnit.SECONDS, new LinkedBlockingDeque<>(20));
 
@@ -98,7 +99,7 @@ class AccountsManagerConcurrentModificationIntegrationTest {
 
     {
       //noinspection unchecked
-      commands = mock(RedisAdvancedClusterCommands.class);
+      binaryCommands = mock(RedisAdvancedClusterCommands.class);
 
       final AccountLockManager accountLockManager = mock(AccountLockManager.class);
 
@@ -123,7 +124,9 @@ class AccountsManagerConcurrentModificationIntegrationTest {
       accountsManager = new AccountsManager(
           accounts,
           phoneNumberIdentifiers,
-          RedisClusterHelper.builder().stringCommands(commands).build(),
+          RedisClusterHelper.builder().binaryCommands(binaryCommands).build(),
+          new AccountNearCache(mock(FaultTolerantRedisClusterClient.class),
+              new AccountNearCacheConfiguration(false, 0, null)),
           accountLockManager,
           mock(KeysManager.class),
           mock(MessagesManager.class),
@@ -203,7 +206,7 @@ class AccountsManagerConcurrentModificationIntegrationTest {
     final Account managerAccount = accountsManager.getByAccountIdentifier(uuid).orElseThrow();
     final Account dynamoAccount = accounts.getByAccountIdentifier(uuid).orElseThrow();
 
-    final Account redisAccount = getLastAccountFromRedisMock(commands);
+    final Account redisAccount = getLastAccountFromRedisMock(binaryCommands, uuid);
 
     Stream.of(
         new Pair<>("manager", managerAccount),
@@ -215,12 +218,13 @@ class AccountsManagerConcurrentModificationIntegrationTest {
             unrestrictedUnidentifiedAccess, lastSeen));
   }
 
-  private Account getLastAccountFromRedisMock(RedisAdvancedClusterCommands<String, String> commands) throws IOException {
-    ArgumentCaptor<String> redisSetArgumentCapture = ArgumentCaptor.forClass(String.class);
+  private Account getLastAccountFromRedisMock(RedisAdvancedClusterCommands<byte[], byte[]> binaryCommands,
+      final UUID uuid) {
+    ArgumentCaptor<byte[]> redisSetArgumentCapture = ArgumentCaptor.forClass(byte[].class);
 
-    verify(commands, atLeast(20)).setex(anyString(), anyLong(), redisSetArgumentCapture.capture());
+    verify(binaryCommands, atLeast(10)).setex(any(), anyLong(), redisSetArgumentCapture.capture());
 
-    return JsonHelpers.fromJson(redisSetArgumentCapture.getValue(), Account.class);
+    return AccountCacheCodec.decode(redisSetArgumentCapture.getValue(), uuid).orElseThrow();
   }
 
   private void verifyAccount(final String name, final Account account, final boolean discoverableByPhoneNumber, final String currentProfileVersion, final IdentityKey identityKey, final byte[] unidentifiedAccessKey, final String pin, final String clientRegistrationLock, final boolean unrestrictedUnidentifiedAccess, final long lastSeen) {
@@ -17,6 +17,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyByte;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.notNull;
 import static org.mockito.Mockito.anyString;
@@ -32,9 +33,11 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisException;
 import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
@@ -48,6 +51,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
@@ -68,6 +72,8 @@ import org.signal.libsignal.protocol.IdentityKey;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
 import org.whispersystems.textsecuregcm.auth.UnidentifiedAccessUtil;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicAccountCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.controllers.MismatchedDevicesException;
 import org.whispersystems.textsecuregcm.entities.AccountAttributes;
@@ -121,6 +127,8 @@ class AccountsManagerTest {
 
   private RedisAdvancedClusterCommands<String, String> commands;
   private RedisAdvancedClusterAsyncCommands<String, String> asyncCommands;
+  private RedisAdvancedClusterCommands<byte[], byte[]> binaryCommands;
+  private RedisAdvancedClusterAsyncCommands<byte[], byte[]> binaryAsyncCommands;
   private AccountsManager accountsManager;
   private SecureValueRecovery2Client svr2Client;
   private DynamicConfiguration dynamicConfiguration;
@@ -171,6 +179,14 @@ class AccountsManagerTest {
     when(asyncCommands.set(any(), any(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
     when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
 
+    //noinspection unchecked
+    binaryCommands = mock(RedisAdvancedClusterCommands.class);
+
+    //noinspection unchecked
+    binaryAsyncCommands = mock(RedisAdvancedClusterAsyncCommands.class);
+    when(binaryAsyncCommands.get(any())).thenReturn(MockRedisFuture.completedFuture(null));
+    when(binaryAsyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
+
     when(accounts.updateAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
     when(accounts.updateTransactionallyAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
     when(accounts.delete(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
@@ -204,6 +220,7 @@ class AccountsManagerTest {
 
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
     when(dynamicConfiguration.getSvrStatusCodesToIgnoreForAccountDeletion()).thenReturn(Collections.emptyList());
+    when(dynamicConfiguration.getAccountCacheConfiguration()).thenReturn(new DynamicAccountCacheConfiguration(false));
 
     final AccountLockManager accountLockManager = mock(AccountLockManager.class);
 
@@ -233,12 +250,15 @@ class AccountsManagerTest {
     final FaultTolerantRedisClusterClient redisCluster = RedisClusterHelper.builder()
         .stringCommands(commands)
         .stringAsyncCommands(asyncCommands)
+        .binaryCommands(binaryCommands)
+        .binaryAsyncCommands(binaryAsyncCommands)
         .build();
 
     accountsManager = new AccountsManager(
         accounts,
         phoneNumberIdentifiers,
         redisCluster,
+        new AccountNearCache(redisCluster, new AccountNearCacheConfiguration(false, 0, null)),
         accountLockManager,
         keysManager,
         messagesManager,
@@ -286,8 +306,8 @@ class AccountsManagerTest {
     final UUID pni = UUID.randomUUID();
 
     when(commands.get(eq("AccountMap::" + pni))).thenReturn(aci.toString());
-    when(commands.get(eq("Account3::" + aci))).thenReturn(
-        "{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\"}");
+    when(binaryCommands.get(aryEq(getAccountEntityKey(aci)))).thenReturn(
+        ("{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\"}").getBytes(StandardCharsets.UTF_8));
 
     assertTrue(accountsManager.getByServiceIdentifier(new AciServiceIdentifier(aci)).isPresent());
     assertTrue(accountsManager.getByServiceIdentifier(new PniServiceIdentifier(pni)).isPresent());
@@ -301,8 +321,8 @@ class AccountsManagerTest {
     final UUID pni = UUID.randomUUID();
 
     when(asyncCommands.get(eq("AccountMap::" + pni))).thenReturn(MockRedisFuture.completedFuture(aci.toString()));
-    when(asyncCommands.get(eq("Account3::" + aci))).thenReturn(MockRedisFuture.completedFuture(
-        "{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\"}"));
+    when(binaryAsyncCommands.get(aryEq(getAccountEntityKey(aci)))).thenReturn(MockRedisFuture.completedFuture(
+        ("{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\"}").getBytes(StandardCharsets.UTF_8)));
 
     when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
 
@@ -323,8 +343,8 @@ class AccountsManagerTest {
   void testGetAccountByUuidInCache() {
     UUID uuid = UUID.randomUUID();
 
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}");
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(
+        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}".getBytes(StandardCharsets.UTF_8));
 
     Optional<Account> account = accountsManager.getByAccountIdentifier(uuid);
 
@@ -333,8 +353,8 @@ class AccountsManagerTest {
     assertEquals(account.get().getUuid(), uuid);
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
-    verify(commands, times(1)).get(eq("Account3::" + uuid));
-    verifyNoMoreInteractions(commands);
+    verify(binaryCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
+    verifyNoMoreInteractions(commands, binaryCommands);
 
     verifyNoInteractions(accounts);
   }
@@ -343,8 +363,8 @@ class AccountsManagerTest {
   void testGetAccountByUuidInCacheAsync() {
     UUID uuid = UUID.randomUUID();
 
-    when(asyncCommands.get(eq("Account3::" + uuid))).thenReturn(MockRedisFuture.completedFuture(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"));
+    when(binaryAsyncCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(MockRedisFuture.completedFuture(
+        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}".getBytes(StandardCharsets.UTF_8)));
 
     when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
 
@@ -355,8 +375,8 @@ class AccountsManagerTest {
     assertEquals(account.get().getUuid(), uuid);
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
-    verify(asyncCommands, times(1)).get(eq("Account3::" + uuid));
-    verifyNoMoreInteractions(asyncCommands);
+    verify(binaryAsyncCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
+    verifyNoMoreInteractions(asyncCommands, binaryAsyncCommands);
 
     verifyNoInteractions(accounts);
   }
@@ -367,8 +387,8 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
 
     when(commands.get(eq("AccountMap::" + pni))).thenReturn(uuid.toString());
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}");
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(
+        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}".getBytes(StandardCharsets.UTF_8));
 
     Optional<Account> account = accountsManager.getByPhoneNumberIdentifier(pni);
 
@@ -377,8 +397,8 @@ class AccountsManagerTest {
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
     verify(commands).get(eq("AccountMap::" + pni));
-    verify(commands).get(eq("Account3::" + uuid));
-    verifyNoMoreInteractions(commands);
+    verify(binaryCommands).get(aryEq(getAccountEntityKey(uuid)));
+    verifyNoMoreInteractions(commands, binaryCommands);
 
     verifyNoInteractions(accounts);
   }
@@ -391,8 +411,8 @@ class AccountsManagerTest {
     when(asyncCommands.get(eq("AccountMap::" + pni)))
         .thenReturn(MockRedisFuture.completedFuture(uuid.toString()));
 
-    when(asyncCommands.get(eq("Account3::" + uuid))).thenReturn(MockRedisFuture.completedFuture(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"));
+    when(binaryAsyncCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(MockRedisFuture.completedFuture(
+        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}".getBytes(StandardCharsets.UTF_8)));
 
     when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
 
@@ -403,8 +423,8 @@ class AccountsManagerTest {
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
     verify(asyncCommands).get(eq("AccountMap::" + pni));
-    verify(asyncCommands).get(eq("Account3::" + uuid));
-    verifyNoMoreInteractions(asyncCommands);
+    verify(binaryAsyncCommands).get(aryEq(getAccountEntityKey(uuid)));
+    verifyNoMoreInteractions(asyncCommands, binaryAsyncCommands);
 
     verifyNoInteractions(accounts);
   }
@@ -415,7 +435,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
     when(accounts.getByAccountIdentifier(eq(uuid))).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByAccountIdentifier(uuid);
@@ -423,10 +443,10 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
-    verifyNoMoreInteractions(commands);
+    verify(binaryCommands, times(1)).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any());
+    verifyNoMoreInteractions(commands, binaryCommands);
 
     verify(accounts, times(1)).getByAccountIdentifier(eq(uuid));
     verifyNoMoreInteractions(accounts);
@@ -438,7 +458,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(asyncCommands.get(eq("Account3::" + uuid))).thenReturn(MockRedisFuture.completedFuture(null));
+    when(binaryAsyncCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(MockRedisFuture.completedFuture(null));
     when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
     when(accounts.getByAccountIdentifierAsync(eq(uuid)))
         .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
@@ -448,15 +468,52 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(asyncCommands).get(eq("Account3::" + uuid));
+    verify(binaryAsyncCommands).get(aryEq(getAccountEntityKey(uuid)));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
-    verifyNoMoreInteractions(asyncCommands);
+    verify(binaryAsyncCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any());
+    verifyNoMoreInteractions(asyncCommands, binaryAsyncCommands);
 
     verify(accounts).getByAccountIdentifierAsync(eq(uuid));
     verifyNoMoreInteractions(accounts);
   }
 
+  @Test
+  void testGetAccountsByUuidsAsync() {
+    final UUID cachedUuid = UUID.randomUUID();
+    final UUID uncachedUuid = UUID.randomUUID();
+    final UUID uncachedPni = UUID.randomUUID();
+    final UUID missingUuid = UUID.randomUUID();
+
+    final Account uncachedAccount = AccountsHelper.generateTestAccount("+14153333333", uncachedUuid, uncachedPni,
+        new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+
+    when(binaryAsyncCommands.mget(any(byte[][].class))).thenReturn(MockRedisFuture.completedFuture(List.of(
+        KeyValue.just(getAccountEntityKey(cachedUuid),
+            "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}".getBytes(StandardCharsets.UTF_8)),
+        KeyValue.empty(getAccountEntityKey(uncachedUuid)),
+        KeyValue.empty(getAccountEntityKey(missingUuid)))));
+
+    when(accounts.getByAccountIdentifiers(List.of(uncachedUuid, missingUuid)))
+        .thenReturn(CompletableFuture.completedFuture(Map.of(uncachedUuid, uncachedAccount)));
+
+    final Map<UUID, Account> retrieved =
+        accountsManager.getByAccountIdentifiers(List.of(cachedUuid, uncachedUuid, missingUuid, cachedUuid)).join();
+
+    assertEquals(Set.of(cachedUuid, uncachedUuid), retrieved.keySet());
+    assertEquals("+14152222222", retrieved.get(cachedUuid).getNumber());
+    assertEquals(cachedUuid, retrieved.get(cachedUuid).getUuid());
+    assertSame(uncachedAccount, retrieved.get(uncachedUuid));
+
+    verify(binaryAsyncCommands).mget(aryEq(getAccountEntityKey(cachedUuid)), aryEq(getAccountEntityKey(uncachedUuid)),
+        aryEq(getAccountEntityKey(missingUuid)));
+    verify(asyncCommands).setex(eq("AccountMap::" + uncachedPni), anyLong(), eq(uncachedUuid.toString()));
+    verify(binaryAsyncCommands).setex(aryEq(getAccountEntityKey(uncachedUuid)), anyLong(), any());
+    verifyNoMoreInteractions(asyncCommands, binaryAsyncCommands);
+
+    verify(accounts).getByAccountIdentifiers(List.of(uncachedUuid, missingUuid));
+    verifyNoMoreInteractions(accounts);
+  }
+
   @Test
   void testGetAccountByPniNotInCache() {
     UUID uuid = UUID.randomUUID();
@@ -474,8 +531,8 @@ class AccountsManagerTest {
 
     verify(commands).get(eq("AccountMap::" + pni));
     verify(commands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(commands).setex(eq("Account3::" + uuid), anyLong(), anyString());
-    verifyNoMoreInteractions(commands);
+    verify(binaryCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any());
+    verifyNoMoreInteractions(commands, binaryCommands);
 
     verify(accounts).getByPhoneNumberIdentifier(pni);
     verifyNoMoreInteractions(accounts);
@@ -500,8 +557,8 @@ class AccountsManagerTest {
 
     verify(asyncCommands).get(eq("AccountMap::" + pni));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
-    verifyNoMoreInteractions(asyncCommands);
+    verify(binaryAsyncCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any());
+    verifyNoMoreInteractions(asyncCommands, binaryAsyncCommands);
 
     verify(accounts).getByPhoneNumberIdentifierAsync(pni);
     verifyNoMoreInteractions(accounts);
@@ -528,7 +585,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(commands.get(eq("Account3::" + uuid))).thenThrow(new RedisException("Connection lost!"));
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenThrow(new RedisException("Connection lost!"));
     when(accounts.getByAccountIdentifier(eq(uuid))).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByAccountIdentifier(uuid);
@@ -536,10 +593,10 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
-    verifyNoMoreInteractions(commands);
+    verify(binaryCommands, times(1)).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any());
+    verifyNoMoreInteractions(commands, binaryCommands);
 
     verify(accounts, times(1)).getByAccountIdentifier(eq(uuid));
     verifyNoMoreInteractions(accounts);
@@ -551,7 +608,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(asyncCommands.get(eq("Account3::" + uuid)))
+    when(binaryAsyncCommands.get(aryEq(getAccountEntityKey(uuid))))
         .thenReturn(MockRedisFuture.failedFuture(new RedisException("Connection lost!")));
 
     when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
@@ -564,10 +621,10 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(asyncCommands).get(eq("Account3::" + uuid));
+    verify(binaryAsyncCommands).get(aryEq(getAccountEntityKey(uuid)));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
-    verifyNoMoreInteractions(asyncCommands);
+    verify(binaryAsyncCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any());
+    verifyNoMoreInteractions(asyncCommands, binaryAsyncCommands);
 
     verify(accounts).getByAccountIdentifierAsync(eq(uuid));
     verifyNoMoreInteractions(accounts);
@@ -590,8 +647,8 @@ class AccountsManagerTest {
 
     verify(commands).get(eq("AccountMap::" + pni));
     verify(commands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(commands).setex(eq("Account3::" + uuid), anyLong(), anyString());
-    verifyNoMoreInteractions(commands);
+    verify(binaryCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any());
+    verifyNoMoreInteractions(commands, binaryCommands);
 
     verify(accounts).getByPhoneNumberIdentifier(pni);
     verifyNoMoreInteractions(accounts);
@@ -619,8 +676,8 @@ class AccountsManagerTest {
 
     verify(asyncCommands).get(eq("AccountMap::" + pni));
     verify(asyncCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(asyncCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
-    verifyNoMoreInteractions(asyncCommands);
+    verify(binaryAsyncCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any());
+    verifyNoMoreInteractions(asyncCommands, binaryAsyncCommands);
 
     verify(accounts).getByPhoneNumberIdentifierAsync(pni);
     verifyNoMoreInteractions(accounts);
@@ -632,7 +689,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
 
     when(accounts.getByAccountIdentifier(uuid)).thenReturn(
         Optional.of(AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH])));
@@ -658,7 +715,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(asyncCommands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryAsyncCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
 
     when(accounts.getByAccountIdentifierAsync(uuid)).thenReturn(CompletableFuture.completedFuture(
         Optional.of(AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]))));
@@ -684,7 +741,7 @@ class AccountsManagerTest {
     UUID uuid = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(), new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
     when(accounts.getByAccountIdentifier(uuid)).thenReturn(Optional.empty())
         .thenReturn(Optional.of(account));
     when(accounts.create(any(), any())).thenThrow(ContestedOptimisticLockException.class);
@@ -1524,20 +1581,14 @@ class AccountsManagerTest {
     assertThrows(AssertionError.class, () -> accountsManager.update(account, a -> a.setUsernameHash(USERNAME_HASH_1)));
   }
 
-  @Test
-  void testJsonRoundTripSerialization() throws Exception {
-    String originalJson;
-    try (InputStream inputStream = getClass().getResourceAsStream(
-        "AccountsManagerTest-testJsonRoundTripSerialization.json")) {
-      Objects.requireNonNull(inputStream);
-      originalJson = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
-    }
-
-    final Account originalAccount = AccountsManager.parseAccountJson(originalJson,
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void testRoundTripSerialization(final boolean binary) throws Exception {
+    final Account originalAccount = AccountCacheCodec.decode(readRoundTripSerializationJson(),
         UUID.fromString("111111-1111-1111-1111-111111111111")).orElseThrow();
 
-    final String serialized = AccountsManager.writeRedisAccountJson(originalAccount);
-    final Account parsedAccount = AccountsManager.parseAccountJson(serialized, originalAccount.getUuid()).orElseThrow();
+    final byte[] serialized = AccountCacheCodec.encode(originalAccount, binary);
+    final Account parsedAccount = AccountCacheCodec.decode(serialized, originalAccount.getUuid()).orElseThrow();
 
     assertEquals(originalAccount.getUuid(), parsedAccount.getUuid());
     assertEquals(originalAccount.getPhoneNumberIdentifier(), parsedAccount.getPhoneNumberIdentifier());
@@ -1562,6 +1613,26 @@ class AccountsManagerTest {
     assertEquals(originalDevice.getFetchesMessages(), parsedDevice.getFetchesMessages());
   }
 
+  @Test
+  void testBinarySerializationSize() throws Exception {
+    final Account account = AccountCacheCodec.decode(readRoundTripSerializationJson(),
+        UUID.fromString("111111-1111-1111-1111-111111111111")).orElseThrow();
+
+    assertTrue(AccountCacheCodec.encode(account, true).length < AccountCacheCodec.encode(account, false).length);
+  }
+
+  private byte[] readRoundTripSerializationJson() throws IOException {
+    try (InputStream inputStream = getClass().getResourceAsStream(
+        "AccountsManagerTest-testJsonRoundTripSerialization.json")) {
+      Objects.requireNonNull(inputStream);
+      return inputStream.readAllBytes();
+    }
+  }
+
+  private static byte[] getAccountEntityKey(final UUID uuid) {
+    return ("Account3::" + uuid).getBytes(StandardCharsets.UTF_8);
+  }
+
   private void setReservationHash(final Account account, final byte[] reservedUsernameHash) {
     account.setReservedUsernameHash(reservedUsernameHash);
   }
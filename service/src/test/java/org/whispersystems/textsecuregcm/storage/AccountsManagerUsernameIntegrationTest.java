@@ -34,6 +34,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.mockito.Mockito;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.push.ClientPresenceManager;
 import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
@@ -96,7 +97,9 @@ class AccountsManagerUsernameIntegrationTest {
         Tables.EC_KEYS.tableName(),
         Tables.PQ_KEYS.tableName(),
         Tables.REPEATED_USE_EC_SIGNED_PRE_KEYS.tableName(),
-        Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS.tableName()
+        Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS.tableName(),
+        CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+        dynamicConfigurationManager
     );
 
     accounts = Mockito.spy(new Accounts(
@@ -137,6 +140,7 @@ class AccountsManagerUsernameIntegrationTest {
         accounts,
         phoneNumberIdentifiers,
         CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+        new AccountNearCache(CACHE_CLUSTER_EXTENSION.getRedisCluster(), new AccountNearCacheConfiguration(false, 0, null)),
         accountLockManager,
         keysManager,
         messageManager,
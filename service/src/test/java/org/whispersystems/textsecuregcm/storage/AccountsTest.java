@@ -761,6 +761,29 @@ class AccountsTest {
     assertThat(accounts.getByAccountIdentifierAsync(account.getUuid()).join()).isPresent();
   }
 
+  @Test
+  void getByAccountIdentifiers() {
+    assertThat(accounts.getByAccountIdentifiers(List.of()).join()).isEmpty();
+
+    final Account firstAccount =
+        generateAccount("+14151112222", UUID.randomUUID(), UUID.randomUUID(), List.of(generateDevice(DEVICE_ID_1)));
+
+    final Account secondAccount =
+        generateAccount("+14153334444", UUID.randomUUID(), UUID.randomUUID(), List.of(generateDevice(DEVICE_ID_1)));
+
+    createAccount(firstAccount);
+    createAccount(secondAccount);
+
+    final UUID missingAccountIdentifier = UUID.randomUUID();
+
+    final Map<UUID, Account> retrieved = accounts.getByAccountIdentifiers(
+        List.of(firstAccount.getUuid(), secondAccount.getUuid(), firstAccount.getUuid(), missingAccountIdentifier)).join();
+
+    assertThat(retrieved).containsOnlyKeys(firstAccount.getUuid(), secondAccount.getUuid());
+    assertThat(retrieved.get(firstAccount.getUuid()).getNumber()).isEqualTo(firstAccount.getNumber());
+    assertThat(retrieved.get(secondAccount.getUuid()).getNumber()).isEqualTo(secondAccount.getNumber());
+  }
+
   @Test
   void getByPhoneNumberIdentifierAsync() {
     assertThat(accounts.getByPhoneNumberIdentifierAsync(UUID.randomUUID()).join()).isEmpty();
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.whispersystems.textsecuregcm.util.AttributeValues;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+class DynamoDbBatchReaderTest {
+
+  private DynamoDbAsyncClient dynamoDbAsyncClient;
+  private DynamoDbBatchReader batchReader;
+
+  private static final String TABLE_NAME = "test";
+
+  private static final Map<String, AttributeValue> FIRST_KEY = Map.of("K", AttributeValues.fromInt(1));
+  private static final Map<String, AttributeValue> SECOND_KEY = Map.of("K", AttributeValues.fromInt(2));
+
+  @BeforeEach
+  void setUp() {
+    dynamoDbAsyncClient = mock(DynamoDbAsyncClient.class);
+    batchReader = new DynamoDbBatchReader(dynamoDbAsyncClient, getClass());
+  }
+
+  @Test
+  void getUntilCompleteRetriesUnprocessedKeys() {
+    final KeysAndAttributes unprocessedKeys = KeysAndAttributes.builder().keys(SECOND_KEY).build();
+
+    when(dynamoDbAsyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+        .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+            .responses(Map.of(TABLE_NAME, List.of(FIRST_KEY)))
+            .unprocessedKeys(Map.of(TABLE_NAME, unprocessedKeys))
+            .build()))
+        .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+            .responses(Map.of(TABLE_NAME, List.of(SECOND_KEY)))
+            .build()));
+
+    final List<Map<String, AttributeValue>> items = batchReader.getUntilComplete(TABLE_NAME,
+            KeysAndAttributes.builder().keys(FIRST_KEY, SECOND_KEY).build())
+        .collectList()
+        .block();
+
+    assertEquals(List.of(FIRST_KEY, SECOND_KEY), items);
+
+    verify(dynamoDbAsyncClient).batchGetItem(BatchGetItemRequest.builder()
+        .requestItems(Map.of(TABLE_NAME, unprocessedKeys))
+        .build());
+  }
+
+  @Test
+  void getUntilCompleteRetriesExhausted() {
+    when(dynamoDbAsyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+            .unprocessedKeys(invocation.getArgument(0, BatchGetItemRequest.class).requestItems())
+            .build()));
+
+    assertThrows(RuntimeException.class, () -> batchReader.getUntilComplete(TABLE_NAME,
+            KeysAndAttributes.builder().keys(FIRST_KEY).build())
+        .collectList()
+        .block());
+
+    // One initial attempt plus the maximum number of retries
+    verify(dynamoDbAsyncClient, times(6)).batchGetItem(any(BatchGetItemRequest.class));
+  }
+}
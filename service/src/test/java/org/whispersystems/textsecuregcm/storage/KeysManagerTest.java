@@ -9,6 +9,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.util.List;
 import java.util.Map;
@@ -20,9 +22,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.entities.ECPreKey;
 import org.whispersystems.textsecuregcm.entities.ECSignedPreKey;
 import org.whispersystems.textsecuregcm.entities.KEMSignedPreKey;
+import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
 import org.whispersystems.textsecuregcm.storage.DynamoDbExtensionSchema.Tables;
 import org.whispersystems.textsecuregcm.tests.util.KeysHelper;
 
@@ -34,6 +38,9 @@ class KeysManagerTest {
   static final DynamoDbExtension DYNAMO_DB_EXTENSION = new DynamoDbExtension(
       Tables.EC_KEYS, Tables.PQ_KEYS, Tables.REPEATED_USE_EC_SIGNED_PRE_KEYS, Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS);
 
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
   private static final UUID ACCOUNT_UUID = UUID.randomUUID();
   private static final byte DEVICE_ID = 1;
 
@@ -41,12 +48,19 @@ class KeysManagerTest {
 
   @BeforeEach
   void setup() {
+    @SuppressWarnings("unchecked") final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager =
+        mock(DynamicConfigurationManager.class);
+
+    when(dynamicConfigurationManager.getConfiguration()).thenReturn(new DynamicConfiguration());
+
     keysManager = new KeysManager(
         DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
         Tables.EC_KEYS.tableName(),
         Tables.PQ_KEYS.tableName(),
         Tables.REPEATED_USE_EC_SIGNED_PRE_KEYS.tableName(),
-        Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS.tableName()
+        Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS.tableName(),
+        REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        dynamicConfigurationManager
     );
   }
 
@@ -223,6 +237,42 @@ class KeysManagerTest {
         Set.copyOf(keysManager.getPqEnabledDevices(ACCOUNT_UUID).join()));
   }
 
+  @Test
+  void testTakeDevicePreKeys() {
+    final byte deviceId2 = DEVICE_ID + 1;
+    final byte deviceId3 = DEVICE_ID + 2;
+
+    final ECSignedPreKey signedPreKey1 = generateTestECSignedPreKey(1);
+    final ECSignedPreKey signedPreKey2 = generateTestECSignedPreKey(2);
+    final ECPreKey ecPreKey1 = generateTestPreKey(3);
+    final KEMSignedPreKey kemPreKey1 = generateTestKEMSignedPreKey(4);
+    final KEMSignedPreKey lastResortKey2 = generateTestKEMSignedPreKey(5);
+
+    keysManager.storeEcSignedPreKeys(ACCOUNT_UUID, DEVICE_ID, signedPreKey1).join();
+    keysManager.storeEcOneTimePreKeys(ACCOUNT_UUID, DEVICE_ID, List.of(ecPreKey1)).join();
+    keysManager.storeKemOneTimePreKeys(ACCOUNT_UUID, DEVICE_ID, List.of(kemPreKey1)).join();
+
+    keysManager.storeEcSignedPreKeys(ACCOUNT_UUID, deviceId2, signedPreKey2).join();
+    keysManager.storePqLastResort(ACCOUNT_UUID, deviceId2, lastResortKey2).join();
+
+    assertEquals(Map.of(DEVICE_ID, signedPreKey1, deviceId2, signedPreKey2),
+        keysManager.getEcSignedPreKeys(ACCOUNT_UUID, List.of(DEVICE_ID, deviceId2, deviceId3)).join());
+
+    assertEquals(List.of(
+            new KeysManager.DevicePreKeys(deviceId3, Optional.empty(), Optional.empty(), Optional.empty()),
+            new KeysManager.DevicePreKeys(DEVICE_ID, Optional.of(signedPreKey1), Optional.of(ecPreKey1), Optional.of(kemPreKey1)),
+            new KeysManager.DevicePreKeys(deviceId2, Optional.of(signedPreKey2), Optional.empty(), Optional.of(lastResortKey2))),
+        keysManager.takeDevicePreKeys(ACCOUNT_UUID, List.of(deviceId3, DEVICE_ID, deviceId2)).join());
+
+    // Single-use keys should have been consumed, while repeated-use keys remain
+    assertEquals(List.of(
+            new KeysManager.DevicePreKeys(DEVICE_ID, Optional.of(signedPreKey1), Optional.empty(), Optional.empty()),
+            new KeysManager.DevicePreKeys(deviceId2, Optional.of(signedPreKey2), Optional.empty(), Optional.of(lastResortKey2))),
+        keysManager.takeDevicePreKeys(ACCOUNT_UUID, List.of(DEVICE_ID, deviceId2)).join());
+
+    assertEquals(List.of(), keysManager.takeDevicePreKeys(ACCOUNT_UUID, List.of()).join());
+  }
+
   private static ECPreKey generateTestPreKey(final long keyId) {
     return new ECPreKey(keyId, Curve.generateKeyPair().getPublicKey());
   }
@@ -51,6 +51,7 @@ class MessagePersisterIntegrationTest {
   private ExecutorService notificationExecutorService;
   private Scheduler messageDeliveryScheduler;
   private ExecutorService messageDeletionExecutorService;
+  private ExecutorService persistQueueExecutorService;
   private MessagesCache messagesCache;
   private MessagesManager messagesManager;
   private MessagePersister messagePersister;
@@ -78,12 +79,13 @@ class MessagePersisterIntegrationTest {
     final AccountsManager accountsManager = mock(AccountsManager.class);
 
     notificationExecutorService = Executors.newSingleThreadExecutor();
+    persistQueueExecutorService = Executors.newSingleThreadExecutor();
     messagesCache = new MessagesCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), notificationExecutorService,
         messageDeliveryScheduler, messageDeletionExecutorService, Clock.systemUTC(), dynamicConfigurationManager);
     messagesManager = new MessagesManager(messagesDynamoDb, messagesCache, mock(ReportMessageManager.class),
         messageDeletionExecutorService);
     messagePersister = new MessagePersister(messagesCache, messagesManager, accountsManager,
-        dynamicConfigurationManager, PERSIST_DELAY, 1);
+        dynamicConfigurationManager, PERSIST_DELAY, 1, persistQueueExecutorService);
 
     account = mock(Account.class);
 
@@ -107,6 +109,9 @@ class MessagePersisterIntegrationTest {
     messageDeletionExecutorService.shutdown();
     messageDeletionExecutorService.awaitTermination(15, TimeUnit.SECONDS);
 
+    persistQueueExecutorService.shutdown();
+    persistQueueExecutorService.awaitTermination(15, TimeUnit.SECONDS);
+
     messageDeliveryScheduler.dispose();
   }
 
@@ -26,7 +26,9 @@ import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -45,6 +47,7 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 import org.mockito.ArgumentCaptor;
 import org.mockito.stubbing.Answer;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessagePersisterConfiguration;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
 import org.whispersystems.textsecuregcm.tests.util.DevicesHelper;
@@ -59,6 +62,7 @@ class MessagePersisterTest {
   static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
 
   private ExecutorService sharedExecutorService;
+  private ExecutorService persistQueueExecutorService;
   private ScheduledExecutorService resubscribeRetryExecutorService;
   private Scheduler messageDeliveryScheduler;
   private MessagesCache messagesCache;
@@ -96,12 +100,13 @@ class MessagePersisterTest {
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(new DynamicConfiguration());
 
     sharedExecutorService = Executors.newSingleThreadExecutor();
+    persistQueueExecutorService = Executors.newFixedThreadPool(4);
     resubscribeRetryExecutorService = Executors.newSingleThreadScheduledExecutor();
     messageDeliveryScheduler = Schedulers.newBoundedElastic(10, 10_000, "messageDelivery");
     messagesCache = new MessagesCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), sharedExecutorService,
         messageDeliveryScheduler, sharedExecutorService, Clock.systemUTC(), dynamicConfigurationManager);
     messagePersister = new MessagePersister(messagesCache, messagesManager, accountsManager,
-        dynamicConfigurationManager, PERSIST_DELAY, 1);
+        dynamicConfigurationManager, PERSIST_DELAY, 1, persistQueueExecutorService);
 
     when(messagesManager.clear(any(UUID.class), anyByte())).thenReturn(CompletableFuture.completedFuture(null));
 
@@ -125,6 +130,9 @@ class MessagePersisterTest {
     sharedExecutorService.shutdown();
     sharedExecutorService.awaitTermination(1, TimeUnit.SECONDS);
 
+    persistQueueExecutorService.shutdown();
+    persistQueueExecutorService.awaitTermination(1, TimeUnit.SECONDS);
+
     messageDeliveryScheduler.dispose();
     resubscribeRetryExecutorService.shutdown();
     resubscribeRetryExecutorService.awaitTermination(1, TimeUnit.SECONDS);
@@ -204,6 +212,105 @@ class MessagePersisterTest {
     assertEquals(queueCount * messagesPerQueue, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
   }
 
+  @Test
+  void testPersistNextQueuesConcurrently() {
+    final DynamicMessagePersisterConfiguration messagePersisterConfiguration =
+        mock(DynamicMessagePersisterConfiguration.class);
+    when(messagePersisterConfiguration.isPersistenceEnabled()).thenReturn(true);
+    when(messagePersisterConfiguration.getQueueConcurrency()).thenReturn(4);
+
+    final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
+    when(dynamicConfiguration.getMessagePersisterConfiguration()).thenReturn(messagePersisterConfiguration);
+
+    @SuppressWarnings("unchecked") final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager =
+        mock(DynamicConfigurationManager.class);
+    when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+
+    final MessagePersister concurrentMessagePersister = new MessagePersister(messagesCache, messagesManager,
+        accountsManager, dynamicConfigurationManager, PERSIST_DELAY, 1, persistQueueExecutorService);
+
+    final int slot = 7;
+    final int queueCount = (MessagePersister.QUEUE_BATCH_LIMIT * 3) + 7;
+    final int messagesPerQueue = 10;
+    final Instant now = Instant.now();
+
+    final Map<UUID, Account> accountsByUuid = new HashMap<>();
+
+    for (int i = 0; i < queueCount; i++) {
+      final String queueName = generateRandomQueueNameForSlot(slot);
+      final UUID accountUuid = MessagesCache.getAccountUuidFromQueueName(queueName);
+      final byte deviceId = MessagesCache.getDeviceIdFromQueueName(queueName);
+
+      final Account account = mock(Account.class);
+
+      accountsByUuid.put(accountUuid, account);
+      when(account.getUuid()).thenReturn(accountUuid);
+      when(account.getNumber()).thenReturn("+1" + RandomStringUtils.randomNumeric(10));
+      when(account.getDevice(anyByte())).thenAnswer(invocation -> Optional.of(DevicesHelper.createDevice(invocation.getArgument(0))));
+
+      insertMessages(accountUuid, deviceId, messagesPerQueue, now);
+    }
+
+    when(accountsManager.getByAccountIdentifiers(any()))
+        .thenReturn(CompletableFuture.completedFuture(accountsByUuid));
+
+    setNextSlotToPersist(slot);
+
+    concurrentMessagePersister.persistNextQueues(now.plus(concurrentMessagePersister.getPersistDelay()));
+
+    final ArgumentCaptor<List<MessageProtos.Envelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+
+    verify(messagesDynamoDb, atLeastOnce()).store(messagesCaptor.capture(), any(UUID.class), any());
+    assertEquals(queueCount * messagesPerQueue, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
+    verify(accountsManager, never()).getByAccountIdentifier(any());
+    verify(accountsManager, never()).getByAccountIdentifierAsync(any());
+  }
+
+  @Test
+  void testPersistNextQueuesUnderQueueAgePressure() {
+    final DynamicMessagePersisterConfiguration messagePersisterConfiguration =
+        mock(DynamicMessagePersisterConfiguration.class);
+    when(messagePersisterConfiguration.isPersistenceEnabled()).thenReturn(true);
+    when(messagePersisterConfiguration.getQueueConcurrency()).thenReturn(1);
+    when(messagePersisterConfiguration.getPressureQueueConcurrency()).thenReturn(1);
+    when(messagePersisterConfiguration.getMemoryPressureThreshold()).thenReturn(1.0);
+    when(messagePersisterConfiguration.getQueueAgePressureThreshold()).thenReturn(Optional.of(Duration.ofMinutes(1)));
+    when(messagePersisterConfiguration.getPressurePersistDelay()).thenReturn(Optional.of(Duration.ofSeconds(30)));
+
+    final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
+    when(dynamicConfiguration.getMessagePersisterConfiguration()).thenReturn(messagePersisterConfiguration);
+
+    @SuppressWarnings("unchecked") final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager =
+        mock(DynamicConfigurationManager.class);
+    when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+
+    final MessagePersister adaptiveMessagePersister = new MessagePersister(messagesCache, messagesManager,
+        accountsManager, dynamicConfigurationManager, PERSIST_DELAY, 1, persistQueueExecutorService);
+
+    final String queueName = new String(
+        MessagesCache.getMessageQueueKey(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID), StandardCharsets.UTF_8);
+    final int messageCount = 7;
+    final Instant now = Instant.now();
+
+    insertMessages(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID, messageCount, now);
+    setNextSlotToPersist(SlotHash.getSlot(queueName));
+
+    // The queue is not yet old enough to be under pressure, and so the full persist delay applies
+    adaptiveMessagePersister.persistNextQueues(now.plus(Duration.ofSeconds(45)));
+    verify(messagesDynamoDb, never()).store(any(), any(), any());
+
+    setNextSlotToPersist(SlotHash.getSlot(queueName));
+
+    // Once the queue is older than the pressure threshold, the shorter pressure persist delay applies
+    adaptiveMessagePersister.persistNextQueues(now.plus(Duration.ofMinutes(2)));
+
+    final ArgumentCaptor<List<MessageProtos.Envelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+
+    verify(messagesDynamoDb, atLeastOnce()).store(messagesCaptor.capture(), eq(DESTINATION_ACCOUNT_UUID),
+        eq(DESTINATION_DEVICE));
+    assertEquals(messageCount, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
+  }
+
   @Test
   void testPersistQueueRetry() {
     final String queueName = new String(
@@ -112,7 +112,7 @@ class MessagesCacheTest {
       });
 
       final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
-      when(dynamicConfiguration.getMessagesConfiguration()).thenReturn(new DynamicMessagesConfiguration(true, true));
+      when(dynamicConfiguration.getMessagesConfiguration()).thenReturn(new DynamicMessagesConfiguration(true, true, false));
       dynamicConfigurationManager = mock(DynamicConfigurationManager.class);
       when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
 
@@ -158,6 +158,25 @@ class MessagesCacheTest {
       assertEquals(firstId, secondId);
     }
 
+    @Test
+    void testInsertBatch() throws Exception {
+      final int destinationCount = 100;
+
+      final List<QueuedMessage> queuedMessages = new ArrayList<>(destinationCount);
+
+      for (int i = 0; i < destinationCount; i++) {
+        queuedMessages.add(new QueuedMessage(UUID.randomUUID(), DESTINATION_DEVICE_ID,
+            generateRandomMessage(UUID.randomUUID(), true)));
+      }
+
+      messagesCache.insert(queuedMessages).get(5, TimeUnit.SECONDS);
+
+      for (final QueuedMessage queuedMessage : queuedMessages) {
+        assertEquals(List.of(queuedMessage.message()),
+            get(queuedMessage.destinationUuid(), queuedMessage.destinationDeviceId(), 1));
+      }
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     void testRemoveByUUID(final boolean sealedSender) throws Exception {
@@ -401,6 +420,48 @@ class MessagesCacheTest {
               "__keyspace@0__:user_queue::{1b363a31-a429-4fb6-8959-984a025e72ff::7}"));
     }
 
+    @Test
+    void testGetNextPageSize() {
+      assertEquals(MessagesCache.PAGE_SIZE, MessagesCache.getNextPageSize(Collections.emptyList()));
+
+      // Small messages should lead to larger pages, up to a limit…
+      assertEquals(MessagesCache.MAX_PAGE_SIZE, MessagesCache.getNextPageSize(generateQueueItems(100, 16)));
+
+      // …and large messages should lead to smaller pages, down to a limit
+      assertEquals(MessagesCache.PAGE_SIZE, MessagesCache.getNextPageSize(generateQueueItems(100, 64 * 1024)));
+
+      assertEquals(512, MessagesCache.getNextPageSize(generateQueueItems(100, 1024)));
+    }
+
+    private static List<byte[]> generateQueueItems(final int messageCount, final int envelopeSize) {
+      final List<byte[]> queueItems = new ArrayList<>(messageCount * 2);
+
+      for (int i = 0; i < messageCount; i++) {
+        queueItems.add(new byte[envelopeSize]);
+        queueItems.add(String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+      }
+
+      return queueItems;
+    }
+
+    @Test
+    void testGetMemoryUtilization() {
+      assertEquals(0.25, MessagesCache.getMemoryUtilization("""
+          # Memory\r
+          used_memory:1024\r
+          used_memory_human:1.00K\r
+          maxmemory:4096\r
+          maxmemory_human:4.00K\r
+          """), 0.0001);
+
+      // Nodes without a memory limit are never under pressure
+      assertEquals(0, MessagesCache.getMemoryUtilization("""
+          # Memory\r
+          used_memory:1024\r
+          maxmemory:0\r
+          """), 0.0001);
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     public void testGetQueuesToPersist(final boolean sealedSender) {
@@ -619,6 +680,101 @@ class MessagesCacheTest {
       }, "Shared MRM data should be deleted asynchronously");
     }
 
+    @Test
+    void testMultiRecipientMessageWithoutContent() {
+      final ServiceIdentifier destinationServiceId = new AciServiceIdentifier(UUID.randomUUID());
+      final byte deviceId = 1;
+
+      final SealedSenderMultiRecipientMessage mrm = generateRandomMrmMessage(destinationServiceId, deviceId);
+      final byte[] sharedMrmDataKey = messagesCache.insertSharedMultiRecipientMessagePayload(mrm);
+
+      final UUID guid = UUID.randomUUID();
+      final MessageProtos.Envelope message = generateRandomMessage(guid, destinationServiceId, true)
+          .toBuilder()
+          .clearServerGuid()
+          // mrm views phase 2: content is reconstructed from the shared data
+          .clearContent()
+          .setSharedMrmKey(ByteString.copyFrom(sharedMrmDataKey))
+          .build();
+      messagesCache.insert(guid, destinationServiceId.uuid(), deviceId, message);
+
+      final byte[] expectedContent =
+          mrm.messageForRecipient(mrm.getRecipients().get(destinationServiceId.toLibsignal()));
+
+      final List<MessageProtos.Envelope> messages = get(destinationServiceId.uuid(), deviceId, 1);
+      assertEquals(1, messages.size());
+      assertFalse(messages.getFirst().hasSharedMrmKey());
+      assertArrayEquals(expectedContent, messages.getFirst().getContent().toByteArray());
+
+      final List<MessageProtos.Envelope> messagesToPersist =
+          messagesCache.getMessagesToPersist(destinationServiceId.uuid(), deviceId, 100);
+      assertEquals(1, messagesToPersist.size());
+      assertFalse(messagesToPersist.getFirst().hasSharedMrmKey());
+      assertArrayEquals(expectedContent, messagesToPersist.getFirst().getContent().toByteArray());
+    }
+
+    @Test
+    void testMultiRecipientMessageWithoutContentMissingSharedData() {
+      final UUID destinationUuid = UUID.randomUUID();
+      final byte deviceId = 1;
+
+      final UUID messageGuid = UUID.randomUUID();
+      final MessageProtos.Envelope message = generateRandomMessage(messageGuid, true);
+      messagesCache.insert(messageGuid, destinationUuid, deviceId, message);
+
+      final UUID mrmMessageGuid = UUID.randomUUID();
+      final MessageProtos.Envelope mrmMessage = generateRandomMessage(mrmMessageGuid, true)
+          .toBuilder()
+          .clearServerGuid()
+          .clearContent()
+          .setSharedMrmKey(ByteString.copyFrom(MessagesCache.getSharedMrmKey(UUID.randomUUID())))
+          .build();
+      messagesCache.insert(mrmMessageGuid, destinationUuid, deviceId, mrmMessage);
+
+      // Messages that can't be reconstructed are skipped for delivery…
+      final List<MessageProtos.Envelope> messages = get(destinationUuid, deviceId, 100);
+      assertEquals(1, messages.size());
+      assertEquals(messageGuid, UUID.fromString(messages.getFirst().getServerGuid()));
+
+      // …and discarded rather than persisted
+      final List<MessageProtos.Envelope> messagesToPersist =
+          messagesCache.getMessagesToPersist(destinationUuid, deviceId, 100);
+      assertEquals(1, messagesToPersist.size());
+      assertEquals(messageGuid, UUID.fromString(messagesToPersist.getFirst().getServerGuid()));
+
+      assertEquals(1, (long) REDIS_CLUSTER_EXTENSION.getRedisCluster().withBinaryCluster(connection ->
+          connection.sync().zcard(MessagesCache.getMessageQueueKey(destinationUuid, deviceId))));
+    }
+
+    @Test
+    void testGetMessagesToPersistUnresolvableMalformedGuid() {
+      final UUID destinationUuid = UUID.randomUUID();
+      final byte deviceId = 1;
+
+      final UUID mrmMessageGuid = UUID.randomUUID();
+      final MessageProtos.Envelope mrmMessage = generateRandomMessage(mrmMessageGuid, true)
+          .toBuilder()
+          .clearContent()
+          .setSharedMrmKey(ByteString.copyFrom(MessagesCache.getSharedMrmKey(UUID.randomUUID())))
+          .build();
+      messagesCache.insert(mrmMessageGuid, destinationUuid, deviceId, mrmMessage);
+
+      // A message that can't be reconstructed and can't be removed by GUID must not fail or stall persistence
+      final MessageProtos.Envelope malformedGuidMessage = mrmMessage.toBuilder()
+          .setServerGuid("not-a-guid")
+          .build();
+
+      REDIS_CLUSTER_EXTENSION.getRedisCluster().useBinaryCluster(connection -> connection.sync()
+          .zadd(MessagesCache.getMessageQueueKey(destinationUuid, deviceId), 100, malformedGuidMessage.toByteArray()));
+
+      final List<MessageProtos.Envelope> messagesToPersist = assertTimeoutPreemptively(Duration.ofSeconds(5),
+          () -> messagesCache.getMessagesToPersist(destinationUuid, deviceId, 100));
+
+      assertTrue(messagesToPersist.isEmpty());
+      assertEquals(1, (long) REDIS_CLUSTER_EXTENSION.getRedisCluster().withBinaryCluster(connection ->
+          connection.sync().zcard(MessagesCache.getMessageQueueKey(destinationUuid, deviceId))));
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     void testGetMessagesToPersist(final boolean sharedMrmKeyPresent) throws Exception {
@@ -6,11 +6,15 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import com.google.protobuf.ByteString;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
@@ -31,6 +35,9 @@ import org.whispersystems.textsecuregcm.tests.util.DevicesHelper;
 import org.whispersystems.textsecuregcm.tests.util.MessageHelper;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 class MessagesDynamoDbTest {
 
@@ -114,6 +121,42 @@ class MessagesDynamoDbTest {
     assertThat(messagesStored).element(2).isEqualTo(MESSAGE2);
   }
 
+  @Test
+  void testStoreRetriesUnprocessedItems() {
+    final DynamoDbAsyncClient dynamoDbAsyncClient = DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient();
+    final DynamoDbAsyncClient flakyDynamoDbAsyncClient = mock(DynamoDbAsyncClient.class);
+    final AtomicInteger batchWriteAttempts = new AtomicInteger();
+
+    // Only write the first item of each request on the first attempt, and report the rest as unprocessed
+    when(flakyDynamoDbAsyncClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+      final BatchWriteItemRequest request = invocation.getArgument(0);
+
+      if (batchWriteAttempts.getAndIncrement() > 0) {
+        return dynamoDbAsyncClient.batchWriteItem(request);
+      }
+
+      final List<WriteRequest> writeRequests = request.requestItems().get(Tables.MESSAGES.tableName());
+
+      return dynamoDbAsyncClient.batchWriteItem(request.toBuilder()
+              .requestItems(Map.of(Tables.MESSAGES.tableName(), writeRequests.subList(0, 1)))
+              .build())
+          .thenApply(response -> response.toBuilder()
+              .unprocessedItems(Map.of(Tables.MESSAGES.tableName(), writeRequests.subList(1, writeRequests.size())))
+              .build());
+    });
+
+    final MessagesDynamoDb flakyMessagesDynamoDb = new MessagesDynamoDb(DYNAMO_DB_EXTENSION.getDynamoDbClient(),
+        flakyDynamoDbAsyncClient, Tables.MESSAGES.tableName(), Duration.ofDays(14), messageDeletionExecutorService);
+
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device destinationDevice = DevicesHelper.createDevice(Device.PRIMARY_ID);
+
+    flakyMessagesDynamoDb.storeAsync(List.of(MESSAGE1, MESSAGE2, MESSAGE3), destinationUuid, destinationDevice).join();
+
+    assertThat(batchWriteAttempts.get()).isEqualTo(2);
+    assertThat(load(destinationUuid, destinationDevice, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).hasSize(3);
+  }
+
   @ParameterizedTest
   @ValueSource(ints = {10, 100, 100, 1_000, 3_000})
   void testLoadManyAfterInsert(final int messageCount) {
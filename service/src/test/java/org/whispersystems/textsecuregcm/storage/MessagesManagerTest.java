@@ -6,14 +6,18 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
@@ -21,6 +25,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
+import org.whispersystems.textsecuregcm.identity.AciServiceIdentifier;
 
 class MessagesManagerTest {
 
@@ -77,4 +82,44 @@ class MessagesManagerTest {
 
     assertEquals(expectMayHaveMessages, messagesManager.mayHaveMessages(accountIdentifier, device).join());
   }
+
+  @Test
+  void deleteBatch() {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device device = mock(Device.class);
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+
+    final UUID cachedGuid = UUID.randomUUID();
+    final UUID persistedGuid = UUID.randomUUID();
+    final UUID missingGuid = UUID.randomUUID();
+
+    final Envelope cachedEnvelope = buildEnvelope(destinationUuid, cachedGuid);
+    final Envelope persistedEnvelope = buildEnvelope(destinationUuid, persistedGuid);
+
+    when(messagesCache.remove(destinationUuid, Device.PRIMARY_ID, List.of(cachedGuid, persistedGuid, missingGuid)))
+        .thenReturn(CompletableFuture.completedFuture(List.of(RemovedMessage.fromEnvelope(cachedEnvelope))));
+
+    when(messagesDynamoDb.deleteMessageByDestinationAndGuid(destinationUuid, device, persistedGuid))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(persistedEnvelope)));
+
+    when(messagesDynamoDb.deleteMessageByDestinationAndGuid(destinationUuid, device, missingGuid))
+        .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+    // Duplicate GUIDs should only be removed once
+    final List<RemovedMessage> removedMessages = messagesManager.delete(destinationUuid, device,
+        List.of(cachedGuid, persistedGuid, missingGuid, cachedGuid)).join();
+
+    assertEquals(List.of(cachedGuid, persistedGuid), removedMessages.stream().map(RemovedMessage::serverGuid).toList());
+
+    verify(messagesCache).remove(eq(destinationUuid), eq(Device.PRIMARY_ID), anyList());
+    verify(messagesDynamoDb, never()).deleteMessageByDestinationAndGuid(destinationUuid, device, cachedGuid);
+  }
+
+  private static Envelope buildEnvelope(final UUID destinationUuid, final UUID guid) {
+    return Envelope.newBuilder()
+        .setDestinationServiceId(new AciServiceIdentifier(destinationUuid).toServiceIdentifierString())
+        .setServerGuid(guid.toString())
+        .setType(Envelope.Type.CIPHERTEXT)
+        .build();
+  }
 }
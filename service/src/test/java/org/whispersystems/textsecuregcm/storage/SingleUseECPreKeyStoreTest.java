@@ -5,11 +5,27 @@
 
 package org.whispersystems.textsecuregcm.storage;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.LongStream;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.AdditionalAnswers;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.whispersystems.textsecuregcm.entities.ECPreKey;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
@@ -58,4 +74,30 @@ class SingleUseECPreKeyStoreTest extends SingleUsePreKeyStoreTest<ECPreKey> {
       }
     }
   }
+
+  @Test
+  void storeWithBatchWrites() {
+    final DynamoDbAsyncClient dynamoDbAsyncClient =
+        mock(DynamoDbAsyncClient.class, AdditionalAnswers.delegatesTo(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient()));
+
+    final SingleUseECPreKeyStore batchingPreKeyStore =
+        new SingleUseECPreKeyStore(dynamoDbAsyncClient, DynamoDbExtensionSchema.Tables.EC_KEYS.tableName());
+
+    final UUID accountIdentifier = UUID.randomUUID();
+    final byte deviceId = 1;
+    final List<ECPreKey> preKeys = LongStream.rangeClosed(1, 100).mapToObj(this::generatePreKey).toList();
+
+    // Storing 100 keys with no existing keys should take four batches
+    batchingPreKeyStore.store(accountIdentifier, deviceId, preKeys).join();
+    verify(dynamoDbAsyncClient, times(4)).batchWriteItem(any(BatchWriteItemRequest.class));
+
+    // Replacing 100 keys should take four batches to delete the old keys and four more to store the new keys
+    batchingPreKeyStore.store(accountIdentifier, deviceId, preKeys).join();
+    verify(dynamoDbAsyncClient, times(12)).batchWriteItem(any(BatchWriteItemRequest.class));
+
+    verify(dynamoDbAsyncClient, never()).putItem(any(PutItemRequest.class));
+    verify(dynamoDbAsyncClient, never()).deleteItem(any(DeleteItemRequest.class));
+
+    assertEquals(100, batchingPreKeyStore.getCount(accountIdentifier, deviceId).join());
+  }
 }
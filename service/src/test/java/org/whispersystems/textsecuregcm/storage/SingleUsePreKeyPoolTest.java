@@ -0,0 +1,221 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.lettuce.core.RedisException;
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.signal.libsignal.protocol.ecc.Curve;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicPreKeyPoolConfiguration;
+import org.whispersystems.textsecuregcm.entities.ECPreKey;
+import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
+import org.whispersystems.textsecuregcm.storage.DynamoDbExtensionSchema.Tables;
+import org.whispersystems.textsecuregcm.tests.util.MockRedisFuture;
+import org.whispersystems.textsecuregcm.tests.util.RedisClusterHelper;
+
+class SingleUsePreKeyPoolTest {
+
+  @RegisterExtension
+  static final DynamoDbExtension DYNAMO_DB_EXTENSION = new DynamoDbExtension(Tables.EC_KEYS);
+
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
+  private DynamicConfiguration dynamicConfiguration;
+  private DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
+  private SingleUseECPreKeyStore preKeyStore;
+  private SingleUsePreKeyPool<ECPreKey> preKeyPool;
+
+  private static final UUID ACCOUNT_IDENTIFIER = UUID.randomUUID();
+  private static final byte DEVICE_ID = 1;
+
+  private static final DynamicPreKeyPoolConfiguration ENABLED_CONFIGURATION =
+      new DynamicPreKeyPoolConfiguration(true, 3, 2, Duration.ofMinutes(1), Duration.ofHours(1));
+
+  @BeforeEach
+  void setUp() {
+    dynamicConfiguration = mock(DynamicConfiguration.class);
+    when(dynamicConfiguration.getPreKeyPoolConfiguration()).thenReturn(ENABLED_CONFIGURATION);
+
+    //noinspection unchecked
+    dynamicConfigurationManager = mock(DynamicConfigurationManager.class);
+
+    when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+
+    preKeyStore = new SingleUseECPreKeyStore(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(), Tables.EC_KEYS.tableName());
+
+    preKeyPool = new SingleUsePreKeyPool<>(preKeyStore, "ec", ECPreKey.class,
+        REDIS_CLUSTER_EXTENSION.getRedisCluster(), dynamicConfigurationManager);
+  }
+
+  @Test
+  void take() {
+    final List<ECPreKey> preKeys = generatePreKeys(5);
+    preKeyStore.store(ACCOUNT_IDENTIFIER, DEVICE_ID, preKeys).join();
+
+    preKeyPool.refill(ACCOUNT_IDENTIFIER, DEVICE_ID, ENABLED_CONFIGURATION).join();
+
+    assertEquals(3, preKeyPool.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+    assertEquals(2, preKeyStore.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+
+    // Pooled keys should be taken first and in order, then keys from the backing store
+    for (final ECPreKey preKey : preKeys) {
+      assertEquals(Optional.of(preKey), preKeyPool.take(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+    }
+
+    assertEquals(Optional.empty(), preKeyPool.take(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+  }
+
+  @Test
+  void takeDisabled() {
+    final List<ECPreKey> preKeys = generatePreKeys(5);
+    preKeyStore.store(ACCOUNT_IDENTIFIER, DEVICE_ID, preKeys).join();
+
+    preKeyPool.refill(ACCOUNT_IDENTIFIER, DEVICE_ID, ENABLED_CONFIGURATION).join();
+
+    when(dynamicConfiguration.getPreKeyPoolConfiguration()).thenReturn(new DynamicPreKeyPoolConfiguration());
+
+    // Pooled keys are abandoned when pooling is disabled
+    assertEquals(0, preKeyPool.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+    assertEquals(Optional.of(preKeys.get(3)), preKeyPool.take(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+  }
+
+  @Test
+  void takeRefillsActiveDevice() {
+    final List<ECPreKey> preKeys = generatePreKeys(10);
+    preKeyStore.store(ACCOUNT_IDENTIFIER, DEVICE_ID, preKeys).join();
+
+    assertEquals(Optional.of(preKeys.get(0)), preKeyPool.take(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+    assertEquals(0, preKeyPool.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+
+    // The second take within the window marks the device as active and triggers a refill in the background; the
+    // refill may claim keys before the take does, so we can't predict which key the take will yield
+    assertTrue(preKeyPool.take(ACCOUNT_IDENTIFIER, DEVICE_ID).join().isPresent());
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (preKeyPool.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join() == 0) {
+        Thread.sleep(10);
+      }
+    });
+
+    assertEquals(3, preKeyPool.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+    assertEquals(5, preKeyStore.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+  }
+
+  @Test
+  void refillLocked() {
+    preKeyStore.store(ACCOUNT_IDENTIFIER, DEVICE_ID, generatePreKeys(5)).join();
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useBinaryCluster(connection -> connection.sync().set(
+        ("pre_key_pool_refill_lock::ec::{" + ACCOUNT_IDENTIFIER + "}::" + DEVICE_ID).getBytes(StandardCharsets.UTF_8),
+        "another-server".getBytes(StandardCharsets.UTF_8)));
+
+    preKeyPool.refill(ACCOUNT_IDENTIFIER, DEVICE_ID, ENABLED_CONFIGURATION).join();
+
+    // Another server holds the lock, so no keys should have been claimed
+    assertEquals(0, preKeyPool.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+    assertEquals(5, preKeyStore.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+  }
+
+  @Test
+  void clear() {
+    preKeyStore.store(ACCOUNT_IDENTIFIER, DEVICE_ID, generatePreKeys(5)).join();
+    preKeyPool.refill(ACCOUNT_IDENTIFIER, DEVICE_ID, ENABLED_CONFIGURATION).join();
+
+    assertEquals(3, preKeyPool.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+
+    preKeyPool.clear(ACCOUNT_IDENTIFIER).join();
+
+    assertEquals(0, preKeyPool.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+  }
+
+  @Test
+  void clearWhileDisabled() {
+    //noinspection unchecked
+    final RedisAdvancedClusterAsyncCommands<byte[], byte[]> asyncCommands =
+        mock(RedisAdvancedClusterAsyncCommands.class);
+
+    final SingleUsePreKeyPool<ECPreKey> disabledPreKeyPool = new SingleUsePreKeyPool<>(preKeyStore, "ec",
+        ECPreKey.class, RedisClusterHelper.builder().binaryAsyncCommands(asyncCommands).build(),
+        dynamicConfigurationManager);
+
+    when(dynamicConfiguration.getPreKeyPoolConfiguration()).thenReturn(new DynamicPreKeyPoolConfiguration());
+
+    // Nothing reads pools while pooling is disabled, so clearing them shouldn't touch Redis at all
+    disabledPreKeyPool.clear(ACCOUNT_IDENTIFIER, DEVICE_ID).join();
+    disabledPreKeyPool.clear(ACCOUNT_IDENTIFIER).join();
+
+    verifyNoInteractions(asyncCommands);
+  }
+
+  @Test
+  void takeCountExpires() {
+    final byte[] takeCountKey =
+        ("pre_key_pool_takes::ec::{" + ACCOUNT_IDENTIFIER + "}::" + DEVICE_ID).getBytes(StandardCharsets.UTF_8);
+
+    // Simulate a counter whose expiration was never applied
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useBinaryCluster(connection ->
+        connection.sync().set(takeCountKey, "1".getBytes(StandardCharsets.UTF_8)));
+
+    preKeyStore.store(ACCOUNT_IDENTIFIER, DEVICE_ID, generatePreKeys(5)).join();
+    assertTrue(preKeyPool.take(ACCOUNT_IDENTIFIER, DEVICE_ID).join().isPresent());
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (REDIS_CLUSTER_EXTENSION.getRedisCluster()
+          .withBinaryCluster(connection -> connection.sync().pttl(takeCountKey)) < 0) {
+        Thread.sleep(10);
+      }
+    });
+
+    final long ttl = REDIS_CLUSTER_EXTENSION.getRedisCluster()
+        .withBinaryCluster(connection -> connection.sync().pttl(takeCountKey));
+
+    assertTrue(ttl > 0 && ttl <= ENABLED_CONFIGURATION.activeDeviceWindow().toMillis());
+  }
+
+  @Test
+  void redisUnavailable() {
+    //noinspection unchecked
+    final RedisAdvancedClusterAsyncCommands<byte[], byte[]> asyncCommands =
+        mock(RedisAdvancedClusterAsyncCommands.class);
+
+    when(asyncCommands.llen(any())).thenReturn(MockRedisFuture.failedFuture(new RedisException("OH NO")));
+    when(asyncCommands.del(any(byte[][].class))).thenReturn(MockRedisFuture.failedFuture(new RedisException("OH NO")));
+
+    final SingleUsePreKeyPool<ECPreKey> unavailablePreKeyPool = new SingleUsePreKeyPool<>(preKeyStore, "ec",
+        ECPreKey.class, RedisClusterHelper.builder().binaryAsyncCommands(asyncCommands).build(),
+        dynamicConfigurationManager);
+
+    // Pools are an optimization; an unavailable cluster must not fail key uploads or deletions
+    assertEquals(0, unavailablePreKeyPool.getCount(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+    assertDoesNotThrow(() -> unavailablePreKeyPool.clear(ACCOUNT_IDENTIFIER, DEVICE_ID).join());
+    assertDoesNotThrow(() -> unavailablePreKeyPool.clear(ACCOUNT_IDENTIFIER).join());
+  }
+
+  private static List<ECPreKey> generatePreKeys(final int count) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> new ECPreKey(i + 1, Curve.generateKeyPair().getPublicKey()))
+        .toList();
+  }
+}
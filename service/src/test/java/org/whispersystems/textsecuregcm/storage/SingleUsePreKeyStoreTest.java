@@ -51,6 +51,30 @@ abstract class SingleUsePreKeyStoreTest<K extends PreKey<?>> {
     assertEquals(Optional.of(sortedPreKeys.get(1)), preKeyStore.take(accountIdentifier, deviceId).join());
   }
 
+  @Test
+  void storeTakeMultiple() {
+    final SingleUsePreKeyStore<K> preKeyStore = getPreKeyStore();
+
+    final UUID accountIdentifier = UUID.randomUUID();
+    final byte deviceId = 1;
+
+    assertEquals(List.of(), preKeyStore.take(accountIdentifier, deviceId, 10).join());
+
+    final List<K> sortedPreKeys;
+    {
+      final List<K> preKeys = generateRandomPreKeys();
+      assertDoesNotThrow(() -> preKeyStore.store(accountIdentifier, deviceId, preKeys).join());
+
+      sortedPreKeys = new ArrayList<>(preKeys);
+      sortedPreKeys.sort(Comparator.comparing(preKey -> preKey.keyId()));
+    }
+
+    assertEquals(sortedPreKeys.subList(0, 10), preKeyStore.take(accountIdentifier, deviceId, 10).join());
+    assertEquals(Optional.of(sortedPreKeys.get(10)), preKeyStore.take(accountIdentifier, deviceId).join());
+    assertEquals(sortedPreKeys.subList(11, KEY_COUNT), preKeyStore.take(accountIdentifier, deviceId, KEY_COUNT).join());
+    assertEquals(List.of(), preKeyStore.take(accountIdentifier, deviceId, 10).join());
+  }
+
   @Test
   void getCount() {
     final SingleUsePreKeyStore<K> preKeyStore = getPreKeyStore();
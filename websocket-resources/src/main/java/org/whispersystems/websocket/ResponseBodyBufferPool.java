@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.websocket;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A response body buffer pool holds a bounded number of buffers into which Jersey renders WebSocket response bodies, so
+ * serving a response doesn't require allocating (and repeatedly growing) a fresh buffer. A buffer that grew past the
+ * retention limit while rendering an unusually large response is discarded instead of being returned to the pool.
+ */
+class ResponseBodyBufferPool {
+
+  private final int maxPooledBuffers;
+  private final int maxRetainedCapacity;
+
+  private final Queue<ResponseBodyBuffer> buffers = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooledBufferCount = new AtomicInteger();
+
+  private static final int INITIAL_BUFFER_CAPACITY = 8192;
+
+  private static final String BORROW_BUFFER_COUNTER_NAME = name(ResponseBodyBufferPool.class, "borrowBuffer");
+
+  private static final Counter POOLED_BUFFER_COUNTER = Metrics.counter(BORROW_BUFFER_COUNTER_NAME, "pooled", "true");
+  private static final Counter NEW_BUFFER_COUNTER = Metrics.counter(BORROW_BUFFER_COUNTER_NAME, "pooled", "false");
+
+  /**
+   * A growable buffer for a response body that can expose its contents without copying them.
+   */
+  static class ResponseBodyBuffer extends ByteArrayOutputStream {
+
+    ResponseBodyBuffer(final int initialCapacity) {
+      super(initialCapacity);
+    }
+
+    /**
+     * Returns a view of the bytes written to this buffer so far. The view shares this buffer's backing array, and so is
+     * only valid until this buffer is written to, reset, or returned to its pool.
+     *
+     * @return a view of this buffer's contents
+     */
+    synchronized ByteBuffer asByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    synchronized int capacity() {
+      return buf.length;
+    }
+  }
+
+  /**
+   * Constructs a new buffer pool.
+   *
+   * @param maxPooledBuffers the maximum number of idle buffers to retain
+   * @param maxRetainedCapacity the maximum capacity, in bytes, of a buffer that may be returned to the pool
+   */
+  ResponseBodyBufferPool(final int maxPooledBuffers, final int maxRetainedCapacity) {
+    this.maxPooledBuffers = maxPooledBuffers;
+    this.maxRetainedCapacity = maxRetainedCapacity;
+  }
+
+  /**
+   * Takes an empty buffer from this pool, allocating a new buffer if no idle buffers are available.
+   *
+   * @return an empty buffer
+   */
+  ResponseBodyBuffer borrowBuffer() {
+    final ResponseBodyBuffer buffer = buffers.poll();
+
+    if (buffer != null) {
+      pooledBufferCount.decrementAndGet();
+      POOLED_BUFFER_COUNTER.increment();
+
+      return buffer;
+    }
+
+    NEW_BUFFER_COUNTER.increment();
+    return new ResponseBodyBuffer(INITIAL_BUFFER_CAPACITY);
+  }
+
+  /**
+   * Returns a buffer to this pool. Callers must not use the buffer or any view of its contents after returning it.
+   *
+   * @param buffer the buffer to return
+   */
+  void releaseBuffer(final ResponseBodyBuffer buffer) {
+    if (buffer.capacity() > maxRetainedCapacity) {
+      return;
+    }
+
+    if (pooledBufferCount.incrementAndGet() <= maxPooledBuffers) {
+      buffer.reset();
+      buffers.offer(buffer);
+    } else {
+      pooledBufferCount.decrementAndGet();
+    }
+  }
+}
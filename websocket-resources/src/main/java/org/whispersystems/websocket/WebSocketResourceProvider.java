@@ -4,11 +4,13 @@
  */
 package org.whispersystems.websocket;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.net.HttpHeaders;
 import com.google.protobuf.UninitializedMessageException;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
@@ -35,6 +37,7 @@ import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.ContainerResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.whispersystems.websocket.ResponseBodyBufferPool.ResponseBodyBuffer;
 import org.whispersystems.websocket.logging.WebsocketRequestLog;
 import org.whispersystems.websocket.messages.InvalidMessageException;
 import org.whispersystems.websocket.messages.WebSocketMessage;
@@ -70,9 +73,17 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
   private Session session;
   private RemoteEndpoint remoteEndpoint;
   private WebSocketSessionContext context;
+  private WebSocketSecurityContext securityContext;
+  private Map<String, List<String>> upgradeRequestHeaders;
 
   private static final Set<String> EXCLUDED_UPGRADE_REQUEST_HEADERS = Set.of("connection", "upgrade");
 
+  // Retain up to 64 idle buffers of at most 256 KiB each; larger buffers are left for the garbage collector
+  private static final ResponseBodyBufferPool RESPONSE_BODY_BUFFER_POOL = new ResponseBodyBufferPool(64, 256 * 1024);
+
+  private static final DistributionSummary RESPONSE_BYTES_DISTRIBUTION =
+      Metrics.summary(name(WebSocketResourceProvider.class, "responseBytes"));
+
   public WebSocketResourceProvider(String remoteAddress,
       String remoteAddressPropertyName,
       ApplicationHandler jerseyHandler,
@@ -98,6 +109,10 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
     this.context = new WebSocketSessionContext(
         new WebSocketClient(session, remoteEndpoint, messageFactory, requestMap));
     this.context.setAuthenticated(reusableAuth.ref().orElse(null));
+    // Neither the security context nor the upgrade request's headers change over the life of a session, so we build them
+    // once here instead of for every request
+    this.securityContext = new WebSocketSecurityContext(new ContextPrincipal(context));
+    this.upgradeRequestHeaders = filterUpgradeRequestHeaders(session.getUpgradeRequest().getHeaders());
     this.session.setIdleTimeout(idleTimeout);
 
     connectListener.ifPresent(listener -> listener.onWebSocketConnect(this.context));
@@ -175,18 +190,16 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
   public static final String RESOLVED_PRINCIPAL_PROPERTY = WebSocketResourceProvider.class.getName() + ".resolvedPrincipal";
   private void handleRequest(WebSocketRequestMessage requestMessage) {
     ContainerRequest containerRequest = new ContainerRequest(null, URI.create(requestMessage.getPath()),
-        requestMessage.getVerb(), new WebSocketSecurityContext(new ContextPrincipal(context)),
+        requestMessage.getVerb(), securityContext,
         new MapPropertiesDelegate(new HashMap<>()), jerseyHandler.getConfiguration());
-    containerRequest.headers(getCombinedHeaders(session.getUpgradeRequest().getHeaders(), requestMessage.getHeaders()));
+    containerRequest.headers(combineHeaders(upgradeRequestHeaders, requestMessage.getHeaders()));
 
-    if (requestMessage.getBody().isPresent()) {
-      containerRequest.setEntityStream(new ByteArrayInputStream(requestMessage.getBody().get()));
-    }
+    requestMessage.getBodyStream().ifPresent(containerRequest::setEntityStream);
 
     containerRequest.setProperty(remoteAddressPropertyName, remoteAddress);
     containerRequest.setProperty(REUSABLE_AUTH_PROPERTY, reusableAuth);
 
-    ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+    ResponseBodyBuffer responseBody = RESPONSE_BODY_BUFFER_POOL.borrowBuffer();
     CompletableFuture<ContainerResponse> responseFuture = (CompletableFuture<ContainerResponse>) jerseyHandler.apply(
         containerRequest, responseBody);
 
@@ -220,16 +233,28 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
           requestLog.log(remoteAddress, containerRequest,
               new ContainerResponse(containerRequest, Response.status(500).build()));
           return null;
-        });
+        })
+        // The response has been serialized (or abandoned) by now, so nothing refers to the body buffer any longer
+        .whenComplete((ignored, throwable) -> RESPONSE_BODY_BUFFER_POOL.releaseBuffer(responseBody));
   }
 
   @VisibleForTesting
   static Map<String, List<String>> getCombinedHeaders(final Map<String, List<String>> upgradeRequestHeaders, final Map<String, String> requestMessageHeaders) {
-    final Map<String, List<String>> combinedHeaders = new HashMap<>();
+    return combineHeaders(filterUpgradeRequestHeaders(upgradeRequestHeaders), requestMessageHeaders);
+  }
+
+  private static Map<String, List<String>> filterUpgradeRequestHeaders(final Map<String, List<String>> upgradeRequestHeaders) {
+    final Map<String, List<String>> filteredHeaders = new HashMap<>();
 
     upgradeRequestHeaders.entrySet().stream()
         .filter(entry -> shouldIncludeUpgradeRequestHeader(entry.getKey()))
-        .forEach(entry -> combinedHeaders.put(entry.getKey(), entry.getValue()));
+        .forEach(entry -> filteredHeaders.put(entry.getKey(), entry.getValue()));
+
+    return filteredHeaders;
+  }
+
+  private static Map<String, List<String>> combineHeaders(final Map<String, List<String>> filteredUpgradeRequestHeaders, final Map<String, String> requestMessageHeaders) {
+    final Map<String, List<String>> combinedHeaders = new HashMap<>(filteredUpgradeRequestHeaders);
 
     requestMessageHeaders.entrySet().stream()
         .filter(entry -> shouldIncludeRequestMessageHeader(entry.getKey()))
@@ -261,21 +286,22 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
   }
 
   private void sendResponse(WebSocketRequestMessage requestMessage, ContainerResponse response,
-      ByteArrayOutputStream responseBody) throws IOException {
+      ResponseBodyBuffer responseBody) throws IOException {
     if (requestMessage.hasRequestId()) {
-      byte[] body = responseBody.toByteArray();
-      response.getHeaders().putIfAbsent(HttpHeaders.CONTENT_LENGTH, List.of(body.length));
-      if (body.length <= 0) {
-        body = null;
-      }
+      final ByteBuffer body = responseBody.asByteBuffer();
+      response.getHeaders().putIfAbsent(HttpHeaders.CONTENT_LENGTH, List.of(body.remaining()));
 
+      // The response message wraps the body buffer, so the body is copied exactly once, directly into the serialized
+      // response
       byte[] responseBytes = messageFactory.createResponse(requestMessage.getRequestId(),
               response.getStatus(),
               response.getStatusInfo().getReasonPhrase(),
               getHeaderList(response.getStringHeaders()),
-              Optional.ofNullable(body))
+              body)
           .toByteArray();
 
+      RESPONSE_BYTES_DISTRIBUTION.record(responseBytes.length);
+
       remoteEndpoint.sendBytes(ByteBuffer.wrap(responseBytes), WriteCallback.NOOP);
     }
   }
@@ -5,6 +5,7 @@
 package org.whispersystems.websocket.messages;
 
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,4 +24,14 @@ public interface WebSocketMessageFactory {
                                          List<String> headers,
                                          Optional<byte[]> body);
 
+  /**
+   * Creates a response message that refers to the given body rather than copying it. Callers must not modify the body
+   * until they have finished serializing the returned message.
+   *
+   * @param body the body of the response; if empty, the response will have no body
+   */
+  public WebSocketMessage createResponse(long requestId, int status, String message,
+                                         List<String> headers,
+                                         ByteBuffer body);
+
 }
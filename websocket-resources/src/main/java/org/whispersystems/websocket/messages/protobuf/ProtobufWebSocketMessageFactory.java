@@ -5,12 +5,15 @@
 package org.whispersystems.websocket.messages.protobuf;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import org.whispersystems.websocket.messages.InvalidMessageException;
 import org.whispersystems.websocket.messages.WebSocketMessage;
 import org.whispersystems.websocket.messages.WebSocketMessageFactory;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Optional;
+import javax.annotation.Nullable;
 
 public class ProtobufWebSocketMessageFactory implements WebSocketMessageFactory {
 
@@ -55,14 +58,25 @@ public class ProtobufWebSocketMessageFactory implements WebSocketMessageFactory
 
   @Override
   public WebSocketMessage createResponse(long requestId, int status, String messageString, List<String> headers, Optional<byte[]> body) {
+    return buildResponse(requestId, status, messageString, headers, body.map(ByteString::copyFrom).orElse(null));
+  }
+
+  @Override
+  public WebSocketMessage createResponse(long requestId, int status, String messageString, List<String> headers, ByteBuffer body) {
+    // Wrapping the body rather than copying it means the body is copied only once, when the message is serialized
+    return buildResponse(requestId, status, messageString, headers,
+        body.hasRemaining() ? UnsafeByteOperations.unsafeWrap(body) : null);
+  }
+
+  private WebSocketMessage buildResponse(long requestId, int status, String messageString, List<String> headers, @Nullable ByteString body) {
     SubProtocol.WebSocketResponseMessage.Builder responseMessage =
         SubProtocol.WebSocketResponseMessage.newBuilder()
                                             .setId(requestId)
                                             .setStatus(status)
                                             .setMessage(messageString);
 
-    if (body.isPresent()) {
-      responseMessage.setBody(ByteString.copyFrom(body.get()));
+    if (body != null) {
+      responseMessage.setBody(body);
     }
 
     if (headers != null) {
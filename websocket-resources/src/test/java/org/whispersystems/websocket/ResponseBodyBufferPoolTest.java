@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+import org.whispersystems.websocket.ResponseBodyBufferPool.ResponseBodyBuffer;
+
+class ResponseBodyBufferPoolTest {
+
+  @Test
+  void borrowReleasedBuffer() {
+    final ResponseBodyBufferPool pool = new ResponseBodyBufferPool(1, 16384);
+
+    final ResponseBodyBuffer buffer = pool.borrowBuffer();
+    buffer.writeBytes(new byte[] { 1, 2, 3 });
+
+    final ByteBuffer contents = buffer.asByteBuffer();
+    assertThat(contents.remaining()).isEqualTo(3);
+    assertThat(contents.array()).isSameAs(buffer.asByteBuffer().array());
+
+    pool.releaseBuffer(buffer);
+
+    final ResponseBodyBuffer reusedBuffer = pool.borrowBuffer();
+    assertThat(reusedBuffer).isSameAs(buffer);
+    assertThat(reusedBuffer.size()).isZero();
+  }
+
+  @Test
+  void releaseOversizedBuffer() {
+    final ResponseBodyBufferPool pool = new ResponseBodyBufferPool(1, 16384);
+
+    final ResponseBodyBuffer buffer = pool.borrowBuffer();
+    buffer.writeBytes(new byte[32768]);
+
+    pool.releaseBuffer(buffer);
+
+    assertThat(pool.borrowBuffer()).isNotSameAs(buffer);
+  }
+
+  @Test
+  void releaseBeyondPoolSize() {
+    final ResponseBodyBufferPool pool = new ResponseBodyBufferPool(1, 16384);
+
+    final ResponseBodyBuffer firstBuffer = pool.borrowBuffer();
+    final ResponseBodyBuffer secondBuffer = pool.borrowBuffer();
+
+    pool.releaseBuffer(firstBuffer);
+    pool.releaseBuffer(secondBuffer);
+
+    assertThat(pool.borrowBuffer()).isSameAs(firstBuffer);
+    assertThat(pool.borrowBuffer()).isNotSameAs(secondBuffer);
+  }
+}
@@ -181,6 +181,70 @@ class WebSocketResourceProviderTest {
         ByteString.copyFrom("hello world!".getBytes()));
   }
 
+  @Test
+  void testMockedRouteMessageCachedSessionState() throws Exception {
+    ApplicationHandler applicationHandler = mock(ApplicationHandler.class);
+    WebsocketRequestLog requestLog = mock(WebsocketRequestLog.class);
+    WebSocketResourceProvider<TestPrincipal> provider = new WebSocketResourceProvider<>("127.0.0.1",
+        REMOTE_ADDRESS_PROPERTY_NAME, applicationHandler, requestLog, immutableTestPrincipal("foo"),
+        new ProtobufWebSocketMessageFactory(), Optional.empty(), Duration.ofMillis(30000));
+
+    Session session = mock(Session.class);
+    RemoteEndpoint remoteEndpoint = mock(RemoteEndpoint.class);
+    UpgradeRequest request = mock(UpgradeRequest.class);
+
+    when(request.getHeaders()).thenReturn(Map.of(
+        "Upgrade", List.of("websocket"),
+        "Connection", List.of("Upgrade"),
+        HttpHeaders.USER_AGENT, List.of("Upgrade request user agent")));
+    when(session.getUpgradeRequest()).thenReturn(request);
+    when(session.getRemote()).thenReturn(remoteEndpoint);
+
+    ContainerResponse response = mock(ContainerResponse.class);
+    when(response.getStatus()).thenReturn(200);
+    when(response.getStatusInfo()).thenReturn(Response.Status.OK);
+    when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+
+    when(applicationHandler.apply(any(ContainerRequest.class), any(OutputStream.class)))
+        .thenReturn(CompletableFuture.completedFuture(response));
+
+    provider.onWebSocketConnect(session);
+
+    byte[] firstMessage = new ProtobufWebSocketMessageFactory().createRequest(Optional.of(111L), "GET", "/bar",
+        new LinkedList<>(List.of("X-First:1", HttpHeaders.X_FORWARDED_FOR + ":192.168.0.1")), Optional.empty())
+        .toByteArray();
+
+    byte[] secondMessage = new ProtobufWebSocketMessageFactory().createRequest(Optional.of(112L), "GET", "/bar",
+        new LinkedList<>(List.of("X-Second:2")), Optional.empty()).toByteArray();
+
+    provider.onWebSocketBinary(firstMessage, 0, firstMessage.length);
+    provider.onWebSocketBinary(secondMessage, 0, secondMessage.length);
+
+    ArgumentCaptor<ContainerRequest> requestCaptor = ArgumentCaptor.forClass(ContainerRequest.class);
+    verify(applicationHandler, times(2)).apply(requestCaptor.capture(), any(OutputStream.class));
+
+    ContainerRequest firstRequest = requestCaptor.getAllValues().get(0);
+    ContainerRequest secondRequest = requestCaptor.getAllValues().get(1);
+
+    // Upgrade request headers are filtered once per session and shared by every request...
+    verify(request, times(1)).getHeaders();
+
+    for (ContainerRequest containerRequest : List.of(firstRequest, secondRequest)) {
+      assertThat(containerRequest.getHeaderString(HttpHeaders.USER_AGENT)).isEqualTo("Upgrade request user agent");
+      assertThat(containerRequest.getHeaders()).doesNotContainKeys("Upgrade", "Connection");
+    }
+
+    // ...but each request's own headers apply only to that request
+    assertThat(firstRequest.getHeaderString("X-First")).isEqualTo("1");
+    assertThat(firstRequest.getHeaderString(HttpHeaders.X_FORWARDED_FOR)).isNull();
+    assertThat(secondRequest.getHeaderString("X-First")).isNull();
+    assertThat(secondRequest.getHeaderString("X-Second")).isEqualTo("2");
+
+    // The security context is built once per session and reflects the session's principal
+    assertThat(secondRequest.getSecurityContext()).isSameAs(firstRequest.getSecurityContext());
+    assertThat(firstRequest.getSecurityContext().getUserPrincipal().getName()).isEqualTo("foo");
+  }
+
   @Test
   void testMockedRouteMessageFailure() throws Exception {
     ApplicationHandler applicationHandler = mock(ApplicationHandler.class);